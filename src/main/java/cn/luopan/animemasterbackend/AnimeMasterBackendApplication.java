@@ -3,9 +3,11 @@ package cn.luopan.animemasterbackend;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("cn.luopan.animemasterbackend.mapper") // 配置Mapper扫描
+@EnableScheduling // 启用定时任务（Bangumi数据同步等），线程池大小见spring.task.scheduling.pool.size
 public class AnimeMasterBackendApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,22 @@
+package cn.luopan.animemasterbackend.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Jackson配置
+ * Spring Boot会把Module类型的Bean注册到全局ObjectMapper，HTTP消息转换器和各处注入的ObjectMapper都会使用
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Blackbird模块：为DTO的getter/record访问器生成字节码调用，序列化时不再走反射
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -0,0 +1,30 @@
+package cn.luopan.animemasterbackend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactor调度器配置
+ */
+@Configuration
+public class ReactorConfig {
+
+    // 执行阻塞数据库操作的最大线程数
+    @Value("${anime.reactive.db-threads:16}")
+    private int dbThreads;
+
+    // 线程全忙时允许排队的任务数
+    @Value("${anime.reactive.db-queue-size:1000}")
+    private int dbQueueSize;
+
+    /**
+     * 有界调度器，响应式接口中的MyBatis操作在此执行，避免占用Netty或Tomcat线程
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler animeDbScheduler() {
+        return Schedulers.newBoundedElastic(dbThreads, dbQueueSize, "anime-db");
+    }
+}
@@ -57,7 +57,7 @@ public class SecurityConfig {
         // 允许携带凭证（如Cookie）
         configuration.setAllowCredentials(true);
         // 暴露的响应头
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Next-Cursor"));
         // 预检请求的缓存时间（秒）
         configuration.setMaxAge(3600L);
         
@@ -0,0 +1,98 @@
+package cn.luopan.animemasterbackend.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executors;
+
+/**
+ * 线程模型配置
+ * app.virtual-threads.enabled=true 时，Tomcat请求处理和异步邮件发送改为虚拟线程执行，
+ * 同时对数据库连接的并发获取加以限制，避免大量虚拟线程在JDBC驱动的synchronized代码中固定（pin）载体线程
+ * 信号量只限制固定的线程数，每次查询仍会占住一个载体线程；载体线程数默认等于CPU核数，
+ * 核数少于db-max-concurrency时查询会按核数排队，需要以-Djdk.virtualThreadScheduler.parallelism启动JVM，取值不小于db-max-concurrency
+ */
+@Configuration
+@EnableAsync
+public class ThreadingConfig {
+
+    @Value("${app.virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    /**
+     * Tomcat使用每请求一个虚拟线程的执行器
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * 应用默认的异步执行器，Spring MVC用它执行StreamingResponseBody、Callable等异步请求，也是@Async的默认执行器
+     * 定义了mailExecutor后Spring Boot自动配置的applicationTaskExecutor（@ConditionalOnMissingBean(Executor.class)）
+     * 不再生效，MVC会退回到每个任务新建线程、没有上限的SimpleAsyncTaskExecutor，因此在这里显式定义；
+     * 平台线程模式下由spring.task.execution.*配置线程池大小和队列，虚拟线程模式下每个任务一个虚拟线程
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor(TaskExecutorBuilder taskExecutorBuilder) {
+        if (virtualThreadsEnabled) {
+            return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return taskExecutorBuilder.build();
+    }
+
+    /**
+     * 邮件发送执行器，SMTP请求不再占用处理HTTP请求的线程
+     */
+    @Bean(name = "mailExecutor")
+    public TaskExecutor mailExecutor() {
+        if (virtualThreadsEnabled) {
+            return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("mail-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 虚拟线程模式下用信号量包装数据源，同时持有连接的线程数不超过配置值
+     * 该值应不大于Hikari连接池大小（默认10）
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+    public static BeanPostProcessor concurrencyLimitedDataSourcePostProcessor(Environment environment) {
+        int maxConcurrency = environment.getProperty("app.virtual-threads.db-max-concurrency", Integer.class, 10);
+        long acquireTimeoutMillis = environment.getProperty("app.virtual-threads.db-acquire-timeout-ms", Long.class, 30000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)) {
+                    return new ConcurrencyLimitedDataSource(dataSource, maxConcurrency, acquireTimeoutMillis);
+                }
+                return bean;
+            }
+        };
+    }
+}
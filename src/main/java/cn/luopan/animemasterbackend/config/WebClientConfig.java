@@ -1,11 +1,19 @@
 package cn.luopan.animemasterbackend.config;
 
+import cn.luopan.animemasterbackend.utils.ConnectionPoolStats;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.ClientCodecConfigurer;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 /**
  * WebClient配置类
@@ -13,10 +21,56 @@ import reactor.netty.http.client.HttpClient;
 @Configuration
 public class WebClientConfig {
 
+    /**
+     * Bangumi API连接统计，由连接池和HttpClient回调更新
+     */
+    @Bean
+    public ConnectionPoolStats bangumiConnectionStats() {
+        return new ConnectionPoolStats();
+    }
+
+    /**
+     * 访问Bangumi API的连接池
+     * 空闲连接保留一段时间以复用TLS会话，后台定期清理超过空闲或存活时间的连接，避免复用已被服务端关闭的连接；
+     * 等待连接的请求数和等待时间有上限，上游变慢时不会无限堆积
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider bangumiConnectionProvider(ConnectionPoolStats bangumiConnectionStats,
+                                                        @Value("${bangumi.client.max-connections:16}") int maxConnections,
+                                                        @Value("${bangumi.client.pending-acquire-max-count:64}") int pendingAcquireMaxCount,
+                                                        @Value("${bangumi.client.pending-acquire-timeout-ms:2000}") long pendingAcquireTimeoutMs,
+                                                        @Value("${bangumi.client.max-idle-seconds:55}") long maxIdleSeconds,
+                                                        @Value("${bangumi.client.max-life-seconds:600}") long maxLifeSeconds,
+                                                        @Value("${bangumi.client.evict-interval-seconds:30}") long evictIntervalSeconds) {
+        return ConnectionProvider.builder("bangumi")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+                .maxLifeTime(Duration.ofSeconds(maxLifeSeconds))
+                .evictInBackground(Duration.ofSeconds(evictIntervalSeconds))
+                // 优先复用最近归还的连接，其余连接空闲到期后被清理
+                .lifo()
+                .metrics(true, () -> bangumiConnectionStats)
+                .build();
+    }
+
+    /**
+     * 访问Bangumi API的WebClient
+     * 连接和响应都有超时，响应体由BangumiApiClient按块读取，不受编解码器的内存上限限制
+     */
     @Bean
-    public WebClient bangumiWebClient() {
+    public WebClient bangumiWebClient(ConnectionProvider bangumiConnectionProvider,
+                                      ConnectionPoolStats bangumiConnectionStats,
+                                      @Value("${bangumi.client.connect-timeout-ms:3000}") int connectTimeoutMs,
+                                      @Value("${bangumi.client.response-timeout-ms:10000}") long responseTimeoutMs,
+                                      @Value("${bangumi.client.compress:true}") boolean compress,
+                                      @Value("${bangumi.client.http2:true}") boolean http2) {
+        HttpClient httpClient = createBangumiHttpClient(bangumiConnectionProvider, bangumiConnectionStats,
+                connectTimeoutMs, responseTimeoutMs, compress, http2);
         return WebClient.builder()
                 .baseUrl("https://api.bgm.tv")
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeader("User-Agent", "AnimeMaster/1.0.0")
                 .codecs(configurer -> {
                     // 增加缓冲区大小限制，设置为1MB
@@ -24,4 +78,45 @@ public class WebClientConfig {
                 })
                 .build();
     }
+
+    /**
+     * 创建访问Bangumi API的HttpClient
+     * compress为true时发送Accept-Encoding: gzip并自动解压；http2为true时通过ALPN协商HTTP/2，
+     * 服务端不支持时回退到HTTP/1.1，HTTP/2下同一连接上的并发请求共用一次握手
+     */
+    public static HttpClient createBangumiHttpClient(ConnectionProvider provider, ConnectionPoolStats stats,
+                                                     int connectTimeoutMs, long responseTimeoutMs,
+                                                     boolean compress, boolean http2) {
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .compress(compress)
+                // doOnConnected/doOnDisconnected在每次从连接池取出和归还连接时都会触发，
+                // 只有新建的连接才会进入CONNECTED状态，连接关闭时释放
+                .observe((connection, newState) -> {
+                    if (newState == ConnectionObserver.State.CONNECTED) {
+                        stats.connectionOpened();
+                        connection.onDispose(stats::connectionClosed);
+                    }
+                })
+                .doOnRequest((request, connection) -> stats.requestSent());
+        if (http2) {
+            // HTTP/2只在TLS上通过ALPN协商
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+        return httpClient;
+    }
+
+    /**
+     * 下载Bangumi封面图片用的WebClient，不跟随重定向，避免下载到白名单以外的地址
+     */
+    @Bean
+    public WebClient imageWebClient(@Value("${anime.images.mirror.max-image-bytes:10485760}") int maxImageBytes) {
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create().followRedirect(false)))
+                .defaultHeader("User-Agent", "AnimeMaster/1.0.0")
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(maxImageBytes))
+                .build();
+    }
 }
\ No newline at end of file
@@ -1,6 +1,13 @@
 package cn.luopan.animemasterbackend.controller;
 
+import cn.luopan.animemasterbackend.dto.AnimeDto;
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.dto.CursorPage;
+import cn.luopan.animemasterbackend.dto.TagDto;
+import cn.luopan.animemasterbackend.service.AnimeTagService;
 import cn.luopan.animemasterbackend.service.IAnimeService;
+import cn.luopan.animemasterbackend.utils.JsonFragmentWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -8,10 +15,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 动漫接口控制器
@@ -23,68 +30,147 @@ public class AnimeController {
     @Autowired
     private IAnimeService animeService;
 
+    @Autowired
+    private AnimeTagService animeTagService;
+
     /**
      * 获取每日放送动漫列表
-     * @return 每日放送动漫数据
+     * 响应由各动漫预先编码的JSON片段直接拼接写出
      */
     @GetMapping("/daily")
-    public ResponseEntity<Map<String, Object>> getDailyAnime() {
+    public void getDailyAnime(HttpServletResponse httpResponse) throws IOException {
+        List<byte[]> fragments;
         try {
-            List<Map<String, Object>> animeList = animeService.getDailyAnime();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "获取成功");
-            response.put("data", animeList);
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            fragments = animeService.getDailyAnimeFragments();
         } catch (Exception e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "获取失败: " + e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            JsonFragmentWriter.writeFailure(httpResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "获取失败: " + e.getMessage());
+            return;
         }
+        JsonFragmentWriter.writeSuccess(httpResponse, "获取成功", fragments);
     }
 
     /**
      * 获取动漫排行榜
-     * @return 动漫排行榜数据
+     * 响应中的nextCursor传回cursor参数即可获取下一页，翻页深度不影响耗时
+     * @param cursor 上一页返回的nextCursor（可选，不传时从第1名开始）
+     * @param page 页码，从1开始（可选，按页码跳转，页码越大越慢；传cursor时忽略）
+     * @param size 每页数量（可选，默认20，最大100）
      */
     @GetMapping("/ranking")
-    public ResponseEntity<Map<String, Object>> getAnimeRanking() {
+    public void getAnimeRanking(@RequestParam(required = false) String cursor,
+                                @RequestParam(required = false) Integer page,
+                                @RequestParam(required = false) Integer size,
+                                HttpServletResponse httpResponse) throws IOException {
+        int finalSize = size == null ? 20 : size;
+        CursorPage<byte[]> result;
         try {
-            List<Map<String, Object>> animeList = animeService.getAnimeRanking();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "获取成功");
-            response.put("data", animeList);
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            result = (page != null && cursor == null)
+                    ? animeService.getAnimeRankingFragments(page, finalSize)
+                    : animeService.getAnimeRankingFragments(cursor, finalSize);
+        } catch (IllegalArgumentException e) {
+            JsonFragmentWriter.writeFailure(httpResponse, HttpServletResponse.SC_BAD_REQUEST, "无效的分页游标");
+            return;
         } catch (Exception e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "获取失败: " + e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            JsonFragmentWriter.writeFailure(httpResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "获取失败: " + e.getMessage());
+            return;
         }
+        JsonFragmentWriter.writeSuccess(httpResponse, "获取成功", result.items(), result.nextCursor());
     }
 
     /**
      * 搜索动漫
-     * @return 搜索结果
      */
     @GetMapping("/search")
-    public ResponseEntity<Map<String, Object>> searchAnime(@RequestParam String keyword, 
-                                           @RequestParam(required = false) Integer limit, 
-                                           @RequestParam(required = false) Integer offset) {
+    public void searchAnime(@RequestParam String keyword,
+                            @RequestParam(required = false) Integer limit,
+                            @RequestParam(required = false) Integer offset,
+                            HttpServletResponse httpResponse) throws IOException {
+        List<byte[]> fragments;
+        try {
+            fragments = animeService.searchAnimeFragments(keyword, limit, offset);
+        } catch (Exception e) {
+            JsonFragmentWriter.writeFailure(httpResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "搜索失败: " + e.getMessage());
+            return;
+        }
+        JsonFragmentWriter.writeSuccess(httpResponse, "搜索成功", fragments);
+    }
+
+    /**
+     * 按标签浏览动漫，按评分降序
+     * @param tag 标签名
+     * @param cursor 上一页返回的nextCursor，首页不传
+     * @param size 每页数量（可选，默认20，最大100）
+     * @return 当前页动漫和下一页游标
+     */
+    @GetMapping("/by-tag")
+    public ResponseEntity<ApiResponse<CursorPage<AnimeDto>>> getAnimeByTag(@RequestParam String tag,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer size) {
+        try {
+            CursorPage<AnimeDto> page = animeService.getAnimeByTag(tag, cursor, size == null ? 20 : size);
+            return new ResponseEntity<>(ApiResponse.ok("获取成功", page), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(ApiResponse.fail("无效的分页游标"), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(ApiResponse.fail("获取失败: " + e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * 获取热门标签
+     * @param limit 返回数量（可选，默认50，最大200）
+     * @return 标签及其动漫数量，按动漫数量降序
+     */
+    @GetMapping("/tags")
+    public ResponseEntity<ApiResponse<List<TagDto>>> getPopularTags(@RequestParam(required = false) Integer limit) {
         try {
-            List<Map<String, Object>> searchResults = animeService.searchAnime(keyword, limit, offset);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "搜索成功");
-            response.put("data", searchResults);
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            int finalLimit = Math.min(Math.max(limit == null ? 50 : limit, 1), 200);
+            List<TagDto> tags = animeTagService.getPopularTags(finalLimit).stream()
+                    .map(TagDto::from)
+                    .toList();
+            return new ResponseEntity<>(ApiResponse.ok("获取成功", tags), HttpStatus.OK);
         } catch (Exception e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "搜索失败: " + e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>(ApiResponse.fail("获取失败: " + e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 获取每日放送动漫列表（非阻塞版本）
+     * @return 每日放送动漫数据
+     */
+    @GetMapping("/reactive/daily")
+    public Mono<ResponseEntity<ApiResponse<List<AnimeDto>>>> getDailyAnimeReactive() {
+        return toResponse(animeService.getDailyAnimeReactive(), "获取成功", "获取失败: ");
+    }
+
+    /**
+     * 获取动漫排行榜（非阻塞版本）
+     * @return 动漫排行榜数据
+     */
+    @GetMapping("/reactive/ranking")
+    public Mono<ResponseEntity<ApiResponse<List<AnimeDto>>>> getAnimeRankingReactive() {
+        return toResponse(animeService.getAnimeRankingReactive(), "获取成功", "获取失败: ");
+    }
+
+    /**
+     * 搜索动漫（非阻塞版本）
+     * @return 搜索结果
+     */
+    @GetMapping("/reactive/search")
+    public Mono<ResponseEntity<ApiResponse<List<AnimeDto>>>> searchAnimeReactive(@RequestParam String keyword,
+                                                                         @RequestParam(required = false) Integer limit,
+                                                                         @RequestParam(required = false) Integer offset) {
+        return toResponse(animeService.searchAnimeReactive(keyword, limit, offset), "搜索成功", "搜索失败: ");
+    }
+
+    /**
+     * 将结果包装为与同步接口相同的响应格式
+     */
+    private Mono<ResponseEntity<ApiResponse<List<AnimeDto>>>> toResponse(Mono<List<AnimeDto>> result,
+                                                                         String successMessage, String failurePrefix) {
+        return result
+                .map(data -> new ResponseEntity<>(ApiResponse.ok(successMessage, data), HttpStatus.OK))
+                .onErrorResume(e -> Mono.just(new ResponseEntity<>(
+                        ApiResponse.<List<AnimeDto>>fail(failurePrefix + e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR)));
+    }
+}
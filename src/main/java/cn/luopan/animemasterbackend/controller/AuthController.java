@@ -1,5 +1,8 @@
 package cn.luopan.animemasterbackend.controller;
 
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.dto.LoginResult;
+import cn.luopan.animemasterbackend.dto.UserDto;
 import cn.luopan.animemasterbackend.entity.User;
 import cn.luopan.animemasterbackend.service.IUserService;
 import cn.luopan.animemasterbackend.service.VerificationCodeService;
@@ -18,7 +21,6 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @RestController
@@ -40,9 +42,7 @@ public class AuthController {
     private String secretKey;
 
     @PostMapping("/register")
-    public ResponseEntity<Map<String, Object>> register(@RequestBody Map<String, String> requestBody) {
-        Map<String, Object> response = new HashMap<>();
-        
+    public ResponseEntity<ApiResponse<UserDto>> register(@RequestBody Map<String, String> requestBody) {
         try {
             // 获取请求参数
             String username = requestBody.get("username");
@@ -55,25 +55,19 @@ public class AuthController {
             // 检查必填参数
             if (username == null || email == null || password == null || verificationCode == null) {
                 logger.warn("用户注册失败 - 缺少必填参数");
-                response.put("success", false);
-                response.put("message", "用户名、邮箱、密码和验证码不能为空");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("用户名、邮箱、密码和验证码不能为空"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证邮箱格式
             if (!isValidEmail(email)) {
                 logger.warn("用户注册失败 - 邮箱格式错误: {}", email);
-                response.put("success", false);
-                response.put("message", "请输入有效的邮箱地址");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("请输入有效的邮箱地址"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证验证码格式
             if (verificationCode.length() != 6) {
                 logger.warn("用户注册失败 - 验证码格式错误: {}", verificationCode);
-                response.put("success", false);
-                response.put("message", "验证码格式错误，应为6位数字");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("验证码格式错误，应为6位数字"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证验证码
@@ -82,46 +76,30 @@ public class AuthController {
             
             if (!validCode) {
                 logger.warn("用户注册失败 - 验证码错误或已过期: {}", email);
-                response.put("success", false);
-                response.put("message", "验证码错误或已过期");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("验证码错误或已过期"), HttpStatus.BAD_REQUEST);
             }
             
             // 调用服务层进行注册
             User user = userService.registerUser(username, email, password);
             
-            // 构造成功响应
-            Map<String, Object> userData = new HashMap<>();
-            userData.put("userId", user.getId());
-            userData.put("username", user.getUsername());
-            userData.put("email", user.getEmail());
-            
-            response.put("success", true);
-            response.put("message", "注册成功");
-            response.put("data", userData);
-            
             logger.info("用户注册成功 - 用户ID: {}, 用户名: {}", user.getId(), user.getUsername());
             
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            // 构造成功响应
+            return new ResponseEntity<>(ApiResponse.ok("注册成功", UserDto.from(user)), HttpStatus.OK);
             
         } catch (RuntimeException e) {
             // 处理业务异常
             logger.warn("用户注册失败 - 业务异常: {}", e.getMessage());
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+            return new ResponseEntity<>(ApiResponse.fail(e.getMessage()), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             // 处理其他异常
             logger.error("用户注册失败 - 系统异常: {}", e.getMessage(), e);
-            response.put("success", false);
-            response.put("message", "注册失败：" + e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>(ApiResponse.fail("注册失败：" + e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> loginRequest) {
-        Map<String, Object> response = new HashMap<>();
+    public ResponseEntity<ApiResponse<LoginResult>> login(@RequestBody Map<String, String> loginRequest) {
         try {
             // 参数验证
             String usernameOrEmail = loginRequest.get("username");
@@ -131,37 +109,27 @@ public class AuthController {
 
             if (usernameOrEmail == null || usernameOrEmail.isEmpty() || password == null || password.isEmpty()) {
                 logger.warn("用户登录失败 - 缺少必填参数");
-                response.put("success", false);
-                response.put("message", "用户名/邮箱和密码不能为空");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.fail("用户名/邮箱和密码不能为空"));
             }
 
             // 调用服务层进行登录
-            Map<String, Object> loginResponse = userService.loginUser(usernameOrEmail, password);
-
-            // 构造响应
-            response.put("success", true);
-            response.put("message", "登录成功");
-            response.put("data", loginResponse);
+            LoginResult loginResult = userService.loginUser(usernameOrEmail, password);
 
             logger.info("用户登录成功 - 用户名/邮箱: {}", usernameOrEmail);
 
-            return ResponseEntity.ok(response);
+            // 构造响应
+            return ResponseEntity.ok(ApiResponse.ok("登录成功", loginResult));
         } catch (RuntimeException e) {
             logger.warn("用户登录失败 - 业务异常: {}", e.getMessage());
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.fail(e.getMessage()));
         } catch (Exception e) {
             logger.error("用户登录失败 - 系统异常: {}", e.getMessage(), e);
-            response.put("success", false);
-            response.put("message", "登录失败，请稍后重试");
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.fail("登录失败，请稍后重试"));
         }
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(HttpServletRequest request) {
+    public ResponseEntity<ApiResponse<Void>> logout(HttpServletRequest request) {
         try {
             // 从请求头中获取Authorization令牌
             String authorizationHeader = request.getHeader("Authorization");
@@ -176,32 +144,20 @@ public class AuthController {
                 tokenBlacklist.addToBlacklist(token);
 
                 // 构造成功响应
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "退出登录成功");
-
                 logger.info("用户退出登录成功 - Token已加入黑名单");
 
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ApiResponse.ok("退出登录成功"));
             } else {
                 // 构造失败响应
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "退出登录失败，未提供有效Token");
-
                 logger.warn("用户退出登录失败 - 未提供有效Token");
 
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.fail("退出登录失败，未提供有效Token"));
             }
         } catch (Exception e) {
             logger.error("用户退出登录失败 - 系统异常: {}", e.getMessage(), e);
             e.printStackTrace();
             // 构造失败响应
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "退出登录失败");
-
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.fail("退出登录失败"));
         }
     }
     
@@ -209,7 +165,7 @@ public class AuthController {
      * 发送验证码
      */
     @PostMapping("/send-code")
-    public ResponseEntity<?> sendCode(@RequestBody Map<String, String> requestBody) {
+    public ResponseEntity<ApiResponse<Void>> sendCode(@RequestBody Map<String, String> requestBody) {
         try {
             // 获取请求参数
             String email = requestBody.get("email");
@@ -220,19 +176,13 @@ public class AuthController {
             // 检查必填参数
             if (email == null || email.isEmpty() || type == null || type.isEmpty()) {
                 logger.warn("发送验证码失败 - 缺少必填参数");
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "邮箱和验证码类型不能为空");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("邮箱和验证码类型不能为空"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证邮箱格式
             if (!isValidEmail(email)) {
                 logger.warn("发送验证码失败 - 邮箱格式错误: {}", email);
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "请输入有效的邮箱地址");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("请输入有效的邮箱地址"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证验证码类型
@@ -241,39 +191,25 @@ public class AuthController {
                 codeType = VerificationCodeService.CodeType.valueOf(type.toUpperCase());
             } catch (IllegalArgumentException e) {
                 logger.warn("发送验证码失败 - 验证码类型错误: {}", type);
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "验证码类型错误，请使用register或reset_password");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("验证码类型错误，请使用register或reset_password"), HttpStatus.BAD_REQUEST);
             }
             
             // 发送验证码
             boolean sent = verificationCodeService.sendVerificationCode(email, codeType);
             
             if (sent) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "验证码已发送至您的邮箱，请查收");
-                
                 logger.info("验证码发送成功 - 邮箱: {}, 类型: {}", email, codeType);
-                
-                return new ResponseEntity<>(response, HttpStatus.OK);
+
+                return new ResponseEntity<>(ApiResponse.ok("验证码已发送至您的邮箱，请查收"), HttpStatus.OK);
             } else {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "验证码发送失败，请稍后重试");
-                
                 logger.error("验证码发送失败 - 邮箱: {}, 类型: {}", email, codeType);
-                
-                return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+
+                return new ResponseEntity<>(ApiResponse.fail("验证码发送失败，请稍后重试"), HttpStatus.INTERNAL_SERVER_ERROR);
             }
             
         } catch (Exception e) {
             logger.error("发送验证码失败 - 系统异常: {}", e.getMessage(), e);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "发送验证码失败，请稍后重试");
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>(ApiResponse.fail("发送验证码失败，请稍后重试"), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
@@ -281,7 +217,7 @@ public class AuthController {
      * 重置密码
      */
     @PostMapping("/reset-password")
-    public ResponseEntity<?> resetPassword(@RequestBody Map<String, String> requestBody) {
+    public ResponseEntity<ApiResponse<Void>> resetPassword(@RequestBody Map<String, String> requestBody) {
         try {
             // 获取请求参数
             String email = requestBody.get("email");
@@ -295,46 +231,31 @@ public class AuthController {
             if (email == null || email.isEmpty() || verificationCode == null || verificationCode.isEmpty() ||
                     newPassword == null || newPassword.isEmpty() || confirmPassword == null || confirmPassword.isEmpty()) {
                 logger.warn("重置密码失败 - 缺少必填参数");
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "所有参数都不能为空");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("所有参数都不能为空"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证邮箱格式
             if (!isValidEmail(email)) {
                 logger.warn("重置密码失败 - 邮箱格式错误: {}", email);
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "请输入有效的邮箱地址");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("请输入有效的邮箱地址"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证验证码格式
             if (verificationCode.length() != 6) {
                 logger.warn("重置密码失败 - 验证码格式错误: {}", verificationCode);
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "验证码格式错误，应为6位数字");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("验证码格式错误，应为6位数字"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证密码一致性
             if (!newPassword.equals(confirmPassword)) {
                 logger.warn("重置密码失败 - 两次输入的密码不一致");
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "两次输入的密码不一致");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("两次输入的密码不一致"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证密码长度
             if (newPassword.length() < 6) {
                 logger.warn("重置密码失败 - 密码长度不足");
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "密码长度不能少于6位");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("密码长度不能少于6位"), HttpStatus.BAD_REQUEST);
             }
             
             // 验证验证码
@@ -343,43 +264,27 @@ public class AuthController {
             
             if (!validCode) {
                 logger.warn("重置密码失败 - 验证码错误或已过期: {}", email);
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "验证码错误或已过期");
-                return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+                return new ResponseEntity<>(ApiResponse.fail("验证码错误或已过期"), HttpStatus.BAD_REQUEST);
             }
             
             // 重置密码
             boolean passwordReset = userService.resetPassword(email, newPassword);
             
             if (passwordReset) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "密码重置成功");
-                
                 logger.info("密码重置成功 - 邮箱: {}", email);
-                
-                return new ResponseEntity<>(response, HttpStatus.OK);
+
+                return new ResponseEntity<>(ApiResponse.ok("密码重置成功"), HttpStatus.OK);
             } else {
                 logger.error("重置密码失败 - 更新数据库失败: {}", email);
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", false);
-                response.put("message", "密码重置失败，请稍后重试");
-                return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+                return new ResponseEntity<>(ApiResponse.fail("密码重置失败，请稍后重试"), HttpStatus.INTERNAL_SERVER_ERROR);
             }
             
         } catch (RuntimeException e) {
             logger.warn("重置密码失败 - 业务异常: {}", e.getMessage());
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+            return new ResponseEntity<>(ApiResponse.fail(e.getMessage()), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             logger.error("重置密码失败 - 系统异常: {}", e.getMessage(), e);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", "重置密码失败，请稍后重试");
-            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>(ApiResponse.fail("重置密码失败，请稍后重试"), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
@@ -1,14 +1,25 @@
 package cn.luopan.animemasterbackend.controller;
 
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.dto.CollectionBatchRequest;
+import cn.luopan.animemasterbackend.dto.CollectionBatchResult;
+import cn.luopan.animemasterbackend.dto.CollectionImportResult;
+import cn.luopan.animemasterbackend.dto.CollectionsDto;
+import cn.luopan.animemasterbackend.dto.CursorPage;
 import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
 import cn.luopan.animemasterbackend.service.IUserAnimeStatusService;
 import cn.luopan.animemasterbackend.utils.JwtUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,33 +34,47 @@ public class CollectionController {
 
     /**
      * 获取当前用户的动漫收藏列表
-     * 按状态分类返回：想看、在看、已看、弃置
+     * 不传status时按状态分类返回全部收藏：想看、在看、已看、弃置；
+     * 传status时只返回该状态的收藏，按收藏时间从新到旧分页，data为{"items":[...],"nextCursor":...}
+     * @param status 状态（可选）
+     * @param cursor 上一页返回的nextCursor（可选）
+     * @param size 每页数量（可选，默认50，最大200）
      */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getCollections(HttpServletRequest request) {
+    public ResponseEntity<? extends ApiResponse<?>> getCollections(@RequestParam(required = false) String status,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(required = false) Integer size,
+                                                                   HttpServletRequest request) {
         // 从JWT中获取用户ID
         Long userId = getUserIdFromToken(request);
-        
-        // 获取按状态分类的收藏列表
-        Map<String, Object> response = new HashMap<>();
-        Map<String, Object> data = new HashMap<>();
+
+        if (status != null) {
+            return getCollectionPage(userId, status, cursor, size == null ? 50 : size);
+        }
         
         try {
-            Map<String, Object> collections = new HashMap<>(userAnimeStatusService.getCollectionsByStatus(userId));
-            
-            response.put("success", true);
-            response.put("message", "获取收藏列表成功");
-            data.put("wantToWatch", collections.getOrDefault("wantToWatch", new java.util.ArrayList<>()));
-            data.put("watching", collections.getOrDefault("watching", new java.util.ArrayList<>()));
-            data.put("watched", collections.getOrDefault("watched", new java.util.ArrayList<>()));
-            data.put("dropped", collections.getOrDefault("dropped", new java.util.ArrayList<>()));
-            response.put("data", data);
-            
-            return ResponseEntity.ok(response);
+            // 获取按状态分类的收藏列表
+            CollectionsDto collections = CollectionsDto.from(userAnimeStatusService.getCollectionsByStatus(userId));
+            return ResponseEntity.ok(ApiResponse.ok("获取收藏列表成功", collections));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("获取收藏列表失败: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<ApiResponse<CursorPage<UserAnimeStatus>>> getCollectionPage(Long userId, String status,
+                                                                                       String cursor, int size) {
+        try {
+            UserAnimeStatus.Status.fromValue(status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.fail("无效的状态: " + status));
+        }
+        try {
+            CursorPage<UserAnimeStatus> page = userAnimeStatusService.getUserAnimeListByStatus(userId, status, cursor, size);
+            return ResponseEntity.ok(ApiResponse.ok("获取收藏列表成功", page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.fail("无效的分页游标"));
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "获取收藏列表失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("获取收藏列表失败: " + e.getMessage()));
         }
     }
 
@@ -57,18 +82,14 @@ public class CollectionController {
      * 添加动漫到用户收藏列表
      */
     @PostMapping("/add")
-    public ResponseEntity<Map<String, Object>> addToCollection(@RequestBody UserAnimeStatus userAnimeStatus, HttpServletRequest request) {
+    public ResponseEntity<ApiResponse<Void>> addToCollection(@RequestBody UserAnimeStatus userAnimeStatus, HttpServletRequest request) {
         // 从JWT中获取用户ID
         Long userId = getUserIdFromToken(request);
         
-        Map<String, Object> response = new HashMap<>();
-        
         try {
             // 验证必填字段
             if (userAnimeStatus.getAnimeId() == null || userAnimeStatus.getTitle() == null) {
-                response.put("success", false);
-                response.put("message", "参数错误，缺少必填字段");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.badRequest().body(ApiResponse.fail("参数错误，缺少必填字段"));
             }
             
             // 设置默认状态
@@ -83,18 +104,12 @@ public class CollectionController {
             boolean result = userAnimeStatusService.addToCollection(userAnimeStatus);
             
             if (result) {
-                response.put("success", true);
-                response.put("message", "添加到收藏成功");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ApiResponse.ok("添加到收藏成功"));
             } else {
-                response.put("success", false);
-                response.put("message", "该动漫已在收藏列表中");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.badRequest().body(ApiResponse.fail("该动漫已在收藏列表中"));
             }
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "添加到收藏失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("添加到收藏失败: " + e.getMessage()));
         }
     }
 
@@ -102,18 +117,14 @@ public class CollectionController {
      * 更新收藏动漫的状态
      */
     @PostMapping("/update")
-    public ResponseEntity<Map<String, Object>> updateCollectionStatus(@RequestBody Map<String, Object> requestBody, HttpServletRequest request) {
+    public ResponseEntity<ApiResponse<Void>> updateCollectionStatus(@RequestBody Map<String, Object> requestBody, HttpServletRequest request) {
         // 从JWT中获取用户ID
         Long userId = getUserIdFromToken(request);
         
-        Map<String, Object> response = new HashMap<>();
-        
         try {
             // 验证必填字段
             if (!requestBody.containsKey("animeId") || !requestBody.containsKey("status")) {
-                response.put("success", false);
-                response.put("message", "参数错误，缺少必填字段");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.badRequest().body(ApiResponse.fail("参数错误，缺少必填字段"));
             }
             
             Long animeId = Long.valueOf(requestBody.get("animeId").toString());
@@ -124,18 +135,12 @@ public class CollectionController {
             boolean result = userAnimeStatusService.updateCollectionStatus(userId, animeId, status, progress);
             
             if (result) {
-                response.put("success", true);
-                response.put("message", "收藏状态更新成功");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ApiResponse.ok("收藏状态更新成功"));
             } else {
-                response.put("success", false);
-                response.put("message", "该动漫不在收藏列表中");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.badRequest().body(ApiResponse.fail("该动漫不在收藏列表中"));
             }
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "更新收藏状态失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("更新收藏状态失败: " + e.getMessage()));
         }
     }
 
@@ -143,18 +148,14 @@ public class CollectionController {
      * 从用户收藏列表中移除动漫
      */
     @PostMapping("/remove")
-    public ResponseEntity<Map<String, Object>> removeFromCollection(@RequestBody Map<String, Object> requestBody, HttpServletRequest request) {
+    public ResponseEntity<ApiResponse<Void>> removeFromCollection(@RequestBody Map<String, Object> requestBody, HttpServletRequest request) {
         // 从JWT中获取用户ID
         Long userId = getUserIdFromToken(request);
         
-        Map<String, Object> response = new HashMap<>();
-        
         try {
             // 验证必填字段
             if (!requestBody.containsKey("animeId")) {
-                response.put("success", false);
-                response.put("message", "参数错误，缺少必填字段");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.badRequest().body(ApiResponse.fail("参数错误，缺少必填字段"));
             }
             
             Long animeId = Long.valueOf(requestBody.get("animeId").toString());
@@ -163,21 +164,85 @@ public class CollectionController {
             boolean result = userAnimeStatusService.removeFromCollection(userId, animeId);
             
             if (result) {
-                response.put("success", true);
-                response.put("message", "从收藏中移除成功");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ApiResponse.ok("从收藏中移除成功"));
             } else {
-                response.put("success", false);
-                response.put("message", "该动漫不在收藏列表中");
-                return ResponseEntity.badRequest().body(response);
+                return ResponseEntity.badRequest().body(ApiResponse.fail("该动漫不在收藏列表中"));
             }
         } catch (Exception e) {
-            response.put("success", false);
-            response.put("message", "从收藏中移除失败: " + e.getMessage());
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(ApiResponse.fail("从收藏中移除失败: " + e.getMessage()));
         }
     }
     
+    /**
+     * 批量添加、更新、移除当前用户的收藏
+     * 请求体为{"operations":[{"op":"update","animeId":1,"status":"watched","progress":12},...]}，
+     * 操作按顺序执行，在同一事务中合并为批量SQL写入；data为与请求顺序一致的每个操作的结果
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<List<CollectionBatchResult>>> batchUpdate(@RequestBody CollectionBatchRequest batchRequest,
+                                                                                HttpServletRequest request) {
+        // 从JWT中获取用户ID
+        Long userId = getUserIdFromToken(request);
+
+        if (batchRequest.operations() == null || batchRequest.operations().isEmpty()) {
+            return ResponseEntity.badRequest().body(ApiResponse.fail("参数错误，缺少operations"));
+        }
+        try {
+            List<CollectionBatchResult> results = userAnimeStatusService.applyBatch(userId, batchRequest.operations());
+            return ResponseEntity.ok(ApiResponse.ok("批量操作完成", results));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.fail(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("批量操作失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 导出当前用户的全部收藏
+     * 响应体直接由数据库游标逐行写出（不使用ApiResponse包装），内存占用与收藏数量无关；
+     * format=ndjson时每行一个JSON对象，format=csv时为带表头的UTF-8 CSV
+     * @param format ndjson（默认）或csv
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportCollection(@RequestParam(defaultValue = "ndjson") String format,
+                                              HttpServletRequest request) {
+        // 从JWT中获取用户ID
+        Long userId = getUserIdFromToken(request);
+
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().body(ApiResponse.fail("不支持的格式: " + format));
+        }
+        StreamingResponseBody body = out -> userAnimeStatusService.exportCollection(userId, format, out);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"collection." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
+    /**
+     * 导入收藏，请求体为导出得到的NDJSON或CSV文件内容（不是multipart表单）
+     * 边读取边写入，已收藏的动漫被覆盖；data为读取、写入、跳过的行数和前若干个错误
+     * @param format ndjson（默认）或csv
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ApiResponse<CollectionImportResult>> importCollection(@RequestParam(defaultValue = "ndjson") String format,
+                                                                                HttpServletRequest request) {
+        // 从JWT中获取用户ID
+        Long userId = getUserIdFromToken(request);
+
+        try (InputStream in = request.getInputStream()) {
+            CollectionImportResult result = userAnimeStatusService.importCollection(userId, format, in);
+            return ResponseEntity.ok(ApiResponse.ok("导入完成", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.fail(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.fail("导入收藏失败: " + e.getMessage()));
+        }
+    }
+
     /**
      * 从请求头的JWT令牌中获取用户ID
      * @param request HTTP请求对象
@@ -0,0 +1,134 @@
+package cn.luopan.animemasterbackend.controller;
+
+import cn.luopan.animemasterbackend.service.ImageMirrorService;
+import cn.luopan.animemasterbackend.utils.JsonFragmentWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 镜像图片接口控制器
+ * 图片文件名即内容哈希，内容永不变化，因此使用强ETag和一年的缓存时间
+ */
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+
+    // Tomcat的sendfile请求属性，设置后由连接器直接把文件交给内核发送，不经过JVM堆
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    @Autowired
+    private ImageMirrorService imageMirrorService;
+
+    /**
+     * 按内容哈希获取镜像图片
+     * @param hash 图片内容的SHA-256
+     */
+    @GetMapping("/{hash}")
+    public void getImage(@PathVariable String hash, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        ImageMirrorService.StoredImage image = imageMirrorService.lookup(hash);
+        if (image == null) {
+            JsonFragmentWriter.writeFailure(response, HttpServletResponse.SC_NOT_FOUND, "图片不存在");
+            return;
+        }
+        writeImage(image, request, response);
+    }
+
+    /**
+     * 按Bangumi原始图片地址获取图片：已镜像时直接返回，否则提交下载并重定向到原地址
+     * @param url anime.images中的图片地址
+     */
+    @GetMapping("/by-url")
+    public void getImageByUrl(@RequestParam String url, HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        if (!imageMirrorService.isAllowedUrl(url)) {
+            JsonFragmentWriter.writeFailure(response, HttpServletResponse.SC_BAD_REQUEST, "不支持的图片地址");
+            return;
+        }
+        ImageMirrorService.StoredImage image = imageMirrorService.lookupByUrl(url);
+        if (image == null) {
+            imageMirrorService.mirrorAsync(url);
+            // 重定向不缓存，镜像完成后再次访问即可命中本地文件
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            response.sendRedirect(url);
+            return;
+        }
+        writeImage(image, request, response);
+    }
+
+    private void writeImage(ImageMirrorService.StoredImage image, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        String etag = "\"" + image.getHash() + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(image.getContentType());
+        response.setContentLengthLong(image.getSize());
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, image.getPath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, image.getSize());
+            return;
+        }
+
+        // 连接器未开启sendfile（useSendfile=false）或运行在其他Servlet容器时，由FileChannel.transferTo写出
+        try (FileChannel channel = FileChannel.open(image.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            long size = image.getSize();
+            while (position < size) {
+                long transferred = channel.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * If-None-Match可以是*或逗号分隔的多个ETag（可能带W/前缀）
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
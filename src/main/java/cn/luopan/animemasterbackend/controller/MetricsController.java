@@ -0,0 +1,162 @@
+package cn.luopan.animemasterbackend.controller;
+
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.service.AnimeFragmentCache;
+import cn.luopan.animemasterbackend.service.AnimeSearchIndex;
+import cn.luopan.animemasterbackend.service.AnimeTagService;
+import cn.luopan.animemasterbackend.service.BangumiApiClient;
+import cn.luopan.animemasterbackend.service.BangumiDiskCache;
+import cn.luopan.animemasterbackend.service.BangumiResponseCache;
+import cn.luopan.animemasterbackend.service.BangumiSyncService;
+import cn.luopan.animemasterbackend.service.CollectionCache;
+import cn.luopan.animemasterbackend.service.ProgressWriteBuffer;
+import cn.luopan.animemasterbackend.service.ImageMirrorService;
+import cn.luopan.animemasterbackend.utils.ConnectionPoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 运行指标接口控制器，用于查看缓存等组件的统计信息
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    @Autowired
+    private BangumiResponseCache bangumiResponseCache;
+
+    @Autowired
+    private BangumiDiskCache bangumiDiskCache;
+
+    @Autowired
+    private BangumiSyncService bangumiSyncService;
+
+    @Autowired
+    private AnimeSearchIndex animeSearchIndex;
+
+    @Autowired
+    private AnimeFragmentCache animeFragmentCache;
+
+    @Autowired
+    private AnimeTagService animeTagService;
+
+    @Autowired
+    private ImageMirrorService imageMirrorService;
+
+    @Autowired
+    private BangumiApiClient bangumiApiClient;
+
+    @Autowired
+    private ConnectionPoolStats bangumiConnectionStats;
+
+    @Autowired
+    private CollectionCache collectionCache;
+
+    @Autowired
+    private ProgressWriteBuffer progressWriteBuffer;
+
+    /**
+     * 获取Bangumi响应缓存的命中、未命中和淘汰统计
+     * @return 缓存统计信息
+     */
+    @GetMapping("/bangumi-cache")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBangumiCacheStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", bangumiResponseCache.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取Bangumi磁盘缓存统计（304次数、节省的下载字节数、文件大小、压缩次数）
+     * @return 缓存统计信息
+     */
+    @GetMapping("/bangumi-disk-cache")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBangumiDiskCacheStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", bangumiDiskCache.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取Bangumi客户端统计（熔断状态、并发隔离拒绝数、超时和降级次数）
+     * @return 客户端统计信息
+     */
+    @GetMapping("/bangumi-client")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBangumiClientStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", bangumiApiClient.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取Bangumi连接池统计（新建连接数、复用省下的握手次数、各连接池的活跃/空闲/等待数）
+     * @return 连接池统计信息
+     */
+    @GetMapping("/bangumi-connections")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBangumiConnectionStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", bangumiConnectionStats.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取用户收藏缓存统计（缓存用户数、命中率、就地更新次数）
+     * @return 缓存统计信息
+     */
+    @GetMapping("/collection-cache")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getCollectionCacheStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", collectionCache.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取观看进度写缓冲统计（待写入条目、上报次数、合并掉的写入）
+     * @return 写缓冲统计信息
+     */
+    @GetMapping("/progress-buffer")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getProgressBufferStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", progressWriteBuffer.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取Bangumi同步统计（每次同步新增、更新、跳过的行数）
+     * @return 同步统计信息
+     */
+    @GetMapping("/bangumi-sync")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getBangumiSyncStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", bangumiSyncService.getSyncStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取本地搜索索引状态（是否就绪、动漫数、词数、重建进度和最近一次重建结果）
+     * @return 索引统计信息
+     */
+    @GetMapping("/search-index")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getSearchIndexStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", animeSearchIndex.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取动漫响应片段缓存的命中统计
+     * @return 缓存统计信息
+     */
+    @GetMapping("/anime-fragments")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getAnimeFragmentStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", animeFragmentCache.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取标签字典和标签同步统计
+     * @return 标签统计信息
+     */
+    @GetMapping("/tags")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getTagStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", animeTagService.getStats()), HttpStatus.OK);
+    }
+
+    /**
+     * 获取图片镜像的磁盘占用、下载和命中统计
+     * @return 镜像统计信息
+     */
+    @GetMapping("/image-mirror")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getImageMirrorStats() {
+        return new ResponseEntity<>(ApiResponse.ok("获取成功", imageMirrorService.getStats()), HttpStatus.OK);
+    }
+}
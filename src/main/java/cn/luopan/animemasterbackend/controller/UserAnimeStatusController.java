@@ -1,14 +1,14 @@
 package cn.luopan.animemasterbackend.controller;
 
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.dto.CursorPage;
 import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
 import cn.luopan.animemasterbackend.service.IUserAnimeStatusService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/user-anime-status")
@@ -17,51 +17,64 @@ public class UserAnimeStatusController {
     @Autowired
     private IUserAnimeStatusService userAnimeStatusService;
 
+    // 下一页游标的响应头，列表接口直接返回数组，游标无法放在响应体中
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     /**
      * 获取用户特定状态的动漫列表
+     * 传cursor或size时按收藏时间从新到旧分页，下一页游标在响应头X-Next-Cursor中，没有该响应头表示已到末尾；
+     * 都不传时返回全部
      */
     @GetMapping("/user/{userId}/status/{status}")
     public ResponseEntity<List<UserAnimeStatus>> getUserAnimeListByStatus(
             @PathVariable Long userId,
-            @PathVariable String status) {
-        List<UserAnimeStatus> userAnimeList = userAnimeStatusService.getUserAnimeListByStatus(userId, status);
-        return ResponseEntity.ok(userAnimeList);
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        if (cursor == null && size == null) {
+            List<UserAnimeStatus> userAnimeList = userAnimeStatusService.getUserAnimeListByStatus(userId, status);
+            return ResponseEntity.ok(userAnimeList);
+        }
+
+        CursorPage<UserAnimeStatus> page;
+        try {
+            page = userAnimeStatusService.getUserAnimeListByStatus(userId, status, cursor, size == null ? 50 : size);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return builder.body(page.items());
     }
 
     /**
      * 更新用户动漫状态（想看、在看、已看、弃置）
      */
     @PostMapping("/update-status")
-    public ResponseEntity<Map<String, Object>> updateUserAnimeStatus(
+    public ResponseEntity<ApiResponse<Void>> updateUserAnimeStatus(
             @RequestParam Long userId,
             @RequestParam Long animeId,
             @RequestParam String status) {
         
         boolean result = userAnimeStatusService.updateUserAnimeStatus(userId, animeId, status);
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", result);
-        response.put("message", result ? "状态更新成功" : "状态更新失败");
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(ApiResponse.of(result, result ? "状态更新成功" : "状态更新失败"));
     }
 
     /**
      * 更新动漫观看进度
      */
     @PostMapping("/update-progress")
-    public ResponseEntity<Map<String, Object>> updateAnimeProgress(
+    public ResponseEntity<ApiResponse<Void>> updateAnimeProgress(
             @RequestParam Long userId,
             @RequestParam Long animeId,
             @RequestParam Integer progress) {
         
         boolean result = userAnimeStatusService.updateAnimeProgress(userId, animeId, progress);
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", result);
-        response.put("message", result ? "进度更新成功" : "进度更新失败");
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(ApiResponse.of(result, result ? "进度更新成功" : "进度更新失败"));
     }
 
     /**
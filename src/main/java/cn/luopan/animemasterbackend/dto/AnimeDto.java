@@ -0,0 +1,28 @@
+package cn.luopan.animemasterbackend.dto;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * 动漫响应数据
+ * images、rating、tags在数据库中已是JSON，原样写出，不再解析为JsonNode；为null时省略
+ */
+public record AnimeDto(
+        Long id,
+        String name,
+        @JsonProperty("name_cn") String nameCn,
+        @JsonRawValue @JsonInclude(JsonInclude.Include.NON_NULL) String images,
+        @JsonRawValue @JsonInclude(JsonInclude.Include.NON_NULL) String rating,
+        @JsonRawValue @JsonInclude(JsonInclude.Include.NON_NULL) String tags,
+        Integer type,
+        String date,
+        Integer eps) {
+
+    public static AnimeDto from(Anime anime) {
+        return new AnimeDto(anime.getId(), anime.getName(), anime.getNameCn(),
+                anime.getImages(), anime.getRating(), anime.getTags(),
+                anime.getType(), anime.getDate(), anime.getEps());
+    }
+}
@@ -0,0 +1,36 @@
+package cn.luopan.animemasterbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 统一响应结构：{"success":...,"message":...,"data":...}
+ * data为null时不输出该字段，与原先未放入data的Map响应一致；message为null时仍输出null
+ * @param success 是否成功
+ * @param message 提示信息
+ * @param data 响应数据
+ * @param <T> 数据类型
+ */
+public record ApiResponse<T>(
+        boolean success,
+        String message,
+        @JsonInclude(JsonInclude.Include.NON_NULL) T data) {
+
+    public static <T> ApiResponse<T> ok(String message, T data) {
+        return new ApiResponse<>(true, message, data);
+    }
+
+    public static <T> ApiResponse<T> ok(String message) {
+        return new ApiResponse<>(true, message, null);
+    }
+
+    public static <T> ApiResponse<T> fail(String message) {
+        return new ApiResponse<>(false, message, null);
+    }
+
+    /**
+     * 根据结果构造成功或失败响应
+     */
+    public static <T> ApiResponse<T> of(boolean success, String message) {
+        return new ApiResponse<>(success, message, null);
+    }
+}
@@ -0,0 +1,32 @@
+package cn.luopan.animemasterbackend.dto;
+
+import java.util.List;
+
+/**
+ * 批量收藏操作请求，操作按顺序执行，同一动漫可以出现多次
+ * @param operations 操作列表
+ */
+public record CollectionBatchRequest(List<Operation> operations) {
+
+    /**
+     * 单个收藏操作
+     * @param op 操作类型：add（添加）、update（更新状态/进度）、remove（移除）
+     * @param animeId 动漫ID
+     * @param status 状态，add时默认为wantToWatch，update时必填
+     * @param progress 观看进度（可选）
+     * @param title 动漫标题，add时必填
+     * @param titleCn 动漫中文标题（可选）
+     * @param image 封面图URL（可选）
+     * @param episodes 总集数（可选）
+     */
+    public record Operation(
+            String op,
+            Long animeId,
+            String status,
+            Integer progress,
+            String title,
+            String titleCn,
+            String image,
+            Integer episodes) {
+    }
+}
@@ -0,0 +1,20 @@
+package cn.luopan.animemasterbackend.dto;
+
+/**
+ * 批量收藏操作中单个操作的结果
+ * @param index 操作在请求中的下标
+ * @param op 操作类型
+ * @param animeId 动漫ID
+ * @param success 是否成功
+ * @param message 提示信息
+ */
+public record CollectionBatchResult(int index, String op, Long animeId, boolean success, String message) {
+
+    public static CollectionBatchResult ok(int index, String op, Long animeId) {
+        return new CollectionBatchResult(index, op, animeId, true, null);
+    }
+
+    public static CollectionBatchResult fail(int index, String op, Long animeId, String message) {
+        return new CollectionBatchResult(index, op, animeId, false, message);
+    }
+}
@@ -0,0 +1,13 @@
+package cn.luopan.animemasterbackend.dto;
+
+import java.util.List;
+
+/**
+ * 收藏导入结果
+ * @param rows 读取的数据行数（不含CSV表头和空行）
+ * @param imported 写入的行数（新增或覆盖已有收藏）
+ * @param rejected 格式错误或字段无效而跳过的行数
+ * @param errors 前若干个被跳过的行及原因，如"第3行: 无效的状态: foo"
+ */
+public record CollectionImportResult(long rows, long imported, long rejected, List<String> errors) {
+}
@@ -0,0 +1,106 @@
+package cn.luopan.animemasterbackend.dto;
+
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 收藏导出/导入的一行，NDJSON每行一个对象，CSV每行一条记录（列顺序与CSV_COLUMNS一致）
+ * 不包含id和userId，导入时写入当前用户
+ * @param animeId 动漫ID
+ * @param title 动漫标题
+ * @param titleCn 动漫中文标题
+ * @param image 封面图URL
+ * @param episodes 总集数
+ * @param status 状态
+ * @param progress 观看进度
+ * @param lastWatchedEpisode 最后观看的集数
+ * @param rating 评分
+ * @param notes 笔记
+ * @param createdAt 收藏时间
+ * @param updatedAt 更新时间
+ */
+public record CollectionTransferRow(
+        Long animeId,
+        String title,
+        String titleCn,
+        String image,
+        Integer episodes,
+        String status,
+        Integer progress,
+        Integer lastWatchedEpisode,
+        Double rating,
+        String notes,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public static final List<String> CSV_COLUMNS = List.of("animeId", "title", "titleCn", "image", "episodes",
+            "status", "progress", "lastWatchedEpisode", "rating", "notes", "createdAt", "updatedAt");
+
+    public static CollectionTransferRow from(UserAnimeStatus row) {
+        return new CollectionTransferRow(row.getAnimeId(), row.getTitle(), row.getTitleCn(), row.getImage(),
+                row.getEpisodes(), row.getStatus(), row.getProgress(), row.getLastWatchedEpisode(), row.getRating(),
+                row.getNotes(), row.getCreatedAt(), row.getUpdatedAt());
+    }
+
+    /**
+     * 转换为当前用户的收藏行，未提供时间时取当前时间
+     */
+    public UserAnimeStatus toEntity(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        UserAnimeStatus row = new UserAnimeStatus();
+        row.setUserId(userId);
+        row.setAnimeId(animeId);
+        row.setTitle(title);
+        row.setTitleCn(titleCn);
+        row.setImage(image);
+        row.setEpisodes(episodes);
+        row.setStatus(status);
+        row.setProgress(progress);
+        row.setLastWatchedEpisode(lastWatchedEpisode);
+        row.setRating(rating);
+        row.setNotes(notes);
+        row.setCreatedAt(createdAt != null ? createdAt : now);
+        row.setUpdatedAt(updatedAt != null ? updatedAt : now);
+        return row;
+    }
+
+    /**
+     * 按CSV_COLUMNS的顺序输出各列，null输出为空字符串
+     */
+    public String[] toCsv() {
+        Object[] values = {animeId, title, titleCn, image, episodes, status, progress, lastWatchedEpisode, rating,
+                notes, createdAt, updatedAt};
+        return Arrays.stream(values).map(value -> value == null ? "" : value.toString()).toArray(String[]::new);
+    }
+
+    /**
+     * 从CSV记录解析，空字符串视为null
+     * @param fields CSV记录的各列
+     * @param columns 列名 -> 下标（来自表头，列顺序可以与CSV_COLUMNS不同，缺少的列视为null）
+     * @throws IllegalArgumentException 数字或时间格式错误
+     */
+    public static CollectionTransferRow fromCsv(List<String> fields, Map<String, Integer> columns) {
+        String[] values = new String[CSV_COLUMNS.size()];
+        for (int i = 0; i < values.length; i++) {
+            Integer index = columns.get(CSV_COLUMNS.get(i));
+            if (index != null && index < fields.size() && !fields.get(index).isEmpty()) {
+                values[i] = fields.get(index);
+            }
+        }
+        return new CollectionTransferRow(
+                values[0] == null ? null : Long.valueOf(values[0]),
+                values[1], values[2], values[3],
+                values[4] == null ? null : Integer.valueOf(values[4]),
+                values[5],
+                values[6] == null ? null : Integer.valueOf(values[6]),
+                values[7] == null ? null : Integer.valueOf(values[7]),
+                values[8] == null ? null : Double.valueOf(values[8]),
+                values[9],
+                values[10] == null ? null : LocalDateTime.parse(values[10]),
+                values[11] == null ? null : LocalDateTime.parse(values[11]));
+    }
+}
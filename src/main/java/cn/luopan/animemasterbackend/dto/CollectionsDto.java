@@ -0,0 +1,25 @@
+package cn.luopan.animemasterbackend.dto;
+
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按状态分类的收藏列表：想看、在看、已看、弃置
+ */
+public record CollectionsDto(
+        List<UserAnimeStatus> wantToWatch,
+        List<UserAnimeStatus> watching,
+        List<UserAnimeStatus> watched,
+        List<UserAnimeStatus> dropped) {
+
+    public static CollectionsDto from(Map<String, List<UserAnimeStatus>> collections) {
+        return new CollectionsDto(
+                collections.getOrDefault("wantToWatch", new ArrayList<>()),
+                collections.getOrDefault("watching", new ArrayList<>()),
+                collections.getOrDefault("watched", new ArrayList<>()),
+                collections.getOrDefault("dropped", new ArrayList<>()));
+    }
+}
@@ -0,0 +1,12 @@
+package cn.luopan.animemasterbackend.dto;
+
+import java.util.List;
+
+/**
+ * keyset分页结果
+ * @param items 当前页数据
+ * @param nextCursor 下一页游标，没有更多数据时为null
+ * @param <T> 数据类型
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+}
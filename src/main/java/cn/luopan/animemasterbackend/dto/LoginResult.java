@@ -0,0 +1,9 @@
+package cn.luopan.animemasterbackend.dto;
+
+/**
+ * 登录结果
+ * @param user 用户信息（含token）
+ * @param token JWT令牌
+ */
+public record LoginResult(UserDto user, String token) {
+}
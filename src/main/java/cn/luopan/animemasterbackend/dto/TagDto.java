@@ -0,0 +1,13 @@
+package cn.luopan.animemasterbackend.dto;
+
+import cn.luopan.animemasterbackend.entity.Tag;
+
+/**
+ * 标签及其动漫数量
+ */
+public record TagDto(String name, Integer animeCount) {
+
+    public static TagDto from(Tag tag) {
+        return new TagDto(tag.getName(), tag.getAnimeCount());
+    }
+}
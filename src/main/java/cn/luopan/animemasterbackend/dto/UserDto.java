@@ -0,0 +1,22 @@
+package cn.luopan.animemasterbackend.dto;
+
+import cn.luopan.animemasterbackend.entity.User;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 用户信息响应数据，注册时不含token，登录时包含token
+ */
+public record UserDto(
+        Long userId,
+        String username,
+        String email,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String token) {
+
+    public static UserDto from(User user) {
+        return new UserDto(user.getId(), user.getUsername(), user.getEmail(), null);
+    }
+
+    public static UserDto from(User user, String token) {
+        return new UserDto(user.getId(), user.getUsername(), user.getEmail(), token);
+    }
+}
@@ -10,6 +10,7 @@ import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -37,6 +38,24 @@ public class Anime implements Serializable {
     @TableField("rating")
     private String rating;
 
+    /**
+     * 评分，从rating.score提取，用于排行榜排序
+     */
+    @TableField("score")
+    private BigDecimal score;
+
+    /**
+     * Bangumi排名，从rating.rank提取，0表示未上榜
+     */
+    @TableField("rank_no")
+    private Integer rankNo;
+
+    /**
+     * 评分人数，从rating.total提取
+     */
+    @TableField("votes")
+    private Integer votes;
+
     @TableField("tags")
     private String tags;
 
@@ -55,6 +74,12 @@ public class Anime implements Serializable {
     @TableField("description")
     private String description;
 
+    /**
+     * 内容哈希，用于同步时判断Bangumi数据是否有变化
+     */
+    @TableField("content_hash")
+    private String contentHash;
+
     @TableField("created_at")
     private LocalDateTime createdAt;
 
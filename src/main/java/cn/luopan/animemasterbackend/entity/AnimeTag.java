@@ -0,0 +1,34 @@
+package cn.luopan.animemasterbackend.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * 动漫标签关联实体类，主键为(anime_id, tag_id)
+ */
+@Data
+@TableName("anime_tag")
+public class AnimeTag implements Serializable {
+
+    @TableField("anime_id")
+    private Long animeId;
+
+    @TableField("tag_id")
+    private Integer tagId;
+
+    /**
+     * Bangumi用户标注该标签的次数
+     */
+    @TableField("count")
+    private Integer count;
+
+    /**
+     * 动漫评分的冗余副本，按标签浏览时无需回表即可按评分排序，未评分为0
+     */
+    @TableField("score")
+    private BigDecimal score;
+}
@@ -0,0 +1,33 @@
+package cn.luopan.animemasterbackend.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 标签实体类，从动漫的tags JSON中提取
+ */
+@Data
+@TableName("tag")
+public class Tag implements Serializable {
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Integer id;
+
+    @TableField("name")
+    private String name;
+
+    /**
+     * 带有该标签的动漫数量
+     */
+    @TableField("anime_count")
+    private Integer animeCount;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+}
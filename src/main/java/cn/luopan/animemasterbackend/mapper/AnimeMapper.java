@@ -2,8 +2,56 @@ package cn.luopan.animemasterbackend.mapper;
 
 import cn.luopan.animemasterbackend.entity.Anime;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 @Mapper
 public interface AnimeMapper extends BaseMapper<Anime> {
-}
\ No newline at end of file
+
+    /**
+     * 按bangumi_id多行批量插入或更新
+     * 传入为null的列保留数据库中的原值（date为空字符串时同样保留）；
+     * content_hash直接写入传入的值，同步时传入的是与本地行合并后的完整行及其哈希；
+     * 离线导入传入的条目缺少部分列，写入的哈希与合并后的行不一致，下次同步该条目时补写一次哈希
+     * updated_at由ON UPDATE CURRENT_TIMESTAMP维护，内容完全相同的行不会被修改；
+     * 只使用COALESCE、NULLIF、CASE，H2的MySQL兼容模式也能执行
+     * @param animes 动漫列表（需包含bangumiId）
+     * @return MySQL的affected rows：插入计1，更新计2，未变化计0
+     */
+    @Insert("<script>INSERT INTO anime (bangumi_id, name, name_cn, images, rating, score, rank_no, votes, tags, type, "
+            + "collection, date, eps, description, content_hash) VALUES "
+            + "<foreach collection='animes' item='a' separator=','>"
+            + "(#{a.bangumiId}, #{a.name}, #{a.nameCn}, #{a.images}, #{a.rating}, #{a.score}, #{a.rankNo}, #{a.votes}, "
+            + "#{a.tags}, #{a.type}, #{a.collection}, #{a.date}, #{a.eps}, #{a.description}, #{a.contentHash})</foreach>"
+            + " ON DUPLICATE KEY UPDATE"
+            + " content_hash = VALUES(content_hash),"
+            + " name = VALUES(name),"
+            + " name_cn = VALUES(name_cn),"
+            + " images = COALESCE(VALUES(images), images),"
+            + " rating = COALESCE(VALUES(rating), rating),"
+            + " score = COALESCE(VALUES(score), score),"
+            + " rank_no = COALESCE(VALUES(rank_no), rank_no),"
+            + " votes = COALESCE(VALUES(votes), votes),"
+            + " tags = COALESCE(VALUES(tags), tags),"
+            + " type = COALESCE(VALUES(type), type),"
+            + " collection = COALESCE(VALUES(collection), collection),"
+            + " date = COALESCE(NULLIF(VALUES(date), ''), date),"
+            + " eps = COALESCE(VALUES(eps), eps),"
+            + " description = COALESCE(VALUES(description), description)"
+            + "</script>")
+    int upsertBatch(@Param("animes") List<Anime> animes);
+
+    /**
+     * 排行榜keyset分页：按(rank_no, id)读取游标之后的一页TV动画
+     * 游标条件是OR，不能作为索引前缀的范围，优化器会只按type=2做ref访问，从榜首逐行过滤到游标位置，耗时随页数线性增长；
+     * FORCE INDEX后按idx_type_rank(type, rank_no, id)做范围扫描，从游标位置直接定位
+     */
+    @Select("SELECT * FROM anime FORCE INDEX (idx_type_rank) WHERE type = 2 AND rank_no > 0"
+            + " AND (rank_no > #{rank} OR (rank_no = #{rank} AND id > #{id}))"
+            + " ORDER BY rank_no, id LIMIT #{size}")
+    List<Anime> selectRankingAfter(@Param("rank") int rank, @Param("id") long id, @Param("size") int size);
+}
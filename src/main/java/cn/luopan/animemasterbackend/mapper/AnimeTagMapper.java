@@ -0,0 +1,57 @@
+package cn.luopan.animemasterbackend.mapper;
+
+import cn.luopan.animemasterbackend.entity.AnimeTag;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface AnimeTagMapper extends BaseMapper<AnimeTag> {
+
+    /**
+     * 多行批量插入
+     */
+    @Insert("<script>INSERT INTO anime_tag (anime_id, tag_id, count, score) VALUES "
+            + "<foreach collection='rows' item='row' separator=','>"
+            + "(#{row.animeId}, #{row.tagId}, #{row.count}, #{row.score})</foreach></script>")
+    int insertBatch(@Param("rows") List<AnimeTag> rows);
+
+    /**
+     * 删除指定动漫的全部标签关联
+     */
+    @Delete("<script>DELETE FROM anime_tag WHERE anime_id IN "
+            + "<foreach collection='animeIds' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int deleteByAnimeIds(@Param("animeIds") Collection<Long> animeIds);
+
+    /**
+     * 查询并锁定指定动漫当前的标签关联（只返回anime_id和tag_id），按主键前缀加锁，
+     * 同一部动漫的并发同步依次执行，标签动漫数量的增量不会重复计算
+     */
+    @Select("<script>SELECT anime_id, tag_id FROM anime_tag WHERE anime_id IN "
+            + "<foreach collection='animeIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>"
+            + " FOR UPDATE</script>")
+    List<AnimeTag> selectTagsForUpdate(@Param("animeIds") Collection<Long> animeIds);
+
+    /**
+     * 按评分降序（同分按anime_id降序）分页查询某标签下的动漫，keyset方式从上一页最后一条之后开始
+     * 条件和排序与索引idx_tag_score(tag_id, score, anime_id)一致，只扫描索引，不访问anime表
+     * @param tagId 标签ID
+     * @param afterScore 上一页最后一条的评分，首页为null
+     * @param afterAnimeId 上一页最后一条的动漫ID，首页为null
+     * @param limit 返回数量
+     */
+    @Select("<script>SELECT anime_id, tag_id, score FROM anime_tag WHERE tag_id = #{tagId}"
+            + "<if test='afterScore != null'> AND (score &lt; #{afterScore} OR (score = #{afterScore} AND anime_id &lt; #{afterAnimeId}))</if>"
+            + " ORDER BY score DESC, anime_id DESC LIMIT #{limit}</script>")
+    List<AnimeTag> selectPageByTag(@Param("tagId") int tagId,
+                                   @Param("afterScore") BigDecimal afterScore,
+                                   @Param("afterAnimeId") Long afterAnimeId,
+                                   @Param("limit") int limit);
+}
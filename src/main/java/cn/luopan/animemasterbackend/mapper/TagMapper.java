@@ -0,0 +1,31 @@
+package cn.luopan.animemasterbackend.mapper;
+
+import cn.luopan.animemasterbackend.entity.Tag;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.Map;
+
+@Mapper
+public interface TagMapper extends BaseMapper<Tag> {
+
+    /**
+     * 批量插入标签名，已存在的标签忽略
+     */
+    @Insert("<script>INSERT IGNORE INTO tag (name) VALUES "
+            + "<foreach collection='names' item='name' separator=','>(#{name})</foreach></script>")
+    int insertIgnore(@Param("names") Collection<String> names);
+
+    /**
+     * 按增量调整标签的动漫数量，只按主键更新，不再重新统计anime_tag
+     * @param deltas 标签ID -> 动漫数量的变化
+     */
+    @Update("<script>UPDATE tag SET anime_count = anime_count + CASE id"
+            + "<foreach collection='deltas' index='id' item='delta'> WHEN #{id} THEN #{delta}</foreach> END "
+            + "WHERE id IN <foreach collection='deltas' index='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int addAnimeCount(@Param("deltas") Map<Integer, Integer> deltas);
+}
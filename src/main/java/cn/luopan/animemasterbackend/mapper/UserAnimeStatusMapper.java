@@ -2,8 +2,144 @@ package cn.luopan.animemasterbackend.mapper;
 
 import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 单条收藏的增删改都是一次往返完成，依赖uk_user_anime(user_id, anime_id)保证并发下的正确性，不再先查询再写入；
+ * 批量操作在事务中先用selectForUpdate锁定涉及的收藏，再按类型合并为批量语句
+ * 返回值为MySQL Connector/J默认（useAffectedRows=false）下的行数：UPDATE返回匹配的行数，值未变化也计入
+ */
 @Mapper
 public interface UserAnimeStatusMapper extends BaseMapper<UserAnimeStatus> {
-}
\ No newline at end of file
+
+    /**
+     * 设置用户对动漫的状态，不存在时插入（进度为0），存在时只更新状态
+     * @return 插入计1，更新计2
+     */
+    @Insert("INSERT INTO user_anime_status (user_id, anime_id, status, progress, created_at, updated_at) "
+            + "VALUES (#{userId}, #{animeId}, #{status}, 0, NOW(), NOW()) "
+            + "ON DUPLICATE KEY UPDATE status = VALUES(status), updated_at = VALUES(updated_at)")
+    int upsertStatus(@Param("userId") Long userId, @Param("animeId") Long animeId, @Param("status") String status);
+
+    /**
+     * 更新已收藏动漫的观看进度
+     * @return 匹配的行数，未收藏时为0
+     */
+    @Update("UPDATE user_anime_status SET progress = #{progress}, updated_at = NOW() "
+            + "WHERE user_id = #{userId} AND anime_id = #{animeId}")
+    int updateProgress(@Param("userId") Long userId, @Param("animeId") Long animeId,
+                       @Param("progress") Integer progress);
+
+    /**
+     * 更新已收藏动漫的状态，progress不为null时同时更新进度
+     * @return 匹配的行数，未收藏时为0
+     */
+    @Update("<script>UPDATE user_anime_status SET status = #{status},"
+            + "<if test='progress != null'> progress = #{progress},</if>"
+            + " updated_at = NOW() WHERE user_id = #{userId} AND anime_id = #{animeId}</script>")
+    int updateStatus(@Param("userId") Long userId, @Param("animeId") Long animeId,
+                     @Param("status") String status, @Param("progress") Integer progress);
+
+    /**
+     * 查询用户在指定动漫上的收藏并加锁（FOR UPDATE），不存在的(user_id, anime_id)由唯一索引上的间隙锁保护，
+     * 事务提交前其他请求无法插入或修改这些收藏
+     */
+    @Select("<script>SELECT * FROM user_anime_status WHERE user_id = #{userId} AND anime_id IN "
+            + "<foreach collection='animeIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>"
+            + " FOR UPDATE</script>")
+    List<UserAnimeStatus> selectForUpdate(@Param("userId") Long userId, @Param("animeIds") Collection<Long> animeIds);
+
+    /**
+     * 查询anime表中存在的动漫ID，批量写入前据此逐行拒绝不存在的动漫，避免外键约束失败使整条语句回滚
+     * @return 传入ID中存在的部分
+     */
+    @Select("<script>SELECT id FROM anime WHERE id IN "
+            + "<foreach collection='animeIds' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<Long> selectExistingAnimeIds(@Param("animeIds") Collection<Long> animeIds);
+
+    /**
+     * 收藏列表keyset分页：按id倒序读取游标之后的一页
+     * user_id、status为等值条件时，优化器会在idx_user_status_id上做两列的ref访问，id < 游标只逐行过滤，耗时随页数线性增长；
+     * FORCE INDEX后三列一起做范围扫描，从游标位置直接定位
+     * @param afterId 上一页最后一条的id，首页为null
+     */
+    @Select("<script>SELECT * FROM user_anime_status FORCE INDEX (idx_user_status_id)"
+            + " WHERE user_id = #{userId} AND status = #{status}"
+            + "<if test='afterId != null'> AND id &lt; #{afterId}</if>"
+            + " ORDER BY id DESC LIMIT #{size}</script>")
+    List<UserAnimeStatus> selectByStatusAfter(@Param("userId") Long userId, @Param("status") String status,
+                                              @Param("afterId") Long afterId, @Param("size") int size);
+
+    /**
+     * 多行批量插入
+     */
+    @Insert("<script>INSERT INTO user_anime_status (user_id, anime_id, title, title_cn, image, episodes, status, "
+            + "progress, created_at, updated_at) VALUES "
+            + "<foreach collection='rows' item='row' separator=','>"
+            + "(#{row.userId}, #{row.animeId}, #{row.title}, #{row.titleCn}, #{row.image}, #{row.episodes}, "
+            + "#{row.status}, #{row.progress}, #{row.createdAt}, #{row.updatedAt})</foreach></script>")
+    int insertBatch(@Param("rows") List<UserAnimeStatus> rows);
+
+    /**
+     * 用一条UPDATE把多条收藏分别改为各自的状态和进度
+     */
+    @Update("<script>UPDATE user_anime_status SET status = CASE anime_id"
+            + "<foreach collection='rows' item='row'> WHEN #{row.animeId} THEN #{row.status}</foreach> END,"
+            + " progress = CASE anime_id"
+            + "<foreach collection='rows' item='row'> WHEN #{row.animeId} THEN #{row.progress}</foreach> END,"
+            + " updated_at = NOW() WHERE user_id = #{userId} AND anime_id IN "
+            + "<foreach collection='rows' item='row' open='(' separator=',' close=')'>#{row.animeId}</foreach></script>")
+    int updateBatch(@Param("userId") Long userId, @Param("rows") List<UserAnimeStatus> rows);
+
+    /**
+     * 删除用户在指定动漫上的收藏
+     */
+    @Delete("<script>DELETE FROM user_anime_status WHERE user_id = #{userId} AND anime_id IN "
+            + "<foreach collection='animeIds' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int deleteByAnimeIds(@Param("userId") Long userId, @Param("animeIds") Collection<Long> animeIds);
+
+    /**
+     * 用一条UPDATE写入多个(user_id, anime_id)的观看进度，由ProgressWriteBuffer定时调用
+     */
+    @Update("<script>UPDATE user_anime_status SET progress = CASE"
+            + "<foreach collection='rows' item='row'> WHEN user_id = #{row.userId} AND anime_id = #{row.animeId}"
+            + " THEN #{row.progress}</foreach> ELSE progress END, updated_at = NOW() WHERE (user_id, anime_id) IN "
+            + "<foreach collection='rows' item='row' open='(' separator=',' close=')'>(#{row.userId}, #{row.animeId})</foreach>"
+            + "</script>")
+    int updateProgressBatch(@Param("rows") List<UserAnimeStatus> rows);
+
+    /**
+     * 按id顺序逐行读取用户的全部收藏，用于导出
+     * fetchSize为Integer.MIN_VALUE时MySQL驱动流式返回结果，不会把整个结果集读入内存；
+     * 游标只能在事务内使用，读完或关闭前连接不能执行其他语句
+     */
+    @Select("SELECT * FROM user_anime_status WHERE user_id = #{userId} ORDER BY id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<UserAnimeStatus> selectCursorByUser(@Param("userId") Long userId);
+
+    /**
+     * 多行INSERT ... ON DUPLICATE KEY UPDATE，用于导入：不存在的收藏插入，已存在的除created_at外全部覆盖
+     */
+    @Insert("<script>INSERT INTO user_anime_status (user_id, anime_id, title, title_cn, image, episodes, status, "
+            + "progress, last_watched_episode, rating, notes, created_at, updated_at) VALUES "
+            + "<foreach collection='rows' item='row' separator=','>"
+            + "(#{row.userId}, #{row.animeId}, #{row.title}, #{row.titleCn}, #{row.image}, #{row.episodes}, "
+            + "#{row.status}, #{row.progress}, #{row.lastWatchedEpisode}, #{row.rating}, #{row.notes}, "
+            + "#{row.createdAt}, #{row.updatedAt})</foreach>"
+            + " ON DUPLICATE KEY UPDATE title = VALUES(title), title_cn = VALUES(title_cn), image = VALUES(image),"
+            + " episodes = VALUES(episodes), status = VALUES(status), progress = VALUES(progress),"
+            + " last_watched_episode = VALUES(last_watched_episode), rating = VALUES(rating), notes = VALUES(notes),"
+            + " updated_at = VALUES(updated_at)</script>")
+    int upsertBatch(@Param("rows") List<UserAnimeStatus> rows);
+}
@@ -0,0 +1,110 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.dto.AnimeDto;
+import cn.luopan.animemasterbackend.entity.Anime;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 动漫响应片段缓存
+ * 以UTF-8字节保存每部动漫的响应JSON（AnimeDto），images、rating、tags列本身就是JSON，直接原样写入，
+ * 列表接口只需把片段拼接到输出流，不再对这些列做readTree和二次序列化
+ * 缓存按id保存，updated_at或内容哈希变化时重新编码
+ */
+@Component
+public class AnimeFragmentCache {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 预先解析好AnimeDto序列化器的写入器，每次编码不再查找序列化器
+    private ObjectWriter animeWriter;
+
+    // 最大缓存条目数
+    @Value("${anime.fragment-cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    private final Map<Long, Fragment> fragments = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Fragment> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        animeWriter = objectMapper.writerFor(AnimeDto.class);
+    }
+
+    private record Fragment(LocalDateTime updatedAt, String contentHash, byte[] bytes) {
+    }
+
+    /**
+     * 获取动漫的响应JSON片段，缓存未命中或数据已更新时重新编码
+     * @param anime 从数据库读取的完整动漫行
+     * @return UTF-8编码的JSON对象
+     */
+    public byte[] get(Anime anime) {
+        Long id = anime.getId();
+        if (id != null) {
+            Fragment cached;
+            synchronized (fragments) {
+                cached = fragments.get(id);
+            }
+            if (cached != null && Objects.equals(cached.updatedAt(), anime.getUpdatedAt())
+                    && Objects.equals(cached.contentHash(), anime.getContentHash())) {
+                hits.incrementAndGet();
+                return cached.bytes();
+            }
+        }
+
+        misses.incrementAndGet();
+        byte[] bytes = encode(anime);
+        if (id != null) {
+            synchronized (fragments) {
+                fragments.put(id, new Fragment(anime.getUpdatedAt(), anime.getContentHash(), bytes));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 获取缓存统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (fragments) {
+            stats.put("size", fragments.size());
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    /**
+     * 将动漫编码为响应JSON，使用与其他接口相同的AnimeDto结构
+     */
+    private byte[] encode(Anime anime) {
+        try {
+            return animeWriter.writeValueAsBytes(AnimeDto.from(anime));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
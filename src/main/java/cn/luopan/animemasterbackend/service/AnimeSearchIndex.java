@@ -0,0 +1,395 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.utils.SearchTokenizer;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 动漫本地搜索倒排索引
+ * 对name、name_cn和标签名分词后建立 词 -> (动漫ID -> 权重) 的倒排表，
+ * 查询时要求命中全部查询词，按 权重 × IDF 之和排序
+ */
+@Component
+public class AnimeSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnimeSearchIndex.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // 各字段的权重
+    private static final float NAME_CN_WEIGHT = 3.0f;
+    private static final float NAME_WEIGHT = 2.0f;
+    private static final float TAG_WEIGHT = 1.0f;
+
+    @Autowired
+    private AnimeMapper animeMapper;
+
+    // 是否在启动时从数据库重建索引
+    @Value("${anime.search.index.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    // 单次重建的时间预算（秒），超出后停止本次重建，搜索继续使用Bangumi，由定时重试从停止处继续
+    @Value("${anime.search.index.rebuild-budget-seconds:30}")
+    private long rebuildBudgetSeconds;
+
+    // 重建时每批读取的行数
+    @Value("${anime.search.index.batch-size:1000}")
+    private int batchSize;
+
+    // 倒排表：词 -> (动漫ID -> 权重)
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+
+    // 正排表：动漫ID -> (词 -> 权重)，用于增量更新时删除旧词
+    private final Map<Long, Map<String, Float>> documents = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 索引是否已从数据库完整构建
+    private volatile boolean ready = false;
+
+    // 是否正在重建，同一时间只有一次重建
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    // 未完成的重建已索引到的最大动漫ID，下次重建从其后继续；完成后归零
+    private volatile long resumeFromId = 0;
+
+    // 最近一次重建的结果：completed、budget_exceeded、failed
+    private volatile String lastRebuildResult;
+
+    private final AtomicLong rebuildAttempts = new AtomicLong();
+
+    /**
+     * 分页搜索结果
+     * @param total 命中总数
+     * @param ids 当前页的动漫ID，按相关度排序
+     */
+    public record SearchHits(int total, List<Long> ids) {
+    }
+
+    /**
+     * 应用启动完成后在后台从数据库重建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        rebuildInBackground();
+    }
+
+    /**
+     * 定时检查：已尝试过重建但索引仍未就绪（超出时间预算或失败）时，在后台从上次停止处继续重建
+     */
+    @Scheduled(fixedDelayString = "${anime.search.index.rebuild-retry-interval-ms:60000}",
+            initialDelayString = "${anime.search.index.rebuild-retry-interval-ms:60000}")
+    public void retryRebuildIfNeeded() {
+        if (ready || rebuilding.get() || rebuildAttempts.get() == 0) {
+            return;
+        }
+        logger.info("搜索索引未就绪，继续重建 - 起始ID: {}", resumeFromId);
+        rebuildInBackground();
+    }
+
+    /**
+     * 在后台线程中重建，不占用调用方（启动事件、定时任务）的线程
+     */
+    private void rebuildInBackground() {
+        Thread thread = new Thread(this::rebuild, "anime-search-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 按ID分批读取anime表重建索引，超出时间预算时停止，索引保持未就绪状态，下次重建从停止处继续
+     * 重建期间写入的动漫由indexAll增量更新，已扫描过的部分不需要重新读取
+     */
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + rebuildBudgetSeconds * 1000;
+        ready = false;
+        rebuildAttempts.incrementAndGet();
+
+        long lastId = resumeFromId;
+        int indexed = 0;
+        try {
+            while (true) {
+                QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+                queryWrapper.select("id", "name", "name_cn", "tags")
+                        .gt("id", lastId)
+                        .orderByAsc("id")
+                        .last("LIMIT " + batchSize);
+                List<Anime> batch = animeMapper.selectList(queryWrapper);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                indexAll(batch);
+                indexed += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+                resumeFromId = lastId;
+
+                if (System.currentTimeMillis() > deadline) {
+                    lastRebuildResult = "budget_exceeded";
+                    logger.warn("搜索索引重建超出时间预算 - 本次索引: {}, 已索引到ID: {}, 预算: {}s，本地搜索暂不可用",
+                            indexed, lastId, rebuildBudgetSeconds);
+                    return;
+                }
+            }
+            resumeFromId = 0;
+            lastRebuildResult = "completed";
+            ready = true;
+            logger.info("搜索索引重建完成 - 本次索引: {}, 文档数: {}, 词数: {}, 耗时: {}ms",
+                    indexed, getDocumentCount(), getTermCount(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            lastRebuildResult = "failed";
+            logger.error("搜索索引重建失败: {}", e.getMessage(), e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 索引是否已完整构建，未就绪时搜索应回退到Bangumi
+     * @return 是否就绪
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 添加或更新一部动漫的索引
+     * @param anime 动漫（需包含id）
+     */
+    public void index(Anime anime) {
+        indexAll(Collections.singletonList(anime));
+    }
+
+    /**
+     * 批量添加或更新动漫索引
+     * @param animes 动漫列表（需包含id）
+     */
+    public void indexAll(Collection<Anime> animes) {
+        List<Map.Entry<Long, Map<String, Float>>> prepared = new ArrayList<>(animes.size());
+        for (Anime anime : animes) {
+            if (anime.getId() != null) {
+                prepared.add(Map.entry(anime.getId(), buildTerms(anime)));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Map<String, Float>> entry : prepared) {
+                removeLocked(entry.getKey());
+                Map<String, Float> terms = entry.getValue();
+                if (terms.isEmpty()) {
+                    continue;
+                }
+                documents.put(entry.getKey(), terms);
+                terms.forEach((term, weight) ->
+                        postings.computeIfAbsent(term, key -> new HashMap<>()).put(entry.getKey(), weight));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从索引中删除一部动漫
+     * @param animeId 动漫ID
+     */
+    public void remove(Long animeId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(animeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索动漫
+     * @param keyword 关键词
+     * @param offset 偏移量
+     * @param limit 返回数量
+     * @return 命中总数和当前页的动漫ID
+     */
+    public SearchHits search(String keyword, int offset, int limit) {
+        List<String> queryTerms = SearchTokenizer.tokenizeForQuery(keyword);
+        if (queryTerms.isEmpty()) {
+            return new SearchHits(0, Collections.emptyList());
+        }
+
+        List<Map.Entry<Long, Float>> scored = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Float>> lists = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Map<Long, Float> list = postings.get(term);
+                if (list == null) {
+                    return new SearchHits(0, Collections.emptyList());
+                }
+                lists.add(list);
+            }
+            // 从最短的倒排表开始求交集
+            lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+            int documentCount = documents.size();
+            float[] idf = new float[lists.size()];
+            for (int i = 0; i < lists.size(); i++) {
+                idf[i] = (float) Math.log(1.0 + (double) documentCount / lists.get(i).size());
+            }
+
+            candidates:
+            for (Map.Entry<Long, Float> candidate : lists.get(0).entrySet()) {
+                float score = candidate.getValue() * idf[0];
+                for (int i = 1; i < lists.size(); i++) {
+                    Float weight = lists.get(i).get(candidate.getKey());
+                    if (weight == null) {
+                        continue candidates;
+                    }
+                    score += weight * idf[i];
+                }
+                scored.add(Map.entry(candidate.getKey(), score));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 相关度降序，相同时按ID升序，保证分页稳定
+        scored.sort((a, b) -> {
+            int byScore = Float.compare(b.getValue(), a.getValue());
+            return byScore != 0 ? byScore : Long.compare(a.getKey(), b.getKey());
+        });
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = Math.max(offset, 0); i < scored.size() && ids.size() < limit; i++) {
+            ids.add(scored.get(i).getKey());
+        }
+        return new SearchHits(scored.size(), ids);
+    }
+
+    /**
+     * 获取索引统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("ready", ready);
+            stats.put("documents", documents.size());
+            stats.put("terms", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("rebuilding", rebuilding.get());
+        stats.put("rebuildAttempts", rebuildAttempts.get());
+        stats.put("lastRebuildResult", lastRebuildResult);
+        stats.put("resumeFromId", resumeFromId);
+        return stats;
+    }
+
+    private int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long animeId) {
+        Map<String, Float> oldTerms = documents.remove(animeId);
+        if (oldTerms == null) {
+            return;
+        }
+        for (String term : oldTerms.keySet()) {
+            Map<Long, Float> list = postings.get(term);
+            if (list != null) {
+                list.remove(animeId);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算一部动漫的词权重，同一个词在多个字段出现时权重累加
+     */
+    private static Map<String, Float> buildTerms(Anime anime) {
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, anime.getNameCn(), NAME_CN_WEIGHT);
+        addTerms(terms, anime.getName(), NAME_WEIGHT);
+        for (String tagName : parseTagNames(anime.getTags())) {
+            addTerms(terms, tagName, TAG_WEIGHT);
+        }
+        return terms;
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String token : SearchTokenizer.tokenizeForIndex(text)) {
+            // 单字只用于单字查询，权重减半，避免压过二元词
+            boolean cjkUnigram = token.codePointCount(0, token.length()) == 1 && SearchTokenizer.isCjk(token.codePointAt(0));
+            float tokenWeight = cjkUnigram ? weight / 2 : weight;
+            terms.merge(token, tokenWeight, Float::sum);
+        }
+    }
+
+    /**
+     * 从tags列的JSON数组中取出各标签的name
+     */
+    private static List<String> parseTagNames(String tagsJson) {
+        List<String> names = new ArrayList<>();
+        if (tagsJson == null || tagsJson.isEmpty()) {
+            return names;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(tagsJson)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && "name".equals(parser.getCurrentName())
+                        && parser.nextToken() == JsonToken.VALUE_STRING) {
+                    names.add(parser.getText());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("解析标签失败: {}", e.getMessage());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,301 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.entity.AnimeTag;
+import cn.luopan.animemasterbackend.entity.Tag;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.mapper.AnimeTagMapper;
+import cn.luopan.animemasterbackend.mapper.TagMapper;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import cn.luopan.animemasterbackend.utils.PageCursor;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 动漫标签服务
+ * 写入Bangumi条目时把tags JSON拆分到tag和anime_tag表，并维护各标签的动漫数量；
+ * 按标签浏览时只扫描anime_tag的(tag_id, score, anime_id)索引，不扫描anime表
+ */
+@Service
+public class AnimeTagService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnimeTagService.class);
+
+    // 每条多行INSERT包含的最大行数
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    @Autowired
+    private AnimeMapper animeMapper;
+
+    @Autowired
+    private AnimeTagMapper animeTagMapper;
+
+    @Autowired
+    private TagMapper tagMapper;
+
+    @Autowired
+    private TagDictionary tagDictionary;
+
+    // 自身的事务代理：回填直接调用this.syncTags时@Transactional不生效，FOR UPDATE不加锁，删除、插入和计数各自提交
+    @Lazy
+    @Autowired
+    private AnimeTagService self;
+
+    // anime_tag为空时是否在启动后从anime.tags回填
+    @Value("${anime.tags.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    // 回填时每批读取的动漫数
+    @Value("${anime.tags.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    private final AtomicLong syncedAnime = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+
+    /**
+     * 按标签分页查询的结果
+     * @param animeIds 当前页的动漫ID，按评分降序
+     * @param nextCursor 下一页游标，没有更多数据时为null
+     */
+    public record TagPage(List<Long> animeIds, String nextCursor) {
+    }
+
+    /**
+     * 应用启动完成后在后台加载标签字典，anime_tag为空时（升级后的已有数据库）从anime.tags回填
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initOnStartup() {
+        Thread thread = new Thread(() -> {
+            try {
+                int tags = tagDictionary.loadAll();
+                logger.info("标签字典加载完成 - 标签数: {}", tags);
+                if (backfillOnStartup && animeTagMapper.selectOne(new QueryWrapper<AnimeTag>().last("LIMIT 1")) == null) {
+                    backfill();
+                }
+            } catch (Exception e) {
+                logger.error("标签初始化失败: {}", e.getMessage(), e);
+            }
+        }, "anime-tag-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 按ID分批读取anime表，为每部动漫写入标签关联
+     * 每一批通过代理在独立事务中写入，与同时进行的同步锁定同一动漫的标签，标签的动漫数量不会重复计算
+     */
+    public void backfill() {
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        int processed = 0;
+        while (true) {
+            QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", "score", "tags")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("LIMIT " + backfillBatchSize);
+            List<Anime> batch = animeMapper.selectList(queryWrapper);
+            if (batch.isEmpty()) {
+                break;
+            }
+            self.syncTags(batch);
+            processed += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+        logger.info("标签回填完成 - 动漫数: {}, 耗时: {}ms", processed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 用动漫当前的tags和score重写其标签关联，并按新旧标签集合的差异调整标签的动漫数量
+     * @param animes 动漫（需包含id、tags、score）
+     */
+    @Transactional
+    public void syncTags(Collection<Anime> animes) {
+        List<Long> animeIds = new ArrayList<>();
+        List<AnimeTag> rows = new ArrayList<>();
+        Map<Long, Map<String, Integer>> tagsByAnime = new LinkedHashMap<>();
+        Set<String> tagNames = new HashSet<>();
+
+        for (Anime anime : animes) {
+            if (anime.getId() == null) {
+                continue;
+            }
+            animeIds.add(anime.getId());
+            Map<String, Integer> counts = parseTags(anime);
+            tagsByAnime.put(anime.getId(), counts);
+            tagNames.addAll(counts.keySet());
+        }
+        if (animeIds.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> tagIds = tagDictionary.resolveIds(tagNames);
+        Map<Long, BigDecimal> scores = new HashMap<>();
+        for (Anime anime : animes) {
+            if (anime.getId() != null) {
+                scores.put(anime.getId(), anime.getScore() == null ? BigDecimal.ZERO : anime.getScore());
+            }
+        }
+        for (Map.Entry<Long, Map<String, Integer>> entry : tagsByAnime.entrySet()) {
+            for (Map.Entry<String, Integer> tag : entry.getValue().entrySet()) {
+                Integer tagId = tagIds.get(tag.getKey());
+                if (tagId == null) {
+                    continue;
+                }
+                AnimeTag row = new AnimeTag();
+                row.setAnimeId(entry.getKey());
+                row.setTagId(tagId);
+                row.setCount(tag.getValue());
+                row.setScore(scores.get(entry.getKey()));
+                rows.add(row);
+            }
+        }
+
+        // 新增的标签数量加1，移除的标签数量减1，标签未变的动漫不影响数量
+        Map<Long, Set<Integer>> oldTags = new HashMap<>();
+        for (AnimeTag row : animeTagMapper.selectTagsForUpdate(animeIds)) {
+            oldTags.computeIfAbsent(row.getAnimeId(), id -> new HashSet<>()).add(row.getTagId());
+        }
+        Map<Long, Set<Integer>> newTags = new HashMap<>();
+        for (AnimeTag row : rows) {
+            newTags.computeIfAbsent(row.getAnimeId(), id -> new HashSet<>()).add(row.getTagId());
+        }
+        Map<Integer, Integer> deltas = new HashMap<>();
+        for (Long animeId : tagsByAnime.keySet()) {
+            Set<Integer> before = oldTags.getOrDefault(animeId, Set.of());
+            Set<Integer> after = newTags.getOrDefault(animeId, Set.of());
+            for (Integer tagId : after) {
+                if (!before.contains(tagId)) {
+                    deltas.merge(tagId, 1, Integer::sum);
+                }
+            }
+            for (Integer tagId : before) {
+                if (!after.contains(tagId)) {
+                    deltas.merge(tagId, -1, Integer::sum);
+                }
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+
+        animeTagMapper.deleteByAnimeIds(animeIds);
+        for (int from = 0; from < rows.size(); from += INSERT_BATCH_SIZE) {
+            animeTagMapper.insertBatch(rows.subList(from, Math.min(from + INSERT_BATCH_SIZE, rows.size())));
+        }
+        Map<Integer, Integer> batch = new HashMap<>();
+        for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+            batch.put(delta.getKey(), delta.getValue());
+            if (batch.size() >= INSERT_BATCH_SIZE) {
+                tagMapper.addAnimeCount(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            tagMapper.addAnimeCount(batch);
+        }
+
+        syncedAnime.addAndGet(animeIds.size());
+        writtenRows.addAndGet(rows.size());
+    }
+
+    /**
+     * 按评分降序分页查询带有指定标签的动漫ID
+     * @param tagName 标签名
+     * @param cursor 上一页返回的游标，首页为null
+     * @param size 每页数量
+     * @return 当前页的动漫ID和下一页游标
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public TagPage findByTag(String tagName, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor);
+        Integer tagId = tagDictionary.getId(tagName);
+        if (tagId == null) {
+            return new TagPage(List.of(), null);
+        }
+
+        BigDecimal afterScore = null;
+        Long afterAnimeId = null;
+        if (after != null) {
+            try {
+                afterScore = new BigDecimal(after.value());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标", e);
+            }
+            afterAnimeId = after.id();
+        }
+
+        List<AnimeTag> rows = animeTagMapper.selectPageByTag(tagId, afterScore, afterAnimeId, size);
+        List<Long> animeIds = new ArrayList<>(rows.size());
+        for (AnimeTag row : rows) {
+            animeIds.add(row.getAnimeId());
+        }
+        String nextCursor = null;
+        if (rows.size() == size) {
+            AnimeTag last = rows.get(rows.size() - 1);
+            nextCursor = PageCursor.of(last.getScore().toPlainString(), last.getAnimeId()).encode();
+        }
+        return new TagPage(animeIds, nextCursor);
+    }
+
+    /**
+     * 获取动漫数量最多的标签
+     * @param limit 返回数量
+     * @return 标签列表，按动漫数量降序
+     */
+    public List<Tag> getPopularTags(int limit) {
+        QueryWrapper<Tag> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "name", "anime_count")
+                .gt("anime_count", 0)
+                .orderByDesc("anime_count")
+                .last("LIMIT " + limit);
+        return tagMapper.selectList(queryWrapper);
+    }
+
+    /**
+     * 获取标签同步统计信息
+     * @return 已同步的动漫数、写入的关联行数及字典统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(tagDictionary.getStats());
+        stats.put("syncedAnime", syncedAnime.get());
+        stats.put("writtenRows", writtenRows.get());
+        return stats;
+    }
+
+    /**
+     * 解析动漫的标签，规范化标签名并合并重复标签（保留较大的标注次数）
+     */
+    private Map<String, Integer> parseTags(Anime anime) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try {
+            for (BangumiSubjectParser.TagCount tag : BangumiSubjectParser.parseTags(anime.getTags())) {
+                String name = tagDictionary.intern(tag.name());
+                if (name != null) {
+                    counts.merge(name, tag.count(), Math::max);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("解析标签失败 - 动漫ID: {}, 错误: {}", anime.getId(), e.getMessage());
+        }
+        return counts;
+    }
+}
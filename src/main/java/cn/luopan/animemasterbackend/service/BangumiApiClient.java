@@ -0,0 +1,353 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.utils.CircuitBreaker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bangumi API客户端
+ * 统一封装对api.bgm.tv的请求，响应经过BangumiResponseCache缓存；
+ * 内存缓存未命中时先查BangumiDiskCache，有ETag/Last-Modified的条目发起条件请求，304时不重新下载响应体
+ * 每个请求都经过按接口配置的超时、并发隔离（bulkhead）和熔断器，Bangumi不可用时快速失败，
+ * 磁盘缓存中有旧响应时返回旧响应，否则抛出BangumiUnavailableException由调用方降级为本地数据
+ */
+@Service
+public class BangumiApiClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(BangumiApiClient.class);
+
+    @Autowired
+    private WebClient bangumiWebClient;
+
+    @Autowired
+    private BangumiResponseCache responseCache;
+
+    @Autowired
+    private BangumiDiskCache diskCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 条目列表接口超时（毫秒）
+    @Value("${bangumi.client.timeout.subjects-ms:8000}")
+    private long subjectsTimeoutMs;
+
+    // 搜索接口超时（毫秒），搜索在用户请求线程上等待，超时更短
+    @Value("${bangumi.client.timeout.search-ms:3000}")
+    private long searchTimeoutMs;
+
+    // 放送时间表接口超时（毫秒）
+    @Value("${bangumi.client.timeout.calendar-ms:8000}")
+    private long calendarTimeoutMs;
+
+    // 同时进行的Bangumi请求上限，超出时立即拒绝而不是排队占用请求线程
+    @Value("${bangumi.client.bulkhead.max-concurrent:8}")
+    private int maxConcurrent;
+
+    // 打开熔断所需的连续失败次数
+    @Value("${bangumi.client.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    // 熔断打开后的冷却时间（毫秒）
+    @Value("${bangumi.client.circuit-breaker.open-ms:30000}")
+    private long openMs;
+
+    // 单个响应体的最大字节数，响应体按块读取，不受WebClient编解码器1MB上限的限制
+    @Value("${bangumi.client.max-body-bytes:16777216}")
+    private int maxBodyBytes;
+
+    private Semaphore bulkhead;
+
+    private CircuitBreaker circuitBreaker;
+
+    private final AtomicLong bulkheadRejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong staleFallbacks = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        bulkhead = new Semaphore(Math.max(1, maxConcurrent));
+        circuitBreaker = new CircuitBreaker(failureThreshold, openMs);
+    }
+
+    /**
+     * 获取TV动画条目列表
+     * @param sort 排序方式（date或rank）
+     * @param limit 获取数量
+     * @return 原始响应内容（UTF-8）
+     */
+    public byte[] getSubjects(String sort, int limit) {
+        String endpoint = "rank".equals(sort) ? BangumiResponseCache.ENDPOINT_RANKING : BangumiResponseCache.ENDPOINT_DAILY;
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("type", 2);
+        params.put("sort", sort);
+        params.put("limit", limit);
+
+        String uri = UriComponentsBuilder.fromPath("/v0/subjects")
+                .queryParam("type", 2) // TV动画
+                .queryParam("sort", sort)
+                .queryParam("limit", limit)
+                .build()
+                .toUriString();
+        return responseCache.get(endpoint, BangumiResponseCache.normalizeParams(params),
+                () -> exchange(HttpMethod.GET, uri, null, subjectsTimeoutMs).block());
+    }
+
+    /**
+     * 搜索TV动画条目
+     * @param keyword 搜索关键词
+     * @param limit 返回数据数量
+     * @param offset 偏移量
+     * @return 原始响应内容（UTF-8）
+     */
+    public byte[] searchSubjects(String keyword, int limit, int offset) {
+        return responseCache.get(BangumiResponseCache.ENDPOINT_SEARCH, searchParams(keyword, limit, offset),
+                () -> requestSearch(keyword, limit, offset).block());
+    }
+
+    /**
+     * 搜索TV动画条目（非阻塞版本）
+     * @param keyword 搜索关键词
+     * @param limit 返回数据数量
+     * @param offset 偏移量
+     * @return 原始响应内容（UTF-8）
+     */
+    public Mono<byte[]> searchSubjectsAsync(String keyword, int limit, int offset) {
+        return Mono.fromFuture(() -> responseCache.getAsync(BangumiResponseCache.ENDPOINT_SEARCH,
+                searchParams(keyword, limit, offset), () -> requestSearch(keyword, limit, offset).toFuture()));
+    }
+
+    /**
+     * 获取每日放送时间表
+     * @return 原始响应内容（UTF-8）
+     */
+    public byte[] getCalendar() {
+        return responseCache.get(BangumiResponseCache.ENDPOINT_CALENDAR, "",
+                () -> exchange(HttpMethod.GET, "/calendar", null, calendarTimeoutMs).block());
+    }
+
+    private String searchParams(String keyword, int limit, int offset) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("keyword", keyword);
+        params.put("limit", limit);
+        params.put("offset", offset);
+        return BangumiResponseCache.normalizeParams(params);
+    }
+
+    private Mono<byte[]> requestSearch(String keyword, int limit, int offset) {
+        return Mono.defer(() -> {
+            // 创建搜索请求体，字段顺序固定，相同搜索的请求体哈希相同
+            Map<String, Object> requestBody = new LinkedHashMap<>();
+            requestBody.put("keyword", keyword);
+
+            // 创建筛选条件
+            Map<String, Object> filter = new HashMap<>();
+            filter.put("type", Arrays.asList(2)); // TV动画
+            requestBody.put("filter", filter);
+
+            String uri = UriComponentsBuilder.fromPath("/v0/search/subjects")
+                    .queryParam("limit", limit)
+                    .queryParam("offset", offset)
+                    .build()
+                    .toUriString();
+            try {
+                return exchange(HttpMethod.POST, uri, objectMapper.writeValueAsBytes(requestBody), searchTimeoutMs);
+            } catch (Exception e) {
+                return Mono.error(e);
+            }
+        });
+    }
+
+    /**
+     * 获取熔断器、并发隔离和降级统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuitState", circuitBreaker.getState().name());
+        stats.put("circuitOpened", circuitBreaker.getOpened());
+        stats.put("circuitRejected", circuitBreaker.getRejected());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        stats.put("bulkheadRejected", bulkheadRejected.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("failures", failures.get());
+        stats.put("staleFallbacks", staleFallbacks.get());
+        return stats;
+    }
+
+    /**
+     * 发送请求并维护磁盘缓存：
+     * 磁盘条目在新鲜期内时直接返回；否则带上If-None-Match/If-Modified-Since，304时返回磁盘中的响应体，
+     * 200时异步写入磁盘；其他状态码与retrieve()一样转换为WebClientResponseException
+     * Bangumi不可用时若磁盘中有该请求的旧响应则返回旧响应
+     */
+    private Mono<byte[]> exchange(HttpMethod method, String uri, byte[] body, long timeoutMs) {
+        String key = BangumiDiskCache.key(method.name(), uri, body);
+        BangumiDiskCache.Entry cached = diskCache.lookup(key);
+        if (cached != null && diskCache.isFresh(cached)) {
+            return Mono.fromCallable(() -> diskCache.read(cached));
+        }
+        return guarded(request(method, uri, body, key, cached), uri, timeoutMs)
+                .onErrorResume(BangumiUnavailableException.class, e -> {
+                    if (cached == null) {
+                        return Mono.error(e);
+                    }
+                    staleFallbacks.incrementAndGet();
+                    logger.warn("Bangumi不可用，返回磁盘中的旧响应 - 请求: {}, 原因: {}", uri, e.getMessage());
+                    return Mono.fromCallable(() -> diskCache.read(cached));
+                });
+    }
+
+    /**
+     * 为请求加上并发隔离、熔断和超时；超时、连接失败、429和5xx计为失败并转换为BangumiUnavailableException，
+     * 其他4xx说明Bangumi工作正常，原样抛出
+     */
+    private Mono<byte[]> guarded(Mono<byte[]> call, String uri, long timeoutMs) {
+        return Mono.defer(() -> {
+            if (!bulkhead.tryAcquire()) {
+                bulkheadRejected.incrementAndGet();
+                return Mono.error(new BangumiUnavailableException("Bangumi并发请求已满"));
+            }
+            if (!circuitBreaker.tryAcquire()) {
+                bulkhead.release();
+                return Mono.error(new BangumiUnavailableException("Bangumi熔断中"));
+            }
+            return call.timeout(Duration.ofMillis(timeoutMs))
+                    .doOnSuccess(value -> circuitBreaker.onSuccess())
+                    .onErrorMap(e -> {
+                        if (!isUpstreamFailure(e)) {
+                            circuitBreaker.onSuccess();
+                            return e;
+                        }
+                        circuitBreaker.onFailure();
+                        failures.incrementAndGet();
+                        if (e instanceof TimeoutException) {
+                            timeouts.incrementAndGet();
+                            return new BangumiUnavailableException("Bangumi请求超时(" + timeoutMs + "ms): " + uri, e);
+                        }
+                        return new BangumiUnavailableException("Bangumi请求失败: " + uri + ", " + e.getMessage(), e);
+                    })
+                    .doOnCancel(circuitBreaker::release)
+                    .doFinally(signal -> bulkhead.release());
+        });
+    }
+
+    private static boolean isUpstreamFailure(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status >= 500 || status == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return e instanceof TimeoutException || e instanceof WebClientRequestException;
+    }
+
+    private Mono<byte[]> request(HttpMethod method, String uri, byte[] body, String key, BangumiDiskCache.Entry cached) {
+        WebClient.RequestBodySpec request = bangumiWebClient.method(method).uri(uri);
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                request.header(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                request.header(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+        WebClient.RequestHeadersSpec<?> spec = body == null ? request
+                : request.contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+
+        return spec.exchangeToMono(response -> {
+            if (cached != null && response.statusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                return response.releaseBody().then(Mono.fromCallable(() -> diskCache.revalidated(cached)));
+            }
+            if (response.statusCode().is2xxSuccessful()) {
+                HttpHeaders headers = response.headers().asHttpHeaders();
+                String etag = headers.getETag();
+                String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+                return readBody(response)
+                        .doOnNext(bytes -> diskCache.putAsync(key, etag, lastModified, bytes));
+            }
+            return response.createException().flatMap(Mono::error);
+        });
+    }
+
+    /**
+     * 按块读取响应体：有Content-Length时一次分配好数组，每块数据直接拷入后立即释放，
+     * 不经过编解码器的聚合缓冲区；超过maxBodyBytes时报错
+     */
+    private Mono<byte[]> readBody(ClientResponse response) {
+        long contentLength = response.headers().contentLength().orElse(-1);
+        if (contentLength > maxBodyBytes) {
+            return response.releaseBody().then(Mono.error(
+                    new DataBufferLimitException("Bangumi响应体过大: " + contentLength + "字节")));
+        }
+        int initialCapacity = contentLength >= 0 ? (int) contentLength : 64 * 1024;
+        return response.bodyToFlux(DataBuffer.class)
+                .reduceWith(() -> new BodyBuffer(initialCapacity), (buffer, chunk) -> {
+                    try {
+                        buffer.append(chunk, maxBodyBytes);
+                    } finally {
+                        DataBufferUtils.release(chunk);
+                    }
+                    return buffer;
+                })
+                .map(BodyBuffer::toByteArray);
+    }
+
+    /**
+     * 可增长的字节数组，大小恰好等于Content-Length时toByteArray不再拷贝
+     */
+    private static final class BodyBuffer {
+
+        private byte[] data;
+
+        private int size;
+
+        BodyBuffer(int initialCapacity) {
+            data = new byte[initialCapacity];
+        }
+
+        void append(DataBuffer chunk, int maxBytes) {
+            int length = chunk.readableByteCount();
+            if ((long) size + length > maxBytes) {
+                throw new DataBufferLimitException("Bangumi响应体超过" + maxBytes + "字节");
+            }
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, Math.min(maxBytes, Math.max(size + length, data.length * 2)));
+            }
+            chunk.read(data, size, length);
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            return size == data.length ? data : Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import cn.luopan.animemasterbackend.utils.ContentHashUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Bangumi Archive离线导入
+ * 流式读取导出文件中的subject.jsonlines（或包含它的zip），多线程解析，只保留type=2的动画条目，
+ * 由单个写线程通过多行INSERT ... ON DUPLICATE KEY UPDATE批量写入anime表
+ * 读取、解析、写入之间都是有界队列，内存占用与文件大小无关
+ * 使用方式：启动参数 --anime.import.archive=/path/to/subject.jsonlines
+ * 只导入不提供服务时再加 --anime.import.exit-on-finish=true --spring.main.web-application-type=none
+ */
+@Service
+public class BangumiArchiveImporter implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BangumiArchiveImporter.class);
+
+    private static final String SUBJECT_ENTRY = "subject.jsonlines";
+
+    private static final int ANIME_TYPE = 2;
+
+    // 每个解析任务包含的行数
+    private static final int PARSE_CHUNK_LINES = 500;
+
+    // 进度日志间隔
+    private static final long PROGRESS_INTERVAL_MILLIS = 10_000;
+
+    // 写线程结束标记
+    private static final List<Anime> END_OF_INPUT = new ArrayList<>();
+
+    @Autowired
+    private AnimeMapper animeMapper;
+
+    @Autowired
+    private AnimeTagService animeTagService;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    // 导出文件路径，为空时不导入
+    @Value("${anime.import.archive:}")
+    private String archivePath;
+
+    // 解析线程数
+    @Value("${anime.import.parse-threads:4}")
+    private int parseThreads;
+
+    // 每条多行INSERT包含的行数
+    @Value("${anime.import.batch-size:1000}")
+    private int batchSize;
+
+    // 导入完成后是否退出应用
+    @Value("${anime.import.exit-on-finish:false}")
+    private boolean exitOnFinish;
+
+    /**
+     * 导入结果
+     * @param lines 读取的行数
+     * @param matched 动画条目数
+     * @param written 写入数据库的行数
+     * @param malformed 解析失败的行数
+     * @param elapsedMillis 耗时
+     */
+    public record ImportResult(long lines, long matched, long written, long malformed, long elapsedMillis) {
+
+        public long rowsPerSecond() {
+            return elapsedMillis > 0 ? matched * 1000 / elapsedMillis : matched;
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (archivePath == null || archivePath.isBlank()) {
+            return;
+        }
+        int exitCode = 0;
+        try {
+            importArchive(Paths.get(archivePath));
+            // 导入的条目不经过upsertSubjects，标签关联整体重建一次；搜索索引和每日抽样在启动完成后从数据库加载
+            animeTagService.backfill();
+        } catch (Exception e) {
+            exitCode = 1;
+            logger.error("Bangumi Archive导入失败 - 文件: {}, 错误: {}", archivePath, e.getMessage(), e);
+        }
+        if (exitOnFinish) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(applicationContext, () -> code));
+        }
+    }
+
+    /**
+     * 导入导出文件，文件名以.zip结尾时读取其中的subject.jsonlines
+     * @param path 文件路径
+     * @return 导入结果
+     * @throws IOException 文件读取失败
+     */
+    public ImportResult importArchive(Path path) throws IOException, InterruptedException {
+        logger.info("开始导入Bangumi Archive - 文件: {}, 大小: {}MB", path, Files.size(path) / (1024 * 1024));
+        try (InputStream in = Files.newInputStream(path)) {
+            if (!path.getFileName().toString().toLowerCase().endsWith(".zip")) {
+                return importLines(in);
+            }
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().endsWith(SUBJECT_ENTRY)) {
+                    return importLines(zip);
+                }
+            }
+            throw new IOException("压缩包中没有" + SUBJECT_ENTRY);
+        }
+    }
+
+    /**
+     * 从JSON Lines输入流导入
+     * @param in 输入流，每行一个条目
+     * @return 导入结果
+     */
+    public ImportResult importLines(InputStream in) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        int threads = Math.max(1, parseThreads);
+        Progress progress = new Progress(start);
+        BlockingQueue<List<Anime>> writeQueue = new ArrayBlockingQueue<>(threads * 2);
+
+        Thread writer = new Thread(() -> writeLoop(writeQueue, progress), "archive-import-writer");
+        writer.start();
+
+        // 任务队列满时由读取线程自己解析，读取速度自然降到解析速度
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor parseExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "archive-import-parser-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            LineReader reader = new LineReader(in);
+            List<byte[]> chunk = new ArrayList<>(PARSE_CHUNK_LINES);
+            byte[] line;
+            while ((line = reader.readLine()) != null && progress.failure == null) {
+                progress.lines.incrementAndGet();
+                chunk.add(line);
+                if (chunk.size() == PARSE_CHUNK_LINES) {
+                    submitChunk(parseExecutor, chunk, writeQueue, progress);
+                    chunk = new ArrayList<>(PARSE_CHUNK_LINES);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                submitChunk(parseExecutor, chunk, writeQueue, progress);
+            }
+        } finally {
+            parseExecutor.shutdown();
+            parseExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            enqueue(writeQueue, END_OF_INPUT, progress);
+            writer.join();
+        }
+
+        if (progress.failure != null) {
+            throw new IOException("写入数据库失败: " + progress.failure.getMessage(), progress.failure);
+        }
+        ImportResult result = new ImportResult(progress.lines.get(), progress.matched.get(), progress.written.get(),
+                progress.malformed.get(), System.currentTimeMillis() - start);
+        logger.info("Bangumi Archive导入完成 - 行数: {}, 动画条目: {}, 写入: {}, 解析失败: {}, 耗时: {}ms, 速度: {}行/秒",
+                result.lines(), result.matched(), result.written(), result.malformed(),
+                result.elapsedMillis(), result.rowsPerSecond());
+        return result;
+    }
+
+    private void submitChunk(ThreadPoolExecutor executor, List<byte[]> chunk,
+                             BlockingQueue<List<Anime>> writeQueue, Progress progress) {
+        executor.execute(() -> {
+            List<Anime> animes = new ArrayList<>();
+            for (byte[] line : chunk) {
+                try {
+                    Anime anime = BangumiSubjectParser.parseArchiveSubject(line);
+                    if (anime == null || anime.getBangumiId() == null) {
+                        continue;
+                    }
+                    if (anime.getType() == null || anime.getType() != ANIME_TYPE) {
+                        continue;
+                    }
+                    anime.setContentHash(ContentHashUtils.hashAnime(anime));
+                    animes.add(anime);
+                } catch (IOException e) {
+                    progress.malformed.incrementAndGet();
+                    logger.debug("跳过无法解析的行: {}", e.getMessage());
+                }
+            }
+            if (!animes.isEmpty()) {
+                progress.matched.addAndGet(animes.size());
+                try {
+                    enqueue(writeQueue, animes, progress);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /**
+     * 放入写队列；写线程已失败时不再等待
+     */
+    private static void enqueue(BlockingQueue<List<Anime>> writeQueue, List<Anime> animes,
+                                Progress progress) throws InterruptedException {
+        while (!writeQueue.offer(animes, 1, TimeUnit.SECONDS)) {
+            if (progress.failure != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 写线程：把解析结果攒满batchSize后执行一次多行upsert
+     */
+    private void writeLoop(BlockingQueue<List<Anime>> writeQueue, Progress progress) {
+        int size = Math.max(1, batchSize);
+        List<Anime> batch = new ArrayList<>(size);
+        try {
+            while (true) {
+                List<Anime> animes = writeQueue.take();
+                if (animes == END_OF_INPUT) {
+                    break;
+                }
+                for (Anime anime : animes) {
+                    batch.add(anime);
+                    if (batch.size() == size) {
+                        flush(batch, progress);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                flush(batch, progress);
+            }
+        } catch (Exception e) {
+            progress.failure = e;
+            // 读取线程和解析线程在enqueue中发现失败后停止；继续取出队列中的数据，避免它们阻塞
+            writeQueue.clear();
+        }
+    }
+
+    private void flush(List<Anime> batch, Progress progress) {
+        animeMapper.upsertBatch(batch);
+        progress.written.addAndGet(batch.size());
+        batch.clear();
+        progress.logIfDue();
+    }
+
+    /**
+     * 导入进度，由读取、解析、写入线程共同更新
+     */
+    private static final class Progress {
+
+        private final long start;
+
+        private final AtomicLong lines = new AtomicLong();
+
+        private final AtomicLong matched = new AtomicLong();
+
+        private final AtomicLong written = new AtomicLong();
+
+        private final AtomicLong malformed = new AtomicLong();
+
+        private volatile Exception failure;
+
+        // 只由写线程访问
+        private long lastLogMillis;
+
+        private Progress(long start) {
+            this.start = start;
+            this.lastLogMillis = start;
+        }
+
+        private void logIfDue() {
+            long now = System.currentTimeMillis();
+            if (now - lastLogMillis < PROGRESS_INTERVAL_MILLIS) {
+                return;
+            }
+            lastLogMillis = now;
+            long elapsed = now - start;
+            logger.info("Bangumi Archive导入中 - 已读取: {}行, 已写入: {}, 速度: {}行/秒",
+                    lines.get(), written.get(), written.get() * 1000 / Math.max(1, elapsed));
+        }
+    }
+
+    /**
+     * 按\n切分输入流，返回不含换行符的字节数组，跳过空行；只保留一个固定大小的读缓冲
+     */
+    static final class LineReader {
+
+        private final InputStream in;
+
+        private final byte[] buffer = new byte[64 * 1024];
+
+        private int position;
+
+        private int limit;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        byte[] readLine() throws IOException {
+            byte[] pending = null;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (pending != null && pending.length > 0) {
+                            return trim(pending, pending.length);
+                        }
+                        return null;
+                    }
+                }
+                int newline = -1;
+                for (int i = position; i < limit; i++) {
+                    if (buffer[i] == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                int end = newline >= 0 ? newline : limit;
+                pending = append(pending, buffer, position, end - position);
+                position = newline >= 0 ? newline + 1 : limit;
+                if (newline >= 0) {
+                    if (pending.length == 0 || (pending.length == 1 && pending[0] == '\r')) {
+                        pending = null;
+                        continue;
+                    }
+                    return trim(pending, pending.length);
+                }
+            }
+        }
+
+        private static byte[] append(byte[] pending, byte[] source, int offset, int length) {
+            if (pending == null) {
+                byte[] result = new byte[length];
+                System.arraycopy(source, offset, result, 0, length);
+                return result;
+            }
+            byte[] result = new byte[pending.length + length];
+            System.arraycopy(pending, 0, result, 0, pending.length);
+            System.arraycopy(source, offset, result, pending.length, length);
+            return result;
+        }
+
+        /**
+         * 去掉Windows换行留下的\r
+         */
+        private static byte[] trim(byte[] line, int length) {
+            if (length > 0 && line[length - 1] == '\r') {
+                byte[] result = new byte[length - 1];
+                System.arraycopy(line, 0, result, 0, length - 1);
+                return result;
+            }
+            return line;
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package cn.luopan.animemasterbackend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Bangumi响应磁盘缓存
+ * 以“请求方法+URI+请求体哈希”为键，把响应体和ETag/Last-Modified追加写入一个日志文件，
+ * 读取时通过内存映射直接从页缓存复制，重启后扫描文件重建索引，因此重启后可以立即发起条件请求；
+ * 同一个键的旧记录和过期记录在后台压缩时移除
+ * 文件按固定大小的区域映射，每个区域只映射一次并由其中的所有记录共用，写入不再重新映射整个文件，只在压缩后重新映射；
+ * 记录不跨区域，放不下时从下一个区域开始写，区域末尾留下的空白在加载时跳过
+ * 记录格式：魔数(4) 记录长度(4) 写入时间(8) 键 ETag Last-Modified（各为2字节长度+UTF-8） 响应体长度(4) 响应体 CRC32(4)
+ */
+@Component
+public class BangumiDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BangumiDiskCache.class);
+
+    private static final int MAGIC = 0x42474331;
+
+    private static final String DATA_FILE = "bangumi-cache.dat";
+
+    // 文件较小时不压缩
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    // 是否启用磁盘缓存
+    @Value("${bangumi.disk-cache.enabled:true}")
+    private boolean enabled;
+
+    // 缓存目录
+    @Value("${bangumi.disk-cache.dir:data/bangumi-cache}")
+    private String directory;
+
+    // 缓存文件最大字节数（内存映射要求不超过2GB）
+    @Value("${bangumi.disk-cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    // 每个映射区域的字节数，超过该大小的响应不写入磁盘缓存
+    @Value("${bangumi.disk-cache.region-bytes:33554432}")
+    private int regionBytes = 32 * 1024 * 1024;
+
+    // 最近一次写入或验证后在该时间内直接使用，不向Bangumi验证（秒）
+    @Value("${bangumi.disk-cache.fresh-seconds:300}")
+    private long freshSeconds;
+
+    // 超过该时间的记录在压缩时删除（小时）
+    @Value("${bangumi.disk-cache.max-age-hours:168}")
+    private long maxAgeHours;
+
+    private Path dataFile;
+
+    private FileChannel channel;
+
+    // 追加写入位置，写入和压缩时对this加锁
+    private long fileSize;
+
+    // 被覆盖或过期的记录占用的字节数
+    private long deadBytes;
+
+    // 当前文件已映射的区域，下标为区域序号，写入和压缩时对this加锁
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor writeExecutor;
+
+    private final AtomicLong freshHits = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong savedBytes = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong droppedWrites = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong mappings = new AtomicLong();
+
+    /**
+     * 缓存条目：响应体位于记录所在区域的映射中，recordOffset和bodyOffset为区域内的位置
+     */
+    public static final class Entry {
+        private final String key;
+        private final String etag;
+        private final String lastModified;
+        private final long storedAt;
+        private final ByteBuffer mapped;
+        private final long recordOffset;
+        private final int recordLength;
+        private final int bodyOffset;
+        private final int bodyLength;
+        // 最近一次写入或收到304的时间，只保存在内存中
+        private volatile long validatedAt;
+
+        private Entry(String key, String etag, String lastModified, long storedAt, ByteBuffer mapped,
+                      long recordOffset, int recordLength, int bodyOffset, int bodyLength) {
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.mapped = mapped;
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+            this.validatedAt = storedAt;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        public int getBodyLength() {
+            return bodyLength;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        maxBytes = Math.min(maxBytes, Integer.MAX_VALUE);
+        regionBytes = (int) Math.min(regionBytes, maxBytes);
+        writeExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), runnable -> {
+            Thread thread = new Thread(runnable, "bangumi-disk-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, executor) -> droppedWrites.incrementAndGet());
+        try {
+            Path root = Paths.get(directory);
+            Files.createDirectories(root);
+            dataFile = root.resolve(DATA_FILE);
+            channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            load();
+            logger.info("Bangumi磁盘缓存加载完成 - 条目数: {}, 文件大小: {}KB", index.size(), fileSize / 1024);
+        } catch (IOException e) {
+            // 磁盘缓存不可用时只使用内存缓存
+            logger.error("Bangumi磁盘缓存初始化失败，已禁用: {}", e.getMessage(), e);
+            enabled = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writeExecutor == null) {
+            return;
+        }
+        writeExecutor.shutdown();
+        try {
+            writeExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                // 映射区域时文件被扩展到区域末尾，关闭前截掉未写入的部分
+                channel.truncate(fileSize);
+            } catch (IOException e) {
+                logger.warn("截断Bangumi磁盘缓存文件失败: {}", e.getMessage());
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("关闭Bangumi磁盘缓存文件失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 生成缓存键
+     * @param method 请求方法
+     * @param uri 请求路径和查询参数
+     * @param body 请求体，没有时为null
+     * @return 缓存键
+     */
+    public static String key(String method, String uri, byte[] body) {
+        if (body == null || body.length == 0) {
+            return method + " " + uri;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return method + " " + uri + " " + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 查找缓存条目
+     * @param key 缓存键
+     * @return 条目，不存在或未启用时返回null
+     */
+    public Entry lookup(String key) {
+        if (!enabled) {
+            return null;
+        }
+        return index.get(key);
+    }
+
+    /**
+     * 条目是否在无需验证的时间内
+     */
+    public boolean isFresh(Entry entry) {
+        boolean fresh = System.currentTimeMillis() - entry.validatedAt < TimeUnit.SECONDS.toMillis(freshSeconds);
+        if (fresh) {
+            freshHits.incrementAndGet();
+        }
+        return fresh;
+    }
+
+    /**
+     * 读取条目的响应体
+     * @param entry 缓存条目
+     * @return 响应体副本
+     */
+    public byte[] read(Entry entry) {
+        byte[] body = new byte[entry.bodyLength];
+        entry.mapped.get(entry.bodyOffset, body);
+        return body;
+    }
+
+    /**
+     * Bangumi返回304时调用：更新验证时间并返回缓存的响应体
+     * @param entry 条件请求使用的条目
+     * @return 响应体副本
+     */
+    public byte[] revalidated(Entry entry) {
+        entry.validatedAt = System.currentTimeMillis();
+        notModified.incrementAndGet();
+        savedBytes.addAndGet(entry.bodyLength);
+        return read(entry);
+    }
+
+    /**
+     * 异步写入响应，在网络线程上调用时不阻塞
+     * @param key 缓存键
+     * @param etag 响应的ETag，没有时为null
+     * @param lastModified 响应的Last-Modified，没有时为null
+     * @param body 响应体
+     */
+    public void putAsync(String key, String etag, String lastModified, byte[] body) {
+        if (!enabled || body == null || (etag == null && lastModified == null && freshSeconds <= 0)) {
+            return;
+        }
+        writeExecutor.execute(() -> {
+            try {
+                put(key, etag, lastModified, body);
+            } catch (Exception e) {
+                logger.warn("写入Bangumi磁盘缓存失败 - 键: {}, 错误: {}", key, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 同步写入响应
+     */
+    public synchronized void put(String key, String etag, String lastModified, byte[] body) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        ByteBuffer record = encode(key, etag, lastModified, System.currentTimeMillis(), body);
+        int length = record.remaining();
+        if (length > regionBytes) {
+            droppedWrites.incrementAndGet();
+            return;
+        }
+        long offset = placeRecord(fileSize, length);
+        if (offset + length > maxBytes) {
+            compact();
+            offset = placeRecord(fileSize, length);
+            if (offset + length > maxBytes) {
+                droppedWrites.incrementAndGet();
+                return;
+            }
+        }
+
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        fileSize = offset + length;
+        Entry entry = decode(region(offset), offset % regionBytes);
+        Entry previous = index.put(key, entry);
+        if (previous != null) {
+            deadBytes += previous.recordLength;
+        }
+        stores.incrementAndGet();
+    }
+
+    /**
+     * 定时压缩：失效记录占一半以上，或存在超过保存时间的记录时，只把有效记录复制到新文件
+     */
+    @Scheduled(fixedDelayString = "${bangumi.disk-cache.compact-interval-ms:600000}",
+            initialDelayString = "${bangumi.disk-cache.compact-interval-ms:600000}")
+    public void compactIfNeeded() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            long expireBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(maxAgeHours);
+            boolean hasExpired = index.values().stream().anyMatch(entry -> entry.storedAt < expireBefore);
+            boolean wasteful = fileSize > MIN_COMPACT_BYTES && deadBytes * 2 > fileSize;
+            if (!hasExpired && !wasteful) {
+                return;
+            }
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.warn("压缩Bangumi磁盘缓存失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 把未过期的记录按最近验证时间从新到旧复制到新文件，超出最大字节数的一半后丢弃更旧的记录
+     * 已映射的旧文件区域在被替换后仍然有效，并发读取不受影响
+     */
+    private synchronized void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        long expireBefore = start - TimeUnit.HOURS.toMillis(maxAgeHours);
+        List<Entry> live = new ArrayList<>(index.values());
+        live.sort(Comparator.comparingLong((Entry entry) -> entry.validatedAt).reversed());
+
+        Path tempFile = dataFile.resolveSibling(DATA_FILE + ".compact");
+        List<Entry> kept = new ArrayList<>();
+        long[] offsets = new long[live.size()];
+        long size = 0;
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Entry entry : live) {
+                long offset = placeRecord(size, entry.recordLength);
+                if (entry.storedAt < expireBefore || offset + entry.recordLength > maxBytes / 2) {
+                    continue;
+                }
+                ByteBuffer record = entry.mapped.slice((int) entry.recordOffset, entry.recordLength);
+                offsets[kept.size()] = offset;
+                while (record.hasRemaining()) {
+                    out.write(record, offset + record.position());
+                }
+                size = offset + entry.recordLength;
+                kept.add(entry);
+            }
+            out.force(true);
+        }
+        Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel.close();
+        channel = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        regions.clear();
+        Map<String, Entry> rebuilt = new LinkedHashMap<>();
+        for (int i = 0; i < kept.size(); i++) {
+            Entry entry = decode(region(offsets[i]), offsets[i] % regionBytes);
+            entry.validatedAt = kept.get(i).validatedAt;
+            rebuilt.put(entry.key, entry);
+        }
+        index.keySet().retainAll(rebuilt.keySet());
+        index.putAll(rebuilt);
+
+        long before = fileSize;
+        fileSize = size;
+        deadBytes = 0;
+        compactions.incrementAndGet();
+        logger.info("Bangumi磁盘缓存压缩完成 - 条目数: {}, 文件大小: {}KB -> {}KB, 耗时: {}ms",
+                index.size(), before / 1024, size / 1024, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 获取缓存统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("entries", index.size());
+        synchronized (this) {
+            stats.put("fileBytes", fileSize);
+            stats.put("deadBytes", deadBytes);
+            stats.put("mappedRegions", regions.stream().filter(Objects::nonNull).count());
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("freshHits", freshHits.get());
+        stats.put("notModified", notModified.get());
+        stats.put("savedBytes", savedBytes.get());
+        stats.put("stores", stores.get());
+        stats.put("droppedWrites", droppedWrites.get());
+        stats.put("compactions", compactions.get());
+        stats.put("mappings", mappings.get());
+        return stats;
+    }
+
+    /**
+     * 顺序扫描缓存文件重建索引：区域末尾的空白跳到下一个区域，遇到不完整或校验失败的记录时截断文件
+     * 进程未正常退出时文件可能仍带有映射扩展出的空白，它们与区域末尾的空白一样被跳过
+     */
+    private synchronized void load() throws IOException {
+        long size = channel.size();
+        if (size > maxBytes) {
+            logger.warn("Bangumi磁盘缓存文件超过上限，已清空 - 大小: {}KB", size / 1024);
+            channel.truncate(0);
+            size = 0;
+        }
+        long offset = 0;
+        long end = 0;
+        while (offset < size) {
+            ByteBuffer region = region(offset);
+            int position = (int) (offset % regionBytes);
+            if (region.capacity() - position < 4 || region.getInt(position) == 0) {
+                offset = offset - position + regionBytes;
+                continue;
+            }
+            Entry entry;
+            try {
+                entry = decode(region, position);
+            } catch (RuntimeException e) {
+                entry = null;
+            }
+            if (entry == null) {
+                // 已加载的条目都在offset之前，区域映射中的这部分在截断后仍然有效
+                logger.warn("Bangumi磁盘缓存文件在{}处损坏，截断后续内容", offset);
+                channel.truncate(offset);
+                end = offset;
+                break;
+            }
+            Entry previous = index.put(entry.key, entry);
+            if (previous != null) {
+                deadBytes += previous.recordLength;
+            }
+            offset += entry.recordLength;
+            end = offset;
+        }
+        fileSize = end;
+    }
+
+    /**
+     * 计算长度为length的记录从size处追加时的写入位置：当前区域放不下时从下一个区域开始
+     */
+    private long placeRecord(long size, int length) {
+        long regionStart = size - size % regionBytes;
+        long regionEnd = Math.min(regionStart + regionBytes, maxBytes);
+        return size + length <= regionEnd ? size : regionStart + regionBytes;
+    }
+
+    /**
+     * 获取offset所在区域的映射，首次访问时映射整个区域（文件随之扩展到区域末尾），之后的写入共用这个映射
+     */
+    private MappedByteBuffer region(long offset) throws IOException {
+        int number = (int) (offset / regionBytes);
+        while (regions.size() <= number) {
+            regions.add(null);
+        }
+        MappedByteBuffer region = regions.get(number);
+        if (region == null) {
+            long start = (long) number * regionBytes;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionBytes, maxBytes - start));
+            regions.set(number, region);
+            mappings.incrementAndGet();
+        }
+        return region;
+    }
+
+    private static ByteBuffer encode(String key, String etag, String lastModified, long storedAt, byte[] body) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] etagBytes = etag == null ? new byte[0] : etag.getBytes(StandardCharsets.UTF_8);
+        byte[] lastModifiedBytes = lastModified == null ? new byte[0] : lastModified.getBytes(StandardCharsets.UTF_8);
+        int length = 4 + 4 + 8 + 2 + keyBytes.length + 2 + etagBytes.length + 2 + lastModifiedBytes.length
+                + 4 + body.length + 4;
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC).putInt(length).putLong(storedAt);
+        buffer.putShort((short) keyBytes.length).put(keyBytes);
+        buffer.putShort((short) etagBytes.length).put(etagBytes);
+        buffer.putShort((short) lastModifiedBytes.length).put(lastModifiedBytes);
+        buffer.putInt(body.length).put(body);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, length - 12);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 解析offset处的记录，格式不正确时返回null
+     */
+    private static Entry decode(ByteBuffer mapped, long offset) {
+        int position = (int) offset;
+        if (mapped.capacity() - position < 12 || mapped.getInt(position) != MAGIC) {
+            return null;
+        }
+        int length = mapped.getInt(position + 4);
+        if (length < 30 || length > mapped.capacity() - position) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(mapped.slice(position + 8, length - 12));
+        if ((int) crc.getValue() != mapped.getInt(position + length - 4)) {
+            return null;
+        }
+
+        int cursor = position + 8;
+        long storedAt = mapped.getLong(cursor);
+        cursor += 8;
+        String[] strings = new String[3];
+        for (int i = 0; i < strings.length; i++) {
+            int stringLength = mapped.getShort(cursor) & 0xFFFF;
+            cursor += 2;
+            byte[] bytes = new byte[stringLength];
+            mapped.get(cursor, bytes);
+            cursor += stringLength;
+            strings[i] = stringLength == 0 && i > 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+        int bodyLength = mapped.getInt(cursor);
+        cursor += 4;
+        return new Entry(strings[0], strings[1], strings[2], storedAt, mapped, offset, length, cursor, bodyLength);
+    }
+}
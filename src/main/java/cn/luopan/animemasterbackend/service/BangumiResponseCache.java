@@ -0,0 +1,302 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.utils.SingleFlight;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bangumi响应缓存
+ * 以“接口+规范化参数”为键缓存原始响应，支持按接口配置TTL、按容量LRU淘汰，
+ * 过期后在宽限期内先返回旧数据并在后台刷新（stale-while-revalidate）
+ */
+@Component
+public class BangumiResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BangumiResponseCache.class);
+
+    // 逻辑接口名称
+    public static final String ENDPOINT_DAILY = "subjects:date";
+    public static final String ENDPOINT_RANKING = "subjects:rank";
+    public static final String ENDPOINT_SEARCH = "search/subjects";
+    public static final String ENDPOINT_CALENDAR = "calendar";
+
+    // 最大缓存条目数
+    @Value("${bangumi.cache.max-entries:256}")
+    private int maxEntries;
+
+    // 每日放送接口TTL（秒）
+    @Value("${bangumi.cache.daily-ttl-seconds:600}")
+    private long dailyTtlSeconds;
+
+    // 排行榜接口TTL（秒）
+    @Value("${bangumi.cache.ranking-ttl-seconds:1800}")
+    private long rankingTtlSeconds;
+
+    // 搜索接口TTL（秒）
+    @Value("${bangumi.cache.search-ttl-seconds:300}")
+    private long searchTtlSeconds;
+
+    // 每日放送时间表接口TTL（秒）
+    @Value("${bangumi.cache.calendar-ttl-seconds:3600}")
+    private long calendarTtlSeconds;
+
+    // 过期后仍可返回旧数据的宽限期（秒）
+    @Value("${bangumi.cache.stale-seconds:1800}")
+    private long staleSeconds;
+
+    // 各接口的TTL（毫秒）
+    private final Map<String, Long> ttlMillis = new HashMap<>();
+
+    // 按访问顺序排列的缓存条目，用于LRU淘汰，访问时需要对其加锁
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    // 正在后台刷新的键，避免同一个键重复刷新
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService refreshExecutor = createRefreshExecutor();
+
+    // 合并相同键的并发加载
+    private final SingleFlight<String, byte[]> inFlightLoads = new SingleFlight<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    // 缓存条目
+    private static class CacheEntry {
+        final byte[] value;
+        final long freshUntil;
+        final long staleUntil;
+
+        CacheEntry(byte[] value, long freshUntil, long staleUntil) {
+            this.value = value;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        ttlMillis.put(ENDPOINT_DAILY, TimeUnit.SECONDS.toMillis(dailyTtlSeconds));
+        ttlMillis.put(ENDPOINT_RANKING, TimeUnit.SECONDS.toMillis(rankingTtlSeconds));
+        ttlMillis.put(ENDPOINT_SEARCH, TimeUnit.SECONDS.toMillis(searchTtlSeconds));
+        ttlMillis.put(ENDPOINT_CALENDAR, TimeUnit.SECONDS.toMillis(calendarTtlSeconds));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 获取缓存的响应，未命中时调用loader加载
+     * @param endpoint 逻辑接口名称
+     * @param params 规范化后的请求参数
+     * @param loader 实际请求Bangumi的加载函数
+     * @return 原始响应内容（UTF-8）
+     */
+    public byte[] get(String endpoint, String params, Supplier<byte[]> loader) {
+        String key = endpoint + "?" + params;
+        long now = System.currentTimeMillis();
+
+        CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && now < entry.freshUntil) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        if (entry != null && now < entry.staleUntil) {
+            // 返回旧数据，并在后台刷新
+            staleHits.incrementAndGet();
+            refreshAsync(key, endpoint, loader);
+            return entry.value;
+        }
+
+        // 相同键的并发未命中只会向Bangumi发起一次请求
+        misses.incrementAndGet();
+        return load(key, endpoint, loader);
+    }
+
+    /**
+     * 异步获取缓存的响应，未命中时调用loader加载，不阻塞调用线程
+     * @param endpoint 逻辑接口名称
+     * @param params 规范化后的请求参数
+     * @param loader 返回异步结果的加载函数
+     * @return 原始响应内容（UTF-8）
+     */
+    public CompletableFuture<byte[]> getAsync(String endpoint, String params, Supplier<CompletableFuture<byte[]>> loader) {
+        String key = endpoint + "?" + params;
+        long now = System.currentTimeMillis();
+
+        CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && now < entry.freshUntil) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(entry.value);
+        }
+
+        if (entry != null && now < entry.staleUntil) {
+            // 返回旧数据，并在后台刷新
+            staleHits.incrementAndGet();
+            if (refreshing.add(key)) {
+                loadAsync(key, endpoint, loader).whenComplete((value, error) -> {
+                    refreshing.remove(key);
+                    if (error != null) {
+                        refreshFailures.incrementAndGet();
+                        logger.warn("后台刷新Bangumi缓存失败 - 键: {}, 错误: {}", key, error.getMessage());
+                    }
+                });
+            }
+            return CompletableFuture.completedFuture(entry.value);
+        }
+
+        misses.incrementAndGet();
+        return loadAsync(key, endpoint, loader);
+    }
+
+    /**
+     * 使指定接口的所有缓存失效
+     * @param endpoint 逻辑接口名称
+     */
+    public void invalidate(String endpoint) {
+        String prefix = endpoint + "?";
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long staleHitCount = staleHits.get();
+        long missCount = misses.get();
+        long total = hitCount + staleHitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("staleHits", staleHitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("refreshFailures", refreshFailures.get());
+        stats.put("upstreamLoads", inFlightLoads.getExecutions());
+        stats.put("coalescedLoads", inFlightLoads.getShared());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (hitCount + staleHitCount) / total);
+        return stats;
+    }
+
+    /**
+     * 将请求参数规范化为稳定的字符串（按参数名排序，关键词去除首尾空白并转为小写）
+     * @param params 请求参数
+     * @return 规范化后的参数字符串
+     */
+    public static String normalizeParams(Map<String, ?> params) {
+        StringJoiner joiner = new StringJoiner("&");
+        new TreeMap<>(params).forEach((name, value) -> {
+            String text = value == null ? "" : value.toString().trim().replaceAll("\\s+", " ").toLowerCase();
+            joiner.add(name + "=" + text);
+        });
+        return joiner.toString();
+    }
+
+    private void put(String key, String endpoint, byte[] value) {
+        if (value == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long ttl = ttlMillis.getOrDefault(endpoint, TimeUnit.SECONDS.toMillis(searchTtlSeconds));
+        CacheEntry entry = new CacheEntry(value, now + ttl, now + ttl + TimeUnit.SECONDS.toMillis(staleSeconds));
+
+        synchronized (entries) {
+            entries.put(key, entry);
+            // 超出容量时淘汰最久未访问的条目
+            Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private byte[] load(String key, String endpoint, Supplier<byte[]> loader) {
+        return inFlightLoads.execute(key, () -> {
+            byte[] value = loader.get();
+            put(key, endpoint, value);
+            return value;
+        });
+    }
+
+    private CompletableFuture<byte[]> loadAsync(String key, String endpoint, Supplier<CompletableFuture<byte[]>> loader) {
+        return inFlightLoads.executeAsync(key, () -> loader.get().thenApply(value -> {
+            put(key, endpoint, value);
+            return value;
+        }));
+    }
+
+    private void refreshAsync(String key, String endpoint, Supplier<byte[]> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, endpoint, loader);
+                } catch (Exception e) {
+                    refreshFailures.incrementAndGet();
+                    logger.warn("后台刷新Bangumi缓存失败 - 键: {}, 错误: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (Exception e) {
+            // 刷新队列已满，等待下次访问再刷新
+            refreshing.remove(key);
+        }
+    }
+
+    private static ExecutorService createRefreshExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(1, 4, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(64), runnable -> {
+            Thread thread = new Thread(runnable, "bangumi-cache-refresh-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,183 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import cn.luopan.animemasterbackend.utils.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bangumi数据同步服务
+ * 按各数据源（每日放送、排行榜、放送时间表）的配置定时拉取Bangumi数据并写入anime表，
+ * 使动漫接口只需读取本地数据库
+ */
+@Service
+public class BangumiSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BangumiSyncService.class);
+
+    // 每次同步拉取的条目数量
+    private static final int SYNC_LIMIT = 50;
+
+    // 响应与上次成功同步时相同，没有写库
+    private static final IAnimeService.UpsertResult UNCHANGED = new IAnimeService.UpsertResult(0, 0, 0);
+
+    @Autowired
+    private BangumiApiClient bangumiApiClient;
+
+    @Autowired
+    private IAnimeService animeService;
+
+    // 是否启用同步
+    @Value("${bangumi.sync.enabled:true}")
+    private boolean enabled;
+
+    // 启动完成后是否立即同步一次
+    @Value("${bangumi.sync.on-startup:true}")
+    private boolean syncOnStartup;
+
+    // 各数据源最近一次同步结果
+    private final Map<String, Map<String, Object>> lastResults = new ConcurrentHashMap<>();
+
+    // 各数据源最近一次成功写库的响应摘要；Bangumi返回304或缓存命中时响应相同，跳过解析和比对
+    private final Map<String, String> syncedDigests = new ConcurrentHashMap<>();
+
+    private final AtomicLong totalInserted = new AtomicLong();
+    private final AtomicLong totalUpdated = new AtomicLong();
+    private final AtomicLong totalSkipped = new AtomicLong();
+    private final AtomicLong syncFailures = new AtomicLong();
+    private final AtomicLong unchangedSkips = new AtomicLong();
+
+    // 合并同一数据源的并发同步
+    private final SingleFlight<String, IAnimeService.UpsertResult> syncFlight = new SingleFlight<>();
+
+    /**
+     * 应用启动完成后在后台执行一次全量同步，避免新库首次访问时没有数据
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void syncOnStartup() {
+        if (!enabled || !syncOnStartup) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            syncDaily();
+            syncRanking();
+            syncCalendar();
+        }, "bangumi-initial-sync");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 同步每日放送（按日期排序的最新条目）
+     */
+    @Scheduled(cron = "${bangumi.sync.daily.cron:0 */10 * * * *}")
+    public void syncDaily() {
+        runSync("daily", () -> bangumiApiClient.getSubjects("date", SYNC_LIMIT), BangumiSubjectParser::parseSubjects);
+    }
+
+    /**
+     * 同步排行榜（按排名排序的条目）
+     */
+    @Scheduled(cron = "${bangumi.sync.rank.cron:0 0 * * * *}")
+    public void syncRanking() {
+        runSync("rank", () -> bangumiApiClient.getSubjects("rank", SYNC_LIMIT), BangumiSubjectParser::parseSubjects);
+    }
+
+    /**
+     * 同步放送时间表，将每周各天的条目合并后写入
+     */
+    @Scheduled(cron = "${bangumi.sync.calendar.cron:0 30 */6 * * *}")
+    public void syncCalendar() {
+        runSync("calendar", bangumiApiClient::getCalendar, BangumiSubjectParser::parseCalendar);
+    }
+
+    private void runSync(String feed, Supplier<byte[]> fetcher, SubjectsParser parser) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            // 启动同步与定时同步可能重叠，同一数据源同时只执行一次拉取和写库
+            IAnimeService.UpsertResult result = syncFlight.execute(feed, () -> {
+                byte[] response = fetcher.get();
+                byte[] body = response == null ? new byte[0] : response;
+                String digest = DigestUtils.md5DigestAsHex(body);
+                if (digest.equals(syncedDigests.get(feed))) {
+                    return UNCHANGED;
+                }
+                try {
+                    IAnimeService.UpsertResult upsertResult = animeService.upsertSubjects(parser.parse(body));
+                    syncedDigests.put(feed, digest);
+                    return upsertResult;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            long elapsed = System.currentTimeMillis() - start;
+            if (result == UNCHANGED) {
+                unchangedSkips.incrementAndGet();
+                logger.info("Bangumi同步跳过 - 数据源: {}, 响应未变化, 耗时: {}ms", feed, elapsed);
+                return;
+            }
+            recordResult(feed, result, elapsed);
+            logger.info("Bangumi同步完成 - 数据源: {}, 新增: {}, 更新: {}, 跳过: {}, 耗时: {}ms",
+                    feed, result.inserted(), result.updated(), result.skipped(), elapsed);
+        } catch (Exception e) {
+            syncFailures.incrementAndGet();
+            logger.error("Bangumi同步失败 - 数据源: {}, 错误: {}", feed, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 获取同步统计信息：各数据源最近一次同步的新增、更新、跳过行数以及累计值
+     * @return 统计信息
+     */
+    public Map<String, Object> getSyncStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lastSync", new TreeMap<>(lastResults));
+        stats.put("totalInserted", totalInserted.get());
+        stats.put("totalUpdated", totalUpdated.get());
+        stats.put("totalSkipped", totalSkipped.get());
+        stats.put("failures", syncFailures.get());
+        stats.put("unchangedSkips", unchangedSkips.get());
+        return stats;
+    }
+
+    private void recordResult(String feed, IAnimeService.UpsertResult result, long elapsed) {
+        totalInserted.addAndGet(result.inserted());
+        totalUpdated.addAndGet(result.updated());
+        totalSkipped.addAndGet(result.skipped());
+
+        Map<String, Object> last = new LinkedHashMap<>();
+        last.put("inserted", result.inserted());
+        last.put("updated", result.updated());
+        last.put("skipped", result.skipped());
+        last.put("elapsedMs", elapsed);
+        last.put("finishedAt", LocalDateTime.now().toString());
+        lastResults.put(feed, last);
+    }
+
+    @FunctionalInterface
+    private interface SubjectsParser {
+        List<Anime> parse(byte[] body) throws IOException;
+    }
+}
@@ -0,0 +1,16 @@
+package cn.luopan.animemasterbackend.service;
+
+/**
+ * Bangumi暂时不可用：熔断器打开、并发已满、请求超时或上游返回5xx
+ * 调用方应降级为使用本地数据
+ */
+public class BangumiUnavailableException extends RuntimeException {
+
+    public BangumiUnavailableException(String message) {
+        super(message);
+    }
+
+    public BangumiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
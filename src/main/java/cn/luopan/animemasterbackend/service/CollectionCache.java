@@ -0,0 +1,267 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 用户收藏缓存
+ * 按用户保存按状态分类后的收藏列表（想看、在看、已看、弃置），每个分类按id升序；
+ * 收藏的增删改在写库成功后直接修改缓存中的快照，而不是让整个用户失效，收藏未变化时重复获取不访问数据库
+ * 快照不可变，修改时复制出新快照后替换（写时复制），读取方拿到的列表不会被并发修改；
+ * 按用户LRU淘汰，最多保存maxUsers个用户
+ */
+@Component
+public class CollectionCache {
+
+    private static final String[] STATUSES = {"wantToWatch", "watching", "watched", "dropped"};
+
+    private static final Comparator<UserAnimeStatus> BY_ID =
+            Comparator.comparing(UserAnimeStatus::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    // 版本分段数，同一分段内任意用户的写入都会让正在进行的加载放弃写入缓存
+    private static final int VERSION_STRIPES = 64;
+
+    // 最多缓存的用户数
+    @Value("${anime.collection-cache.max-users:10000}")
+    private int maxUsers = 10000;
+
+    private final Map<Long, Snapshot> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+            return size() > maxUsers;
+        }
+    };
+
+    // 每次写入递增，加载前后版本不同说明加载期间有写入，查到的结果可能已过期
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    /**
+     * 一个用户的缓存快照
+     * @param buckets 按状态分类的收藏
+     * @param byAnimeId 动漫ID -> 收藏行，判断是否已收藏时不需要遍历分类
+     */
+    private record Snapshot(Map<String, List<UserAnimeStatus>> buckets, Map<Long, UserAnimeStatus> byAnimeId) {
+    }
+
+    /**
+     * 获取用户按状态分类的收藏，未命中时调用loader从数据库加载
+     * @param userId 用户ID
+     * @param loader 查询用户全部收藏
+     * @return 按状态分类的收藏列表，列表不可修改
+     */
+    public Map<String, List<UserAnimeStatus>> get(Long userId, Supplier<List<UserAnimeStatus>> loader) {
+        Snapshot cached;
+        synchronized (entries) {
+            cached = entries.get(userId);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.buckets();
+        }
+
+        misses.incrementAndGet();
+        long version = versions.get(stripe(userId));
+        Snapshot snapshot = bucket(loader.get());
+        synchronized (entries) {
+            if (versions.get(stripe(userId)) == version) {
+                entries.put(userId, snapshot);
+            }
+        }
+        return snapshot.buckets();
+    }
+
+    /**
+     * 按动漫ID判断用户是否已收藏，不加载、不遍历收藏列表
+     * @param userId 用户ID
+     * @param animeId 动漫ID
+     * @return 是否已收藏；该用户不在缓存中时返回null，由调用方查询数据库
+     */
+    public Boolean contains(Long userId, Long animeId) {
+        Snapshot cached;
+        synchronized (entries) {
+            cached = entries.get(userId);
+        }
+        return cached == null ? null : cached.byAnimeId().containsKey(animeId);
+    }
+
+    /**
+     * 收藏已写入数据库：新增，或状态、进度等字段已更新
+     * 缓存中有该用户时用新行替换同一动漫的旧行（状态变化时移到新分类）
+     * @param row 写入后的完整收藏行
+     */
+    public void put(UserAnimeStatus row) {
+        UserAnimeStatus copy = new UserAnimeStatus();
+        BeanUtils.copyProperties(row, copy);
+        modify(row.getUserId(), buckets -> {
+            insertRow(buckets, copy);
+            return true;
+        });
+    }
+
+    /**
+     * 收藏的部分字段已在数据库中更新（单条UPDATE/upsert，没有读回整行）
+     * 缓存中有该动漫时复制该行并应用修改，状态变化时移到新分类；缓存了该用户但没有这条收藏（例如upsert插入了新行）时，
+     * 无法得知新行的id等字段，该用户的缓存失效
+     * @param userId 用户ID
+     * @param animeId 动漫ID
+     * @param patch 对缓存行副本做与数据库相同的修改
+     */
+    public void patch(Long userId, Long animeId, Consumer<UserAnimeStatus> patch) {
+        modify(userId, buckets -> {
+            UserAnimeStatus current = buckets.values().stream()
+                    .flatMap(List::stream)
+                    .filter(row -> Objects.equals(row.getAnimeId(), animeId))
+                    .findFirst()
+                    .orElse(null);
+            if (current == null) {
+                return false;
+            }
+            UserAnimeStatus copy = new UserAnimeStatus();
+            BeanUtils.copyProperties(current, copy);
+            patch.accept(copy);
+            insertRow(buckets, copy);
+            return true;
+        });
+    }
+
+    /**
+     * 收藏已从数据库删除
+     * @param userId 用户ID
+     * @param animeId 动漫ID
+     */
+    public void remove(Long userId, Long animeId) {
+        modify(userId, buckets -> {
+            removeAnime(buckets, animeId);
+            return true;
+        });
+    }
+
+    /**
+     * 使用户的缓存失效，用于无法确定变更后内容的批量写入
+     * @param userId 用户ID
+     */
+    public void invalidate(Long userId) {
+        synchronized (entries) {
+            versions.incrementAndGet(stripe(userId));
+            entries.remove(userId);
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("users", entries.size());
+        }
+        stats.put("maxUsers", maxUsers);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("updates", updates.get());
+        return stats;
+    }
+
+    private interface Modification {
+        /**
+         * @return false表示无法在快照上完成修改，用户的缓存失效
+         */
+        boolean apply(Map<String, List<UserAnimeStatus>> buckets);
+    }
+
+    /**
+     * 复制用户当前快照，修改后替换；用户不在缓存中时只递增版本
+     */
+    private void modify(Long userId, Modification modification) {
+        synchronized (entries) {
+            versions.incrementAndGet(stripe(userId));
+            Snapshot current = entries.get(userId);
+            if (current == null) {
+                return;
+            }
+            Map<String, List<UserAnimeStatus>> buckets = new LinkedHashMap<>();
+            current.buckets().forEach((status, rows) -> buckets.put(status, new ArrayList<>(rows)));
+            if (!modification.apply(buckets)) {
+                entries.remove(userId);
+                return;
+            }
+            entries.put(userId, freeze(buckets));
+            updates.incrementAndGet();
+        }
+    }
+
+    /**
+     * 用新行替换同一动漫的旧行，按id插入到所属分类中
+     */
+    private static void insertRow(Map<String, List<UserAnimeStatus>> buckets, UserAnimeStatus row) {
+        removeAnime(buckets, row.getAnimeId());
+        List<UserAnimeStatus> bucket = buckets.get(row.getStatus());
+        if (bucket != null) {
+            int index = Collections.binarySearch(bucket, row, BY_ID);
+            bucket.add(index < 0 ? -index - 1 : index, row);
+        }
+    }
+
+    private static void removeAnime(Map<String, List<UserAnimeStatus>> buckets, Long animeId) {
+        for (List<UserAnimeStatus> rows : buckets.values()) {
+            rows.removeIf(row -> Objects.equals(row.getAnimeId(), animeId));
+        }
+    }
+
+    /**
+     * 按状态分类，不属于四种状态的行不返回
+     */
+    private static Snapshot bucket(List<UserAnimeStatus> rows) {
+        Map<String, List<UserAnimeStatus>> buckets = new LinkedHashMap<>();
+        for (String status : STATUSES) {
+            buckets.put(status, new ArrayList<>());
+        }
+        for (UserAnimeStatus row : rows) {
+            List<UserAnimeStatus> bucket = buckets.get(row.getStatus());
+            if (bucket != null) {
+                bucket.add(row);
+            }
+        }
+        buckets.values().forEach(bucket -> bucket.sort(BY_ID));
+        return freeze(buckets);
+    }
+
+    private static Snapshot freeze(Map<String, List<UserAnimeStatus>> buckets) {
+        Map<String, List<UserAnimeStatus>> frozen = new LinkedHashMap<>();
+        Map<Long, UserAnimeStatus> byAnimeId = new HashMap<>();
+        buckets.forEach((status, rows) -> {
+            frozen.put(status, Collections.unmodifiableList(rows));
+            rows.forEach(row -> byAnimeId.put(row.getAnimeId(), row));
+        });
+        return new Snapshot(Collections.unmodifiableMap(frozen), byAnimeId);
+    }
+
+    private static int stripe(Long userId) {
+        return Math.floorMod(Objects.hashCode(userId), VERSION_STRIPES);
+    }
+}
@@ -0,0 +1,214 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 每日放送随机抽样器
+ * 在内存中以有序long数组保存全部TV动画的ID，抽样时用Floyd算法在O(k)时间内选出k个ID，
+ * 不再需要每次请求都把整张表读入内存打乱
+ */
+@Component
+public class DailyAnimeSampler {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyAnimeSampler.class);
+
+    // 参与抽样的条目类型（TV动画）
+    private static final int ELIGIBLE_TYPE = 2;
+
+    @Autowired
+    private AnimeMapper animeMapper;
+
+    // 是否使用按日期固定的随机种子，开启后同一天内的抽样结果相同并被缓存
+    @Value("${anime.daily.seed-per-day:false}")
+    private boolean seedPerDay;
+
+    // 加载ID时每批读取的行数
+    @Value("${anime.daily.load-batch-size:5000}")
+    private int loadBatchSize;
+
+    // 有序的ID数组，写入时复制，读取无需加锁
+    private volatile long[] ids = null;
+
+    // 当天的抽样结果缓存（仅seed-per-day开启且ID数量足够时使用）
+    private volatile DailySelection dailySelection = null;
+
+    private record DailySelection(long epochDay, int k, List<Long> ids) {
+    }
+
+    /**
+     * 随机抽取k个动漫ID，数量不足k时返回全部
+     * @param k 抽样数量
+     * @return 随机顺序的动漫ID
+     */
+    public List<Long> sample(int k) {
+        long[] snapshot = ensureLoaded();
+        if (!seedPerDay) {
+            return sample(snapshot, k, ThreadLocalRandom.current());
+        }
+
+        long today = LocalDate.now().toEpochDay();
+        DailySelection selection = dailySelection;
+        if (selection != null && selection.epochDay() == today && selection.k() == k) {
+            return selection.ids();
+        }
+        List<Long> sampled = List.copyOf(sample(snapshot, k, new Random(today)));
+        // ID不足k个时（例如首次同步完成前）不缓存，否则当天剩余时间都只返回这几个甚至空的结果
+        if (snapshot.length >= k) {
+            dailySelection = new DailySelection(today, k, sampled);
+        }
+        return sampled;
+    }
+
+    /**
+     * 根据条目类型将动漫加入或移出抽样范围，由写库路径在新增或更新后调用
+     * @param animes 已写入数据库的动漫（需包含id和type）
+     */
+    public synchronized void update(Collection<Anime> animes) {
+        long[] current = ids;
+        if (current == null) {
+            // 尚未加载，首次抽样时会从数据库读取完整数据
+            return;
+        }
+        Set<Long> toAdd = new HashSet<>();
+        Set<Long> toRemove = new HashSet<>();
+        for (Anime anime : animes) {
+            if (anime.getId() == null || anime.getType() == null) {
+                continue;
+            }
+            if (anime.getType() == ELIGIBLE_TYPE) {
+                if (Arrays.binarySearch(current, anime.getId()) < 0) {
+                    toAdd.add(anime.getId());
+                }
+            } else if (Arrays.binarySearch(current, anime.getId()) >= 0) {
+                toRemove.add(anime.getId());
+            }
+        }
+        if (toAdd.isEmpty() && toRemove.isEmpty()) {
+            return;
+        }
+
+        long[] updated = new long[current.length + toAdd.size() - toRemove.size()];
+        int size = 0;
+        for (long id : current) {
+            if (!toRemove.contains(id)) {
+                updated[size++] = id;
+            }
+        }
+        for (long id : toAdd) {
+            updated[size++] = id;
+        }
+        Arrays.sort(updated);
+        ids = updated;
+    }
+
+    /**
+     * 定时从数据库全量刷新ID数组，修正被删除的行等增量更新无法覆盖的变化
+     */
+    @Scheduled(cron = "${anime.daily.refresh.cron:0 15 * * * *}")
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        long[] loaded = loadIds();
+        synchronized (this) {
+            ids = loaded;
+        }
+        logger.info("每日放送抽样ID已刷新 - 数量: {}, 耗时: {}ms", loaded.length, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 获取当前可抽样的ID数量
+     * @return ID数量
+     */
+    public int size() {
+        long[] snapshot = ids;
+        return snapshot == null ? 0 : snapshot.length;
+    }
+
+    /**
+     * Floyd算法：从n个元素中无放回地等概率选出k个下标，只需O(k)次随机数
+     */
+    public static List<Long> sample(long[] source, int k, Random random) {
+        int n = source.length;
+        int count = Math.min(k, n);
+        Set<Integer> chosen = new HashSet<>(count * 2);
+        for (int j = n - count; j < n; j++) {
+            int t = random.nextInt(j + 1);
+            chosen.add(chosen.contains(t) ? j : t);
+        }
+
+        List<Long> result = new ArrayList<>(count);
+        for (int index : chosen) {
+            result.add(source[index]);
+        }
+        // HashSet的迭代顺序与下标大小相关，再打乱一次使返回顺序也是随机的
+        for (int i = result.size() - 1; i > 0; i--) {
+            int swap = random.nextInt(i + 1);
+            Long tmp = result.get(i);
+            result.set(i, result.get(swap));
+            result.set(swap, tmp);
+        }
+        return result;
+    }
+
+    private long[] ensureLoaded() {
+        long[] snapshot = ids;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (ids == null) {
+                ids = loadIds();
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * 按ID分批只读取id列，结果天然有序
+     */
+    private long[] loadIds() {
+        long[] loaded = new long[1024];
+        int size = 0;
+        long lastId = 0;
+        while (true) {
+            QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id")
+                    .eq("type", ELIGIBLE_TYPE)
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("LIMIT " + loadBatchSize);
+            List<Object> batch = animeMapper.selectObjs(queryWrapper);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (Object value : batch) {
+                if (size == loaded.length) {
+                    loaded = Arrays.copyOf(loaded, size * 2);
+                }
+                loaded[size++] = ((Number) value).longValue();
+            }
+            lastId = loaded[size - 1];
+            if (batch.size() < loadBatchSize) {
+                break;
+            }
+        }
+        return Arrays.copyOf(loaded, size);
+    }
+}
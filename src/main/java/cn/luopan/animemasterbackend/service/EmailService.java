@@ -6,8 +6,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 邮件发送服务
  */
@@ -67,4 +70,16 @@ public class EmailService {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 异步发送验证码邮件，在mailExecutor上执行，不阻塞调用线程
+     * @param toEmail 收件人邮箱
+     * @param code 验证码
+     * @param type 验证码类型
+     * @return 发送结果
+     */
+    @Async("mailExecutor")
+    public CompletableFuture<Boolean> sendVerificationCodeAsync(String toEmail, String code, VerificationCodeService.CodeType type) {
+        return CompletableFuture.completedFuture(sendVerificationCode(toEmail, code, type));
+    }
+}
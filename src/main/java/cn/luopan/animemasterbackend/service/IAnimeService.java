@@ -1,10 +1,12 @@
 package cn.luopan.animemasterbackend.service;
 
+import cn.luopan.animemasterbackend.dto.AnimeDto;
+import cn.luopan.animemasterbackend.dto.CursorPage;
 import cn.luopan.animemasterbackend.entity.Anime;
 import com.baomidou.mybatisplus.extension.service.IService;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
-import java.util.Map;
 
 public interface IAnimeService extends IService<Anime> {
     /**
@@ -18,13 +20,44 @@ public interface IAnimeService extends IService<Anime> {
      * 获取每日放送动漫列表
      * @return 每日放送动漫数据列表
      */
-    List<Map<String, Object>> getDailyAnime();
+    List<AnimeDto> getDailyAnime();
+
+    /**
+     * 获取每日放送动漫列表的响应JSON片段
+     * @return 每部动漫预先编码的UTF-8 JSON对象
+     */
+    List<byte[]> getDailyAnimeFragments();
 
     /**
      * 获取动漫排行榜
      * @return 动漫排行榜数据列表
      */
-    List<Map<String, Object>> getAnimeRanking();
+    List<AnimeDto> getAnimeRanking();
+
+    /**
+     * 分页获取动漫排行榜（按Bangumi排名升序）
+     * @param page 页码，从1开始
+     * @param size 每页数量
+     * @return 动漫排行榜数据列表
+     */
+    List<AnimeDto> getAnimeRanking(int page, int size);
+
+    /**
+     * 按页码获取动漫排行榜的响应JSON片段（OFFSET分页，越往后越慢，保留用于兼容）
+     * @param page 页码，从1开始
+     * @param size 每页数量
+     * @return 每部动漫预先编码的UTF-8 JSON对象和下一页游标
+     */
+    CursorPage<byte[]> getAnimeRankingFragments(int page, int size);
+
+    /**
+     * 按游标获取动漫排行榜的响应JSON片段（keyset分页，任意页耗时相同）
+     * @param cursor 上一页返回的游标，首页为null
+     * @param size 每页数量
+     * @return 每部动漫预先编码的UTF-8 JSON对象和下一页游标
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    CursorPage<byte[]> getAnimeRankingFragments(String cursor, int size);
 
     /**
      * 搜索动漫
@@ -33,5 +66,62 @@ public interface IAnimeService extends IService<Anime> {
      * @param offset 偏移量
      * @return 搜索结果列表
      */
-    List<Map<String, Object>> searchAnime(String keyword, Integer limit, Integer offset);
+    List<AnimeDto> searchAnime(String keyword, Integer limit, Integer offset);
+
+    /**
+     * 搜索动漫，返回响应JSON片段
+     * @param keyword 搜索关键词
+     * @param limit 返回数据数量
+     * @param offset 偏移量
+     * @return 每部动漫预先编码的UTF-8 JSON对象
+     */
+    List<byte[]> searchAnimeFragments(String keyword, Integer limit, Integer offset);
+
+    /**
+     * 按标签浏览动漫，按评分降序，使用游标分页
+     * @param tag 标签名
+     * @param cursor 上一页返回的游标，首页为null
+     * @param size 每页数量
+     * @return 当前页动漫和下一页游标
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    CursorPage<AnimeDto> getAnimeByTag(String tag, String cursor, int size);
+
+    /**
+     * 获取每日放送动漫列表（非阻塞版本，数据库操作在有界调度器上执行）
+     * @return 每日放送动漫数据列表
+     */
+    Mono<List<AnimeDto>> getDailyAnimeReactive();
+
+    /**
+     * 获取动漫排行榜（非阻塞版本，数据库操作在有界调度器上执行）
+     * @return 动漫排行榜数据列表
+     */
+    Mono<List<AnimeDto>> getAnimeRankingReactive();
+
+    /**
+     * 搜索动漫（非阻塞版本，等待Bangumi响应时不占用线程）
+     * @param keyword 搜索关键词
+     * @param limit 返回数据数量
+     * @param offset 偏移量
+     * @return 搜索结果列表
+     */
+    Mono<List<AnimeDto>> searchAnimeReactive(String keyword, Integer limit, Integer offset);
+
+    /**
+     * 将Bangumi条目写入本地数据库（不存在则新增，存在则更新）
+     * 通过内容哈希判断是否变化，未变化的行不写库，新增和变化的行通过多行upsert批量写入
+     * @param subjects 由BangumiSubjectParser解析出的条目，缺失的字段为null
+     * @return 新增、更新、跳过的行数
+     */
+    UpsertResult upsertSubjects(List<Anime> subjects);
+
+    /**
+     * 条目写入结果
+     * @param inserted 新增行数
+     * @param updated 更新行数
+     * @param skipped 内容未变化而跳过的行数
+     */
+    record UpsertResult(int inserted, int updated, int skipped) {
+    }
 }
\ No newline at end of file
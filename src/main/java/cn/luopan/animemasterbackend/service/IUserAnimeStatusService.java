@@ -1,7 +1,15 @@
 package cn.luopan.animemasterbackend.service;
 
+import cn.luopan.animemasterbackend.dto.CollectionBatchRequest;
+import cn.luopan.animemasterbackend.dto.CollectionBatchResult;
+import cn.luopan.animemasterbackend.dto.CollectionImportResult;
+import cn.luopan.animemasterbackend.dto.CursorPage;
 import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
 import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +23,18 @@ public interface IUserAnimeStatusService extends IService<UserAnimeStatus> {
      */
     List<UserAnimeStatus> getUserAnimeListByStatus(Long userId, String status);
 
+    /**
+     * 按游标分页获取用户特定状态的动漫列表，按收藏时间从新到旧（id降序）
+     *
+     * @param userId 用户ID
+     * @param status 状态
+     * @param cursor 上一页返回的游标，首页为null
+     * @param size 每页数量
+     * @return 当前页和下一页游标
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    CursorPage<UserAnimeStatus> getUserAnimeListByStatus(Long userId, String status, String cursor, int size);
+
     /**
      * 更新用户动漫状态
      *
@@ -87,4 +107,42 @@ public interface IUserAnimeStatusService extends IService<UserAnimeStatus> {
      * @return 是否已经收藏
      */
     boolean isAnimeInCollection(Long userId, Long animeId);
-}
\ No newline at end of file
+
+    /**
+     * 批量执行收藏操作
+     * 操作按顺序在内存中执行得到各自的结果，实际写入在同一事务中按删除、插入、更新合并为批量语句
+     *
+     * @param userId 用户ID
+     * @param operations 按顺序执行的操作
+     * @return 每个操作的结果，与请求顺序一致
+     * @throws IllegalArgumentException 操作数量超过上限
+     */
+    List<CollectionBatchResult> applyBatch(Long userId, List<CollectionBatchRequest.Operation> operations);
+
+    /**
+     * 导出用户的全部收藏
+     * 在只读事务中用游标逐行读取并写出，内存占用与收藏数量无关
+     *
+     * @param userId 用户ID
+     * @param format ndjson（每行一个JSON对象）或csv（带表头）
+     * @param out 输出流，由调用方关闭
+     * @return 导出的行数
+     * @throws IOException 写出失败
+     * @throws IllegalArgumentException 不支持的格式
+     */
+    long exportCollection(Long userId, String format, OutputStream out) throws IOException;
+
+    /**
+     * 导入收藏，格式与导出相同
+     * 边读取边解析，每满一批用一条多行upsert写入：不存在的收藏插入，已存在的覆盖；
+     * 每批单独提交，中途失败时已写入的批次保留，修正后重新导入即可
+     *
+     * @param userId 用户ID
+     * @param format ndjson或csv
+     * @param in 输入流，由调用方关闭
+     * @return 读取、写入、跳过的行数和前若干个错误
+     * @throws IOException 读取失败
+     * @throws IllegalArgumentException 不支持的格式或CSV表头缺少animeId列
+     */
+    CollectionImportResult importCollection(Long userId, String format, InputStream in) throws IOException;
+}
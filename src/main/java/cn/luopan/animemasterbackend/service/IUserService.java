@@ -1,9 +1,9 @@
 package cn.luopan.animemasterbackend.service;
 
+import cn.luopan.animemasterbackend.dto.LoginResult;
 import cn.luopan.animemasterbackend.entity.User;
 import com.baomidou.mybatisplus.extension.service.IService;
 
-import java.util.Map;
 
 public interface IUserService extends IService<User> {
     /**
@@ -33,9 +33,9 @@ public interface IUserService extends IService<User> {
      * 用户登录
      * @param usernameOrEmail 用户名或邮箱
      * @param password 密码
-     * @return 包含用户信息和Token的Map
+     * @return 包含用户信息和Token的登录结果
      */
-    Map<String, Object> loginUser(String usernameOrEmail, String password);
+    LoginResult loginUser(String usernameOrEmail, String password);
     
     /**
      * 根据用户名或邮箱查找用户
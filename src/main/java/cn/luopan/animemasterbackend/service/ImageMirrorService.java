@@ -0,0 +1,640 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Bangumi封面图片本地镜像
+ * 动漫写入数据库后在后台下载large、medium、small封面，按内容的SHA-256保存到磁盘（相同图片只存一份），
+ * 由ImageController零拷贝输出；磁盘占用超过上限时按最近最少访问淘汰
+ * 目录结构：{dir}/{哈希前两位}/{哈希}.{扩展名}，index.log记录 原始URL -> 哈希 的对应关系
+ */
+@Service
+public class ImageMirrorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageMirrorService.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // 需要镜像的封面尺寸
+    private static final Set<String> MIRRORED_SIZES = Set.of("large", "medium", "small");
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final String INDEX_FILE = "index.log";
+
+    // index.log少于该行数时不压缩
+    private static final int MIN_COMPACT_LINES = 128;
+
+    // 文件修改时间用于重启后恢复访问顺序，同一文件至多每小时更新一次
+    private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // 扩展名 -> Content-Type
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp");
+
+    @Autowired
+    private WebClient imageWebClient;
+
+    // 是否启用图片镜像
+    @Value("${anime.images.mirror.enabled:true}")
+    private boolean enabled;
+
+    // 图片保存目录
+    @Value("${anime.images.mirror.dir:data/images}")
+    private String directory;
+
+    // 磁盘占用上限（字节）
+    @Value("${anime.images.mirror.max-bytes:2147483648}")
+    private long maxBytes;
+
+    // 允许下载的图片域名，逗号分隔
+    @Value("${anime.images.mirror.allowed-hosts:lain.bgm.tv}")
+    private String allowedHosts;
+
+    // 下载线程数
+    @Value("${anime.images.mirror.download-threads:4}")
+    private int downloadThreads;
+
+    // 等待下载的最大URL数，超出的URL本次不下载，下次写入或访问时重试
+    @Value("${anime.images.mirror.queue-size:2000}")
+    private int queueSize;
+
+    // 单张图片下载超时（秒）
+    @Value("${anime.images.mirror.timeout-seconds:20}")
+    private long timeoutSeconds;
+
+    private Path root;
+
+    private Set<String> allowedHostSet;
+
+    private ThreadPoolExecutor downloadExecutor;
+
+    // 哈希 -> 图片，按访问顺序排列，最先遍历到的为最久未访问；与urlsByHash、totalBytes一起由this保护
+    private final LinkedHashMap<String, StoredImage> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    // 哈希 -> 对应的原始URL，淘汰图片时一并删除URL映射
+    private final Map<String, Set<String>> urlsByHash = new HashMap<>();
+
+    private long totalBytes;
+
+    // 原始URL -> 哈希
+    private final Map<String, String> hashesByUrl = new ConcurrentHashMap<>();
+
+    // 已提交下载、尚未完成的URL
+    private final Set<String> pendingUrls = ConcurrentHashMap.newKeySet();
+
+    private final Object indexLock = new Object();
+
+    // index.log当前的行数（含已失效的行），由indexLock保护；有效行数即hashesByUrl的大小
+    private int indexLines;
+
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong downloadFailures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong indexCompactions = new AtomicLong();
+
+    /**
+     * 已保存的图片
+     */
+    public static final class StoredImage {
+
+        private final String hash;
+        private final Path path;
+        private final long size;
+        private final String contentType;
+        private volatile long lastTouchedMillis;
+
+        StoredImage(String hash, Path path, long size, String contentType, long lastTouchedMillis) {
+            this.hash = hash;
+            this.path = path;
+            this.size = size;
+            this.contentType = contentType;
+            this.lastTouchedMillis = lastTouchedMillis;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    /**
+     * 扫描镜像目录恢复已保存的图片，并压缩index.log中已失效的URL映射；运行期间由compactIndexIfNeeded定时压缩
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        root = Paths.get(directory).toAbsolutePath();
+        Files.createDirectories(root);
+        allowedHostSet = new HashSet<>();
+        for (String host : allowedHosts.split(",")) {
+            if (!host.isBlank()) {
+                allowedHostSet.add(host.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        loadStoredImages();
+        loadIndex();
+        synchronized (this) {
+            evictIfNeeded();
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        downloadExecutor = new ThreadPoolExecutor(downloadThreads, downloadThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "image-mirror-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        downloadExecutor.allowCoreThreadTimeOut(true);
+        logger.info("图片镜像已加载 - 图片数: {}, 占用: {}MB, 上限: {}MB",
+                images.size(), totalBytes / (1024 * 1024), maxBytes / (1024 * 1024));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交动漫封面的后台下载，已镜像或正在下载的URL会跳过
+     * @param animes 动漫（需包含images）
+     */
+    public void mirrorAsync(Collection<Anime> animes) {
+        if (!enabled) {
+            return;
+        }
+        for (Anime anime : animes) {
+            for (String url : extractImageUrls(anime.getImages())) {
+                mirrorAsync(url);
+            }
+        }
+    }
+
+    /**
+     * 提交单个图片URL的后台下载
+     * @param url 图片URL
+     */
+    public void mirrorAsync(String url) {
+        if (!enabled || hashesByUrl.containsKey(url) || !isAllowedUrl(url) || !pendingUrls.add(url)) {
+            return;
+        }
+        try {
+            downloadExecutor.execute(() -> {
+                try {
+                    download(url);
+                } finally {
+                    pendingUrls.remove(url);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingUrls.remove(url);
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * 按哈希查找已保存的图片，并记为最近访问
+     * @param hash 图片内容的SHA-256（小写十六进制）
+     * @return 图片；不存在或文件已丢失时返回null
+     */
+    public StoredImage lookup(String hash) {
+        if (!enabled || hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            return null;
+        }
+        StoredImage image;
+        synchronized (this) {
+            image = images.get(hash);
+        }
+        if (image == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!Files.exists(image.path)) {
+            synchronized (this) {
+                remove(image);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        touch(image);
+        return image;
+    }
+
+    /**
+     * 按原始URL查找已保存的图片
+     * @param url 图片URL
+     * @return 图片；尚未镜像时返回null
+     */
+    public StoredImage lookupByUrl(String url) {
+        String hash = hashesByUrl.get(url);
+        return hash == null ? null : lookup(hash);
+    }
+
+    /**
+     * URL是否为允许镜像的图片地址（http/https且域名在白名单中）
+     * @param url 图片URL
+     * @return 是否允许
+     */
+    public boolean isAllowedUrl(String url) {
+        if (!enabled || url == null) {
+            return false;
+        }
+        try {
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme();
+            return ("https".equalsIgnoreCase(scheme) || "http".equalsIgnoreCase(scheme))
+                    && uri.getHost() != null
+                    && allowedHostSet.contains(uri.getHost().toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取镜像统计信息
+     * @return 图片数、占用字节数、下载和命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            stats.put("images", images.size());
+            stats.put("totalBytes", totalBytes);
+        }
+        stats.put("enabled", enabled);
+        stats.put("maxBytes", maxBytes);
+        stats.put("urls", hashesByUrl.size());
+        stats.put("pending", pendingUrls.size());
+        stats.put("downloads", downloads.get());
+        stats.put("downloadFailures", downloadFailures.get());
+        stats.put("rejected", rejected.get());
+        stats.put("evictions", evictions.get());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        synchronized (indexLock) {
+            stats.put("indexLines", indexLines);
+        }
+        stats.put("indexCompactions", indexCompactions.get());
+        return stats;
+    }
+
+    private void download(String url) {
+        try {
+            byte[] body = imageWebClient.get()
+                    .uri(URI.create(url))
+                    .retrieve()
+                    .bodyToMono(byte[].class)
+                    .block(Duration.ofSeconds(timeoutSeconds));
+            String extension = body == null ? null : detectExtension(body);
+            if (extension == null) {
+                downloadFailures.incrementAndGet();
+                logger.warn("图片下载结果不是支持的图片格式 - URL: {}", url);
+                return;
+            }
+            String hash = sha256(body);
+            store(hash, extension, body);
+            downloads.incrementAndGet();
+
+            synchronized (this) {
+                if (!images.containsKey(hash)) {
+                    // 刚保存就被淘汰（上限过小），不记录映射
+                    return;
+                }
+                urlsByHash.computeIfAbsent(hash, key -> new HashSet<>()).add(url);
+                hashesByUrl.put(url, hash);
+            }
+            appendIndex(url, hash);
+        } catch (Exception e) {
+            downloadFailures.incrementAndGet();
+            logger.warn("图片下载失败 - URL: {}, 错误: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * 先写临时文件再原子重命名，读取方不会看到写了一半的文件
+     */
+    private void store(String hash, String extension, byte[] body) throws IOException {
+        synchronized (this) {
+            if (images.containsKey(hash)) {
+                return;
+            }
+        }
+        Path target = blobPath(hash, extension);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+        try {
+            Files.write(temp, body);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        synchronized (this) {
+            if (!images.containsKey(hash)) {
+                images.put(hash, new StoredImage(hash, target, body.length, CONTENT_TYPES.get(extension),
+                        System.currentTimeMillis()));
+                totalBytes += body.length;
+                evictIfNeeded();
+            }
+        }
+    }
+
+    /**
+     * 淘汰最久未访问的图片直到占用不超过上限，调用方需持有this的锁
+     */
+    private void evictIfNeeded() {
+        Iterator<StoredImage> iterator = images.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            StoredImage eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.size;
+            removeUrls(eldest.hash);
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(eldest.path);
+            } catch (IOException e) {
+                logger.warn("删除镜像图片失败 - 文件: {}, 错误: {}", eldest.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 移除文件已丢失的图片，调用方需持有this的锁
+     */
+    private void remove(StoredImage image) {
+        if (images.remove(image.hash, image)) {
+            totalBytes -= image.size;
+            removeUrls(image.hash);
+        }
+    }
+
+    private void removeUrls(String hash) {
+        Set<String> urls = urlsByHash.remove(hash);
+        if (urls != null) {
+            urls.forEach(hashesByUrl::remove);
+        }
+    }
+
+    private void touch(StoredImage image) {
+        long now = System.currentTimeMillis();
+        if (now - image.lastTouchedMillis < TOUCH_INTERVAL_MILLIS) {
+            return;
+        }
+        image.lastTouchedMillis = now;
+        try {
+            Files.setLastModifiedTime(image.path, FileTime.fromMillis(now));
+        } catch (IOException e) {
+            logger.debug("更新图片访问时间失败 - 文件: {}", image.path);
+        }
+    }
+
+    /**
+     * 扫描镜像目录，按文件修改时间从旧到新加入，恢复重启前的访问顺序
+     */
+    private void loadStoredImages() throws IOException {
+        List<StoredImage> found = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String fileName = path.getFileName().toString();
+                int dot = fileName.lastIndexOf('.');
+                if (dot < 0 || !Files.isRegularFile(path)) {
+                    continue;
+                }
+                String hash = fileName.substring(0, dot);
+                String extension = fileName.substring(dot + 1);
+                if (!HASH_PATTERN.matcher(hash).matches() || !CONTENT_TYPES.containsKey(extension)) {
+                    // 临时文件等，可能是上次下载中途退出留下的
+                    if (extension.equals("tmp")) {
+                        Files.deleteIfExists(path);
+                    }
+                    continue;
+                }
+                found.add(new StoredImage(hash, path, Files.size(path), CONTENT_TYPES.get(extension),
+                        Files.getLastModifiedTime(path).toMillis()));
+            }
+        }
+        found.sort(Comparator.comparingLong(image -> image.lastTouchedMillis));
+        synchronized (this) {
+            for (StoredImage image : found) {
+                images.put(image.hash, image);
+                totalBytes += image.size;
+            }
+        }
+    }
+
+    /**
+     * 读取index.log恢复URL映射，丢弃图片已不存在的行后重写文件
+     */
+    private void loadIndex() throws IOException {
+        Path indexFile = root.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        Map<String, String> live = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            String url = line.substring(0, tab);
+            String hash = line.substring(tab + 1);
+            synchronized (this) {
+                if (images.containsKey(hash)) {
+                    live.put(url, hash);
+                    urlsByHash.computeIfAbsent(hash, key -> new HashSet<>()).add(url);
+                }
+            }
+        }
+        hashesByUrl.putAll(live);
+        synchronized (indexLock) {
+            writeIndex(live);
+        }
+    }
+
+    /**
+     * 定时压缩index.log：图片被淘汰后其URL映射行不再有效，失效行多于有效行时只保留有效的映射重写文件
+     */
+    @Scheduled(fixedDelayString = "${anime.images.mirror.index-compact-interval-ms:600000}",
+            initialDelayString = "${anime.images.mirror.index-compact-interval-ms:600000}")
+    public void compactIndexIfNeeded() {
+        if (!enabled) {
+            return;
+        }
+        // 持有indexLock期间追加被阻塞；映射先写入内存再追加，快照中已包含所有已追加且仍有效的行
+        synchronized (indexLock) {
+            int liveLines = hashesByUrl.size();
+            if (indexLines <= MIN_COMPACT_LINES || indexLines - liveLines <= liveLines) {
+                return;
+            }
+            Map<String, String> live = new LinkedHashMap<>();
+            synchronized (this) {
+                urlsByHash.forEach((hash, urls) -> urls.forEach(url -> live.put(url, hash)));
+            }
+            int before = indexLines;
+            try {
+                writeIndex(live);
+                indexCompactions.incrementAndGet();
+                logger.info("index.log压缩完成 - 行数: {} -> {}", before, indexLines);
+            } catch (IOException e) {
+                logger.warn("压缩index.log失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换index.log，调用方需持有indexLock
+     */
+    private void writeIndex(Map<String, String> live) throws IOException {
+        Path temp = Files.createTempFile(root, INDEX_FILE, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : live.entrySet()) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(entry.getValue());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, root.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        indexLines = live.size();
+    }
+
+    private void appendIndex(String url, String hash) throws IOException {
+        synchronized (indexLock) {
+            Files.writeString(root.resolve(INDEX_FILE), url + '\t' + hash + System.lineSeparator(),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            indexLines++;
+        }
+    }
+
+    private Path blobPath(String hash, String extension) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+    }
+
+    /**
+     * 从images列的JSON中取出需要镜像的各尺寸URL
+     */
+    static List<String> extractImageUrls(String imagesJson) {
+        List<String> urls = new ArrayList<>();
+        if (imagesJson == null || imagesJson.isEmpty()) {
+            return urls;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(imagesJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return urls;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_STRING && MIRRORED_SIZES.contains(field) && !parser.getText().isEmpty()) {
+                    urls.add(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("解析图片信息失败: {}", e.getMessage());
+        }
+        return urls;
+    }
+
+    /**
+     * 根据文件头识别图片格式，只保存已知的图片格式
+     * @return 扩展名；不是支持的图片格式时返回null
+     */
+    static String detectExtension(byte[] body) {
+        if (body.length >= 3 && (body[0] & 0xFF) == 0xFF && (body[1] & 0xFF) == 0xD8 && (body[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (body.length >= 8 && (body[0] & 0xFF) == 0x89 && body[1] == 'P' && body[2] == 'N' && body[3] == 'G') {
+            return "png";
+        }
+        if (body.length >= 6 && body[0] == 'G' && body[1] == 'I' && body[2] == 'F' && body[3] == '8') {
+            return "gif";
+        }
+        if (body.length >= 12 && body[0] == 'R' && body[1] == 'I' && body[2] == 'F' && body[3] == 'F'
+                && body[8] == 'W' && body[9] == 'E' && body[10] == 'B' && body[11] == 'P') {
+            return "webp";
+        }
+        return null;
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
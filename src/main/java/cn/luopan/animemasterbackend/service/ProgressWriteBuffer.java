@@ -0,0 +1,246 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import cn.luopan.animemasterbackend.mapper.UserAnimeStatusMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 观看进度写缓冲
+ * 播放器按集上报进度时，同一(userId, animeId)在一个刷新周期内的多次写入只保留最后一次，
+ * 定时用一条CASE语句批量写入数据库，应用关闭时再刷新一次；
+ * 读取收藏时用overlay把尚未写入的进度覆盖到查询结果上，读不到旧值
+ * 同一收藏的进度被其他语句直接写入（更新状态时带进度、移除收藏、批量操作）时，调用方通过writeThrough取出缓冲中的值，
+ * 写入期间与刷新互斥，避免刷新把旧进度写回；写入失败或所在事务回滚时取出的进度放回缓冲，不会丢失
+ */
+@Component
+public class ProgressWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressWriteBuffer.class);
+
+    // 每条UPDATE最多包含的行数
+    private static final int FLUSH_CHUNK_SIZE = 500;
+
+    @Autowired
+    private UserAnimeStatusMapper userAnimeStatusMapper;
+
+    // 是否启用写缓冲，关闭时每次上报直接写库
+    @Value("${anime.progress-buffer.enabled:true}")
+    private boolean enabled = true;
+
+    // 缓冲的最大条目数，超过后新的上报直接写库，内存占用有上限
+    @Value("${anime.progress-buffer.max-entries:50000}")
+    private int maxEntries = 50000;
+
+    private record Key(Long userId, Long animeId) {
+    }
+
+    private final Map<Key, Integer> pending = new ConcurrentHashMap<>();
+
+    // 直接写入进度的语句共享读锁，刷新持有写锁
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong writeThroughs = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    /**
+     * 记录一次进度上报
+     * @param userId 用户ID
+     * @param animeId 动漫ID（调用方已确认在收藏中）
+     * @param progress 观看进度
+     * @return true表示已放入缓冲；false表示缓冲关闭或已满，调用方应直接写库
+     */
+    public boolean offer(Long userId, Long animeId, Integer progress) {
+        if (!enabled || progress == null) {
+            return false;
+        }
+        Key key = new Key(userId, animeId);
+        if (pending.size() >= maxEntries && !pending.containsKey(key)) {
+            return false;
+        }
+        pending.put(key, progress);
+        writes.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 直接写入某条收藏的进度时调用：丢弃缓冲中的值，并在write执行期间阻止刷新
+     * @param userId 用户ID
+     * @param animeId 动漫ID
+     * @param write 写库操作
+     * @return write的返回值
+     */
+    public <T> T writeThrough(Long userId, Long animeId, Supplier<T> write) {
+        return writeThrough(userId, List.of(animeId), buffered -> write.get());
+    }
+
+    /**
+     * 批量写入多条收藏时调用：取出这些收藏在缓冲中的进度交给write一并写入，并在write执行期间阻止刷新
+     * 在事务中调用时，事务回滚后把取出的进度放回缓冲；没有事务时write抛出异常即放回
+     * @param userId 用户ID
+     * @param animeIds 动漫ID
+     * @param write 写库操作，参数为取出的进度（animeId -> progress），未一并写入的进度会丢失
+     * @return write的返回值
+     */
+    public <T> T writeThrough(Long userId, Collection<Long> animeIds, Function<Map<Long, Integer>, T> write) {
+        flushLock.readLock().lock();
+        try {
+            Map<Long, Integer> buffered = new HashMap<>();
+            for (Long animeId : animeIds) {
+                Integer progress = pending.remove(new Key(userId, animeId));
+                if (progress != null) {
+                    buffered.put(animeId, progress);
+                }
+            }
+            writeThroughs.incrementAndGet();
+            boolean transactional = !buffered.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive();
+            if (transactional) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_ROLLED_BACK) {
+                            restore(userId, buffered);
+                        }
+                    }
+                });
+            }
+            try {
+                return write.apply(buffered);
+            } catch (RuntimeException | Error e) {
+                if (!transactional) {
+                    restore(userId, buffered);
+                }
+                throw e;
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把未能写入的进度放回缓冲；期间已有新的上报时保留新值
+     */
+    private void restore(Long userId, Map<Long, Integer> buffered) {
+        if (buffered.isEmpty()) {
+            return;
+        }
+        buffered.forEach((animeId, progress) -> pending.putIfAbsent(new Key(userId, animeId), progress));
+        logger.warn("直接写入失败，观看进度放回缓冲 - 用户ID: {}, 条目数: {}", userId, buffered.size());
+    }
+
+    /**
+     * 用缓冲中尚未写入的进度覆盖查询结果
+     * @param rows 从数据库查询的收藏
+     * @return 传入的rows
+     */
+    public <C extends Collection<UserAnimeStatus>> C overlay(C rows) {
+        if (pending.isEmpty()) {
+            return rows;
+        }
+        for (UserAnimeStatus row : rows) {
+            overlay(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 用缓冲中尚未写入的进度覆盖单行查询结果，用于逐行读取的游标
+     * @param row 从数据库查询的收藏
+     * @return 传入的row
+     */
+    public UserAnimeStatus overlay(UserAnimeStatus row) {
+        if (!pending.isEmpty()) {
+            Integer progress = pending.get(new Key(row.getUserId(), row.getAnimeId()));
+            if (progress != null) {
+                row.setProgress(progress);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * 把缓冲中的进度批量写入数据库
+     * 写入后只移除值未再变化的条目，刷新期间的新上报留到下一次；写入失败时条目保留，下次重试
+     */
+    @Scheduled(fixedDelayString = "${anime.progress-buffer.flush-interval-ms:2000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushLock.writeLock().lock();
+        try {
+            Map<Key, Integer> snapshot = new LinkedHashMap<>(pending);
+            List<UserAnimeStatus> rows = new ArrayList<>(snapshot.size());
+            snapshot.forEach((key, progress) -> {
+                UserAnimeStatus row = new UserAnimeStatus();
+                row.setUserId(key.userId());
+                row.setAnimeId(key.animeId());
+                row.setProgress(progress);
+                rows.add(row);
+            });
+            for (int from = 0; from < rows.size(); from += FLUSH_CHUNK_SIZE) {
+                userAnimeStatusMapper.updateProgressBatch(rows.subList(from, Math.min(from + FLUSH_CHUNK_SIZE, rows.size())));
+            }
+            snapshot.forEach(pending::remove);
+            flushedRows.addAndGet(rows.size());
+            flushes.incrementAndGet();
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            logger.error("写入缓冲的观看进度失败，下次重试 - 条目数: {}, 错误: {}", pending.size(), e.getMessage(), e);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            logger.warn("应用关闭时仍有{}条观看进度未写入数据库", pending.size());
+        }
+    }
+
+    /**
+     * 获取写缓冲统计（上报次数、实际写入行数、合并掉的写入）
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long writeCount = writes.get();
+        long flushed = flushedRows.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", pending.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("writes", writeCount);
+        stats.put("flushedRows", flushed);
+        stats.put("coalesced", Math.max(0, writeCount - flushed - pending.size()));
+        stats.put("flushes", flushes.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("writeThroughs", writeThroughs.get());
+        return stats;
+    }
+}
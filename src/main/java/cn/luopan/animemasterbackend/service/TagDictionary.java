@@ -0,0 +1,164 @@
+package cn.luopan.animemasterbackend.service;
+
+import cn.luopan.animemasterbackend.entity.Tag;
+import cn.luopan.animemasterbackend.mapper.TagMapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 标签字典：内存中保存 标签名 <-> 标签ID 的映射
+ * 同一标签名在内存中只保留一个String实例，写入anime_tag和按标签查询时无需再查tag表
+ * 字典只增不减，未命中时才访问数据库
+ */
+@Component
+public class TagDictionary {
+
+    // 标签名的最大长度，与tag.name列一致，超出的标签忽略
+    public static final int MAX_NAME_LENGTH = 100;
+
+    // 每批读取或查询的标签数
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private TagMapper tagMapper;
+
+    // 标签名 -> 标签ID
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+
+    // 标签ID -> 标签名（规范实例）
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    // 因未命中而查询数据库的次数
+    private final AtomicLong databaseLookups = new AtomicLong();
+
+    /**
+     * 规范化标签名：去掉首尾空白，空标签或超长标签返回null
+     * 字典中已有该标签时返回字典中的实例
+     * @param name 原始标签名
+     * @return 规范化后的标签名
+     */
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String trimmed = name.strip();
+        if (trimmed.isEmpty() || trimmed.codePointCount(0, trimmed.length()) > MAX_NAME_LENGTH) {
+            return null;
+        }
+        Integer id = idsByName.get(trimmed);
+        if (id != null) {
+            String canonical = namesById.get(id);
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+        return trimmed;
+    }
+
+    /**
+     * 按标签名查找标签ID，内存中没有时查询一次tag表
+     * @param name 标签名
+     * @return 标签ID；标签不存在时返回null
+     */
+    public Integer getId(String name) {
+        String normalized = intern(name);
+        if (normalized == null) {
+            return null;
+        }
+        Integer id = idsByName.get(normalized);
+        if (id != null) {
+            return id;
+        }
+        databaseLookups.incrementAndGet();
+        Tag tag = tagMapper.selectOne(new QueryWrapper<Tag>().select("id", "name").eq("name", normalized));
+        if (tag == null) {
+            return null;
+        }
+        put(tag);
+        return tag.getId();
+    }
+
+    /**
+     * 获取一组标签名对应的ID，不存在的标签先写入tag表
+     * @param names 标签名（需已经过intern规范化）
+     * @return 标签名 -> 标签ID
+     */
+    public Map<String, Integer> resolveIds(Collection<String> names) {
+        Map<String, Integer> result = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String name : names) {
+            Integer id = idsByName.get(name);
+            if (id != null) {
+                result.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<String> missingList = new ArrayList<>(missing);
+        for (int from = 0; from < missingList.size(); from += BATCH_SIZE) {
+            List<String> batch = missingList.subList(from, Math.min(from + BATCH_SIZE, missingList.size()));
+            databaseLookups.incrementAndGet();
+            tagMapper.insertIgnore(batch);
+            List<Tag> tags = tagMapper.selectList(new QueryWrapper<Tag>().select("id", "name").in("name", batch));
+            for (Tag tag : tags) {
+                put(tag);
+                result.put(tag.getName(), tag.getId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按ID分批把tag表全部加载到内存
+     * @return 加载的标签数
+     */
+    public int loadAll() {
+        int loaded = 0;
+        int lastId = 0;
+        while (true) {
+            QueryWrapper<Tag> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id", "name")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("LIMIT " + BATCH_SIZE);
+            List<Tag> batch = tagMapper.selectList(queryWrapper);
+            if (batch.isEmpty()) {
+                return loaded;
+            }
+            batch.forEach(this::put);
+            loaded += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 获取字典统计信息
+     * @return 标签数和数据库查询次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tags", idsByName.size());
+        stats.put("databaseLookups", databaseLookups.get());
+        return stats;
+    }
+
+    private void put(Tag tag) {
+        String canonical = namesById.computeIfAbsent(tag.getId(), id -> tag.getName());
+        idsByName.putIfAbsent(canonical, tag.getId());
+    }
+}
@@ -3,6 +3,7 @@ package cn.luopan.animemasterbackend.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -22,6 +23,10 @@ public class VerificationCodeService {
     @Autowired
     private EmailService emailService;
 
+    // 是否异步发送验证码邮件
+    @Value("${app.mail.async:false}")
+    private boolean asyncMail;
+
     // 验证码长度
     private static final int CODE_LENGTH = 6;
     // 验证码有效期（10分钟）
@@ -90,7 +95,20 @@ public class VerificationCodeService {
         LocalDateTime expiryTime = now.plusMinutes(CODE_EXPIRY_MINUTES);
 
         // 存储验证码信息
-        codeStore.put(email, new CodeInfo(code, expiryTime, now, type));
+        CodeInfo codeInfo = new CodeInfo(code, expiryTime, now, type);
+        codeStore.put(email, codeInfo);
+
+        if (asyncMail) {
+            // 异步发送，SMTP耗时不占用请求线程；发送失败时移除验证码，用户可立即重新获取
+            emailService.sendVerificationCodeAsync(email, code, type).whenComplete((sent, error) -> {
+                if (error != null || !Boolean.TRUE.equals(sent)) {
+                    logger.error("验证码邮件发送失败 - 邮箱: {}, 类型: {}", email, type);
+                    codeStore.remove(email, codeInfo);
+                }
+            });
+            logger.info("验证码已提交发送 - 邮箱: {}, 类型: {}, 过期时间: {}", email, type, expiryTime);
+            return true;
+        }
 
         // 发送验证码邮件
         boolean emailSent = emailService.sendVerificationCode(email, code, type);
@@ -102,7 +120,7 @@ public class VerificationCodeService {
         } else {
             logger.error("验证码邮件发送失败 - 邮箱: {}, 类型: {}", email, type);
             // 移除未发送成功的验证码
-            codeStore.remove(email);
+            codeStore.remove(email, codeInfo);
             return false;
         }
     }
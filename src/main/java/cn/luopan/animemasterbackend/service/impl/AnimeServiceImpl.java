@@ -1,36 +1,86 @@
 package cn.luopan.animemasterbackend.service.impl;
 
+import cn.luopan.animemasterbackend.dto.AnimeDto;
+import cn.luopan.animemasterbackend.dto.CursorPage;
 import cn.luopan.animemasterbackend.entity.Anime;
 import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.service.AnimeFragmentCache;
+import cn.luopan.animemasterbackend.service.AnimeSearchIndex;
+import cn.luopan.animemasterbackend.service.AnimeTagService;
+import cn.luopan.animemasterbackend.service.BangumiApiClient;
+import cn.luopan.animemasterbackend.service.BangumiResponseCache;
+import cn.luopan.animemasterbackend.service.BangumiUnavailableException;
+import cn.luopan.animemasterbackend.service.DailyAnimeSampler;
 import cn.luopan.animemasterbackend.service.IAnimeService;
+import cn.luopan.animemasterbackend.service.ImageMirrorService;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import cn.luopan.animemasterbackend.utils.ContentHashUtils;
+import cn.luopan.animemasterbackend.utils.PageCursor;
+import cn.luopan.animemasterbackend.utils.SingleFlight;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
-import java.time.LocalDate;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.Arrays;
 import java.util.stream.Collectors;
 
 @Service
 public class AnimeServiceImpl extends ServiceImpl<AnimeMapper, Anime> implements IAnimeService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AnimeServiceImpl.class);
+
+    // 每条多行upsert语句包含的最大行数
+    private static final int UPSERT_BATCH_SIZE = 500;
+
     @Autowired
     private AnimeMapper animeMapper;
 
     @Autowired
-    private WebClient bangumiWebClient;
+    private BangumiApiClient bangumiApiClient;
+
+    @Autowired
+    private Scheduler animeDbScheduler;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private AnimeSearchIndex animeSearchIndex;
+
+    @Autowired
+    private DailyAnimeSampler dailyAnimeSampler;
+
+    @Autowired
+    private AnimeFragmentCache animeFragmentCache;
+
+    @Autowired
+    private AnimeTagService animeTagService;
+
+    @Autowired
+    private ImageMirrorService imageMirrorService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 是否优先使用本地索引搜索
+    @Value("${anime.search.local.enabled:true}")
+    private boolean localSearchEnabled;
+
+    // 本地命中数少于该值时回退到Bangumi搜索
+    @Value("${anime.search.local.min-hits:5}")
+    private int localMinHits;
+
+    // 合并相同参数的并发搜索
+    private final SingleFlight<String, List<Integer>> searchFlight = new SingleFlight<>();
 
     @Override
     public Anime getAnimeByName(String name) {
@@ -40,188 +90,97 @@ public class AnimeServiceImpl extends ServiceImpl<AnimeMapper, Anime> implements
     }
 
     @Override
-    public List<Map<String, Object>> getDailyAnime() {
-        try {
-            // 从Bangumi API获取每日放送动漫数据
-            String response = bangumiWebClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/v0/subjects")
-                            .queryParam("type", 2) // TV动画
-                            .queryParam("sort", "date") // 按日期排序
-                            .queryParam("limit", 50) // 获取50条数据
-                            .build())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            // 解析API响应
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode subjects = root.path("data");
-
-            // 提取所有subjects并收集bangumi_id
-            List<JsonNode> allSubjects = new ArrayList<>();
-            List<Integer> bangumiIds = new ArrayList<>();
-            subjects.forEach(subject -> {
-                allSubjects.add(subject);
-                bangumiIds.add(subject.path("id").asInt());
-            });
-
-            // 批量查询本地数据库中的动漫信息
-            Map<Integer, Anime> existingAnimeMap = new HashMap<>();
-            if (!bangumiIds.isEmpty()) {
-                QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
-                queryWrapper.in("bangumi_id", bangumiIds);
-                List<Anime> existingAnimes = animeMapper.selectList(queryWrapper);
-                existingAnimes.forEach(anime -> existingAnimeMap.put(anime.getBangumiId(), anime));
-            }
+    public List<AnimeDto> getDailyAnime() {
+        return toDtos(loadDailyAnime());
+    }
 
-            // 处理数据：创建新动漫或更新现有动漫
-            List<Anime> newAnimeList = new ArrayList<>();
-            List<Anime> updateAnimeList = new ArrayList<>();
-            LocalDate oneYearAgo = LocalDate.now().minusYears(1);
-
-            for (JsonNode subject : allSubjects) {
-                Integer bangumiId = subject.path("id").asInt();
-                Anime existingAnime = existingAnimeMap.get(bangumiId);
-
-                if (existingAnime == null) {
-                    // 本地不存在，创建新动漫
-                    Anime anime = new Anime();
-                    anime.setBangumiId(bangumiId);
-                    anime.setName(subject.path("name").asText());
-                    anime.setNameCn(subject.path("name_cn").asText());
-                    
-                    // 保存图片信息
-                    JsonNode images = subject.path("images");
-                    if (!images.isMissingNode()) {
-                        try {
-                            String imagesJson = objectMapper.writeValueAsString(images);
-                            anime.setImages(imagesJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    @Override
+    public List<byte[]> getDailyAnimeFragments() {
+        return toFragments(loadDailyAnime());
+    }
 
-                    // 保存评分信息
-                    JsonNode rating = subject.path("rating");
-                    if (!rating.isMissingNode()) {
-                        try {
-                            String ratingJson = objectMapper.writeValueAsString(rating);
-                            anime.setRating(ratingJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    @Override
+    public List<AnimeDto> getAnimeRanking() {
+        return getAnimeRanking(1, 20);
+    }
 
-                    // 保存标签信息
-                    JsonNode tags = subject.path("tags");
-                    if (!tags.isMissingNode()) {
-                        try {
-                            String tagsJson = objectMapper.writeValueAsString(tags);
-                            anime.setTags(tagsJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    @Override
+    public List<AnimeDto> getAnimeRanking(int page, int size) {
+        return toDtos(loadRanking(page, size));
+    }
 
-                    anime.setType(subject.path("type").asInt());
-                    anime.setDate(subject.path("date").asText());
-                    anime.setEps(subject.path("eps").asInt());
-                    anime.setDescription(subject.path("summary").asText());
-                    anime.setCreatedAt(LocalDateTime.now());
-                    anime.setUpdatedAt(LocalDateTime.now());
+    @Override
+    public CursorPage<byte[]> getAnimeRankingFragments(int page, int size) {
+        int finalSize = rankingPageSize(size);
+        List<Anime> animes = loadRanking(page, finalSize);
+        return new CursorPage<>(toFragments(animes), rankingCursor(animes, finalSize));
+    }
 
-                    newAnimeList.add(anime);
-                } else {
-                    // 本地存在，根据date字段判断是否需要更新
-                    String dateStr = subject.path("date").asText();
-                    if (!dateStr.isEmpty()) {
-                        try {
-                            // 解析date字段（格式可能为"2023-04"或"2023-04-10"）
-                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM[-dd]");
-                            LocalDate animeDate = LocalDate.parse(dateStr, formatter);
-                            
-                            // 如果date字段大于一年前，则更新
-                            if (!animeDate.isBefore(oneYearAgo)) {
-                                // 更新现有动漫
-                                Anime updateAnime = existingAnime;
-                                updateAnime.setName(subject.path("name").asText());
-                                updateAnime.setNameCn(subject.path("name_cn").asText());
-                                
-                                // 更新图片信息
-                                JsonNode images = subject.path("images");
-                                if (!images.isMissingNode()) {
-                                    try {
-                                        String imagesJson = objectMapper.writeValueAsString(images);
-                                        updateAnime.setImages(imagesJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                // 更新评分信息
-                                JsonNode rating = subject.path("rating");
-                                if (!rating.isMissingNode()) {
-                                    try {
-                                        String ratingJson = objectMapper.writeValueAsString(rating);
-                                        updateAnime.setRating(ratingJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                // 更新标签信息
-                                JsonNode tags = subject.path("tags");
-                                if (!tags.isMissingNode()) {
-                                    try {
-                                        String tagsJson = objectMapper.writeValueAsString(tags);
-                                        updateAnime.setTags(tagsJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                updateAnime.setType(subject.path("type").asInt());
-                                updateAnime.setDate(subject.path("date").asText());
-                                updateAnime.setEps(subject.path("eps").asInt());
-                                updateAnime.setDescription(subject.path("summary").asText());
-                                updateAnime.setUpdatedAt(LocalDateTime.now());
-
-                                updateAnimeList.add(updateAnime);
-                            }
-                        } catch (DateTimeParseException e) {
-                            // 如果日期解析失败，跳过更新
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
+    @Override
+    public CursorPage<byte[]> getAnimeRankingFragments(String cursor, int size) {
+        int finalSize = rankingPageSize(size);
+        List<Anime> animes = loadRankingAfter(PageCursor.decode(cursor), finalSize);
+        return new CursorPage<>(toFragments(animes), rankingCursor(animes, finalSize));
+    }
 
-            // 批量保存新动漫到数据库
-            if (!newAnimeList.isEmpty()) {
-                saveBatch(newAnimeList);
-            }
+    @Override
+    public List<AnimeDto> searchAnime(String keyword, Integer limit, Integer offset) {
+        return toDtos(loadSearch(keyword, limit, offset));
+    }
 
-            // 批量更新现有动漫到数据库
-            if (!updateAnimeList.isEmpty()) {
-                updateBatchById(updateAnimeList);
-            }
+    @Override
+    public List<byte[]> searchAnimeFragments(String keyword, Integer limit, Integer offset) {
+        return toFragments(loadSearch(keyword, limit, offset));
+    }
 
-            // 从数据库获取所有TV动画
-            QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
-            queryWrapper.eq("type", 2);
-            List<Anime> allTvAnime = animeMapper.selectList(queryWrapper);
+    @Override
+    public CursorPage<AnimeDto> getAnimeByTag(String tag, String cursor, int size) {
+        int finalSize = Math.min(Math.max(size, 1), 100);
+        AnimeTagService.TagPage page = animeTagService.findByTag(tag, cursor, finalSize);
+        if (page.animeIds().isEmpty()) {
+            return new CursorPage<>(Collections.emptyList(), null);
+        }
+        return new CursorPage<>(toDtos(selectInOrder(page.animeIds())), page.nextCursor());
+    }
 
-            // 随机选择20个
-            Collections.shuffle(allTvAnime);
-            List<Anime> randomAnime = allTvAnime.stream()
-                    .limit(20)
-                    .collect(Collectors.toList());
+    @Override
+    public Mono<List<AnimeDto>> getDailyAnimeReactive() {
+        return Mono.fromCallable(this::getDailyAnime).subscribeOn(animeDbScheduler);
+    }
 
-            // 转换为响应格式
-            return randomAnime.stream()
-                    .map(this::convertToResponseMap)
-                    .collect(Collectors.toList());
+    @Override
+    public Mono<List<AnimeDto>> getAnimeRankingReactive() {
+        return Mono.fromCallable(this::getAnimeRanking).subscribeOn(animeDbScheduler);
+    }
+
+    @Override
+    public Mono<List<AnimeDto>> searchAnimeReactive(String keyword, Integer limit, Integer offset) {
+        int finalLimit = (limit == null) ? 20 : limit;
+        int finalOffset = (offset == null) ? 0 : offset;
+
+        // 本地命中足够时直接返回（fromCallable返回null即为空结果，转为Bangumi搜索）；
+        // 等待Bangumi响应时不占用线程，拿到响应后在数据库调度器上写库和查询
+        return Mono.fromCallable(() -> searchLocally(keyword, finalLimit, finalOffset))
+                .subscribeOn(animeDbScheduler)
+                .switchIfEmpty(Mono.defer(() -> bangumiApiClient.searchSubjectsAsync(keyword, finalLimit, finalOffset)
+                        .publishOn(animeDbScheduler)
+                        .map(response -> searchFlight.execute(searchKey(keyword, finalLimit, finalOffset),
+                                () -> upsertSearchResults(response)))
+                        .map(this::loadSearchResults)
+                        .onErrorResume(BangumiUnavailableException.class, e -> Mono.fromCallable(
+                                () -> searchDegraded(keyword, finalLimit, finalOffset, e)).subscribeOn(animeDbScheduler))))
+                .map(this::toDtos)
+                .onErrorMap(e -> new RuntimeException("搜索动漫失败", e));
+    }
+
+    private List<Anime> loadDailyAnime() {
+        try {
+            // 从内存中的TV动画ID随机抽取20个，只查询这20行（数据由BangumiSyncService定时同步）
+            List<Long> randomIds = dailyAnimeSampler.sample(20);
+            if (randomIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return selectInOrder(randomIds);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -229,443 +188,431 @@ public class AnimeServiceImpl extends ServiceImpl<AnimeMapper, Anime> implements
         }
     }
 
-    @Override
-    public List<Map<String, Object>> getAnimeRanking() {
+    private List<Anime> loadRanking(int page, int size) {
         try {
-            // 从Bangumi API获取排行榜数据
-            String response = bangumiWebClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/v0/subjects")
-                            .queryParam("type", 2) // TV动画
-                            .queryParam("sort", "rank") // 按排名排序
-                            .queryParam("limit", 50) // 获取50条数据
-                            .build())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            // 解析API响应
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode subjects = root.path("data");
-
-            // 提取所有subjects并收集bangumi_id
-            List<JsonNode> allSubjects = new ArrayList<>();
-            List<Integer> bangumiIds = new ArrayList<>();
-            subjects.forEach(subject -> {
-                allSubjects.add(subject);
-                bangumiIds.add(subject.path("id").asInt());
-            });
-
-            // 批量查询本地数据库中的动漫信息
-            Map<Integer, Anime> existingAnimeMap = new HashMap<>();
-            if (!bangumiIds.isEmpty()) {
-                QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
-                queryWrapper.in("bangumi_id", bangumiIds);
-                List<Anime> existingAnimes = animeMapper.selectList(queryWrapper);
-                existingAnimes.forEach(anime -> existingAnimeMap.put(anime.getBangumiId(), anime));
-            }
+            // 从数据库按排名获取TV动画（数据由BangumiSyncService定时同步）
+            // 条件和排序与索引idx_type_rank(type, rank_no, id)一致，MySQL按索引顺序扫描，无需排序
+            int finalPage = Math.max(page, 1);
+            int finalSize = rankingPageSize(size);
+            QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("type", 2)
+                    .gt("rank_no", 0) // 排除未上榜条目
+                    .orderByAsc("rank_no", "id")
+                    .last("LIMIT " + (long) (finalPage - 1) * finalSize + ", " + finalSize);
+            return animeMapper.selectList(queryWrapper);
 
-            // 处理数据：创建新动漫或更新现有动漫
-            List<Anime> newAnimeList = new ArrayList<>();
-            List<Anime> updateAnimeList = new ArrayList<>();
-            LocalDate oneYearAgo = LocalDate.now().minusYears(1);
-
-            for (JsonNode subject : allSubjects) {
-                Integer bangumiId = subject.path("id").asInt();
-                Anime existingAnime = existingAnimeMap.get(bangumiId);
-
-                if (existingAnime == null) {
-                    // 本地不存在，创建新动漫
-                    Anime anime = new Anime();
-                    anime.setBangumiId(bangumiId);
-                    anime.setName(subject.path("name").asText());
-                    anime.setNameCn(subject.path("name_cn").asText());
-                    
-                    // 保存图片信息
-                    JsonNode images = subject.path("images");
-                    if (!images.isMissingNode()) {
-                        try {
-                            String imagesJson = objectMapper.writeValueAsString(images);
-                            anime.setImages(imagesJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("获取动漫排行榜失败", e);
+        }
+    }
 
-                    // 保存评分信息
-                    JsonNode rating = subject.path("rating");
-                    if (!rating.isMissingNode()) {
-                        try {
-                            String ratingJson = objectMapper.writeValueAsString(rating);
-                            anime.setRating(ratingJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    /**
+     * 从游标位置之后按排名读取一页，条件(rank_no, id) > (游标rank_no, 游标id)由索引idx_type_rank直接定位，
+     * 耗时与页数无关
+     */
+    private List<Anime> loadRankingAfter(PageCursor after, int size) {
+        int afterRank = 0;
+        long afterId = 0;
+        if (after != null) {
+            try {
+                afterRank = Integer.parseInt(after.value());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标", e);
+            }
+            afterId = after.id();
+        }
+        try {
+            return animeMapper.selectRankingAfter(afterRank, afterId, size);
 
-                    // 保存标签信息
-                    JsonNode tags = subject.path("tags");
-                    if (!tags.isMissingNode()) {
-                        try {
-                            String tagsJson = objectMapper.writeValueAsString(tags);
-                            anime.setTags(tagsJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException("获取动漫排行榜失败", e);
+        }
+    }
 
-                    anime.setType(subject.path("type").asInt());
-                    anime.setDate(subject.path("date").asText());
-                    anime.setEps(subject.path("eps").asInt());
-                    anime.setDescription(subject.path("summary").asText());
-                    anime.setCreatedAt(LocalDateTime.now());
-                    anime.setUpdatedAt(LocalDateTime.now());
+    private static int rankingPageSize(int size) {
+        return Math.min(Math.max(size, 1), 100);
+    }
 
-                    newAnimeList.add(anime);
-                } else {
-                    // 本地存在，根据date字段判断是否需要更新
-                    String dateStr = subject.path("date").asText();
-                    if (!dateStr.isEmpty()) {
-                        try {
-                            // 解析date字段（格式可能为"2023-04"或"2023-04-10"）
-                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM[-dd]");
-                            LocalDate animeDate = LocalDate.parse(dateStr, formatter);
-                            
-                            // 如果date字段大于一年前，则更新
-                            if (!animeDate.isBefore(oneYearAgo)) {
-                                // 更新现有动漫
-                                Anime updateAnime = existingAnime;
-                                updateAnime.setName(subject.path("name").asText());
-                                updateAnime.setNameCn(subject.path("name_cn").asText());
-                                
-                                // 更新图片信息
-                                JsonNode images = subject.path("images");
-                                if (!images.isMissingNode()) {
-                                    try {
-                                        String imagesJson = objectMapper.writeValueAsString(images);
-                                        updateAnime.setImages(imagesJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                // 更新评分信息
-                                JsonNode rating = subject.path("rating");
-                                if (!rating.isMissingNode()) {
-                                    try {
-                                        String ratingJson = objectMapper.writeValueAsString(rating);
-                                        updateAnime.setRating(ratingJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                // 更新标签信息
-                                JsonNode tags = subject.path("tags");
-                                if (!tags.isMissingNode()) {
-                                    try {
-                                        String tagsJson = objectMapper.writeValueAsString(tags);
-                                        updateAnime.setTags(tagsJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                updateAnime.setType(subject.path("type").asInt());
-                                updateAnime.setDate(subject.path("date").asText());
-                                updateAnime.setEps(subject.path("eps").asInt());
-                                updateAnime.setDescription(subject.path("summary").asText());
-                                updateAnime.setUpdatedAt(LocalDateTime.now());
-
-                                updateAnimeList.add(updateAnime);
-                            }
-                        } catch (DateTimeParseException e) {
-                            // 如果日期解析失败，跳过更新
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
+    /**
+     * 根据本页最后一条生成下一页游标，不足一页说明已到末尾
+     */
+    private static String rankingCursor(List<Anime> animes, int size) {
+        if (animes.size() < size) {
+            return null;
+        }
+        Anime last = animes.get(animes.size() - 1);
+        return PageCursor.of(last.getRankNo(), last.getId()).encode();
+    }
 
-            // 批量保存新动漫到数据库
-            if (!newAnimeList.isEmpty()) {
-                saveBatch(newAnimeList);
+    private List<Anime> loadSearch(String keyword, Integer limit, Integer offset) {
+        try {
+            // 设置默认值
+            int finalLimit = (limit == null) ? 20 : limit;
+            int finalOffset = (offset == null) ? 0 : offset;
+
+            // 优先使用本地索引
+            List<Anime> localResults = searchLocally(keyword, finalLimit, finalOffset);
+            if (localResults != null) {
+                return localResults;
             }
 
-            // 批量更新现有动漫到数据库
-            if (!updateAnimeList.isEmpty()) {
-                updateBatchById(updateAnimeList);
+            // 从Bangumi API获取搜索结果并写入本地数据库，以便返回本地ID
+            // 任意关键词无法预先同步，仍需实时请求；相同参数的并发搜索共享同一次请求和写库
+            List<Integer> bangumiIds;
+            try {
+                bangumiIds = searchFlight.execute(searchKey(keyword, finalLimit, finalOffset),
+                        () -> upsertSearchResults(bangumiApiClient.searchSubjects(keyword, finalLimit, finalOffset)));
+            } catch (BangumiUnavailableException e) {
+                return searchDegraded(keyword, finalLimit, finalOffset, e);
             }
 
-            // 从数据库获取排名前20的TV动画
-            QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
-            queryWrapper.eq("type", 2)
-                    .orderByAsc("rating") // 按评分排序
-                    .last("LIMIT 20");
-            List<Anime> topAnime = animeMapper.selectList(queryWrapper);
-
-            // 转换为响应格式
-            return topAnime.stream()
-                    .map(this::convertToResponseMap)
-                    .collect(Collectors.toList());
+            return loadSearchResults(bangumiIds);
 
         } catch (Exception e) {
             e.printStackTrace();
-            throw new RuntimeException("获取动漫排行榜失败", e);
+            throw new RuntimeException("搜索动漫失败", e);
         }
     }
 
-    @Override
-    public List<Map<String, Object>> searchAnime(String keyword, Integer limit, Integer offset) {
-        try {
-            // 设置默认值并创建最终变量用于lambda表达式
-            final Integer finalLimit = (limit == null) ? 20 : limit;
-            final Integer finalOffset = (offset == null) ? 0 : offset;
-
-            // 从Bangumi API获取搜索结果
-            // 创建搜索请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("keyword", keyword);
-            
-            // 创建筛选条件
-            Map<String, Object> filter = new HashMap<>();
-            filter.put("type", Arrays.asList(2)); // TV动画
-            requestBody.put("filter", filter);
-            
-            // 发送POST请求
-            String response = bangumiWebClient.post()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/v0/search/subjects")
-                            .queryParam("limit", finalLimit) // 返回数据数量
-                            .queryParam("offset", finalOffset) // 偏移量
-                            .build())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            // 解析API响应
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode subjects = root.path("data");
-
-            // 提取所有subjects并收集bangumi_id
-            List<JsonNode> allSubjects = new ArrayList<>();
-            List<Integer> bangumiIds = new ArrayList<>();
-            subjects.forEach(subject -> {
-                allSubjects.add(subject);
-                bangumiIds.add(subject.path("id").asInt());
-            });
-
-            // 批量查询本地数据库中的动漫信息
-            Map<Integer, Anime> existingAnimeMap = new HashMap<>();
-            if (!bangumiIds.isEmpty()) {
-                QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
-                queryWrapper.in("bangumi_id", bangumiIds);
-                List<Anime> existingAnimes = animeMapper.selectList(queryWrapper);
-                existingAnimes.forEach(anime -> existingAnimeMap.put(anime.getBangumiId(), anime));
-            }
+    /**
+     * 使用本地倒排索引搜索
+     * @return 搜索结果；索引未就绪或命中数少于配置值时返回null，由调用方回退到Bangumi
+     */
+    private List<Anime> searchLocally(String keyword, int limit, int offset) {
+        if (!localSearchEnabled || !animeSearchIndex.isReady()) {
+            return null;
+        }
+        AnimeSearchIndex.SearchHits hits = animeSearchIndex.search(keyword, offset, limit);
+        if (hits.total() < localMinHits) {
+            return null;
+        }
+        if (hits.ids().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return selectInOrder(hits.ids());
+    }
 
-            // 处理数据：创建新动漫或更新现有动漫
-            List<Anime> newAnimeList = new ArrayList<>();
-            List<Anime> updateAnimeList = new ArrayList<>();
-            LocalDate oneYearAgo = LocalDate.now().minusYears(1);
-
-            for (JsonNode subject : allSubjects) {
-                Integer bangumiId = subject.path("id").asInt();
-                Anime existingAnime = existingAnimeMap.get(bangumiId);
-
-                if (existingAnime == null) {
-                    // 本地不存在，创建新动漫
-                    Anime anime = new Anime();
-                    anime.setBangumiId(bangumiId);
-                    anime.setName(subject.path("name").asText());
-                    anime.setNameCn(subject.path("name_cn").asText());
-                    
-                    // 保存图片信息
-                    JsonNode images = subject.path("images");
-                    if (!images.isMissingNode()) {
-                        try {
-                            String imagesJson = objectMapper.writeValueAsString(images);
-                            anime.setImages(imagesJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    /**
+     * Bangumi不可用时的降级搜索：本地索引就绪时不论命中数多少都使用索引结果，否则按名称模糊匹配数据库
+     */
+    private List<Anime> searchDegraded(String keyword, int limit, int offset, BangumiUnavailableException cause) {
+        logger.warn("Bangumi不可用，使用本地数据搜索 - 关键词: {}, 原因: {}", keyword, cause.getMessage());
+        if (animeSearchIndex.isReady()) {
+            AnimeSearchIndex.SearchHits hits = animeSearchIndex.search(keyword, offset, limit);
+            return hits.ids().isEmpty() ? Collections.emptyList() : selectInOrder(hits.ids());
+        }
+        QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+        queryWrapper.and(wrapper -> wrapper.like("name", keyword).or().like("name_cn", keyword))
+                .orderByAsc("id")
+                .last("LIMIT " + Math.max(offset, 0) + ", " + Math.max(limit, 1));
+        return animeMapper.selectList(queryWrapper);
+    }
 
-                    // 保存评分信息
-                    JsonNode rating = subject.path("rating");
-                    if (!rating.isMissingNode()) {
-                        try {
-                            String ratingJson = objectMapper.writeValueAsString(rating);
-                            anime.setRating(ratingJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    /**
+     * 按ID批量查询，并按传入ID的顺序返回
+     */
+    private List<Anime> selectInOrder(List<Long> ids) {
+        Map<Long, Anime> animeMap = animeMapper.selectBatchIds(ids).stream()
+                .collect(Collectors.toMap(Anime::getId, anime -> anime));
+        return ids.stream()
+                .map(animeMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-                    // 保存标签信息
-                    JsonNode tags = subject.path("tags");
-                    if (!tags.isMissingNode()) {
-                        try {
-                            String tagsJson = objectMapper.writeValueAsString(tags);
-                            anime.setTags(tagsJson);
-                        } catch (JsonProcessingException e) {
-                            e.printStackTrace();
-                        }
-                    }
+    private String searchKey(String keyword, int limit, int offset) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("keyword", keyword);
+        params.put("limit", limit);
+        params.put("offset", offset);
+        return BangumiResponseCache.normalizeParams(params);
+    }
+
+    /**
+     * 解析Bangumi搜索响应并写入本地数据库
+     * @return 按搜索结果顺序排列的bangumi_id
+     */
+    private List<Integer> upsertSearchResults(byte[] response) {
+        try {
+            List<Anime> subjects = BangumiSubjectParser.parseSubjects(response);
+            List<Integer> bangumiIds = subjects.stream()
+                    .map(Anime::getBangumiId)
+                    .collect(Collectors.toList());
+            upsertSubjects(subjects);
+            return bangumiIds;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                    anime.setType(subject.path("type").asInt());
-                    anime.setDate(subject.path("date").asText());
-                    anime.setEps(subject.path("eps").asInt());
-                    anime.setDescription(subject.path("summary").asText());
-                    anime.setCreatedAt(LocalDateTime.now());
-                    anime.setUpdatedAt(LocalDateTime.now());
+    /**
+     * 按bangumi_id顺序从数据库获取动漫信息
+     */
+    private List<Anime> loadSearchResults(List<Integer> bangumiIds) {
+        if (bangumiIds.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-                    newAnimeList.add(anime);
-                } else {
-                    // 本地存在，根据date字段判断是否需要更新
-                    String dateStr = subject.path("date").asText();
-                    if (!dateStr.isEmpty()) {
-                        try {
-                            // 解析date字段（格式可能为"2023-04"或"2023-04-10"）
-                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM[-dd]");
-                            LocalDate animeDate = LocalDate.parse(dateStr, formatter);
-                            
-                            // 如果date字段大于一年前，则更新
-                            if (!animeDate.isBefore(oneYearAgo)) {
-                                // 更新现有动漫
-                                Anime updateAnime = existingAnime;
-                                updateAnime.setName(subject.path("name").asText());
-                                updateAnime.setNameCn(subject.path("name_cn").asText());
-                                
-                                // 更新图片信息
-                                JsonNode images = subject.path("images");
-                                if (!images.isMissingNode()) {
-                                    try {
-                                        String imagesJson = objectMapper.writeValueAsString(images);
-                                        updateAnime.setImages(imagesJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                // 更新评分信息
-                                JsonNode rating = subject.path("rating");
-                                if (!rating.isMissingNode()) {
-                                    try {
-                                        String ratingJson = objectMapper.writeValueAsString(rating);
-                                        updateAnime.setRating(ratingJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                // 更新标签信息
-                                JsonNode tags = subject.path("tags");
-                                if (!tags.isMissingNode()) {
-                                    try {
-                                        String tagsJson = objectMapper.writeValueAsString(tags);
-                                        updateAnime.setTags(tagsJson);
-                                    } catch (JsonProcessingException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
-
-                                updateAnime.setType(subject.path("type").asInt());
-                                updateAnime.setDate(subject.path("date").asText());
-                                updateAnime.setEps(subject.path("eps").asInt());
-                                updateAnime.setDescription(subject.path("summary").asText());
-                                updateAnime.setUpdatedAt(LocalDateTime.now());
-
-                                updateAnimeList.add(updateAnime);
-                            }
-                        } catch (DateTimeParseException e) {
-                            // 如果日期解析失败，跳过更新
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
+        QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("bangumi_id", bangumiIds);
+        List<Anime> searchResults = animeMapper.selectList(queryWrapper);
 
-            // 批量保存新动漫到数据库
-            if (!newAnimeList.isEmpty()) {
-                saveBatch(newAnimeList);
-            }
+        // 按照搜索结果的顺序排序
+        Map<Integer, Anime> animeMap = searchResults.stream()
+                .collect(Collectors.toMap(Anime::getBangumiId, anime -> anime));
 
-            // 批量更新现有动漫到数据库
-            if (!updateAnimeList.isEmpty()) {
-                updateBatchById(updateAnimeList);
+        List<Anime> orderedResults = new ArrayList<>();
+        for (Integer bangumiId : bangumiIds) {
+            if (animeMap.containsKey(bangumiId)) {
+                orderedResults.add(animeMap.get(bangumiId));
             }
+        }
+        return orderedResults;
+    }
 
-            // 获取搜索结果中的bangumi_id列表（已在前面定义）
+    private List<AnimeDto> toDtos(List<Anime> animes) {
+        return animes.stream()
+                .map(AnimeDto::from)
+                .collect(Collectors.toList());
+    }
 
-            // 从数据库获取对应的动漫信息
-            if (!bangumiIds.isEmpty()) {
-                QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
-                queryWrapper.in("bangumi_id", bangumiIds);
-                List<Anime> searchResults = animeMapper.selectList(queryWrapper);
+    /**
+     * 获取各动漫预先编码好的响应JSON片段
+     */
+    private List<byte[]> toFragments(List<Anime> animes) {
+        List<byte[]> fragments = new ArrayList<>(animes.size());
+        for (Anime anime : animes) {
+            fragments.add(animeFragmentCache.get(anime));
+        }
+        return fragments;
+    }
 
-                // 按照搜索结果的顺序排序
-                Map<Integer, Anime> animeMap = searchResults.stream()
-                        .collect(Collectors.toMap(Anime::getBangumiId, anime -> anime));
+    @Override
+    public UpsertResult upsertSubjects(List<Anime> subjects) {
+        // 收集bangumi_id
+        List<Integer> bangumiIds = subjects.stream()
+                .map(Anime::getBangumiId)
+                .collect(Collectors.toList());
+
+        // 批量查询本地数据库中的动漫信息
+        Map<Integer, Anime> existingAnimeMap = new HashMap<>();
+        if (!bangumiIds.isEmpty()) {
+            QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+            queryWrapper.in("bangumi_id", bangumiIds);
+            List<Anime> existingAnimes = animeMapper.selectList(queryWrapper);
+            existingAnimes.forEach(anime -> existingAnimeMap.put(anime.getBangumiId(), anime));
+        }
 
-                List<Anime> orderedResults = new ArrayList<>();
-                for (Integer bangumiId : bangumiIds) {
-                    if (animeMap.containsKey(bangumiId)) {
-                        orderedResults.add(animeMap.get(bangumiId));
+        // 处理数据：创建新动漫，或只更新内容有变化的动漫
+        List<Anime> newAnimeList = new ArrayList<>();
+        List<Anime> reindexList = new ArrayList<>();
+        List<Anime> rehashList = new ArrayList<>();
+        List<Anime> retagList = new ArrayList<>();
+        List<Anime> remirrorList = new ArrayList<>();
+        int skipped = 0;
+
+        for (Anime subject : subjects) {
+            Anime existingAnime = existingAnimeMap.get(subject.getBangumiId());
+
+            if (existingAnime == null) {
+                // 本地不存在，创建新动漫
+                subject.setContentHash(ContentHashUtils.hashAnime(subject));
+                subject.setCreatedAt(LocalDateTime.now());
+                subject.setUpdatedAt(LocalDateTime.now());
+
+                newAnimeList.add(subject);
+            } else {
+                // 本地存在，内容哈希一致则跳过，否则只更新变化的列
+                Anime changedAnime = diffSubject(existingAnime, subject);
+                if (changedAnime == null) {
+                    skipped++;
+                } else if (changedAnime.getUpdatedAt() == null) {
+                    // 内容与本地相同，只是保存的哈希缺失或过期，补写哈希即可，不需要更新索引、标签和图片
+                    rehashList.add(existingAnime);
+                    skipped++;
+                } else {
+                    // diffSubject已将新值合并到existingAnime，用完整数据写入数据库和更新索引
+                    reindexList.add(existingAnime);
+                    // 标签关联中冗余了评分，标签或评分变化时需要重写
+                    if (changedAnime.getTags() != null || changedAnime.getScore() != null) {
+                        retagList.add(existingAnime);
+                    }
+                    if (changedAnime.getImages() != null) {
+                        remirrorList.add(existingAnime);
                     }
                 }
-
-                // 转换为响应格式
-                return orderedResults.stream()
-                        .map(this::convertToResponseMap)
-                        .collect(Collectors.toList());
             }
+        }
 
-            return Collections.emptyList();
+        // 新动漫和有变化的动漫一起写入，每条多行INSERT ... ON DUPLICATE KEY UPDATE语句一次往返
+        List<Anime> upsertList = new ArrayList<>(newAnimeList.size() + reindexList.size() + rehashList.size());
+        upsertList.addAll(newAnimeList);
+        upsertList.addAll(reindexList);
+        upsertList.addAll(rehashList);
+        for (int from = 0; from < upsertList.size(); from += UPSERT_BATCH_SIZE) {
+            animeMapper.upsertBatch(upsertList.subList(from, Math.min(from + UPSERT_BATCH_SIZE, upsertList.size())));
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("搜索动漫失败", e);
+        if (!newAnimeList.isEmpty()) {
+            fillGeneratedIds(newAnimeList);
+            animeSearchIndex.indexAll(newAnimeList);
+            dailyAnimeSampler.update(newAnimeList);
+            syncTags(newAnimeList);
+            imageMirrorService.mirrorAsync(newAnimeList);
+        }
+        if (!reindexList.isEmpty()) {
+            animeSearchIndex.indexAll(reindexList);
+            dailyAnimeSampler.update(reindexList);
         }
+        if (!retagList.isEmpty()) {
+            syncTags(retagList);
+        }
+        if (!remirrorList.isEmpty()) {
+            imageMirrorService.mirrorAsync(remirrorList);
+        }
+
+        return new UpsertResult(newAnimeList.size(), reindexList.size(), skipped);
     }
 
     /**
-     * 将Anime对象转换为响应格式的Map
+     * 多行upsert中插入与更新混合时，驱动返回的自增ID与行无法对应，按bangumi_id回查新动漫的ID
      */
-    private Map<String, Object> convertToResponseMap(Anime anime) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id", anime.getId());
-        map.put("name", anime.getName());
-        map.put("name_cn", anime.getNameCn());
-        
-        try {
-            // 解析图片信息
-            if (anime.getImages() != null) {
-                JsonNode images = objectMapper.readTree(anime.getImages());
-                map.put("images", images);
+    private void fillGeneratedIds(List<Anime> newAnimeList) {
+        Map<Integer, Anime> byBangumiId = new HashMap<>();
+        newAnimeList.forEach(anime -> byBangumiId.put(anime.getBangumiId(), anime));
+        QueryWrapper<Anime> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "bangumi_id").in("bangumi_id", byBangumiId.keySet());
+        for (Anime saved : animeMapper.selectList(queryWrapper)) {
+            Anime anime = byBangumiId.get(saved.getBangumiId());
+            if (anime != null) {
+                anime.setId(saved.getId());
             }
+        }
+    }
 
-            // 解析评分信息
-            if (anime.getRating() != null) {
-                JsonNode rating = objectMapper.readTree(anime.getRating());
-                map.put("rating", rating);
-            }
+    /**
+     * 写入标签关联；标签是从tags列派生的数据，失败时只记录日志，不影响条目本身的写入
+     */
+    private void syncTags(List<Anime> animes) {
+        try {
+            animeTagService.syncTags(animes);
+        } catch (Exception e) {
+            logger.error("写入动漫标签失败 - 动漫数: {}, 错误: {}", animes.size(), e.getMessage(), e);
+        }
+    }
 
-            // 解析标签信息
-            if (anime.getTags() != null) {
-                JsonNode tags = objectMapper.readTree(anime.getTags());
-                map.put("tags", tags);
-            }
+    /**
+     * 将解析出的Bangumi条目与本地数据比较，条目中缺失（为null，date为空字符串）的字段保持原值
+     * 逐列比较并把变化的值合并到existing，JSON列（images、rating、tags）按JSON内容比较，因为MySQL读回的是它规范化后的文本
+     * （冒号和逗号后带空格、键重新排序），与Bangumi返回的紧凑文本不会逐字相同
+     * content_hash保存的是合并后整行的哈希，而不是条目本身的哈希：每日放送等缺少部分列的来源与本地行合并后
+     * 哈希不变，下次同步可以直接跳过
+     * @return 只包含id、变化列、内容哈希和更新时间的对象；内容没有变化且哈希一致时返回null；
+     *         只有哈希需要补写时返回的对象不含变化列，updatedAt为null
+     */
+    private Anime diffSubject(Anime existing, Anime subject) {
+        Anime changedAnime = new Anime();
+        boolean changed = false;
+
+        if (isChanged(subject.getName(), existing.getName())) {
+            existing.setName(subject.getName());
+            changedAnime.setName(subject.getName());
+            changed = true;
+        }
+        if (isChanged(subject.getNameCn(), existing.getNameCn())) {
+            existing.setNameCn(subject.getNameCn());
+            changedAnime.setNameCn(subject.getNameCn());
+            changed = true;
+        }
+        if (isJsonChanged(subject.getImages(), existing.getImages())) {
+            existing.setImages(subject.getImages());
+            changedAnime.setImages(subject.getImages());
+            changed = true;
+        }
+        if (isJsonChanged(subject.getRating(), existing.getRating())) {
+            existing.setRating(subject.getRating());
+            changedAnime.setRating(subject.getRating());
+            changed = true;
+        }
+        if (isChanged(subject.getScore(), existing.getScore())) {
+            existing.setScore(subject.getScore());
+            changedAnime.setScore(subject.getScore());
+            changed = true;
+        }
+        if (isChanged(subject.getRankNo(), existing.getRankNo())) {
+            existing.setRankNo(subject.getRankNo());
+            changedAnime.setRankNo(subject.getRankNo());
+            changed = true;
+        }
+        if (isChanged(subject.getVotes(), existing.getVotes())) {
+            existing.setVotes(subject.getVotes());
+            changedAnime.setVotes(subject.getVotes());
+            changed = true;
+        }
+        if (isJsonChanged(subject.getTags(), existing.getTags())) {
+            existing.setTags(subject.getTags());
+            changedAnime.setTags(subject.getTags());
+            changed = true;
+        }
+        if (isChanged(subject.getType(), existing.getType())) {
+            existing.setType(subject.getType());
+            changedAnime.setType(subject.getType());
+            changed = true;
+        }
+        if (subject.getDate() != null && !subject.getDate().isEmpty() && isChanged(subject.getDate(), existing.getDate())) {
+            existing.setDate(subject.getDate());
+            changedAnime.setDate(subject.getDate());
+            changed = true;
+        }
+        if (isChanged(subject.getEps(), existing.getEps())) {
+            existing.setEps(subject.getEps());
+            changedAnime.setEps(subject.getEps());
+            changed = true;
+        }
+        if (isChanged(subject.getDescription(), existing.getDescription())) {
+            existing.setDescription(subject.getDescription());
+            changedAnime.setDescription(subject.getDescription());
+            changed = true;
+        }
+
+        // 历史数据没有内容哈希、或哈希按旧规则计算时，即使内容未变也需要补写哈希，下次同步即可直接跳过
+        String contentHash = ContentHashUtils.hashAnime(existing);
+        if (!changed && contentHash.equals(existing.getContentHash())) {
+            return null;
+        }
+        existing.setContentHash(contentHash);
+        changedAnime.setId(existing.getId());
+        changedAnime.setContentHash(contentHash);
+        if (changed) {
+            changedAnime.setUpdatedAt(LocalDateTime.now());
+        }
+        return changedAnime;
+    }
+
+    /**
+     * 比较JSON列的内容，忽略空白和键顺序；无法解析时按字符串比较
+     */
+    private boolean isJsonChanged(String incoming, String current) {
+        if (incoming == null || incoming.equals(current)) {
+            return false;
+        }
+        if (current == null) {
+            return true;
+        }
+        try {
+            return !objectMapper.readTree(incoming).equals(objectMapper.readTree(current));
         } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            return true;
         }
+    }
 
-        map.put("type", anime.getType());
-        map.put("date", anime.getDate());
-        map.put("eps", anime.getEps());
-        
-        return map;
+    private static boolean isChanged(Object incoming, Object current) {
+        if (incoming instanceof BigDecimal incomingDecimal && current instanceof BigDecimal currentDecimal) {
+            // 数据库返回的DECIMAL带固定小数位，7.9与7.90视为相同
+            return incomingDecimal.compareTo(currentDecimal) != 0;
+        }
+        return incoming != null && !incoming.equals(current);
     }
-}
\ No newline at end of file
+}
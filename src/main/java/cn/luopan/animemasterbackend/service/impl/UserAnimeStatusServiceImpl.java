@@ -1,112 +1,673 @@
 package cn.luopan.animemasterbackend.service.impl;
 
+import cn.luopan.animemasterbackend.dto.CollectionBatchRequest;
+import cn.luopan.animemasterbackend.dto.CollectionBatchResult;
+import cn.luopan.animemasterbackend.dto.CollectionImportResult;
+import cn.luopan.animemasterbackend.dto.CollectionTransferRow;
+import cn.luopan.animemasterbackend.dto.CursorPage;
 import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
 import cn.luopan.animemasterbackend.mapper.UserAnimeStatusMapper;
+import cn.luopan.animemasterbackend.service.CollectionCache;
 import cn.luopan.animemasterbackend.service.IUserAnimeStatusService;
+import cn.luopan.animemasterbackend.service.ProgressWriteBuffer;
+import cn.luopan.animemasterbackend.utils.CsvReader;
+import cn.luopan.animemasterbackend.utils.CsvWriter;
+import cn.luopan.animemasterbackend.utils.PageCursor;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class UserAnimeStatusServiceImpl extends ServiceImpl<UserAnimeStatusMapper, UserAnimeStatus> implements IUserAnimeStatusService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserAnimeStatusServiceImpl.class);
+
     @Autowired
     private UserAnimeStatusMapper userAnimeStatusMapper;
 
+    // 批量操作的事务超时（秒），超时后未执行的语句直接失败，批量接口的耗时有上限
+    private static final int BATCH_TIMEOUT_SECONDS = 10;
+
+    // 批量语句每条最多包含的行数
+    private static final int BATCH_CHUNK_SIZE = 500;
+
+    @Autowired
+    private CollectionCache collectionCache;
+
+    @Autowired
+    private ProgressWriteBuffer progressWriteBuffer;
+
+    // 单次批量请求最多包含的操作数
+    @Value("${anime.collection.batch.max-operations:1000}")
+    private int maxBatchOperations = 1000;
+
+    // 导入结果中最多返回的错误条数
+    private static final int IMPORT_MAX_ERRORS = 20;
+
+    // 导出CSV时写在开头的BOM，Excel据此按UTF-8打开
+    private static final char BOM = '\uFEFF';
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 单次导入最多读取的数据行数
+    @Value("${anime.collection.import.max-rows:200000}")
+    private long maxImportRows = 200000;
+
     @Override
     public List<UserAnimeStatus> getUserAnimeListByStatus(Long userId, String status) {
         QueryWrapper<UserAnimeStatus> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("user_id", userId);
         queryWrapper.eq("status", status);
-        return userAnimeStatusMapper.selectList(queryWrapper);
+        return progressWriteBuffer.overlay(userAnimeStatusMapper.selectList(queryWrapper));
+    }
+
+    @Override
+    public CursorPage<UserAnimeStatus> getUserAnimeListByStatus(Long userId, String status, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor);
+        int finalSize = Math.min(Math.max(size, 1), 200);
+
+        // 在索引idx_user_status_id(user_id, status, id)上从游标位置直接定位，耗时与页数无关
+        List<UserAnimeStatus> items = progressWriteBuffer.overlay(userAnimeStatusMapper.selectByStatusAfter(
+                userId, status, after == null ? null : after.id(), finalSize));
+
+        String nextCursor = null;
+        if (items.size() == finalSize) {
+            nextCursor = PageCursor.of(null, items.get(items.size() - 1).getId()).encode();
+        }
+        return new CursorPage<>(items, nextCursor);
     }
 
     @Override
     public boolean updateUserAnimeStatus(Long userId, Long animeId, String status) {
+        // 不存在则创建（进度为0），存在则更新状态，由uk_user_anime保证并发请求只产生一行
+        if (userAnimeStatusMapper.upsertStatus(userId, animeId, status) > 0) {
+            collectionCache.patch(userId, animeId, row -> {
+                row.setStatus(status);
+                row.setUpdatedAt(LocalDateTime.now());
+            });
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean updateAnimeProgress(Long userId, Long animeId, Integer progress) {
+        // 是否已收藏按动漫ID在收藏缓存中查找，用户不在缓存中时查询这一条收藏，不加载整个收藏列表；
+        // 已收藏时进度先写入缓冲，由ProgressWriteBuffer合并后批量写库
+        Boolean cached = collectionCache.contains(userId, animeId);
+        boolean collected = cached != null ? cached : isAnimeInCollection(userId, animeId);
+        if (collected && progressWriteBuffer.offer(userId, animeId, progress)) {
+            collectionCache.patch(userId, animeId, row -> {
+                row.setProgress(progress);
+                row.setUpdatedAt(LocalDateTime.now());
+            });
+            return true;
+        }
+
+        // 缓冲关闭或已满时直接写库；未收藏时不匹配任何行，返回false
+        if (progressWriteBuffer.writeThrough(userId, animeId,
+                () -> userAnimeStatusMapper.updateProgress(userId, animeId, progress)) > 0) {
+            collectionCache.patch(userId, animeId, row -> {
+                row.setProgress(progress);
+                row.setUpdatedAt(LocalDateTime.now());
+            });
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<UserAnimeStatus> getAllUserAnimeStatus(Long userId) {
         QueryWrapper<UserAnimeStatus> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("user_id", userId);
-        queryWrapper.eq("anime_id", animeId);
+        return progressWriteBuffer.overlay(userAnimeStatusMapper.selectList(queryWrapper));
+    }
+
+    @Override
+    public Map<String, List<UserAnimeStatus>> getCollectionsByStatus(Long userId) {
+        // 按状态分类的结果由CollectionCache缓存，收藏写入时同步更新，未变化时不再查询数据库
+        return collectionCache.get(userId, () -> getAllUserAnimeStatus(userId));
+    }
+
+    @Override
+    public boolean addToCollection(UserAnimeStatus userAnimeStatus) {
+        // 根据status设置合理的progress值，确保符合检查约束
+        normalizeProgress(userAnimeStatus);
 
-        UserAnimeStatus userAnimeStatus = userAnimeStatusMapper.selectOne(queryWrapper);
+        logger.debug("添加收藏 - 用户ID: {}, 动漫ID: {}, 状态: {}, 进度: {}", userAnimeStatus.getUserId(),
+                userAnimeStatus.getAnimeId(), userAnimeStatus.getStatus(), userAnimeStatus.getProgress());
         
-        if (userAnimeStatus == null) {
-            // 如果不存在，则创建新的记录
-            userAnimeStatus = new UserAnimeStatus();
-            userAnimeStatus.setUserId(userId);
-            userAnimeStatus.setAnimeId(animeId);
-            userAnimeStatus.setStatus(status);
-            userAnimeStatus.setProgress(0);
-            userAnimeStatus.setCreatedAt(LocalDateTime.now());
-            userAnimeStatus.setUpdatedAt(LocalDateTime.now());
-            return userAnimeStatusMapper.insert(userAnimeStatus) > 0;
-        } else {
-            // 如果存在，则更新状态
-            userAnimeStatus.setStatus(status);
-            userAnimeStatus.setUpdatedAt(LocalDateTime.now());
-            return userAnimeStatusMapper.updateById(userAnimeStatus) > 0;
+        // 设置时间戳
+        userAnimeStatus.setCreatedAt(LocalDateTime.now());
+        userAnimeStatus.setUpdatedAt(LocalDateTime.now());
+        
+        // 直接插入，已收藏时由uk_user_anime拒绝，不再先查询是否存在
+        try {
+            return cacheIfWritten(userAnimeStatusMapper.insert(userAnimeStatus), userAnimeStatus);
+        } catch (DuplicateKeyException e) {
+            return false;
         }
     }
 
     @Override
-    public boolean updateAnimeProgress(Long userId, Long animeId, Integer progress) {
+    public boolean updateCollectionStatus(Long userId, Long animeId, String status, Integer progress) {
+        // 更新状态，提供了进度时同时更新进度（丢弃缓冲中的旧进度）；未收藏时不匹配任何行，返回false
+        int rows = progress == null
+                ? userAnimeStatusMapper.updateStatus(userId, animeId, status, null)
+                : progressWriteBuffer.writeThrough(userId, animeId,
+                        () -> userAnimeStatusMapper.updateStatus(userId, animeId, status, progress));
+        if (rows > 0) {
+            collectionCache.patch(userId, animeId, row -> {
+                row.setStatus(status);
+                if (progress != null) {
+                    row.setProgress(progress);
+                }
+                row.setUpdatedAt(LocalDateTime.now());
+            });
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeFromCollection(Long userId, Long animeId) {
         QueryWrapper<UserAnimeStatus> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("user_id", userId);
         queryWrapper.eq("anime_id", animeId);
 
-        UserAnimeStatus userAnimeStatus = userAnimeStatusMapper.selectOne(queryWrapper);
-        if (userAnimeStatus != null) {
-            userAnimeStatus.setProgress(progress);
-            userAnimeStatus.setUpdatedAt(LocalDateTime.now());
-            return userAnimeStatusMapper.updateById(userAnimeStatus) > 0;
+        // 删除记录，未收藏时删除0行；缓冲中的进度一并丢弃
+        if (progressWriteBuffer.writeThrough(userId, animeId, () -> userAnimeStatusMapper.delete(queryWrapper)) > 0) {
+            collectionCache.remove(userId, animeId);
+            return true;
         }
         return false;
     }
 
     @Override
-    public List<UserAnimeStatus> getAllUserAnimeStatus(Long userId) {
+    public boolean isAnimeInCollection(Long userId, Long animeId) {
         QueryWrapper<UserAnimeStatus> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("user_id", userId);
-        return userAnimeStatusMapper.selectList(queryWrapper);
+        queryWrapper.eq("anime_id", animeId);
+        return userAnimeStatusMapper.selectCount(queryWrapper) > 0;
     }
 
     @Override
-    public Map<String, List<UserAnimeStatus>> getCollectionsByStatus(Long userId) {
-        // 获取用户所有收藏
-        List<UserAnimeStatus> allCollections = getAllUserAnimeStatus(userId);
-        
-        // 按状态分类
-        Map<String, List<UserAnimeStatus>> collectionsByStatus = new HashMap<>();
-        collectionsByStatus.put("wantToWatch", new ArrayList<>());
-        collectionsByStatus.put("watching", new ArrayList<>());
-        collectionsByStatus.put("watched", new ArrayList<>());
-        collectionsByStatus.put("dropped", new ArrayList<>());
+    @Transactional(rollbackFor = Exception.class, timeout = BATCH_TIMEOUT_SECONDS)
+    public List<CollectionBatchResult> applyBatch(Long userId, List<CollectionBatchRequest.Operation> operations) {
+        if (operations.size() > maxBatchOperations) {
+            throw new IllegalArgumentException("单次最多" + maxBatchOperations + "个操作");
+        }
 
-        // 将收藏项分配到对应状态列表
-        for (UserAnimeStatus collection : allCollections) {
-            String status = collection.getStatus();
-            if (collectionsByStatus.containsKey(status)) {
-                collectionsByStatus.get(status).add(collection);
+        Set<Long> animeIds = new LinkedHashSet<>();
+        for (CollectionBatchRequest.Operation operation : operations) {
+            if (operation != null && operation.animeId() != null) {
+                animeIds.add(operation.animeId());
             }
         }
 
-        return collectionsByStatus;
+        // 取出涉及的收藏在写缓冲中的进度，与本批操作一起写入
+        return progressWriteBuffer.writeThrough(userId, animeIds,
+                buffered -> applyBatch(userId, operations, animeIds, buffered));
+    }
+
+    private List<CollectionBatchResult> applyBatch(Long userId, List<CollectionBatchRequest.Operation> operations,
+                                                   Set<Long> animeIds, Map<Long, Integer> buffered) {
+        Set<Long> addIds = new HashSet<>();
+        for (CollectionBatchRequest.Operation operation : operations) {
+            if (operation != null && "add".equals(operation.op()) && operation.animeId() != null) {
+                addIds.add(operation.animeId());
+            }
+        }
+
+        // 一次查询并锁定涉及的全部收藏，事务结束前其他请求不能修改它们；
+        // 同一批中一起确认要添加的动漫存在，已收藏的动漫不需要再查
+        Map<Long, UserAnimeStatus> before = new HashMap<>();
+        Set<Long> existingAnime = new HashSet<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(animeIds))) {
+            for (UserAnimeStatus row : userAnimeStatusMapper.selectForUpdate(userId, chunk)) {
+                before.put(row.getAnimeId(), row);
+            }
+            List<Long> uncollectedAdds = chunk.stream()
+                    .filter(animeId -> addIds.contains(animeId) && !before.containsKey(animeId))
+                    .toList();
+            if (!uncollectedAdds.isEmpty()) {
+                existingAnime.addAll(userAnimeStatusMapper.selectExistingAnimeIds(uncollectedAdds));
+            }
+        }
+        existingAnime.addAll(before.keySet());
+
+        // 在内存中按顺序执行，得到每个操作的结果和每部动漫的最终状态
+        Map<Long, UserAnimeStatus> current = new HashMap<>(before);
+        // 缓冲中的进度视为原状态上的修改，随本批的更新一起写入
+        buffered.forEach((animeId, progress) -> {
+            UserAnimeStatus original = before.get(animeId);
+            if (original != null) {
+                UserAnimeStatus row = new UserAnimeStatus();
+                BeanUtils.copyProperties(original, row);
+                row.setProgress(progress);
+                current.put(animeId, row);
+            }
+        });
+        Set<Long> recreated = new HashSet<>();
+        List<CollectionBatchResult> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            results.add(applyOperation(i, userId, operations.get(i), before, current, recreated, existingAnime));
+        }
+
+        // 比较最终状态与数据库中的原状态，按删除、插入、更新合并写入
+        List<Long> deletes = new ArrayList<>();
+        List<UserAnimeStatus> inserts = new ArrayList<>();
+        List<UserAnimeStatus> updates = new ArrayList<>();
+        for (Long animeId : animeIds) {
+            UserAnimeStatus original = before.get(animeId);
+            UserAnimeStatus target = current.get(animeId);
+            boolean replaced = recreated.contains(animeId);
+            if (original != null && (target == null || replaced)) {
+                deletes.add(animeId);
+            }
+            if (target != null && (original == null || replaced)) {
+                inserts.add(target);
+            } else if (target != null && target != original) {
+                updates.add(target);
+            }
+        }
+        for (List<Long> chunk : chunks(deletes)) {
+            userAnimeStatusMapper.deleteByAnimeIds(userId, chunk);
+        }
+        for (List<UserAnimeStatus> chunk : chunks(inserts)) {
+            userAnimeStatusMapper.insertBatch(chunk);
+        }
+        for (List<UserAnimeStatus> chunk : chunks(updates)) {
+            userAnimeStatusMapper.updateBatch(userId, chunk);
+        }
+
+        if (!deletes.isEmpty() || !inserts.isEmpty() || !updates.isEmpty()) {
+            invalidateAfterCommit(userId);
+        }
+        return results;
     }
 
     @Override
-    public boolean addToCollection(UserAnimeStatus userAnimeStatus) {
-        // 检查是否已存在
-        if (isAnimeInCollection(userAnimeStatus.getUserId(), userAnimeStatus.getAnimeId())) {
+    @Transactional(readOnly = true)
+    public long exportCollection(Long userId, String format, OutputStream out) throws IOException {
+        boolean csv = isCsv(format);
+        long rows = 0;
+        try (Cursor<UserAnimeStatus> cursor = userAnimeStatusMapper.selectCursorByUser(userId)) {
+            if (csv) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write(BOM);
+                CsvWriter.writeRecord(writer, CollectionTransferRow.CSV_COLUMNS.toArray(String[]::new));
+                for (UserAnimeStatus row : cursor) {
+                    CsvWriter.writeRecord(writer, CollectionTransferRow.from(progressWriteBuffer.overlay(row)).toCsv());
+                    rows++;
+                }
+                writer.flush();
+                return rows;
+            }
+
+            // 同一个JsonGenerator写出全部行，每行之后写换行；不逐行flush，由生成器的缓冲区攒满后写出
+            ObjectWriter rowWriter = objectMapper.writerFor(CollectionTransferRow.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("");
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                for (UserAnimeStatus row : cursor) {
+                    rowWriter.writeValue(generator, CollectionTransferRow.from(progressWriteBuffer.overlay(row)));
+                    generator.writeRaw('\n');
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public CollectionImportResult importCollection(Long userId, String format, InputStream in) throws IOException {
+        boolean csv = isCsv(format);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        skipBom(reader);
+
+        CollectionImport collectionImport = new CollectionImport(userId);
+        try {
+            if (csv) {
+                importCsv(reader, collectionImport);
+            } else {
+                importNdjson(reader, collectionImport);
+            }
+            collectionImport.flush();
+        } finally {
+            // 导入覆盖的行数不定，整个用户的缓存失效
+            collectionCache.invalidate(userId);
+        }
+        return collectionImport.result();
+    }
+
+    private void importNdjson(BufferedReader reader, CollectionImport collectionImport) throws IOException {
+        ObjectReader rowReader = objectMapper.readerFor(CollectionTransferRow.class);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (!collectionImport.next()) {
+                return;
+            }
+            try {
+                collectionImport.add(lineNumber, rowReader.readValue(line));
+            } catch (JsonProcessingException e) {
+                collectionImport.reject(lineNumber, "JSON格式错误");
+            }
+        }
+    }
+
+    private void importCsv(BufferedReader reader, CollectionImport collectionImport) throws IOException {
+        CsvReader csvReader = new CsvReader(reader);
+        List<String> header = csvReader.next();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim(), i);
+        }
+        if (!columns.containsKey("animeId")) {
+            throw new IllegalArgumentException("CSV表头缺少animeId列");
+        }
+
+        List<String> fields;
+        while ((fields = csvReader.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            if (!collectionImport.next()) {
+                return;
+            }
+            try {
+                collectionImport.add(csvReader.getRecordLine(), CollectionTransferRow.fromCsv(fields, columns));
+            } catch (IllegalArgumentException | DateTimeException e) {
+                collectionImport.reject(csvReader.getRecordLine(), "字段格式错误: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 一次导入的状态：攒满一批后写入，并统计结果
+     */
+    private final class CollectionImport {
+
+        private final Long userId;
+
+        private final List<UserAnimeStatus> pending = new ArrayList<>(BATCH_CHUNK_SIZE);
+
+        // pending中各行所在的行号，写入前拒绝时用于错误提示
+        private final List<Long> pendingLines = new ArrayList<>(BATCH_CHUNK_SIZE);
+
+        private final List<String> errors = new ArrayList<>();
+
+        private long rows;
+
+        private long imported;
+
+        private long rejected;
+
+        CollectionImport(Long userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * 计入一个数据行，超过导入上限时返回false，其余行不再读取
+         */
+        boolean next() {
+            if (rows >= maxImportRows) {
+                errors.add("超过单次导入上限" + maxImportRows + "行，其余行未导入");
+                return false;
+            }
+            rows++;
+            return true;
+        }
+
+        void add(long line, CollectionTransferRow row) {
+            if (row.animeId() == null) {
+                reject(line, "缺少animeId");
+                return;
+            }
+            if (row.title() == null) {
+                reject(line, "缺少title");
+                return;
+            }
+            UserAnimeStatus entity = row.toEntity(userId);
+            if (entity.getStatus() == null) {
+                entity.setStatus("wantToWatch");
+            }
+            if (!isValidStatus(entity.getStatus())) {
+                reject(line, "无效的状态: " + entity.getStatus());
+                return;
+            }
+            normalizeProgress(entity);
+            pending.add(entity);
+            pendingLines.add(line);
+            if (pending.size() >= BATCH_CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < IMPORT_MAX_ERRORS) {
+                errors.add("第" + line + "行: " + message);
+            }
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            // 一次查询本批涉及的动漫，不存在的行单独拒绝，不让外键约束失败中断整个导入
+            Set<Long> animeIds = new HashSet<>();
+            pending.forEach(row -> animeIds.add(row.getAnimeId()));
+            Set<Long> existing = new HashSet<>(userAnimeStatusMapper.selectExistingAnimeIds(animeIds));
+            List<UserAnimeStatus> rows = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                UserAnimeStatus row = pending.get(i);
+                if (existing.contains(row.getAnimeId())) {
+                    rows.add(row);
+                } else {
+                    reject(pendingLines.get(i), "动漫不存在: " + row.getAnimeId());
+                }
+            }
+            pending.clear();
+            pendingLines.clear();
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            // 导入的进度覆盖写缓冲中的进度
+            animeIds.retainAll(existing);
+            progressWriteBuffer.writeThrough(userId, animeIds, buffered -> userAnimeStatusMapper.upsertBatch(rows));
+            imported += rows.size();
+        }
+
+        CollectionImportResult result() {
+            return new CollectionImportResult(rows, imported, rejected, List.copyOf(errors));
+        }
+    }
+
+    private static boolean isCsv(String format) {
+        if ("csv".equalsIgnoreCase(format)) {
+            return true;
+        }
+        if ("ndjson".equalsIgnoreCase(format)) {
             return false;
         }
+        throw new IllegalArgumentException("不支持的格式: " + format);
+    }
 
-        // 根据status设置合理的progress值，确保符合检查约束
+    private static void skipBom(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != BOM) {
+            reader.reset();
+        }
+    }
+
+    /**
+     * 在内存状态上执行单个操作
+     */
+    private CollectionBatchResult applyOperation(int index, Long userId, CollectionBatchRequest.Operation operation,
+                                                 Map<Long, UserAnimeStatus> before,
+                                                 Map<Long, UserAnimeStatus> current, Set<Long> recreated,
+                                                 Set<Long> existingAnime) {
+        if (operation == null || operation.op() == null) {
+            return CollectionBatchResult.fail(index, null, null, "缺少操作类型");
+        }
+        String op = operation.op();
+        Long animeId = operation.animeId();
+        if (animeId == null) {
+            return CollectionBatchResult.fail(index, op, null, "缺少animeId");
+        }
+
+        switch (op) {
+            case "add" -> {
+                if (operation.title() == null) {
+                    return CollectionBatchResult.fail(index, op, animeId, "缺少title");
+                }
+                String status = operation.status() == null ? "wantToWatch" : operation.status();
+                if (!isValidStatus(status)) {
+                    return CollectionBatchResult.fail(index, op, animeId, "无效的状态: " + status);
+                }
+                if (!existingAnime.contains(animeId)) {
+                    return CollectionBatchResult.fail(index, op, animeId, "动漫不存在");
+                }
+                if (current.containsKey(animeId)) {
+                    return CollectionBatchResult.fail(index, op, animeId, "该动漫已在收藏列表中");
+                }
+                UserAnimeStatus row = new UserAnimeStatus();
+                row.setUserId(userId);
+                row.setAnimeId(animeId);
+                row.setTitle(operation.title());
+                row.setTitleCn(operation.titleCn());
+                row.setImage(operation.image());
+                row.setEpisodes(operation.episodes());
+                row.setStatus(status);
+                row.setProgress(operation.progress());
+                normalizeProgress(row);
+                row.setCreatedAt(LocalDateTime.now());
+                row.setUpdatedAt(LocalDateTime.now());
+                // 同一批中先移除再添加，需要删除旧行后插入新行
+                if (before.containsKey(animeId)) {
+                    recreated.add(animeId);
+                }
+                current.put(animeId, row);
+                return CollectionBatchResult.ok(index, op, animeId);
+            }
+            case "update" -> {
+                String status = operation.status();
+                if (!isValidStatus(status)) {
+                    return CollectionBatchResult.fail(index, op, animeId, "无效的状态: " + status);
+                }
+                UserAnimeStatus existing = current.get(animeId);
+                if (existing == null) {
+                    return CollectionBatchResult.fail(index, op, animeId, "该动漫不在收藏列表中");
+                }
+                UserAnimeStatus row = new UserAnimeStatus();
+                BeanUtils.copyProperties(existing, row);
+                row.setStatus(status);
+                if (operation.progress() != null) {
+                    row.setProgress(operation.progress());
+                }
+                row.setUpdatedAt(LocalDateTime.now());
+                current.put(animeId, row);
+                return CollectionBatchResult.ok(index, op, animeId);
+            }
+            case "remove" -> {
+                if (current.remove(animeId) == null) {
+                    return CollectionBatchResult.fail(index, op, animeId, "该动漫不在收藏列表中");
+                }
+                return CollectionBatchResult.ok(index, op, animeId);
+            }
+            default -> {
+                return CollectionBatchResult.fail(index, op, animeId, "不支持的操作: " + op);
+            }
+        }
+    }
+
+    private static boolean isValidStatus(String status) {
+        if (status == null) {
+            return false;
+        }
+        try {
+            UserAnimeStatus.Status.fromValue(status);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += BATCH_CHUNK_SIZE) {
+            chunks.add(items.subList(from, Math.min(from + BATCH_CHUNK_SIZE, items.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * 事务提交后再使收藏缓存失效，避免并发读取在提交前把旧数据重新放回缓存
+     */
+    private void invalidateAfterCommit(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            collectionCache.invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                collectionCache.invalidate(userId);
+            }
+        });
+    }
+
+    /**
+     * 根据status设置合理的progress值，确保符合检查约束
+     */
+    private static void normalizeProgress(UserAnimeStatus userAnimeStatus) {
         Integer progress = userAnimeStatus.getProgress();
         String finalStatus = userAnimeStatus.getStatus();
 
@@ -138,63 +699,16 @@ public class UserAnimeStatusServiceImpl extends ServiceImpl<UserAnimeStatusMappe
                 userAnimeStatus.setProgress(Math.max(1, progress));
             }
         }
-        
-        System.out.println("Adding to collection with status: " + userAnimeStatus.getStatus() + ", progress: " + userAnimeStatus.getProgress());
-        
-        // 设置时间戳
-        userAnimeStatus.setCreatedAt(LocalDateTime.now());
-        userAnimeStatus.setUpdatedAt(LocalDateTime.now());
-        
-        // 插入记录
-        return userAnimeStatusMapper.insert(userAnimeStatus) > 0;
-    }
-
-    @Override
-    public boolean updateCollectionStatus(Long userId, Long animeId, String status, Integer progress) {
-        QueryWrapper<UserAnimeStatus> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("user_id", userId);
-        queryWrapper.eq("anime_id", animeId);
-        
-        UserAnimeStatus userAnimeStatus = userAnimeStatusMapper.selectOne(queryWrapper);
-        if (userAnimeStatus == null) {
-            return false;
-        }
-        
-        // 更新状态
-        userAnimeStatus.setStatus(status);
-        
-        // 如果提供了进度，则更新进度
-        if (progress != null) {
-            userAnimeStatus.setProgress(progress);
-        }
-        
-        // 设置更新时间
-        userAnimeStatus.setUpdatedAt(LocalDateTime.now());
-        
-        // 更新记录
-        return userAnimeStatusMapper.updateById(userAnimeStatus) > 0;
     }
 
-    @Override
-    public boolean removeFromCollection(Long userId, Long animeId) {
-        QueryWrapper<UserAnimeStatus> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("user_id", userId);
-        queryWrapper.eq("anime_id", animeId);
-        
-        // 检查是否存在
-        if (userAnimeStatusMapper.selectCount(queryWrapper) == 0) {
-            return false;
+    /**
+     * 写库成功后把写入后的行同步到收藏缓存
+     */
+    private boolean cacheIfWritten(int rows, UserAnimeStatus userAnimeStatus) {
+        if (rows > 0) {
+            collectionCache.put(userAnimeStatus);
+            return true;
         }
-        
-        // 删除记录
-        return userAnimeStatusMapper.delete(queryWrapper) > 0;
-    }
-
-    @Override
-    public boolean isAnimeInCollection(Long userId, Long animeId) {
-        QueryWrapper<UserAnimeStatus> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("user_id", userId);
-        queryWrapper.eq("anime_id", animeId);
-        return userAnimeStatusMapper.selectCount(queryWrapper) > 0;
+        return false;
     }
-}
\ No newline at end of file
+}
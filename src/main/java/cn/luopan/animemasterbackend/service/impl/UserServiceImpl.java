@@ -1,5 +1,7 @@
 package cn.luopan.animemasterbackend.service.impl;
 
+import cn.luopan.animemasterbackend.dto.LoginResult;
+import cn.luopan.animemasterbackend.dto.UserDto;
 import cn.luopan.animemasterbackend.entity.User;
 import cn.luopan.animemasterbackend.mapper.UserMapper;
 import cn.luopan.animemasterbackend.service.IUserService;
@@ -13,8 +15,6 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.regex.Pattern;
 
 @Service
@@ -117,7 +117,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     }
     
     @Override
-    public Map<String, Object> loginUser(String usernameOrEmail, String password) {
+    public LoginResult loginUser(String usernameOrEmail, String password) {
         logger.info("开始用户登录 - 用户名/邮箱: {}", usernameOrEmail);
         
         // 根据用户名或邮箱查找用户
@@ -169,15 +169,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         String token = jwtUtils.generateToken(user.getId(), user.getUsername(), user.getEmail());
         
         // 构造返回结果
-        Map<String, Object> result = new HashMap<>();
-        Map<String, Object> userInfo = new HashMap<>();
-        userInfo.put("userId", user.getId());
-        userInfo.put("username", user.getUsername());
-        userInfo.put("email", user.getEmail());
-        userInfo.put("token", token);
-        
-        result.put("user", userInfo);
-        result.put("token", token);
+        LoginResult result = new LoginResult(UserDto.from(user, token), token);
         
         logger.info("用户登录成功 - 用户ID: {}, 用户名: {}, 登录时间: {}", user.getId(), user.getUsername(), user.getLastLoginTime());
         
@@ -0,0 +1,421 @@
+package cn.luopan.animemasterbackend.utils;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bangumi条目流式解析器
+ * 基于Jackson的token流一次遍历生成Anime对象，images、rating、tags直接截取原始JSON片段，
+ * 不构建中间JsonNode树，也不重新序列化
+ * 响应中缺失的字段在Anime中保持为null
+ */
+public final class BangumiSubjectParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private BangumiSubjectParser() {
+    }
+
+    /**
+     * 条目的一个标签
+     * @param name 标签名
+     * @param count 标注次数
+     */
+    public record TagCount(String name, int count) {
+    }
+
+    /**
+     * 解析条目列表响应（/v0/subjects、/v0/search/subjects），兼容外层为data数组或直接为数组
+     * @param json 原始响应内容（UTF-8）
+     * @return 动漫列表
+     * @throws IOException JSON格式错误
+     */
+    public static List<Anime> parseSubjects(byte[] json) throws IOException {
+        List<Anime> result = new ArrayList<>();
+        if (json == null || json.length == 0) {
+            return result;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                readSubjectArray(parser, json, result);
+            } else if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                        readSubjectArray(parser, json, result);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析放送时间表响应（/calendar），合并每周各天的条目
+     * @param json 原始响应内容（UTF-8）
+     * @return 动漫列表
+     * @throws IOException JSON格式错误
+     */
+    public static List<Anime> parseCalendar(byte[] json) throws IOException {
+        List<Anime> result = new ArrayList<>();
+        if (json == null || json.length == 0) {
+            return result;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                        readSubjectArray(parser, json, result);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析tags列保存的标签数组：[{"name":"...","count":n}, ...]，忽略没有名称的元素
+     * @param tagsJson tags列的JSON
+     * @return 标签列表，保持原顺序
+     * @throws IOException JSON格式错误
+     */
+    public static List<TagCount> parseTags(String tagsJson) throws IOException {
+        List<TagCount> result = new ArrayList<>();
+        if (tagsJson == null || tagsJson.isEmpty()) {
+            return result;
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(tagsJson)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return result;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String name = null;
+                int count = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                        name = parser.getText();
+                    } else if ("count".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                        count = parser.getIntValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (name != null) {
+                    result.add(new TagCount(name, count));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析Bangumi Archive导出文件subject.jsonlines中的一行
+     * 导出格式没有images、eps和rating对象，评分信息位于顶层的score、rank、score_details，收藏信息位于favorite，
+     * 这里按API的格式生成rating（score_details对应count）和collection（done对应collect），images和eps保持为null
+     * @param line 一行JSON（UTF-8，不含换行符）
+     * @return 动漫对象，不是JSON对象时返回null
+     * @throws IOException JSON格式错误
+     */
+    public static Anime parseArchiveSubject(byte[] line) throws IOException {
+        if (line == null || line.length == 0) {
+            return null;
+        }
+        Anime anime = new Anime();
+        BigDecimal score = null;
+        Integer rank = null;
+        String scoreDetails = null;
+        int votes = 0;
+        Map<String, Integer> favorite = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                boolean isNumber = value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT;
+                switch (field) {
+                    case "id":
+                        anime.setBangumiId(parser.getValueAsInt());
+                        break;
+                    case "type":
+                        anime.setType(parser.getValueAsInt());
+                        break;
+                    case "name":
+                        anime.setName(parser.getValueAsString(""));
+                        break;
+                    case "name_cn":
+                        anime.setNameCn(parser.getValueAsString(""));
+                        break;
+                    case "date":
+                        anime.setDate(parser.getValueAsString(""));
+                        break;
+                    case "summary":
+                        anime.setDescription(parser.getValueAsString(""));
+                        break;
+                    case "tags":
+                        anime.setTags(rawValue(parser, line, value));
+                        break;
+                    case "score":
+                        if (isNumber) {
+                            score = parser.getDecimalValue();
+                        }
+                        break;
+                    case "rank":
+                        if (isNumber) {
+                            rank = parser.getValueAsInt();
+                        }
+                        break;
+                    case "score_details":
+                        if (value == JsonToken.START_OBJECT) {
+                            int start = (int) parser.getTokenLocation().getByteOffset();
+                            votes = sumCounts(parser, null);
+                            int end = (int) parser.getCurrentLocation().getByteOffset();
+                            scoreDetails = new String(line, start, end - start, StandardCharsets.UTF_8);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "favorite":
+                        if (value == JsonToken.START_OBJECT) {
+                            favorite = new LinkedHashMap<>();
+                            sumCounts(parser, favorite);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+
+        if (anime.getName() == null) {
+            anime.setName("");
+        }
+        if (anime.getNameCn() == null) {
+            anime.setNameCn("");
+        }
+        if (anime.getDate() == null) {
+            anime.setDate("");
+        }
+        if (score != null || scoreDetails != null) {
+            anime.setScore(score);
+            anime.setRankNo(rank != null ? rank : 0);
+            anime.setVotes(votes);
+            anime.setRating(writeArchiveRating(score, rank, votes, scoreDetails));
+        }
+        if (favorite != null) {
+            anime.setCollection(writeArchiveCollection(favorite));
+        }
+        return anime;
+    }
+
+    /**
+     * 读取一个值均为整数的对象，返回各值之和；counts不为null时同时保存各字段
+     */
+    private static int sumCounts(JsonParser parser, Map<String, Integer> counts) throws IOException {
+        int total = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NUMBER_INT) {
+                int count = parser.getIntValue();
+                total += count;
+                if (counts != null) {
+                    counts.put(field, count);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return total;
+    }
+
+    private static String writeArchiveRating(BigDecimal score, Integer rank, int votes, String scoreDetails) throws IOException {
+        StringWriter writer = new StringWriter(256);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("rank", rank != null ? rank : 0);
+            generator.writeNumberField("total", votes);
+            if (scoreDetails != null) {
+                generator.writeFieldName("count");
+                generator.writeRawValue(scoreDetails);
+            }
+            if (score != null) {
+                generator.writeNumberField("score", score);
+            }
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    private static String writeArchiveCollection(Map<String, Integer> favorite) throws IOException {
+        StringWriter writer = new StringWriter(128);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Integer> entry : favorite.entrySet()) {
+                String field = "done".equals(entry.getKey()) ? "collect" : entry.getKey();
+                generator.writeNumberField(field, entry.getValue());
+            }
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    private static void readSubjectArray(JsonParser parser, byte[] json, List<Anime> result) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT) {
+                result.add(readSubject(parser, json));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static Anime readSubject(JsonParser parser, byte[] json) throws IOException {
+        Anime anime = new Anime();
+        String airDate = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id":
+                    anime.setBangumiId(parser.getValueAsInt());
+                    break;
+                case "name":
+                    anime.setName(parser.getValueAsString(""));
+                    break;
+                case "name_cn":
+                    anime.setNameCn(parser.getValueAsString(""));
+                    break;
+                case "type":
+                    anime.setType(parser.getValueAsInt());
+                    break;
+                case "date":
+                    anime.setDate(parser.getValueAsString(""));
+                    break;
+                case "air_date":
+                    // 放送时间表中的开播日期字段
+                    airDate = parser.getValueAsString();
+                    break;
+                case "eps":
+                    if (value == JsonToken.VALUE_NUMBER_INT) {
+                        anime.setEps(parser.getIntValue());
+                    }
+                    break;
+                case "summary":
+                    anime.setDescription(parser.getValueAsString(""));
+                    break;
+                case "images":
+                    anime.setImages(rawValue(parser, json, value));
+                    break;
+                case "rating":
+                    readRating(parser, json, value, anime);
+                    break;
+                case "tags":
+                    anime.setTags(rawValue(parser, json, value));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (anime.getName() == null) {
+            anime.setName("");
+        }
+        if (anime.getNameCn() == null) {
+            anime.setNameCn("");
+        }
+        if (anime.getDate() == null) {
+            anime.setDate(airDate != null ? airDate : "");
+        }
+        return anime;
+    }
+
+    /**
+     * 截取rating原始JSON，同时提取score、rank、total写入排行榜使用的数值字段
+     */
+    private static void readRating(JsonParser parser, byte[] json, JsonToken value, Anime anime) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            anime.setRating(rawValue(parser, json, value));
+            return;
+        }
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken fieldValue = parser.nextToken();
+            boolean isNumber = fieldValue == JsonToken.VALUE_NUMBER_INT || fieldValue == JsonToken.VALUE_NUMBER_FLOAT;
+            switch (field) {
+                case "score":
+                    if (isNumber) {
+                        anime.setScore(parser.getDecimalValue());
+                    }
+                    break;
+                case "rank":
+                    if (isNumber) {
+                        anime.setRankNo(parser.getValueAsInt());
+                    }
+                    break;
+                case "total":
+                    if (isNumber) {
+                        anime.setVotes(parser.getValueAsInt());
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+        anime.setRating(new String(json, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 截取当前对象或数组在原始输入中的字节区间，null或标量值返回null
+     */
+    private static String rawValue(JsonParser parser, byte[] json, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT && value != JsonToken.START_ARRAY) {
+            return null;
+        }
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        parser.skipChildren();
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+        return new String(json, start, end - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package cn.luopan.animemasterbackend.utils;
+
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP连接池统计
+ * 作为ConnectionProvider的MeterRegistrar接收各远端地址的连接池指标（不依赖Micrometer），
+ * 并统计新建连接数和发出的请求数；对HTTPS而言每个新建连接对应一次TLS握手，
+ * 请求数减去新建连接数即为连接复用省下的握手次数
+ */
+public class ConnectionPoolStats implements ConnectionProvider.MeterRegistrar {
+
+    private final Map<String, ConnectionPoolMetrics> pools = new ConcurrentHashMap<>();
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+
+    private final AtomicLong connectionsClosed = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        pools.put(poolName + "@" + remoteAddress, metrics);
+    }
+
+    // 旧版本Reactor Netty没有该默认方法，因此不加@Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(poolName + "@" + remoteAddress);
+    }
+
+    public void connectionOpened() {
+        connectionsOpened.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        connectionsClosed.incrementAndGet();
+    }
+
+    public void requestSent() {
+        requests.incrementAndGet();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * 获取连接统计
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long opened = connectionsOpened.get();
+        long requestCount = requests.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connectionsOpened", opened);
+        stats.put("connectionsClosed", connectionsClosed.get());
+        stats.put("requests", requestCount);
+        stats.put("handshakesSaved", Math.max(0, requestCount - opened));
+        stats.put("reuseRatio", requestCount == 0 ? 0.0 : (double) (requestCount - opened) / requestCount);
+
+        Map<String, Object> poolStats = new LinkedHashMap<>();
+        pools.forEach((name, metrics) -> {
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("active", metrics.acquiredSize());
+            pool.put("idle", metrics.idleSize());
+            pool.put("allocated", metrics.allocatedSize());
+            pool.put("pending", metrics.pendingAcquireSize());
+            pool.put("maxAllocated", metrics.maxAllocatedSize());
+            pool.put("maxPending", metrics.maxPendingAcquireSize());
+            poolStats.put(name, pool);
+        });
+        stats.put("pools", poolStats);
+        return stats;
+    }
+}
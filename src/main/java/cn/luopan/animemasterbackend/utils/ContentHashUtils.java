@@ -0,0 +1,64 @@
+package cn.luopan.animemasterbackend.utils;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 内容哈希工具类，用于判断Bangumi条目与本地数据是否有变化
+ */
+public final class ContentHashUtils {
+
+    // 字段分隔符，避免相邻字段拼接后产生歧义
+    private static final char SEPARATOR = '\u0001';
+
+    // JSON列按键排序后重新序列化，MySQL读回的规范化文本与Bangumi返回的紧凑文本得到相同的哈希
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private ContentHashUtils() {
+    }
+
+    /**
+     * 计算动漫内容字段的哈希（MD5十六进制，32位）
+     * JSON列（images、rating、tags）按内容计算，与空白和键顺序无关
+     * @param anime 动漫对象
+     * @return 内容哈希
+     */
+    public static String hashAnime(Anime anime) {
+        StringBuilder sb = new StringBuilder(512);
+        append(sb, anime.getName());
+        append(sb, anime.getNameCn());
+        append(sb, canonicalJson(anime.getImages()));
+        append(sb, canonicalJson(anime.getRating()));
+        append(sb, canonicalJson(anime.getTags()));
+        append(sb, anime.getType());
+        append(sb, anime.getDate());
+        append(sb, anime.getEps());
+        append(sb, anime.getDescription());
+        return DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void append(StringBuilder sb, Object value) {
+        // null与空字符串需要区分
+        sb.append(value == null ? "\u0000" : value.toString()).append(SEPARATOR);
+    }
+
+    /**
+     * 规范化的JSON文本；无法解析时返回原文本
+     */
+    private static String canonicalJson(String json) {
+        if (json == null || json.isEmpty()) {
+            return json;
+        }
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(CANONICAL_MAPPER.readValue(json, Object.class));
+        } catch (JsonProcessingException e) {
+            return json;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package cn.luopan.animemasterbackend.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * RFC 4180格式的CSV写入
+ * 含逗号、双引号、换行的字段用双引号包裹，字段内的双引号写为两个双引号；记录以\r\n结尾
+ */
+public final class CsvWriter {
+
+    private CsvWriter() {
+    }
+
+    /**
+     * 写入一条记录
+     * @param writer 输出，调用方负责缓冲
+     * @param fields 各列的值，不能为null
+     * @throws IOException 写入失败
+     */
+    public static void writeRecord(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(writer, fields[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeField(Writer writer, String field) throws IOException {
+        if (!needsQuoting(field)) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < field.length(); i++) {
+            if (field.charAt(i) == '"') {
+                writer.write(field, start, i + 1 - start);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(field, start, field.length() - start);
+        writer.write('"');
+    }
+
+    private static boolean needsQuoting(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
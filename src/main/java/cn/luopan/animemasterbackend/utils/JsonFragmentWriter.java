@@ -0,0 +1,110 @@
+package cn.luopan.animemasterbackend.utils;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 将预先编码的JSON片段直接写入响应输出流
+ * 输出格式与其他接口相同：{"success":true,"message":"...","data":[片段,片段,...]}
+ */
+public final class JsonFragmentWriter {
+
+    private static final byte[] SUCCESS_PREFIX = "{\"success\":true,\"message\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FAILURE_PREFIX = "{\"success\":false,\"message\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_START = "\",\"data\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_END = "]}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OBJECT_END = "\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT_CURSOR_START = "],\"nextCursor\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT_CURSOR_NULL = "],\"nextCursor\":null}".getBytes(StandardCharsets.UTF_8);
+
+    private JsonFragmentWriter() {
+    }
+
+    /**
+     * 写入成功响应
+     * @param response HTTP响应
+     * @param message 提示信息
+     * @param fragments data数组中的各个JSON片段
+     * @throws IOException 写入失败
+     */
+    public static void writeSuccess(HttpServletResponse response, String message, List<byte[]> fragments) throws IOException {
+        writeData(response, message, fragments, DATA_END);
+    }
+
+    /**
+     * 写入带分页游标的成功响应，在data之后追加"nextCursor"字段
+     * @param response HTTP响应
+     * @param message 提示信息
+     * @param fragments data数组中的各个JSON片段
+     * @param nextCursor 下一页游标，没有更多数据时为null
+     * @throws IOException 写入失败
+     */
+    public static void writeSuccess(HttpServletResponse response, String message, List<byte[]> fragments,
+                                    String nextCursor) throws IOException {
+        byte[] dataEnd = NEXT_CURSOR_NULL;
+        if (nextCursor != null) {
+            byte[] quotedCursor = JsonStringEncoder.getInstance().quoteAsUTF8(nextCursor);
+            dataEnd = new byte[NEXT_CURSOR_START.length + quotedCursor.length + OBJECT_END.length];
+            System.arraycopy(NEXT_CURSOR_START, 0, dataEnd, 0, NEXT_CURSOR_START.length);
+            System.arraycopy(quotedCursor, 0, dataEnd, NEXT_CURSOR_START.length, quotedCursor.length);
+            System.arraycopy(OBJECT_END, 0, dataEnd, NEXT_CURSOR_START.length + quotedCursor.length, OBJECT_END.length);
+        }
+        writeData(response, message, fragments, dataEnd);
+    }
+
+    private static void writeData(HttpServletResponse response, String message, List<byte[]> fragments,
+                                  byte[] dataEnd) throws IOException {
+        byte[] quotedMessage = JsonStringEncoder.getInstance().quoteAsUTF8(message);
+        long length = SUCCESS_PREFIX.length + quotedMessage.length + DATA_START.length + dataEnd.length;
+        for (byte[] fragment : fragments) {
+            length += fragment.length;
+        }
+        length += Math.max(fragments.size() - 1, 0);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLengthLong(length);
+
+        OutputStream out = response.getOutputStream();
+        out.write(SUCCESS_PREFIX);
+        out.write(quotedMessage);
+        out.write(DATA_START);
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(fragments.get(i));
+        }
+        out.write(dataEnd);
+        out.flush();
+    }
+
+    /**
+     * 写入失败响应
+     * @param response HTTP响应
+     * @param status HTTP状态码
+     * @param message 错误信息
+     * @throws IOException 写入失败
+     */
+    public static void writeFailure(HttpServletResponse response, int status, String message) throws IOException {
+        byte[] quotedMessage = JsonStringEncoder.getInstance().quoteAsUTF8(String.valueOf(message));
+
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLengthLong(FAILURE_PREFIX.length + quotedMessage.length + OBJECT_END.length);
+
+        OutputStream out = response.getOutputStream();
+        out.write(FAILURE_PREFIX);
+        out.write(quotedMessage);
+        out.write(OBJECT_END);
+        out.flush();
+    }
+}
@@ -0,0 +1,50 @@
+package cn.luopan.animemasterbackend.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset分页游标：记录上一页最后一条的排序值和ID，编码为URL安全的Base64字符串
+ * 客户端只需原样传回，服务端据此从该位置之后继续查询，深翻页时不需要OFFSET
+ * @param value 排序列的值（只按ID排序时为空字符串）
+ * @param id 上一页最后一条的ID，用于排序值相同时确定顺序
+ */
+public record PageCursor(String value, long id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static PageCursor of(Object value, long id) {
+        return new PageCursor(value == null ? "" : value.toString(), id);
+    }
+
+    /**
+     * 编码为游标字符串
+     * @return URL安全的Base64字符串（不含填充）
+     */
+    public String encode() {
+        String raw = value + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串
+     * @param cursor 游标字符串
+     * @return 游标；cursor为空时返回null，表示从第一页开始
+     * @throws IllegalArgumentException 游标格式错误
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = raw.lastIndexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+        try {
+            return new PageCursor(raw.substring(0, separator), Long.parseLong(raw.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package cn.luopan.animemasterbackend.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 搜索分词工具类
+ * 中文、日文（汉字、平假名、片假名）和韩文按相邻两字切分为二元词，拉丁字母和数字按单词切分并转为小写；
+ * 文本先做NFKC归一化，全角字母数字与半角等价
+ */
+public class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 对待索引文本分词
+     * 除二元词外还输出单字，使单字查询也能命中
+     * @param text 文本
+     * @return 词列表（可能重复）
+     */
+    public static List<String> tokenizeForIndex(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 对查询文本分词
+     * 连续的CJK字符只输出二元词，只有单个CJK字符时输出该单字
+     * @param text 查询文本
+     * @return 去重后的词列表
+     */
+    public static List<String> tokenizeForQuery(String text) {
+        Set<String> distinct = new LinkedHashSet<>(tokenize(text, false));
+        return new ArrayList<>(distinct);
+    }
+
+    private static List<String> tokenize(String text, boolean forIndex) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+
+        StringBuilder word = new StringBuilder();
+        List<Integer> cjkRun = new ArrayList<>();
+        int i = 0;
+        while (i < normalized.length()) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (isCjk(codePoint)) {
+                flushWord(word, tokens);
+                cjkRun.add(codePoint);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                flushCjkRun(cjkRun, tokens, forIndex);
+                word.appendCodePoint(codePoint);
+            } else {
+                flushWord(word, tokens);
+                flushCjkRun(cjkRun, tokens, forIndex);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjkRun(cjkRun, tokens, forIndex);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjkRun(List<Integer> run, List<String> tokens, boolean forIndex) {
+        if (run.isEmpty()) {
+            return;
+        }
+        if (run.size() == 1 || forIndex) {
+            for (int codePoint : run) {
+                tokens.add(new String(Character.toChars(codePoint)));
+            }
+        }
+        for (int j = 0; j + 1 < run.size(); j++) {
+            tokens.add(new StringBuilder(4).appendCodePoint(run.get(j)).appendCodePoint(run.get(j + 1)).toString());
+        }
+        run.clear();
+    }
+
+    /**
+     * 判断字符是否按CJK规则切分
+     * @param codePoint 字符码点
+     * @return 是否为CJK字符
+     */
+    public static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                // 长音符「ー」属于COMMON，但在日文中是单词的一部分
+                || codePoint == 0x30FC;
+    }
+}
@@ -0,0 +1,116 @@
+package cn.luopan.animemasterbackend.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并工具类（single-flight）
+ * 相同键的并发调用只会执行一次加载函数，其余调用方等待并共享同一个结果或异常
+ * @param <K> 键类型
+ * @param <V> 结果类型
+ */
+public class SingleFlight<K, V> {
+
+    // 正在执行中的调用
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // 实际执行加载函数的次数
+    private final AtomicLong executions = new AtomicLong();
+
+    // 共享了其他调用结果的次数
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * 执行加载函数，若相同键的调用正在执行则等待其结果
+     * @param key 键
+     * @param loader 加载函数
+     * @return 加载结果
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return await(existing);
+        }
+
+        executions.incrementAndGet();
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 异步版本：若相同键的调用正在执行则返回其结果，否则执行加载函数
+     * 可与execute混用，同步调用方也会等待异步加载的结果
+     * @param key 键
+     * @param loader 返回异步结果的加载函数
+     * @return 加载结果
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.incrementAndGet();
+            // 返回副本，避免调用方完成或取消共享的结果
+            return existing.thenApply(value -> value);
+        }
+
+        executions.incrementAndGet();
+        try {
+            loader.get().whenComplete((value, error) -> {
+                inFlight.remove(key, future);
+                if (error != null) {
+                    future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                } else {
+                    future.complete(value);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future.thenApply(value -> value);
+    }
+
+    /**
+     * 获取实际执行次数
+     * @return 执行次数
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * 获取共享结果的次数
+     * @return 共享次数
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
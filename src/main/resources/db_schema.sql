@@ -25,14 +25,41 @@ CREATE TABLE anime (
     name_cn VARCHAR(255) COMMENT '动漫中文名',
     images JSON COMMENT '动漫图片信息，包含large、medium、small',
     rating JSON COMMENT '动漫评分信息，包含score、total',
+    score DECIMAL(4, 2) DEFAULT NULL COMMENT '评分，从rating.score提取',
+    rank_no INT DEFAULT 0 COMMENT 'Bangumi排名，从rating.rank提取，0表示未上榜',
+    votes INT DEFAULT 0 COMMENT '评分人数，从rating.total提取',
     tags JSON COMMENT '动漫标签列表',
     type INT DEFAULT 0 COMMENT '类型（2表示TV动画）',
     collection JSON COMMENT '收藏信息，包含collect、doing',
     date VARCHAR(20) COMMENT '开播日期',
     eps INT DEFAULT 0 COMMENT '集数',
     description TEXT COMMENT '动漫描述',
+    content_hash CHAR(32) COMMENT '内容哈希，用于同步时判断数据是否变化',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_type_rank (type, rank_no, id)
+);
+
+-- 标签表（从动漫tags JSON中提取）
+CREATE TABLE tag (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(100) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标签名，区分大小写与全半角',
+    anime_count INT NOT NULL DEFAULT 0 COMMENT '带有该标签的动漫数量',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_tag_name (name),
+    INDEX idx_anime_count (anime_count)
+);
+
+-- 动漫标签关联表
+CREATE TABLE anime_tag (
+    anime_id BIGINT NOT NULL,
+    tag_id INT NOT NULL,
+    count INT NOT NULL DEFAULT 0 COMMENT 'Bangumi用户标注该标签的次数',
+    score DECIMAL(4, 2) NOT NULL DEFAULT 0 COMMENT '动漫评分冗余，用于按标签浏览时排序，未评分为0',
+    PRIMARY KEY (anime_id, tag_id),
+    INDEX idx_tag_score (tag_id, score, anime_id),
+    FOREIGN KEY (anime_id) REFERENCES anime(id),
+    FOREIGN KEY (tag_id) REFERENCES tag(id)
 );
 
 -- 用户动漫状态表
@@ -49,7 +76,8 @@ CREATE TABLE user_anime_status (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES user(id),
     FOREIGN KEY (anime_id) REFERENCES anime(id),
-    UNIQUE KEY uk_user_anime (user_id, anime_id)
+    UNIQUE KEY uk_user_anime (user_id, anime_id),
+    INDEX idx_user_status_id (user_id, status, id)
 );
 
 -- 插入一些示例数据
@@ -0,0 +1,42 @@
+-- 已有数据库升级脚本（新建数据库请直接使用db_schema.sql）
+USE anime_master;
+
+-- 动漫表增加内容哈希列
+ALTER TABLE anime ADD COLUMN content_hash CHAR(32) COMMENT '内容哈希，用于同步时判断数据是否变化' AFTER description;
+
+-- 动漫表增加排行榜数值列及索引，并从已有的rating JSON回填
+ALTER TABLE anime
+    ADD COLUMN score DECIMAL(4, 2) DEFAULT NULL COMMENT '评分，从rating.score提取' AFTER rating,
+    ADD COLUMN rank_no INT DEFAULT 0 COMMENT 'Bangumi排名，从rating.rank提取，0表示未上榜' AFTER score,
+    ADD COLUMN votes INT DEFAULT 0 COMMENT '评分人数，从rating.total提取' AFTER rank_no,
+    ADD INDEX idx_type_rank (type, rank_no, id);
+
+UPDATE anime
+SET score   = JSON_EXTRACT(rating, '$.score'),
+    rank_no = IFNULL(JSON_EXTRACT(rating, '$.rank'), 0),
+    votes   = IFNULL(JSON_EXTRACT(rating, '$.total'), 0)
+WHERE rating IS NOT NULL;
+
+-- 标签表和动漫标签关联表（应用启动后检测到anime_tag为空时会从anime.tags自动回填）
+CREATE TABLE IF NOT EXISTS tag (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(100) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标签名，区分大小写与全半角',
+    anime_count INT NOT NULL DEFAULT 0 COMMENT '带有该标签的动漫数量',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_tag_name (name),
+    INDEX idx_anime_count (anime_count)
+);
+
+CREATE TABLE IF NOT EXISTS anime_tag (
+    anime_id BIGINT NOT NULL,
+    tag_id INT NOT NULL,
+    count INT NOT NULL DEFAULT 0 COMMENT 'Bangumi用户标注该标签的次数',
+    score DECIMAL(4, 2) NOT NULL DEFAULT 0 COMMENT '动漫评分冗余，用于按标签浏览时排序，未评分为0',
+    PRIMARY KEY (anime_id, tag_id),
+    INDEX idx_tag_score (tag_id, score, anime_id),
+    FOREIGN KEY (anime_id) REFERENCES anime(id),
+    FOREIGN KEY (tag_id) REFERENCES tag(id)
+);
+
+-- 用户动漫状态表增加按状态分页的索引
+ALTER TABLE user_anime_status ADD INDEX idx_user_status_id (user_id, status, id);
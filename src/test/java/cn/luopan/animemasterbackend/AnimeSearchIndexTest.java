@@ -0,0 +1,131 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.service.AnimeSearchIndex;
+import cn.luopan.animemasterbackend.utils.SearchTokenizer;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地搜索分词与倒排索引测试
+ */
+public class AnimeSearchIndexTest {
+
+    @Test
+    public void tokenizesCjkIntoBigramsAndLatinIntoWords() {
+        assertEquals(List.of("进击", "击的", "的巨", "巨人", "attack", "on", "titan"),
+                SearchTokenizer.tokenizeForQuery("进击的巨人 Attack on Titan"));
+        // 全角字母数字归一化为半角
+        assertEquals(List.of("k", "on"), SearchTokenizer.tokenizeForQuery("Ｋ－ＯＮ"));
+        assertEquals(List.of("海"), SearchTokenizer.tokenizeForQuery("海"));
+    }
+
+    @Test
+    public void ranksAndPaginatesHits() {
+        AnimeSearchIndex index = new AnimeSearchIndex();
+        index.index(anime(1L, "Shingeki no Kyojin", "进击的巨人", "[{\"name\":\"热血\",\"count\":10}]"));
+        index.index(anime(2L, "Shingeki no Kyojin Season 2", "进击的巨人 第二季", null));
+        index.index(anime(3L, "Kyojin no Hoshi", "巨人之星", "[{\"name\":\"棒球\",\"count\":3}]"));
+        index.index(anime(4L, "Other", "热血高校", null));
+
+        AnimeSearchIndex.SearchHits hits = index.search("进击的巨人", 0, 10);
+        assertEquals(2, hits.total());
+        assertEquals(List.of(1L, 2L), hits.ids());
+
+        // 标签名同样被索引，但权重低于中文名
+        assertEquals(List.of(4L, 1L), index.search("热血", 0, 10).ids());
+
+        // 单字查询命中单字索引
+        assertEquals(3, index.search("巨", 0, 10).total());
+
+        AnimeSearchIndex.SearchHits page = index.search("kyojin", 1, 1);
+        assertEquals(3, page.total());
+        assertEquals(1, page.ids().size());
+    }
+
+    @Test
+    public void reindexReplacesOldTerms() {
+        AnimeSearchIndex index = new AnimeSearchIndex();
+        index.index(anime(1L, "Old Name", "旧名字", null));
+        index.index(anime(1L, "New Name", "新名字", null));
+
+        assertTrue(index.search("旧名", 0, 10).ids().isEmpty());
+        assertEquals(List.of(1L), index.search("新名", 0, 10).ids());
+
+        index.remove(1L);
+        assertEquals(0, index.search("name", 0, 10).total());
+    }
+
+    @Test
+    public void rebuildOverBudgetResumesWhereItStopped() {
+        List<Anime> table = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            table.add(anime(id, "Anime " + id, "动画" + id, null));
+        }
+        List<Long> scannedFrom = new ArrayList<>();
+        AnimeMapper mapper = (AnimeMapper) Proxy.newProxyInstance(
+                AnimeMapper.class.getClassLoader(), new Class<?>[]{AnimeMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectList" -> {
+                            // 每批停留几毫秒，保证预算为0时每次重建只完成一批
+                            LockSupport.parkNanos(5_000_000);
+                            // 条件参数在生成SQL片段时才写入paramNameValuePairs
+                            QueryWrapper<?> wrapper = (QueryWrapper<?>) args[0];
+                            wrapper.getSqlSegment();
+                            long lastId = (Long) wrapper.getParamNameValuePairs().values().iterator().next();
+                            scannedFrom.add(lastId);
+                            return table.stream().filter(row -> row.getId() > lastId).limit(2).toList();
+                        }
+                        case "toString" -> {
+                            return "AnimeMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        AnimeSearchIndex index = new AnimeSearchIndex();
+        ReflectionTestUtils.setField(index, "animeMapper", mapper);
+        ReflectionTestUtils.setField(index, "rebuildBudgetSeconds", 0L);
+        ReflectionTestUtils.setField(index, "batchSize", 2);
+
+        index.rebuild();
+        Map<String, Object> stats = index.getStats();
+        assertFalse(index.isReady());
+        assertEquals("budget_exceeded", stats.get("lastRebuildResult"));
+        assertEquals(2L, stats.get("resumeFromId"));
+        assertEquals(2, stats.get("documents"));
+
+        // 后续重建从上次停止处继续，不重新扫描已索引的行
+        index.rebuild();
+        index.rebuild();
+        index.rebuild();
+        stats = index.getStats();
+        assertTrue(index.isReady());
+        assertEquals("completed", stats.get("lastRebuildResult"));
+        assertEquals(0L, stats.get("resumeFromId"));
+        assertEquals(4L, stats.get("rebuildAttempts"));
+        assertEquals(5, stats.get("documents"));
+        assertEquals(List.of(0L, 2L, 4L, 5L), scannedFrom);
+    }
+
+    private static Anime anime(Long id, String name, String nameCn, String tags) {
+        Anime anime = new Anime();
+        anime.setId(id);
+        anime.setName(name);
+        anime.setNameCn(nameCn);
+        anime.setTags(tags);
+        return anime;
+    }
+}
@@ -0,0 +1,122 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.entity.AnimeTag;
+import cn.luopan.animemasterbackend.mapper.AnimeTagMapper;
+import cn.luopan.animemasterbackend.mapper.TagMapper;
+import cn.luopan.animemasterbackend.service.AnimeTagService;
+import cn.luopan.animemasterbackend.service.TagDictionary;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 标签动漫数量的增量维护测试
+ */
+public class AnimeTagCountTest {
+
+    private static final Map<String, Integer> TAG_IDS = Map.of("科幻", 1, "TV", 2, "原创", 3);
+
+    // 模拟的anime_tag表
+    private final List<AnimeTag> animeTags = new ArrayList<>();
+
+    // 模拟的tag.anime_count：标签ID -> 动漫数量
+    private final Map<Integer, Integer> animeCounts = new HashMap<>();
+
+    // 每次addAnimeCount传入的增量
+    private final List<Map<Integer, Integer>> countUpdates = new ArrayList<>();
+
+    @Test
+    public void countsFollowTagSetChanges() {
+        AnimeTagService service = newService();
+
+        service.syncTags(List.of(anime(1, "科幻", "TV"), anime(2, "TV")));
+        assertEquals(Map.of(1, 1, 2, 2), animeCounts);
+
+        // 动漫1去掉TV、加上原创；动漫2标签不变
+        service.syncTags(List.of(anime(1, "科幻", "原创"), anime(2, "TV")));
+        assertEquals(Map.of(1, 1, 2, 1, 3, 1), animeCounts);
+        assertEquals(Map.of(2, -1, 3, 1), countUpdates.get(1));
+
+        // 标签完全不变时不更新tag表
+        service.syncTags(List.of(anime(2, "TV")));
+        assertEquals(2, countUpdates.size());
+        assertEquals(3, animeTags.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private AnimeTagService newService() {
+        AnimeTagMapper animeTagMapper = (AnimeTagMapper) Proxy.newProxyInstance(
+                AnimeTagMapper.class.getClassLoader(), new Class<?>[]{AnimeTagMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectTagsForUpdate" -> {
+                            Collection<Long> animeIds = (Collection<Long>) args[0];
+                            return animeTags.stream().filter(row -> animeIds.contains(row.getAnimeId())).toList();
+                        }
+                        case "deleteByAnimeIds" -> {
+                            Collection<Long> animeIds = (Collection<Long>) args[0];
+                            animeTags.removeIf(row -> animeIds.contains(row.getAnimeId()));
+                            return 0;
+                        }
+                        case "insertBatch" -> {
+                            animeTags.addAll((List<AnimeTag>) args[0]);
+                            return ((List<AnimeTag>) args[0]).size();
+                        }
+                        case "toString" -> {
+                            return "AnimeTagMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        TagMapper tagMapper = (TagMapper) Proxy.newProxyInstance(
+                TagMapper.class.getClassLoader(), new Class<?>[]{TagMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "addAnimeCount" -> {
+                            Map<Integer, Integer> deltas = (Map<Integer, Integer>) args[0];
+                            countUpdates.add(Map.copyOf(deltas));
+                            deltas.forEach((tagId, delta) -> animeCounts.merge(tagId, delta, Integer::sum));
+                            return deltas.size();
+                        }
+                        case "toString" -> {
+                            return "TagMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        // 字典中预先放入全部标签，不需要查询tag表
+        TagDictionary dictionary = new TagDictionary();
+        ((Map<String, Integer>) ReflectionTestUtils.getField(dictionary, "idsByName")).putAll(TAG_IDS);
+        TAG_IDS.forEach((name, id) ->
+                ((Map<Integer, String>) ReflectionTestUtils.getField(dictionary, "namesById")).put(id, name));
+
+        AnimeTagService service = new AnimeTagService();
+        ReflectionTestUtils.setField(service, "animeTagMapper", animeTagMapper);
+        ReflectionTestUtils.setField(service, "tagMapper", tagMapper);
+        ReflectionTestUtils.setField(service, "tagDictionary", dictionary);
+        return service;
+    }
+
+    private static Anime anime(long id, String... tags) {
+        Anime anime = new Anime();
+        anime.setId(id);
+        anime.setScore(new BigDecimal("7.5").add(BigDecimal.valueOf(id)));
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < tags.length; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"name\":\"").append(tags[i]).append("\",\"count\":").append(10 - i).append('}');
+        }
+        anime.setTags(json.append(']').toString());
+        return anime;
+    }
+}
@@ -0,0 +1,48 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.service.TagDictionary;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import cn.luopan.animemasterbackend.utils.PageCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 标签提取与分页游标测试
+ */
+public class AnimeTagExtractionTest {
+
+    @Test
+    public void parsesTagNamesAndCounts() throws Exception {
+        List<BangumiSubjectParser.TagCount> tags = BangumiSubjectParser.parseTags(
+                "[{\"name\":\"百合\",\"count\":120,\"total_cont\":3},{\"count\":5},{\"name\":\"原创\",\"count\":8}]");
+        assertEquals(List.of(new BangumiSubjectParser.TagCount("百合", 120),
+                new BangumiSubjectParser.TagCount("原创", 8)), tags);
+        assertEquals(List.of(), BangumiSubjectParser.parseTags(null));
+        assertEquals(List.of(), BangumiSubjectParser.parseTags("{}"));
+    }
+
+    @Test
+    public void internNormalizesTagNames() {
+        TagDictionary dictionary = new TagDictionary();
+        assertEquals("百合", dictionary.intern("  百合 "));
+        assertNull(dictionary.intern("   "));
+        assertNull(dictionary.intern("a".repeat(TagDictionary.MAX_NAME_LENGTH + 1)));
+    }
+
+    @Test
+    public void cursorRoundTrips() {
+        String encoded = PageCursor.of("8.25", 123456L).encode();
+        assertEquals(new PageCursor("8.25", 123456L), PageCursor.decode(encoded));
+        assertEquals(new PageCursor("", 7L), PageCursor.decode(PageCursor.of(null, 7L).encode()));
+        assertNull(PageCursor.decode(null));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor!"));
+        // "abc"：缺少分隔符；"8.25|x"：ID不是数字
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("YWJj"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("OC4yNXx4"));
+    }
+}
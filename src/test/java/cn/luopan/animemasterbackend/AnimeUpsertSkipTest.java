@@ -0,0 +1,139 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.service.IAnimeService;
+import cn.luopan.animemasterbackend.service.impl.AnimeServiceImpl;
+import cn.luopan.animemasterbackend.utils.ContentHashUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 同步时未变化条目的跳过判断测试
+ * MySQL的JSON列读回的是规范化后的文本，与Bangumi返回的紧凑文本不同，不能据此判断为有变化
+ */
+public class AnimeUpsertSkipTest {
+
+    // 模拟的anime表
+    private final List<Anime> table = new ArrayList<>();
+
+    // 每次upsertBatch写入的行数
+    private final List<Integer> upserts = new ArrayList<>();
+
+    @Test
+    public void unchangedSubjectWithNormalizedJsonIsSkipped() {
+        Anime subject = subject();
+        // 上次同步写入的行：哈希按JSON内容计算，与读回的规范化文本无关
+        Anime stored = normalized(subject);
+        stored.setContentHash(ContentHashUtils.hashAnime(subject));
+        table.add(stored);
+
+        IAnimeService.UpsertResult result = newService().upsertSubjects(List.of(subject()));
+
+        assertEquals(new IAnimeService.UpsertResult(0, 0, 1), result);
+        assertEquals(List.of(), upserts);
+    }
+
+    @Test
+    public void legacyRowWithoutHashOnlyRewritesHash() {
+        Anime stored = normalized(subject());
+        stored.setContentHash(null);
+        table.add(stored);
+
+        // 没有哈希时逐列比较，JSON列内容相同，只补写哈希；未注入搜索索引等依赖，若被调用会抛出异常
+        IAnimeService.UpsertResult result = newService().upsertSubjects(List.of(subject()));
+
+        assertEquals(new IAnimeService.UpsertResult(0, 0, 1), result);
+        assertEquals(List.of(1), upserts);
+        assertEquals(ContentHashUtils.hashAnime(subject()), stored.getContentHash());
+    }
+
+    @Test
+    public void subjectWithoutTagsIsSkippedAfterHashIsRewritten() {
+        Anime stored = normalized(subject());
+        // 旧规则按条目本身计算哈希：缺少标签的条目与本地行的哈希永远不一致
+        Anime withoutTags = subject();
+        withoutTags.setTags(null);
+        stored.setContentHash(ContentHashUtils.hashAnime(withoutTags));
+        table.add(stored);
+
+        Anime first = subject();
+        first.setTags(null);
+        AnimeServiceImpl service = newService();
+        assertEquals(new IAnimeService.UpsertResult(0, 0, 1), service.upsertSubjects(List.of(first)));
+        assertEquals(List.of(1), upserts);
+        // 补写的是合并后整行的哈希，本地的标签保持不变
+        assertEquals(ContentHashUtils.hashAnime(subject()), stored.getContentHash());
+
+        Anime second = subject();
+        second.setTags(null);
+        assertEquals(new IAnimeService.UpsertResult(0, 0, 1), service.upsertSubjects(List.of(second)));
+        assertEquals(List.of(1), upserts);
+    }
+
+    private AnimeServiceImpl newService() {
+        AnimeMapper mapper = (AnimeMapper) Proxy.newProxyInstance(
+                AnimeMapper.class.getClassLoader(), new Class<?>[]{AnimeMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectList" -> {
+                            return new ArrayList<>(table);
+                        }
+                        case "upsertBatch" -> {
+                            upserts.add(((List<?>) args[0]).size());
+                            return ((List<?>) args[0]).size();
+                        }
+                        case "toString" -> {
+                            return "AnimeMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        AnimeServiceImpl service = new AnimeServiceImpl();
+        ReflectionTestUtils.setField(service, "animeMapper", mapper);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        return service;
+    }
+
+    private static Anime subject() {
+        Anime anime = new Anime();
+        anime.setBangumiId(253);
+        anime.setName("カウボーイビバップ");
+        anime.setNameCn("星际牛仔");
+        anime.setImages("{\"small\":\"s.jpg\",\"large\":\"https://lain.bgm.tv/pic/cover/l/c2/0a/253_t3XWl.jpg\"}");
+        anime.setRating("{\"rank\":3,\"total\":12000,\"score\":9.1}");
+        anime.setScore(new BigDecimal("9.1"));
+        anime.setRankNo(3);
+        anime.setVotes(12000);
+        anime.setTags("[{\"name\":\"科幻\",\"count\":3000},{\"name\":\"TV\",\"count\":2000}]");
+        anime.setType(2);
+        anime.setDate("1998-04-03");
+        anime.setEps(26);
+        anime.setDescription("2071年……");
+        return anime;
+    }
+
+    /**
+     * MySQL读回JSON列的形式：冒号和逗号后带空格，对象的键按长度和字典序重新排序
+     */
+    private static Anime normalized(Anime subject) {
+        Anime stored = new Anime();
+        BeanUtils.copyProperties(subject, stored);
+        stored.setId(1L);
+        stored.setImages("{\"large\": \"https://lain.bgm.tv/pic/cover/l/c2/0a/253_t3XWl.jpg\", \"small\": \"s.jpg\"}");
+        stored.setRating("{\"rank\": 3, \"score\": 9.1, \"total\": 12000}");
+        stored.setTags("[{\"name\": \"科幻\", \"count\": 3000}, {\"name\": \"TV\", \"count\": 2000}]");
+        stored.setScore(new BigDecimal("9.10"));
+        return stored;
+    }
+}
@@ -0,0 +1,94 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.service.BangumiArchiveImporter;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bangumi Archive导出行解析与离线导入流程测试
+ */
+public class BangumiArchiveImportTest {
+
+    private static final String SUBJECT = "{\"id\":253,\"type\":2,\"name\":\"カウボーイビバップ\",\"name_cn\":\"星际牛仔\","
+            + "\"infobox\":\"{{Infobox animanga/TVAnime}}\",\"platform\":1,\"summary\":\"2071年\",\"nsfw\":false,"
+            + "\"tags\":[{\"name\":\"SUNRISE\",\"count\":1500}],\"score\":8.9,"
+            + "\"score_details\":{\"1\":10,\"10\":900,\"9\":90},\"rank\":3,\"date\":\"1998-10-23\","
+            + "\"favorite\":{\"wish\":1,\"done\":2,\"doing\":3,\"on_hold\":4,\"dropped\":5},\"series\":false}";
+
+    @Test
+    public void parsesArchiveSubjectIntoApiShapedColumns() throws Exception {
+        Anime anime = BangumiSubjectParser.parseArchiveSubject(SUBJECT.getBytes(StandardCharsets.UTF_8));
+        assertEquals(253, anime.getBangumiId());
+        assertEquals(2, anime.getType());
+        assertEquals("星际牛仔", anime.getNameCn());
+        assertEquals("1998-10-23", anime.getDate());
+        assertEquals(0, new BigDecimal("8.9").compareTo(anime.getScore()));
+        assertEquals(3, anime.getRankNo());
+        assertEquals(1000, anime.getVotes());
+        assertEquals("{\"rank\":3,\"total\":1000,\"count\":{\"1\":10,\"10\":900,\"9\":90},\"score\":8.9}", anime.getRating());
+        assertEquals("{\"wish\":1,\"collect\":2,\"doing\":3,\"on_hold\":4,\"dropped\":5}", anime.getCollection());
+        assertEquals("[{\"name\":\"SUNRISE\",\"count\":1500}]", anime.getTags());
+        assertNull(anime.getImages());
+        assertNull(anime.getEps());
+    }
+
+    @Test
+    public void importsOnlyAnimeInBatches() throws Exception {
+        List<List<Anime>> batches = Collections.synchronizedList(new ArrayList<>());
+        AnimeMapper mapper = (AnimeMapper) Proxy.newProxyInstance(AnimeMapper.class.getClassLoader(),
+                new Class<?>[]{AnimeMapper.class}, (proxy, method, args) -> {
+                    if ("upsertBatch".equals(method.getName())) {
+                        @SuppressWarnings("unchecked")
+                        List<Anime> batch = (List<Anime>) args[0];
+                        batches.add(new ArrayList<>(batch));
+                        return batch.size();
+                    }
+                    if ("toString".equals(method.getName())) {
+                        return "AnimeMapper stub";
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        BangumiArchiveImporter importer = new BangumiArchiveImporter();
+        ReflectionTestUtils.setField(importer, "animeMapper", mapper);
+        ReflectionTestUtils.setField(importer, "parseThreads", 3);
+        ReflectionTestUtils.setField(importer, "batchSize", 64);
+
+        // 2500条：每5条中1条是书籍（type=1），另有一行格式错误和若干空行，使用Windows换行
+        StringBuilder archive = new StringBuilder();
+        for (int i = 1; i <= 2500; i++) {
+            archive.append("{\"id\":").append(i).append(",\"type\":").append(i % 5 == 0 ? 1 : 2)
+                    .append(",\"name\":\"subject-").append(i).append("\",\"score\":7.1,\"rank\":").append(i)
+                    .append("}\r\n");
+            if (i == 1000) {
+                archive.append("{\"id\":broken\r\n\r\n");
+            }
+        }
+        BangumiArchiveImporter.ImportResult result = importer.importLines(
+                new ByteArrayInputStream(archive.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2501, result.lines());
+        assertEquals(2000, result.matched());
+        assertEquals(2000, result.written());
+        assertEquals(1, result.malformed());
+        assertEquals(2000, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 64));
+        assertTrue(batches.stream().flatMap(List::stream).allMatch(anime -> anime.getType() == 2
+                && anime.getContentHash() != null && anime.getName().startsWith("subject-")));
+    }
+}
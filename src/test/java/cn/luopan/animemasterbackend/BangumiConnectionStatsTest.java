@@ -0,0 +1,51 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.config.WebClientConfig;
+import cn.luopan.animemasterbackend.utils.ConnectionPoolStats;
+import org.junit.jupiter.api.Test;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 验证连接统计只在新建连接时计数：复用连接池中的连接不算新建，handshakesSaved等于复用的次数
+ */
+public class BangumiConnectionStatsTest {
+
+    private static final int REQUESTS = 5;
+
+    @Test
+    public void pooledRequestsReuseOneConnection() throws Exception {
+        ConnectionPoolStats stats = new ConnectionPoolStats();
+        ConnectionProvider provider = ConnectionProvider.builder("stats-test").maxConnections(1).build();
+        try (BangumiStubServer stub = new BangumiStubServer()) {
+            sendSequentially(stub, provider, stats);
+
+            assertEquals(1L, stats.getConnectionsOpened());
+            assertEquals((long) REQUESTS, stats.getRequests());
+            assertEquals((long) REQUESTS - 1, stats.getStats().get("handshakesSaved"));
+        } finally {
+            provider.disposeLater().block();
+        }
+    }
+
+    @Test
+    public void requestsWithoutPoolOpenOneConnectionEach() throws Exception {
+        ConnectionPoolStats stats = new ConnectionPoolStats();
+        try (BangumiStubServer stub = new BangumiStubServer()) {
+            sendSequentially(stub, ConnectionProvider.newConnection(), stats);
+
+            assertEquals((long) REQUESTS, stats.getConnectionsOpened());
+            assertEquals(0L, stats.getStats().get("handshakesSaved"));
+        }
+    }
+
+    private static void sendSequentially(BangumiStubServer stub, ConnectionProvider provider, ConnectionPoolStats stats) {
+        HttpClient client = WebClientConfig.createBangumiHttpClient(provider, stats, 3000, 10000, false, false)
+                .baseUrl(stub.baseUrl());
+        for (int i = 0; i < REQUESTS; i++) {
+            client.get().uri("/v0/subjects").responseContent().aggregate().asString().block();
+        }
+    }
+}
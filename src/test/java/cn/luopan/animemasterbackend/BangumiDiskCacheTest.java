@@ -0,0 +1,167 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.service.BangumiApiClient;
+import cn.luopan.animemasterbackend.service.BangumiDiskCache;
+import cn.luopan.animemasterbackend.service.BangumiResponseCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bangumi磁盘缓存的持久化、损坏恢复、压缩以及304条件请求测试
+ */
+public class BangumiDiskCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<BangumiDiskCache> caches = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        caches.forEach(BangumiDiskCache::shutdown);
+    }
+
+    @Test
+    public void entriesSurviveRestartAndTornTail() throws Exception {
+        BangumiDiskCache cache = newCache(300);
+        byte[] body = "{\"data\":[]}".getBytes(StandardCharsets.UTF_8);
+        String key = BangumiDiskCache.key("GET", "/calendar", null);
+        cache.put(key, "\"v1\"", "Mon, 01 Jan 2024 00:00:00 GMT", body);
+        cache.shutdown();
+
+        // 模拟写入到一半时进程退出
+        Files.write(directory.resolve("bangumi-cache.dat"), new byte[]{0x42, 0x47, 0x43, 0x31, 0, 0, 1},
+                StandardOpenOption.APPEND);
+
+        BangumiDiskCache restarted = newCache(300);
+        BangumiDiskCache.Entry entry = restarted.lookup(key);
+        assertNotNull(entry);
+        assertEquals("\"v1\"", entry.getEtag());
+        assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", entry.getLastModified());
+        assertArrayEquals(body, restarted.read(entry));
+        assertEquals(body.length, entry.getBodyLength());
+        assertNull(restarted.lookup(BangumiDiskCache.key("POST", "/calendar", body)));
+    }
+
+    @Test
+    public void compactionDropsSupersededRecords() throws Exception {
+        BangumiDiskCache cache = newCache(300);
+        String key = BangumiDiskCache.key("GET", "/v0/subjects?type=2&sort=rank&limit=50", null);
+        byte[] body = new byte[600 * 1024];
+        for (int version = 1; version <= 3; version++) {
+            Arrays.fill(body, (byte) ('0' + version));
+            cache.put(key, "\"v" + version + "\"", null, body);
+        }
+        assertTrue((Long) cache.getStats().get("fileBytes") > 3L * body.length);
+
+        cache.compactIfNeeded();
+
+        assertEquals(1L, cache.getStats().get("compactions"));
+        assertTrue((Long) cache.getStats().get("fileBytes") < 2L * body.length);
+        BangumiDiskCache.Entry entry = cache.lookup(key);
+        assertEquals("\"v3\"", entry.getEtag());
+        assertArrayEquals(body, cache.read(entry));
+
+        BangumiDiskCache restarted = newCache(300);
+        assertArrayEquals(body, restarted.read(restarted.lookup(key)));
+    }
+
+    @Test
+    public void writesShareRegionMappingsAndSurviveRestart() throws Exception {
+        BangumiDiskCache cache = newCache(300, 1024 * 1024);
+        byte[][] bodies = new byte[5][];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = new byte[400 * 1024];
+            Arrays.fill(bodies[i], (byte) ('a' + i));
+            cache.put(BangumiDiskCache.key("GET", "/v0/subjects/" + i, null), "\"v" + i + "\"", null, bodies[i]);
+        }
+
+        // 每个1MB区域放两条记录，第三条从下一个区域开始；写入时不再重新映射
+        assertEquals(3L, cache.getStats().get("mappedRegions"));
+        assertEquals(3L, cache.getStats().get("mappings"));
+        for (int i = 0; i < bodies.length; i++) {
+            assertArrayEquals(bodies[i], cache.read(cache.lookup(BangumiDiskCache.key("GET", "/v0/subjects/" + i, null))));
+        }
+        cache.shutdown();
+
+        BangumiDiskCache restarted = newCache(300, 1024 * 1024);
+        assertEquals(5, restarted.getStats().get("entries"));
+        for (int i = 0; i < bodies.length; i++) {
+            BangumiDiskCache.Entry entry = restarted.lookup(BangumiDiskCache.key("GET", "/v0/subjects/" + i, null));
+            assertEquals("\"v" + i + "\"", entry.getEtag());
+            assertArrayEquals(bodies[i], restarted.read(entry));
+        }
+    }
+
+    @Test
+    public void notModifiedResponseReusesStoredBody() throws Exception {
+        try (BangumiStubServer stub = new BangumiStubServer()) {
+            stub.setEtag("\"calendar-1\"");
+            // 新鲜期为0，每次都向上游验证
+            BangumiDiskCache diskCache = newCache(0);
+
+            BangumiResponseCache responseCache = new BangumiResponseCache();
+            ReflectionTestUtils.setField(responseCache, "maxEntries", 16);
+            responseCache.init();
+            BangumiApiClient client = new BangumiApiClient();
+            ReflectionTestUtils.setField(client, "bangumiWebClient", WebClient.builder().baseUrl(stub.baseUrl()).build());
+            ReflectionTestUtils.setField(client, "responseCache", responseCache);
+            ReflectionTestUtils.setField(client, "diskCache", diskCache);
+            ReflectionTestUtils.setField(client, "objectMapper", new ObjectMapper());
+            ReflectionTestUtils.setField(client, "calendarTimeoutMs", 5000L);
+            ReflectionTestUtils.setField(client, "maxConcurrent", 8);
+            ReflectionTestUtils.setField(client, "maxBodyBytes", 16 * 1024 * 1024);
+            ReflectionTestUtils.setField(client, "failureThreshold", 5);
+            ReflectionTestUtils.setField(client, "openMs", 30000L);
+            client.init();
+
+            byte[] first = client.getCalendar();
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((Long) diskCache.getStats().get("stores") == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // 内存缓存TTL为0，第二次调用会发起带If-None-Match的请求
+            byte[] second = client.getCalendar();
+
+            assertEquals(2, stub.requestCount());
+            assertEquals(1, stub.notModifiedCount());
+            assertArrayEquals(first, second);
+            assertEquals(1L, diskCache.getStats().get("notModified"));
+        }
+    }
+
+    private BangumiDiskCache newCache(long freshSeconds) {
+        return newCache(freshSeconds, 32 * 1024 * 1024);
+    }
+
+    private BangumiDiskCache newCache(long freshSeconds, int regionBytes) {
+        BangumiDiskCache cache = new BangumiDiskCache();
+        ReflectionTestUtils.setField(cache, "regionBytes", regionBytes);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directory", directory.toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(cache, "freshSeconds", freshSeconds);
+        ReflectionTestUtils.setField(cache, "maxAgeHours", 168L);
+        cache.init();
+        caches.add(cache);
+        return cache;
+    }
+}
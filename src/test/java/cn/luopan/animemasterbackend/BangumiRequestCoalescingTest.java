@@ -0,0 +1,69 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.service.BangumiResponseCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 验证相同参数的并发Bangumi请求只会向上游发起一次
+ */
+public class BangumiRequestCoalescingTest {
+
+    private static final int CALLERS = 100;
+
+    @Test
+    public void concurrentIdenticalRequestsHitUpstreamOnce() throws Exception {
+        try (BangumiStubServer stub = new BangumiStubServer()) {
+            // 上游响应足够慢，保证所有调用方都在请求返回前到达
+            stub.setDelayMillis(500);
+            WebClient webClient = WebClient.builder().baseUrl(stub.baseUrl()).build();
+
+            BangumiResponseCache cache = new BangumiResponseCache();
+            ReflectionTestUtils.setField(cache, "maxEntries", 16);
+            ReflectionTestUtils.setField(cache, "dailyTtlSeconds", 600L);
+            ReflectionTestUtils.setField(cache, "staleSeconds", 600L);
+            cache.init();
+
+            ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<byte[]>> results = new ArrayList<>();
+            try {
+                for (int i = 0; i < CALLERS; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return cache.get(BangumiResponseCache.ENDPOINT_DAILY, "limit=50&sort=date&type=2",
+                                () -> webClient.get()
+                                        .uri("/v0/subjects?type=2&sort=date&limit=50")
+                                        .retrieve()
+                                        .bodyToMono(byte[].class)
+                                        .block());
+                    }));
+                }
+                start.countDown();
+
+                byte[] first = results.get(0).get(10, TimeUnit.SECONDS);
+                for (Future<byte[]> result : results) {
+                    assertArrayEquals(first, result.get(10, TimeUnit.SECONDS));
+                }
+            } finally {
+                executor.shutdownNow();
+                cache.shutdown();
+            }
+
+            assertEquals(1, stub.requestCount());
+            assertEquals(1L, cache.getStats().get("upstreamLoads"));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.service.BangumiApiClient;
+import cn.luopan.animemasterbackend.service.BangumiDiskCache;
+import cn.luopan.animemasterbackend.service.BangumiResponseCache;
+import cn.luopan.animemasterbackend.service.BangumiUnavailableException;
+import cn.luopan.animemasterbackend.utils.CircuitBreaker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bangumi客户端的超时、熔断、并发隔离和故障时返回旧响应测试
+ */
+public class BangumiResilienceTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<BangumiDiskCache> caches = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        caches.forEach(BangumiDiskCache::shutdown);
+    }
+
+    @Test
+    public void circuitBreakerOpensAndRecoversThroughHalfOpen() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, now::get);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        // 冷却结束后只放行一次试探调用，试探失败重新打开
+        now.addAndGet(1000);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        now.addAndGet(1000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2L, breaker.getOpened());
+        assertEquals(2L, breaker.getRejected());
+    }
+
+    @Test
+    public void slowUpstreamTimesOutAndOpensCircuit() throws Exception {
+        try (BangumiStubServer stub = new BangumiStubServer()) {
+            BangumiApiClient client = newClient(stub, 8, 2);
+            // 先完成一次请求，冷启动时WebClient的初始化和建立连接可能超过200ms的超时，请求到不了上游
+            client.getSubjects("rank", 50);
+            stub.setDelayMillis(2000);
+
+            long start = System.nanoTime();
+            assertThrows(BangumiUnavailableException.class, client::getCalendar);
+            assertThrows(BangumiUnavailableException.class, client::getCalendar);
+            // 熔断打开后直接拒绝，不再请求上游
+            assertThrows(BangumiUnavailableException.class, client::getCalendar);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(elapsedMillis < 1500, "耗时" + elapsedMillis + "ms");
+            assertEquals(3, stub.requestCount());
+            assertEquals("OPEN", client.getStats().get("circuitState"));
+            assertEquals(2L, client.getStats().get("timeouts"));
+        }
+    }
+
+    @Test
+    public void serverErrorFallsBackToStoredResponse() throws Exception {
+        try (BangumiStubServer stub = new BangumiStubServer()) {
+            // 没有ETag且freshSeconds为0时响应不写入磁盘缓存
+            stub.setEtag("\"calendar-v1\"");
+            BangumiApiClient client = newClient(stub, 8, 5);
+            BangumiDiskCache diskCache = (BangumiDiskCache) ReflectionTestUtils.getField(client, "diskCache");
+
+            byte[] first = client.getCalendar();
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((Long) diskCache.getStats().get("stores") == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            stub.setStatus(503);
+            assertArrayEquals(first, client.getCalendar());
+            assertEquals(1L, client.getStats().get("staleFallbacks"));
+            assertEquals(1L, client.getStats().get("failures"));
+        }
+    }
+
+    @Test
+    public void bulkheadRejectsWhenFull() throws Exception {
+        try (BangumiStubServer stub = new BangumiStubServer()) {
+            stub.setDelayMillis(500);
+            BangumiApiClient client = newClient(stub, 1, 5);
+
+            CompletableFuture<byte[]> slow = CompletableFuture.supplyAsync(() -> client.getSubjects("rank", 50));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (stub.requestCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(BangumiUnavailableException.class, client::getCalendar);
+            assertEquals(1L, client.getStats().get("bulkheadRejected"));
+            slow.get();
+            assertEquals(1, stub.requestCount());
+            assertEquals("CLOSED", client.getStats().get("circuitState"));
+        }
+    }
+
+    private BangumiApiClient newClient(BangumiStubServer stub, int maxConcurrent, int failureThreshold) {
+        BangumiDiskCache diskCache = new BangumiDiskCache();
+        ReflectionTestUtils.setField(diskCache, "enabled", true);
+        ReflectionTestUtils.setField(diskCache, "directory", directory.toString());
+        ReflectionTestUtils.setField(diskCache, "maxBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(diskCache, "freshSeconds", 0L);
+        ReflectionTestUtils.setField(diskCache, "maxAgeHours", 168L);
+        diskCache.init();
+        caches.add(diskCache);
+
+        BangumiResponseCache responseCache = new BangumiResponseCache();
+        ReflectionTestUtils.setField(responseCache, "maxEntries", 16);
+        responseCache.init();
+
+        BangumiApiClient client = new BangumiApiClient();
+        ReflectionTestUtils.setField(client, "bangumiWebClient", WebClient.builder().baseUrl(stub.baseUrl()).build());
+        ReflectionTestUtils.setField(client, "responseCache", responseCache);
+        ReflectionTestUtils.setField(client, "diskCache", diskCache);
+        ReflectionTestUtils.setField(client, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(client, "subjectsTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(client, "searchTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(client, "calendarTimeoutMs", 200L);
+        ReflectionTestUtils.setField(client, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(client, "maxBodyBytes", 16 * 1024 * 1024);
+        ReflectionTestUtils.setField(client, "failureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(client, "openMs", 30000L);
+        client.init();
+        return client;
+    }
+}
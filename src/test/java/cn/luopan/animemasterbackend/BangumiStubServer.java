@@ -0,0 +1,106 @@
+package cn.luopan.animemasterbackend;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地Bangumi接口桩，用于测试
+ * 对所有请求返回固定的条目列表，可配置响应延迟、ETag和错误状态码，并统计收到的请求数
+ */
+public class BangumiStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private volatile long delayMillis;
+    private volatile String etag;
+    private volatile int status = 200;
+    private volatile byte[] body = ("{\"total\":1,\"limit\":50,\"offset\":0,\"data\":[{\"id\":1,\"type\":2,"
+            + "\"name\":\"stub\",\"name_cn\":\"桩\",\"date\":\"2024-01-01\",\"eps\":12,\"summary\":\"\","
+            + "\"images\":{\"large\":\"\"},\"rating\":{\"rank\":1,\"total\":1,\"score\":8.0},\"tags\":[]}]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    public BangumiStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            requestCount.incrementAndGet();
+            try {
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int currentStatus = status;
+            if (currentStatus != 200) {
+                exchange.sendResponseHeaders(currentStatus, -1);
+                exchange.close();
+                return;
+            }
+            String currentEtag = etag;
+            if (currentEtag != null) {
+                exchange.getResponseHeaders().add("ETag", currentEtag);
+                if (currentEtag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedCount.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            byte[] responseBody = body;
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, responseBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBody);
+            }
+        });
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    public int notModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * 设置响应状态码，非200时不返回响应体，用于模拟上游故障
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public void setBody(String body) {
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
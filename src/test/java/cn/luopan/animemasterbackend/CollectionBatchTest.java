@@ -0,0 +1,182 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.dto.CollectionBatchRequest.Operation;
+import cn.luopan.animemasterbackend.dto.CollectionBatchResult;
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import cn.luopan.animemasterbackend.mapper.UserAnimeStatusMapper;
+import cn.luopan.animemasterbackend.service.CollectionCache;
+import cn.luopan.animemasterbackend.service.ProgressWriteBuffer;
+import cn.luopan.animemasterbackend.service.impl.UserAnimeStatusServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量收藏操作的逐项结果和SQL合并测试
+ */
+public class CollectionBatchTest {
+
+    // 模拟的user_anime_status表：anime_id -> 行
+    private final Map<Long, UserAnimeStatus> table = new LinkedHashMap<>();
+
+    // 执行过的语句：方法名和行数
+    private final List<String> statements = new ArrayList<>();
+
+    // anime表中不存在的动漫ID
+    private final Set<Long> missingAnime = new HashSet<>();
+
+    @Test
+    public void thousandOperationsUseAHandfulOfStatements() {
+        for (long animeId = 1; animeId <= 600; animeId++) {
+            table.put(animeId, row(animeId, "watching", 3));
+        }
+        List<Operation> operations = new ArrayList<>();
+        for (long animeId = 1; animeId <= 600; animeId++) {
+            operations.add(new Operation("update", animeId, "watched", 12, null, null, null, null));
+        }
+        for (long animeId = 601; animeId <= 1000; animeId++) {
+            operations.add(new Operation("add", animeId, null, null, "title-" + animeId, null, null, 12));
+        }
+
+        List<CollectionBatchResult> results = newService().applyBatch(1L, operations);
+
+        assertEquals(1000, results.size());
+        assertTrue(results.stream().allMatch(CollectionBatchResult::success));
+        assertEquals(List.of("selectForUpdate:500", "selectForUpdate:500", "selectExistingAnimeIds:400", "insertBatch:400",
+                "updateBatch:500", "updateBatch:100"), statements);
+        assertEquals(1000, table.size());
+        assertEquals("watched", table.get(1L).getStatus());
+        assertEquals(12, table.get(1L).getProgress());
+        assertEquals("wantToWatch", table.get(1000L).getStatus());
+    }
+
+    @Test
+    public void operationsApplyInOrderWithPerItemResults() {
+        table.put(1L, row(1, "watching", 3));
+        table.put(2L, row(2, "watching", 5));
+        List<Operation> operations = List.of(
+                new Operation("remove", 1L, null, null, null, null, null, null),
+                new Operation("add", 1L, "watched", null, "again", null, null, 24),
+                new Operation("add", 2L, null, null, "duplicate", null, null, null),
+                new Operation("update", 3L, "watched", null, null, null, null, null),
+                new Operation("update", 2L, "unknown", null, null, null, null, null),
+                new Operation("rename", 2L, null, null, null, null, null, null),
+                new Operation("remove", 2L, null, null, null, null, null, null));
+
+        List<CollectionBatchResult> results = newService().applyBatch(1L, operations);
+
+        assertEquals(List.of(true, true, false, false, false, false, true),
+                results.stream().map(CollectionBatchResult::success).toList());
+        assertEquals("该动漫已在收藏列表中", results.get(2).message());
+        assertEquals(6, results.get(6).index());
+        // 先移除再添加的动漫删除旧行后插入新行
+        assertEquals(List.of("selectForUpdate:3", "deleteByAnimeIds:2", "insertBatch:1"), statements);
+        assertEquals(List.of(1L), new ArrayList<>(table.keySet()));
+        assertEquals("again", table.get(1L).getTitle());
+        assertEquals(24, table.get(1L).getProgress());
+    }
+
+    @Test
+    public void addingUnknownAnimeFailsThatOperationOnly() {
+        table.put(1L, row(1, "watching", 3));
+        missingAnime.add(9L);
+        List<Operation> operations = List.of(
+                new Operation("remove", 1L, null, null, null, null, null, null),
+                new Operation("add", 1L, null, null, "again", null, null, null),
+                new Operation("add", 9L, null, null, "missing", null, null, null),
+                new Operation("add", 10L, null, null, "new", null, null, null));
+
+        List<CollectionBatchResult> results = newService().applyBatch(1L, operations);
+
+        assertEquals(List.of(true, true, false, true), results.stream().map(CollectionBatchResult::success).toList());
+        assertEquals(CollectionBatchResult.fail(2, "add", 9L, "动漫不存在"), results.get(2));
+        // 已收藏的动漫不需要确认存在，与锁定收藏在同一批中查询
+        assertEquals(List.of("selectForUpdate:3", "selectExistingAnimeIds:2", "deleteByAnimeIds:1", "insertBatch:2"),
+                statements);
+        assertEquals(List.of(1L, 10L), new ArrayList<>(table.keySet()));
+    }
+
+    @Test
+    public void rejectsOversizedBatch() {
+        List<Operation> operations = new ArrayList<>();
+        for (long animeId = 1; animeId <= 1001; animeId++) {
+            operations.add(new Operation("remove", animeId, null, null, null, null, null, null));
+        }
+        assertThrows(IllegalArgumentException.class, () -> newService().applyBatch(1L, operations));
+        assertTrue(statements.isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private UserAnimeStatusServiceImpl newService() {
+        UserAnimeStatusMapper mapper = (UserAnimeStatusMapper) Proxy.newProxyInstance(
+                UserAnimeStatusMapper.class.getClassLoader(), new Class<?>[]{UserAnimeStatusMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectForUpdate" -> {
+                            Collection<Long> animeIds = (Collection<Long>) args[1];
+                            statements.add("selectForUpdate:" + animeIds.size());
+                            return animeIds.stream().filter(table::containsKey).map(table::get).toList();
+                        }
+                        case "selectExistingAnimeIds" -> {
+                            Collection<Long> animeIds = (Collection<Long>) args[0];
+                            statements.add("selectExistingAnimeIds:" + animeIds.size());
+                            return animeIds.stream().filter(animeId -> !missingAnime.contains(animeId)).toList();
+                        }
+                        case "deleteByAnimeIds" -> {
+                            Collection<Long> animeIds = (Collection<Long>) args[1];
+                            statements.add("deleteByAnimeIds:" + animeIds.size());
+                            animeIds.forEach(table::remove);
+                            return animeIds.size();
+                        }
+                        case "insertBatch" -> {
+                            List<UserAnimeStatus> rows = (List<UserAnimeStatus>) args[0];
+                            statements.add("insertBatch:" + rows.size());
+                            rows.forEach(inserted -> table.put(inserted.getAnimeId(), inserted));
+                            return rows.size();
+                        }
+                        case "updateBatch" -> {
+                            List<UserAnimeStatus> rows = (List<UserAnimeStatus>) args[1];
+                            statements.add("updateBatch:" + rows.size());
+                            rows.forEach(updated -> table.put(updated.getAnimeId(), updated));
+                            return rows.size();
+                        }
+                        case "toString" -> {
+                            return "UserAnimeStatusMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        CollectionCache cache = new CollectionCache();
+        ProgressWriteBuffer buffer = new ProgressWriteBuffer();
+        ReflectionTestUtils.setField(buffer, "userAnimeStatusMapper", mapper);
+        UserAnimeStatusServiceImpl service = new UserAnimeStatusServiceImpl();
+        ReflectionTestUtils.setField(service, "userAnimeStatusMapper", mapper);
+        ReflectionTestUtils.setField(service, "collectionCache", cache);
+        ReflectionTestUtils.setField(service, "progressWriteBuffer", buffer);
+        return service;
+    }
+
+    private static UserAnimeStatus row(long animeId, String status, int progress) {
+        UserAnimeStatus row = new UserAnimeStatus();
+        row.setId(animeId);
+        row.setUserId(1L);
+        row.setAnimeId(animeId);
+        row.setTitle("title-" + animeId);
+        row.setStatus(status);
+        row.setProgress(progress);
+        return row;
+    }
+}
@@ -0,0 +1,158 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import cn.luopan.animemasterbackend.service.CollectionCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 用户收藏缓存的命中、就地更新、LRU淘汰和并发加载测试
+ */
+public class CollectionCacheTest {
+
+    @Test
+    public void repeatGetDoesNotReload() {
+        CollectionCache cache = newCache(16);
+        CountingLoader loader = new CountingLoader(List.of(row(1, 1, 101, "watching"), row(2, 1, 102, "watched"),
+                row(3, 1, 103, "unknown")));
+
+        Map<String, List<UserAnimeStatus>> first = cache.get(1L, loader);
+        Map<String, List<UserAnimeStatus>> second = cache.get(1L, loader);
+
+        assertEquals(1, loader.calls.get());
+        assertEquals(first, second);
+        assertEquals(1, first.get("watching").size());
+        assertEquals(0, first.get("wantToWatch").size());
+        assertEquals(0.5, cache.getStats().get("hitRatio"));
+        assertThrows(UnsupportedOperationException.class, () -> first.get("watching").clear());
+    }
+
+    @Test
+    public void writesUpdateSnapshotInPlace() {
+        CollectionCache cache = newCache(16);
+        CountingLoader loader = new CountingLoader(List.of(row(1, 1, 101, "watching"), row(5, 1, 105, "watching")));
+        Map<String, List<UserAnimeStatus>> before = cache.get(1L, loader);
+
+        cache.put(row(3, 1, 103, "watching"));
+        cache.put(row(5, 1, 105, "watched"));
+        cache.remove(1L, 101L);
+        // 其他用户的写入不影响该用户
+        cache.put(row(9, 2, 109, "watching"));
+
+        Map<String, List<UserAnimeStatus>> after = cache.get(1L, loader);
+        assertEquals(1, loader.calls.get());
+        assertEquals(List.of(103L), animeIds(after.get("watching")));
+        assertEquals(List.of(105L), animeIds(after.get("watched")));
+        // 之前返回的快照不变
+        assertEquals(List.of(101L, 105L), animeIds(before.get("watching")));
+
+        // 按动漫ID判断是否已收藏，未缓存的用户返回null
+        assertEquals(true, cache.contains(1L, 103L));
+        assertEquals(false, cache.contains(1L, 101L));
+        assertNull(cache.contains(3L, 103L));
+    }
+
+    @Test
+    public void patchUpdatesCachedRowOrInvalidates() {
+        CollectionCache cache = newCache(16);
+        CountingLoader loader = new CountingLoader(List.of(row(1, 1, 101, "watching")));
+        cache.get(1L, loader);
+
+        cache.patch(1L, 101L, row -> {
+            row.setStatus("watched");
+            row.setProgress(12);
+        });
+        Map<String, List<UserAnimeStatus>> patched = cache.get(1L, loader);
+        assertEquals(1, loader.calls.get());
+        assertEquals(12, patched.get("watched").get(0).getProgress());
+        assertEquals(1L, patched.get("watched").get(0).getId());
+
+        // upsert插入了缓存中没有的行，无法得知新行的id，整个用户失效
+        cache.patch(1L, 102L, row -> row.setStatus("wantToWatch"));
+        cache.get(1L, loader);
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedUser() {
+        CollectionCache cache = newCache(2);
+        CountingLoader loader = new CountingLoader(List.of(row(1, 1, 101, "watching")));
+
+        cache.get(1L, loader);
+        cache.get(2L, loader);
+        cache.get(1L, loader);
+        cache.get(3L, loader);
+        assertEquals(3, loader.calls.get());
+
+        cache.get(1L, loader);
+        assertEquals(3, loader.calls.get());
+        cache.get(2L, loader);
+        assertEquals(4, loader.calls.get());
+    }
+
+    @Test
+    public void loadRacingWithWriteIsNotCached() {
+        CollectionCache cache = newCache(16);
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<UserAnimeStatus>> loader = () -> {
+            // 查询返回后、写入缓存前，另一个请求修改了收藏
+            if (calls.incrementAndGet() == 1) {
+                cache.put(row(2, 1, 102, "watching"));
+            }
+            return new ArrayList<>(List.of(row(1, 1, 101, "watching")));
+        };
+
+        cache.get(1L, loader);
+        cache.get(1L, loader);
+
+        assertEquals(2, calls.get());
+        assertEquals(2L, cache.getStats().get("misses"));
+    }
+
+    private static CollectionCache newCache(int maxUsers) {
+        CollectionCache cache = new CollectionCache();
+        ReflectionTestUtils.setField(cache, "maxUsers", maxUsers);
+        return cache;
+    }
+
+    private static UserAnimeStatus row(long id, long userId, long animeId, String status) {
+        UserAnimeStatus row = new UserAnimeStatus();
+        row.setId(id);
+        row.setUserId(userId);
+        row.setAnimeId(animeId);
+        row.setStatus(status);
+        row.setProgress(0);
+        return row;
+    }
+
+    private static List<Long> animeIds(List<UserAnimeStatus> rows) {
+        return rows.stream().map(UserAnimeStatus::getAnimeId).toList();
+    }
+
+    private static final class CountingLoader implements Supplier<List<UserAnimeStatus>> {
+
+        private final List<UserAnimeStatus> rows;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingLoader(List<UserAnimeStatus> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public List<UserAnimeStatus> get() {
+            calls.incrementAndGet();
+            return new ArrayList<>(rows);
+        }
+    }
+}
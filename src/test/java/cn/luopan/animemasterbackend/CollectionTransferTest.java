@@ -0,0 +1,223 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.dto.CollectionImportResult;
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import cn.luopan.animemasterbackend.mapper.UserAnimeStatusMapper;
+import cn.luopan.animemasterbackend.service.CollectionCache;
+import cn.luopan.animemasterbackend.service.ProgressWriteBuffer;
+import cn.luopan.animemasterbackend.service.impl.UserAnimeStatusServiceImpl;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 收藏NDJSON/CSV导出与流式导入测试
+ */
+public class CollectionTransferTest {
+
+    // 模拟的user_anime_status表中用户1的收藏，按id顺序
+    private final List<UserAnimeStatus> table = new ArrayList<>();
+
+    // 每次upsertBatch写入的行
+    private final List<List<UserAnimeStatus>> upserts = new ArrayList<>();
+
+    // anime表中不存在的动漫ID
+    private final Set<Long> missingAnime = new HashSet<>();
+
+    @Test
+    public void csvExportRoundTripsQuotedFields() throws IOException {
+        table.add(row(101, "Cowboy Bebop", "watched", 26));
+        UserAnimeStatus tricky = row(102, "Title, with \"quotes\"", "watching", 3);
+        tricky.setNotes("第一行\n第二行");
+        table.add(tricky);
+        UserAnimeStatusServiceImpl service = newService();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, service.exportCollection(1L, "csv", out));
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("\uFEFFanimeId,title,titleCn,"));
+        assertTrue(csv.contains("\"Title, with \"\"quotes\"\"\""));
+
+        CollectionImportResult result = service.importCollection(2L, "csv", new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(new CollectionImportResult(2, 2, 0, List.of()), result);
+        UserAnimeStatus imported = upserts.get(0).get(1);
+        assertEquals(2L, imported.getUserId());
+        assertEquals(tricky.getTitle(), imported.getTitle());
+        assertEquals(tricky.getNotes(), imported.getNotes());
+        assertEquals(tricky.getCreatedAt(), imported.getCreatedAt());
+    }
+
+    @Test
+    public void ndjsonExportWritesOneObjectPerLineWithBufferedProgress() throws IOException {
+        table.add(row(101, "Cowboy Bebop", "watching", 3));
+        table.add(row(102, "Trigun", "wantToWatch", 0));
+        UserAnimeStatusServiceImpl service = newService();
+        ProgressWriteBuffer buffer = (ProgressWriteBuffer) ReflectionTestUtils.getField(service, "progressWriteBuffer");
+        buffer.offer(1L, 101L, 7);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportCollection(1L, "ndjson", out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"animeId\":101,"));
+        assertTrue(lines[0].contains("\"progress\":7"));
+        assertTrue(lines[1].contains("\"createdAt\":\"2024-01-01T12:00:00\""));
+    }
+
+    @Test
+    public void ndjsonImportBatchesRowsAndReportsRejectedLines() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int animeId = 1; animeId <= 1200; animeId++) {
+            ndjson.append("{\"animeId\":").append(animeId).append(",\"title\":\"t").append(animeId)
+                    .append("\",\"status\":\"watching\",\"progress\":2}\n");
+        }
+        ndjson.append("\n{\"animeId\":1201,\"title\":\"x\",\"status\":\"unknown\"}\n")
+                .append("{\"animeId\":1202,\n")
+                .append("{\"title\":\"no id\"}\n");
+
+        CollectionImportResult result = newService().importCollection(1L, "ndjson",
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1203, result.rows());
+        assertEquals(1200, result.imported());
+        assertEquals(3, result.rejected());
+        assertEquals(List.of("第1202行: 无效的状态: unknown", "第1203行: JSON格式错误", "第1204行: 缺少animeId"),
+                result.errors());
+        assertEquals(List.of(500, 500, 200), upserts.stream().map(List::size).toList());
+    }
+
+    @Test
+    public void importRejectsRowsForUnknownAnimeWithTheirLineNumber() throws IOException {
+        missingAnime.add(2L);
+        missingAnime.add(4L);
+        String csv = "animeId,title,status\r\n1,a,watching\r\n2,b,watching\r\n3,\"c\nc\",watched\r\n4,d,watching\r\n";
+
+        CollectionImportResult result = newService().importCollection(1L, "csv",
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(new CollectionImportResult(4, 2, 2, List.of("第3行: 动漫不存在: 2", "第6行: 动漫不存在: 4")), result);
+        assertEquals(List.of(1L, 3L), upserts.get(0).stream().map(UserAnimeStatus::getAnimeId).toList());
+    }
+
+    @Test
+    public void rejectsUnknownFormatAndCsvWithoutAnimeId() {
+        UserAnimeStatusServiceImpl service = newService();
+        assertThrows(IllegalArgumentException.class,
+                () -> service.exportCollection(1L, "xml", new ByteArrayOutputStream()));
+        assertThrows(IllegalArgumentException.class, () -> service.importCollection(1L, "csv",
+                new ByteArrayInputStream("title,status\r\nx,watching\r\n".getBytes(StandardCharsets.UTF_8))));
+        assertTrue(upserts.isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private UserAnimeStatusServiceImpl newService() {
+        UserAnimeStatusMapper mapper = (UserAnimeStatusMapper) Proxy.newProxyInstance(
+                UserAnimeStatusMapper.class.getClassLoader(), new Class<?>[]{UserAnimeStatusMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectCursorByUser" -> {
+                            return new ListCursor(table);
+                        }
+                        case "selectExistingAnimeIds" -> {
+                            List<Long> existing = new ArrayList<>((Collection<Long>) args[0]);
+                            existing.removeAll(missingAnime);
+                            return existing;
+                        }
+                        case "upsertBatch" -> {
+                            List<UserAnimeStatus> rows = new ArrayList<>((List<UserAnimeStatus>) args[0]);
+                            upserts.add(rows);
+                            return rows.size();
+                        }
+                        case "toString" -> {
+                            return "UserAnimeStatusMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        ProgressWriteBuffer buffer = new ProgressWriteBuffer();
+        ReflectionTestUtils.setField(buffer, "userAnimeStatusMapper", mapper);
+        UserAnimeStatusServiceImpl service = new UserAnimeStatusServiceImpl();
+        ReflectionTestUtils.setField(service, "userAnimeStatusMapper", mapper);
+        ReflectionTestUtils.setField(service, "collectionCache", new CollectionCache());
+        ReflectionTestUtils.setField(service, "progressWriteBuffer", buffer);
+        ReflectionTestUtils.setField(service, "objectMapper", Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+        return service;
+    }
+
+    private static UserAnimeStatus row(long animeId, String title, String status, int progress) {
+        UserAnimeStatus row = new UserAnimeStatus();
+        row.setId(animeId);
+        row.setUserId(1L);
+        row.setAnimeId(animeId);
+        row.setTitle(title);
+        row.setStatus(status);
+        row.setProgress(progress);
+        row.setEpisodes(26);
+        row.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0));
+        row.setUpdatedAt(LocalDateTime.of(2024, 1, 2, 12, 0));
+        return row;
+    }
+
+    /**
+     * 基于列表的游标
+     */
+    private static final class ListCursor implements Cursor<UserAnimeStatus> {
+
+        private final List<UserAnimeStatus> rows;
+
+        private boolean closed;
+
+        ListCursor(List<UserAnimeStatus> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return closed;
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return -1;
+        }
+
+        @Override
+        public Iterator<UserAnimeStatus> iterator() {
+            return rows.iterator();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
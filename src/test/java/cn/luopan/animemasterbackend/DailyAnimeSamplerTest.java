@@ -0,0 +1,82 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.service.DailyAnimeSampler;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 每日放送抽样算法测试
+ */
+public class DailyAnimeSamplerTest {
+
+    private static final long[] IDS = LongStream.rangeClosed(1, 1000).toArray();
+
+    @Test
+    public void samplesDistinctIdsFromSource() {
+        List<Long> sampled = DailyAnimeSampler.sample(IDS, 20, new Random());
+        assertEquals(20, sampled.size());
+        assertEquals(20, new HashSet<>(sampled).size());
+        assertTrue(sampled.stream().allMatch(id -> id >= 1 && id <= 1000));
+    }
+
+    @Test
+    public void returnsAllIdsWhenFewerThanK() {
+        List<Long> sampled = DailyAnimeSampler.sample(new long[]{3, 5, 7}, 20, new Random());
+        assertEquals(new HashSet<>(List.of(3L, 5L, 7L)), new HashSet<>(sampled));
+    }
+
+    @Test
+    public void sameSeedGivesSameSelection() {
+        assertEquals(DailyAnimeSampler.sample(IDS, 20, new Random(19000)),
+                DailyAnimeSampler.sample(IDS, 20, new Random(19000)));
+    }
+
+    @Test
+    public void shortSelectionBeforeFirstSyncIsNotCachedForTheDay() {
+        DailyAnimeSampler sampler = new DailyAnimeSampler();
+        ReflectionTestUtils.setField(sampler, "seedPerDay", true);
+        // 首次同步前加载到的是空表
+        ReflectionTestUtils.setField(sampler, "ids", new long[0]);
+        assertTrue(sampler.sample(5).isEmpty());
+
+        List<Anime> synced = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            Anime anime = new Anime();
+            anime.setId(id);
+            anime.setType(2);
+            synced.add(anime);
+        }
+        sampler.update(synced);
+
+        List<Long> sampled = sampler.sample(5);
+        assertEquals(5, sampled.size());
+        // 数量足够后当天的结果固定
+        assertEquals(sampled, sampler.sample(5));
+    }
+
+    @Test
+    public void everyIdCanBeSelected() {
+        long[] small = {1, 2, 3, 4, 5};
+        int[] counts = new int[6];
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            for (long id : DailyAnimeSampler.sample(small, 2, random)) {
+                counts[(int) id]++;
+            }
+        }
+        // 每个ID被选中的期望次数为4000
+        for (int id = 1; id <= 5; id++) {
+            assertTrue(counts[id] > 3600 && counts[id] < 4400, "id " + id + " 被选中 " + counts[id] + " 次");
+        }
+    }
+}
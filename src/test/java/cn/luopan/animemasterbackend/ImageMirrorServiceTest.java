@@ -0,0 +1,173 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.service.ImageMirrorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图片镜像的下载、内容寻址存储、重启恢复和LRU淘汰测试
+ */
+public class ImageMirrorServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private BangumiStubServer stub;
+
+    private final List<ImageMirrorService> services = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        stub = new BangumiStubServer();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        services.forEach(ImageMirrorService::shutdown);
+        stub.close();
+    }
+
+    @Test
+    public void mirrorsCoversByContentHashAndSurvivesRestart() throws Exception {
+        byte[] png = png(1000, 1);
+        stub.setBody(png);
+        String large = stub.baseUrl() + "/pic/cover/l/1.jpg";
+        String small = stub.baseUrl() + "/pic/cover/s/1.jpg";
+
+        ImageMirrorService service = newService(1_000_000);
+        Anime anime = new Anime();
+        anime.setImages("{\"large\":\"" + large + "\",\"small\":\"" + small + "\",\"grid\":\"" + stub.baseUrl() + "/g/1.jpg\"}");
+        service.mirrorAsync(List.of(anime));
+        await(() -> service.lookupByUrl(large) != null && service.lookupByUrl(small) != null);
+
+        // 只下载large和small；两张内容相同，只保存一份
+        assertEquals(2, stub.requestCount());
+        assertEquals(1, service.getStats().get("images"));
+        ImageMirrorService.StoredImage image = service.lookupByUrl(large);
+        assertEquals("image/png", image.getContentType());
+        assertEquals(png.length, image.getSize());
+        assertArrayEquals(png, Files.readAllBytes(image.getPath()));
+        assertEquals(image.getHash(), service.lookupByUrl(small).getHash());
+
+        // 重启后从目录和index.log恢复
+        ImageMirrorService restarted = newService(1_000_000);
+        assertNotNull(restarted.lookupByUrl(large));
+        assertNotNull(restarted.lookup(image.getHash()));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedWhenOverBudget() throws Exception {
+        ImageMirrorService service = newService(1500);
+        String first = stub.baseUrl() + "/pic/cover/l/1.jpg";
+        String second = stub.baseUrl() + "/pic/cover/l/2.jpg";
+
+        stub.setBody(png(1000, 1));
+        service.mirrorAsync(first);
+        await(() -> service.lookupByUrl(first) != null);
+        Path firstPath = service.lookupByUrl(first).getPath();
+
+        stub.setBody(png(1000, 2));
+        service.mirrorAsync(second);
+        await(() -> service.lookupByUrl(second) != null);
+
+        assertNull(service.lookupByUrl(first));
+        assertFalse(Files.exists(firstPath));
+        assertEquals(1L, service.getStats().get("evictions"));
+        assertEquals(1000L, service.getStats().get("totalBytes"));
+    }
+
+    @Test
+    public void compactsIndexWhenDeadLinesExceedLiveOnes() throws Exception {
+        // 上限只容纳一张图片，每次下载都会淘汰上一张，留下一行失效的映射
+        ImageMirrorService service = newService(1500);
+        int count = 200;
+        String last = null;
+        for (int i = 0; i < count; i++) {
+            String url = stub.baseUrl() + "/pic/cover/l/" + i + ".jpg";
+            stub.setBody(png(1000, i));
+            service.mirrorAsync(url);
+            await(() -> service.lookupByUrl(url) != null);
+            last = url;
+        }
+        assertEquals(count, service.getStats().get("indexLines"));
+
+        service.compactIndexIfNeeded();
+        assertEquals(1L, service.getStats().get("indexCompactions"));
+        assertEquals(1, service.getStats().get("indexLines"));
+        assertEquals(1, Files.readAllLines(directory.resolve("index.log")).size());
+
+        // 失效行不多于有效行时不再压缩
+        service.compactIndexIfNeeded();
+        assertEquals(1L, service.getStats().get("indexCompactions"));
+
+        ImageMirrorService restarted = newService(1500);
+        assertNotNull(restarted.lookupByUrl(last));
+    }
+
+    @Test
+    public void rejectsNonImagesAndForeignHosts() throws Exception {
+        ImageMirrorService service = newService(1_000_000);
+        stub.setBody("<html>not an image</html>");
+        String url = stub.baseUrl() + "/pic/cover/l/1.jpg";
+        service.mirrorAsync(url);
+        await(() -> (Long) service.getStats().get("downloadFailures") == 1L);
+        assertNull(service.lookupByUrl(url));
+
+        assertFalse(service.isAllowedUrl("https://evil.example/pic/cover/l/1.jpg"));
+        assertFalse(service.isAllowedUrl("file:///etc/passwd"));
+        assertNull(service.lookup("../../etc/passwd"));
+    }
+
+    private ImageMirrorService newService(long maxBytes) throws Exception {
+        ImageMirrorService service = new ImageMirrorService();
+        ReflectionTestUtils.setField(service, "imageWebClient", WebClient.builder().build());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "directory", directory.toString());
+        ReflectionTestUtils.setField(service, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(service, "allowedHosts", "127.0.0.1");
+        ReflectionTestUtils.setField(service, "downloadThreads", 2);
+        ReflectionTestUtils.setField(service, "queueSize", 16);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 5L);
+        service.init();
+        services.add(service);
+        return service;
+    }
+
+    /**
+     * PNG文件头加随机内容，足以通过格式识别
+     */
+    private static byte[] png(int size, long seed) {
+        byte[] body = new byte[size];
+        new Random(seed).nextBytes(body);
+        byte[] header = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+        System.arraycopy(header, 0, body, 0, header.length);
+        return body;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import cn.luopan.animemasterbackend.mapper.UserAnimeStatusMapper;
+import cn.luopan.animemasterbackend.service.ProgressWriteBuffer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 观看进度写缓冲的合并、读取覆盖、直接写入和刷新失败重试测试
+ */
+public class ProgressWriteBufferTest {
+
+    // 每次updateProgressBatch写入的行："userId/animeId=progress"
+    private final List<List<String>> flushed = new ArrayList<>();
+
+    // 为true时updateProgressBatch抛出异常
+    private boolean failing;
+
+    @Test
+    public void repeatedReportsFlushOnlyLastProgress() {
+        ProgressWriteBuffer buffer = newBuffer(100);
+        for (int progress = 1; progress <= 5; progress++) {
+            assertTrue(buffer.offer(1L, 10L, progress));
+        }
+        buffer.offer(1L, 11L, 2);
+        buffer.offer(2L, 10L, 7);
+
+        buffer.flush();
+        buffer.flush();
+
+        assertEquals(List.of(List.of("1/10=5", "1/11=2", "2/10=7")), sorted(flushed));
+        assertEquals(7L, buffer.getStats().get("writes"));
+        assertEquals(4L, buffer.getStats().get("coalesced"));
+        assertEquals(0, buffer.getStats().get("pending"));
+    }
+
+    @Test
+    public void overlayShowsUnflushedProgress() {
+        ProgressWriteBuffer buffer = newBuffer(100);
+        buffer.offer(1L, 10L, 6);
+
+        List<UserAnimeStatus> rows = buffer.overlay(new ArrayList<>(List.of(row(1, 10, 3), row(1, 11, 4))));
+
+        assertEquals(6, rows.get(0).getProgress());
+        assertEquals(4, rows.get(1).getProgress());
+    }
+
+    @Test
+    public void writeThroughTakesBufferedProgress() {
+        ProgressWriteBuffer buffer = newBuffer(100);
+        buffer.offer(1L, 10L, 6);
+        buffer.offer(1L, 11L, 8);
+
+        Map<Long, Integer> taken = buffer.writeThrough(1L, List.of(10L, 12L), buffered -> buffered);
+        buffer.flush();
+
+        assertEquals(Map.of(10L, 6), taken);
+        // 已被直接写入的收藏不再由刷新写回旧进度
+        assertEquals(List.of(List.of("1/11=8")), flushed);
+    }
+
+    @Test
+    public void failedWriteThroughPutsProgressBack() {
+        ProgressWriteBuffer buffer = newBuffer(100);
+        buffer.offer(1L, 10L, 6);
+        buffer.offer(1L, 11L, 8);
+
+        // 没有事务：写入抛出异常时立即放回
+        assertThrows(IllegalStateException.class, () -> buffer.writeThrough(1L, List.of(10L), buffered -> {
+            throw new IllegalStateException("timeout");
+        }));
+        assertEquals(2, buffer.getStats().get("pending"));
+
+        // 在事务中：写入返回后事务回滚，回滚完成时放回；期间的新上报不被旧值覆盖
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            buffer.writeThrough(1L, List.of(10L, 11L), buffered -> buffered.size());
+            assertEquals(0, buffer.getStats().get("pending"));
+            buffer.offer(1L, 11L, 9);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        buffer.flush();
+        assertEquals(List.of(List.of("1/10=6", "1/11=9")), sorted(flushed));
+    }
+
+    @Test
+    public void failedFlushKeepsEntriesForRetry() {
+        ProgressWriteBuffer buffer = newBuffer(100);
+        buffer.offer(1L, 10L, 6);
+
+        failing = true;
+        buffer.flush();
+        assertEquals(1, buffer.getStats().get("pending"));
+        assertEquals(1L, buffer.getStats().get("flushFailures"));
+
+        failing = false;
+        buffer.offer(1L, 10L, 7);
+        buffer.flush();
+        assertEquals(List.of(List.of("1/10=7")), flushed);
+        assertEquals(0, buffer.getStats().get("pending"));
+    }
+
+    @Test
+    public void fullBufferRejectsNewEntries() {
+        ProgressWriteBuffer buffer = newBuffer(1);
+        assertTrue(buffer.offer(1L, 10L, 1));
+        assertFalse(buffer.offer(1L, 11L, 1));
+        // 已在缓冲中的收藏仍可覆盖
+        assertTrue(buffer.offer(1L, 10L, 2));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProgressWriteBuffer newBuffer(int maxEntries) {
+        UserAnimeStatusMapper mapper = (UserAnimeStatusMapper) Proxy.newProxyInstance(
+                UserAnimeStatusMapper.class.getClassLoader(), new Class<?>[]{UserAnimeStatusMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "updateProgressBatch" -> {
+                            if (failing) {
+                                throw new IllegalStateException("database unavailable");
+                            }
+                            List<UserAnimeStatus> rows = (List<UserAnimeStatus>) args[0];
+                            flushed.add(rows.stream()
+                                    .map(row -> row.getUserId() + "/" + row.getAnimeId() + "=" + row.getProgress())
+                                    .toList());
+                            return rows.size();
+                        }
+                        case "toString" -> {
+                            return "UserAnimeStatusMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        ProgressWriteBuffer buffer = new ProgressWriteBuffer();
+        ReflectionTestUtils.setField(buffer, "userAnimeStatusMapper", mapper);
+        ReflectionTestUtils.setField(buffer, "maxEntries", maxEntries);
+        return buffer;
+    }
+
+    private static List<List<String>> sorted(List<List<String>> batches) {
+        return batches.stream().map(batch -> batch.stream().sorted().toList()).toList();
+    }
+
+    private static UserAnimeStatus row(long userId, long animeId, int progress) {
+        UserAnimeStatus row = new UserAnimeStatus();
+        row.setUserId(userId);
+        row.setAnimeId(animeId);
+        row.setProgress(progress);
+        return row;
+    }
+}
@@ -0,0 +1,223 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.controller.AnimeController;
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.service.AnimeFragmentCache;
+import cn.luopan.animemasterbackend.service.BangumiApiClient;
+import cn.luopan.animemasterbackend.service.BangumiDiskCache;
+import cn.luopan.animemasterbackend.service.BangumiResponseCache;
+import cn.luopan.animemasterbackend.service.impl.AnimeServiceImpl;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import cn.luopan.animemasterbackend.utils.ContentHashUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletRegistration;
+import org.apache.coyote.AbstractProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上游变慢时阻塞搜索与非阻塞搜索的吞吐对比
+ * 嵌入式Tomcat只有TOMCAT_THREADS个工作线程，通过DispatcherServlet提供真实的AnimeController，
+ * 服务层为真实的AnimeServiceImpl和BangumiApiClient，上游为延迟UPSTREAM_MILLIS的BangumiStubServer，mapper为内存桩
+ * 阻塞接口/search在等待上游时占用Tomcat线程，CLIENTS个并发请求只能按线程数分批完成；
+ * 非阻塞接口/reactive/search等待上游时不占用线程，总耗时接近一次上游延迟
+ * 每个请求使用不同的关键词，避免被响应缓存和SingleFlight合并
+ */
+public class ReactiveSearchLoadTest {
+
+    private static final int TOMCAT_THREADS = 10;
+
+    private static final int CLIENTS = 100;
+
+    private static final long UPSTREAM_MILLIS = 300;
+
+    private static final byte[] SEARCH_BODY = ("{\"total\":1,\"limit\":20,\"offset\":0,\"data\":[{\"id\":253,\"type\":2,"
+            + "\"name\":\"カウボーイビバップ\",\"name_cn\":\"星际牛仔\",\"date\":\"1998-04-03\",\"eps\":26,\"summary\":\"\","
+            + "\"images\":{\"large\":\"\"},\"rating\":{\"rank\":3,\"total\":12000,\"score\":9.1},\"tags\":[]}]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private BangumiStubServer upstream;
+
+    private ConnectionProvider connectionProvider;
+
+    private Scheduler animeDbScheduler;
+
+    private WebServer webServer;
+
+    private java.net.http.HttpClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        upstream = new BangumiStubServer();
+        upstream.setBody(SEARCH_BODY);
+        upstream.setDelayMillis(UPSTREAM_MILLIS);
+
+        // 本地已有该条目且内容哈希一致：搜索结果写库时走跳过分支，只查询不写入
+        Anime stored = BangumiSubjectParser.parseSubjects(SEARCH_BODY).get(0);
+        stored.setId(1L);
+        stored.setContentHash(ContentHashUtils.hashAnime(stored));
+        AnimeMapper mapper = (AnimeMapper) Proxy.newProxyInstance(
+                AnimeMapper.class.getClassLoader(), new Class<?>[]{AnimeMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectList" -> {
+                            return new ArrayList<>(List.of(stored));
+                        }
+                        case "toString" -> {
+                            return "AnimeMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        AnimeFragmentCache fragmentCache = new AnimeFragmentCache();
+        ReflectionTestUtils.setField(fragmentCache, "objectMapper", objectMapper);
+        fragmentCache.init();
+
+        animeDbScheduler = Schedulers.newBoundedElastic(16, 1000, "anime-db");
+        AnimeServiceImpl animeService = new AnimeServiceImpl();
+        ReflectionTestUtils.setField(animeService, "animeMapper", mapper);
+        ReflectionTestUtils.setField(animeService, "bangumiApiClient", newClient());
+        ReflectionTestUtils.setField(animeService, "animeDbScheduler", animeDbScheduler);
+        ReflectionTestUtils.setField(animeService, "animeFragmentCache", fragmentCache);
+        ReflectionTestUtils.setField(animeService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(animeService, "localSearchEnabled", false);
+
+        AnimeController controller = new AnimeController();
+        ReflectionTestUtils.setField(controller, "animeService", animeService);
+
+        // 控制器以单例注册，不经过依赖注入
+        AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+        context.register(WebConfig.class);
+        context.addBeanFactoryPostProcessor(beanFactory -> beanFactory.registerSingleton("animeController", controller));
+
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        factory.addConnectorCustomizers(connector ->
+                ((AbstractProtocol<?>) connector.getProtocolHandler()).setMaxThreads(TOMCAT_THREADS));
+        webServer = factory.getWebServer(servletContext -> {
+            ServletRegistration.Dynamic registration = servletContext.addServlet("dispatcher", new DispatcherServlet(context));
+            registration.setAsyncSupported(true);
+            registration.setLoadOnStartup(1);
+            registration.addMapping("/");
+        });
+        webServer.start();
+
+        client = java.net.http.HttpClient.newBuilder().version(java.net.http.HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        webServer.stop();
+        animeDbScheduler.dispose();
+        connectionProvider.dispose();
+        upstream.close();
+    }
+
+    @Test
+    public void reactiveSearchKeepsThroughputWhenUpstreamIsSlow() throws Exception {
+        // 预热两个接口，排除类加载和首次初始化的耗时
+        fire("/api/anime/search", "warmup-blocking", 1);
+        fire("/api/anime/reactive/search", "warmup-reactive", 1);
+
+        long blockingMillis = fire("/api/anime/search", "blocking", CLIENTS);
+        long reactiveMillis = fire("/api/anime/reactive/search", "reactive", CLIENTS);
+
+        // 两个接口的每个请求都实际访问了上游
+        assertEquals(2 * CLIENTS + 2, upstream.requestCount());
+        // 阻塞接口至少需要CLIENTS / TOMCAT_THREADS轮上游延迟
+        assertTrue(blockingMillis >= CLIENTS / TOMCAT_THREADS * UPSTREAM_MILLIS,
+                "阻塞接口耗时" + blockingMillis + "ms");
+        // 非阻塞接口不受Tomcat线程数限制，必须快于阻塞接口的理论下限；
+        // 不与阻塞接口的实测值按倍数比较，单核机器上建连和调度开销会占去一秒以上
+        assertTrue(reactiveMillis < CLIENTS / TOMCAT_THREADS * UPSTREAM_MILLIS,
+                "非阻塞接口耗时" + reactiveMillis + "ms，阻塞接口耗时" + blockingMillis + "ms");
+    }
+
+    /**
+     * 同时发出count个搜索请求，等待全部成功
+     * @return 全部请求完成的耗时（毫秒）
+     */
+    private long fire(String path, String keywordPrefix, int count) throws Exception {
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            URI uri = URI.create("http://127.0.0.1:" + webServer.getPort() + path + "?keyword=" + keywordPrefix + "-" + i);
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).build();
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            HttpResponse<String> response = future.get();
+            assertEquals(200, response.statusCode(), response.body());
+            assertTrue(response.body().contains("星际牛仔"), response.body());
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private BangumiApiClient newClient() {
+        // 连接池容纳全部并发请求，测量的是Tomcat线程的占用而不是连接池排队
+        connectionProvider = ConnectionProvider.builder("search-load")
+                .maxConnections(2 * CLIENTS)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient webClient = WebClient.builder()
+                .baseUrl(upstream.baseUrl())
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+
+        BangumiResponseCache responseCache = new BangumiResponseCache();
+        ReflectionTestUtils.setField(responseCache, "maxEntries", 4 * CLIENTS);
+        responseCache.init();
+
+        BangumiApiClient client = new BangumiApiClient();
+        ReflectionTestUtils.setField(client, "bangumiWebClient", webClient);
+        ReflectionTestUtils.setField(client, "responseCache", responseCache);
+        ReflectionTestUtils.setField(client, "diskCache", new BangumiDiskCache());
+        ReflectionTestUtils.setField(client, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(client, "subjectsTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(client, "searchTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(client, "calendarTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(client, "maxConcurrent", 2 * CLIENTS);
+        ReflectionTestUtils.setField(client, "maxBodyBytes", 16 * 1024 * 1024);
+        ReflectionTestUtils.setField(client, "failureThreshold", 2 * CLIENTS);
+        ReflectionTestUtils.setField(client, "openMs", 30000L);
+        client.init();
+        return client;
+    }
+
+    /**
+     * 最小的MVC配置：默认的消息转换器和Mono返回值处理
+     */
+    @Configuration
+    @EnableWebMvc
+    static class WebConfig {
+    }
+}
@@ -0,0 +1,226 @@
+package cn.luopan.animemasterbackend;
+
+import cn.luopan.animemasterbackend.dto.AnimeDto;
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.dto.CollectionsDto;
+import cn.luopan.animemasterbackend.dto.LoginResult;
+import cn.luopan.animemasterbackend.dto.UserDto;
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.entity.User;
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import cn.luopan.animemasterbackend.service.AnimeFragmentCache;
+import cn.luopan.animemasterbackend.utils.JsonFragmentWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 验证类型化响应与原先Map响应的线上格式一致
+ * golden目录中的文件为改造前Map响应的输出；按JSON树比较，字段顺序不影响结果（原HashMap的顺序本就不固定）
+ */
+public class ResponseGoldenFileTest {
+
+    // 与Spring Boot默认配置一致：不把日期写成时间戳，并注册Blackbird模块
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new BlackbirdModule())
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private AnimeFragmentCache fragmentCache;
+
+    @BeforeEach
+    public void setUp() {
+        fragmentCache = new AnimeFragmentCache();
+        ReflectionTestUtils.setField(fragmentCache, "objectMapper", objectMapper);
+        fragmentCache.init();
+    }
+
+    @Test
+    public void animeListMatchesGoldenFile() throws Exception {
+        List<Anime> animes = List.of(frieren(), unknownAnime());
+        JsonNode golden = golden("anime-list.json");
+
+        // 原有方式：逐条readTree构建Map
+        List<Map<String, Object>> legacyData = new ArrayList<>();
+        for (Anime anime : animes) {
+            legacyData.add(legacyAnimeMap(anime));
+        }
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("success", true);
+        legacy.put("message", "获取成功");
+        legacy.put("data", legacyData);
+        assertEquals(golden, roundTrip(legacy));
+
+        // 响应式接口使用的ApiResponse<List<AnimeDto>>
+        assertEquals(golden, roundTrip(ApiResponse.ok("获取成功", animes.stream().map(AnimeDto::from).toList())));
+
+        // 普通接口使用的预编码片段
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        JsonFragmentWriter.writeSuccess(response, "获取成功", animes.stream().map(fragmentCache::get).toList());
+        byte[] body = response.getContentAsByteArray();
+        assertEquals(golden, objectMapper.readTree(body));
+        assertEquals(body.length, response.getContentLength());
+    }
+
+    @Test
+    public void nullJsonColumnsAreOmittedButNullScalarsAreWritten() throws Exception {
+        JsonNode node = roundTrip(AnimeDto.from(unknownAnime()));
+        assertTrue(!node.has("images") && !node.has("rating") && !node.has("tags"));
+        assertTrue(node.has("eps") && node.get("eps").isNull());
+        assertEquals(node, objectMapper.readTree(fragmentCache.get(unknownAnime())));
+    }
+
+    @Test
+    public void failureMatchesGoldenFile() throws Exception {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("success", false);
+        legacy.put("message", "获取失败: 连接超时");
+        JsonNode golden = golden("failure.json");
+        assertEquals(golden, roundTrip(legacy));
+        assertEquals(golden, roundTrip(ApiResponse.fail("获取失败: 连接超时")));
+
+        // 原先message为null时仍会输出"message":null
+        assertTrue(roundTrip(ApiResponse.fail(null)).get("message").isNull());
+    }
+
+    @Test
+    public void registerAndLoginMatchGoldenFiles() throws Exception {
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("testuser");
+        user.setEmail("test@example.com");
+        user.setPassword("should-never-be-written");
+        String token = "header.payload.signature";
+
+        Map<String, Object> registerData = new HashMap<>();
+        registerData.put("userId", 42L);
+        registerData.put("username", "testuser");
+        registerData.put("email", "test@example.com");
+        Map<String, Object> legacyRegister = new HashMap<>();
+        legacyRegister.put("success", true);
+        legacyRegister.put("message", "注册成功");
+        legacyRegister.put("data", registerData);
+        assertEquals(golden("register.json"), roundTrip(legacyRegister));
+        assertEquals(golden("register.json"), roundTrip(ApiResponse.ok("注册成功", UserDto.from(user))));
+
+        Map<String, Object> userInfo = new HashMap<>(registerData);
+        userInfo.put("token", token);
+        Map<String, Object> loginData = new HashMap<>();
+        loginData.put("user", userInfo);
+        loginData.put("token", token);
+        Map<String, Object> legacyLogin = new HashMap<>();
+        legacyLogin.put("success", true);
+        legacyLogin.put("message", "登录成功");
+        legacyLogin.put("data", loginData);
+        assertEquals(golden("login.json"), roundTrip(legacyLogin));
+        assertEquals(golden("login.json"),
+                roundTrip(ApiResponse.ok("登录成功", new LoginResult(UserDto.from(user, token), token))));
+    }
+
+    @Test
+    public void collectionsMatchGoldenFile() throws Exception {
+        UserAnimeStatus status = new UserAnimeStatus();
+        status.setId(7L);
+        status.setUserId(42L);
+        status.setAnimeId(1L);
+        status.setTitle("Sousou no Frieren");
+        status.setTitleCn("葬送的芙莉莲");
+        status.setImage("https://lain.bgm.tv/pic/cover/l/1.jpg");
+        status.setEpisodes(28);
+        status.setStatus("wantToWatch");
+        status.setProgress(0);
+        status.setCreatedAt(LocalDateTime.of(2024, 4, 1, 12, 30));
+        status.setUpdatedAt(LocalDateTime.of(2024, 4, 2, 8, 0));
+
+        Map<String, List<UserAnimeStatus>> collections = new HashMap<>();
+        collections.put("wantToWatch", List.of(status));
+        collections.put("watching", new ArrayList<>());
+        collections.put("watched", new ArrayList<>());
+        collections.put("dropped", new ArrayList<>());
+
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("success", true);
+        legacy.put("message", "获取收藏列表成功");
+        legacy.put("data", collections);
+        JsonNode golden = golden("collections.json");
+        assertEquals(golden, roundTrip(legacy));
+        assertEquals(golden, roundTrip(ApiResponse.ok("获取收藏列表成功", CollectionsDto.from(collections))));
+    }
+
+    private Map<String, Object> legacyAnimeMap(Anime anime) throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", anime.getId());
+        map.put("name", anime.getName());
+        map.put("name_cn", anime.getNameCn());
+        if (anime.getImages() != null) {
+            map.put("images", objectMapper.readTree(anime.getImages()));
+        }
+        if (anime.getRating() != null) {
+            map.put("rating", objectMapper.readTree(anime.getRating()));
+        }
+        if (anime.getTags() != null) {
+            map.put("tags", objectMapper.readTree(anime.getTags()));
+        }
+        map.put("type", anime.getType());
+        map.put("date", anime.getDate());
+        map.put("eps", anime.getEps());
+        return map;
+    }
+
+    private JsonNode roundTrip(Object value) throws Exception {
+        return objectMapper.readTree(objectMapper.writeValueAsBytes(value));
+    }
+
+    private JsonNode golden(String name) throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/golden/" + name)) {
+            assertNotNull(in, "缺少golden文件: " + name);
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private static Anime frieren() {
+        Anime anime = new Anime();
+        anime.setId(1L);
+        anime.setBangumiId(400602);
+        anime.setName("Sousou no Frieren");
+        anime.setNameCn("葬送的芙莉莲");
+        anime.setImages("{\"large\":\"https://lain.bgm.tv/pic/cover/l/1.jpg\",\"small\":\"https://lain.bgm.tv/pic/cover/s/1.jpg\"}");
+        anime.setRating("{\"rank\":1,\"total\":12345,\"count\":{\"9\":100,\"10\":200},\"score\":9.1}");
+        anime.setTags("[{\"name\":\"奇幻\",\"count\":10},{\"name\":\"冒险\\\"旅途\\\"\",\"count\":3}]");
+        anime.setType(2);
+        anime.setDate("2023-09-29");
+        anime.setEps(28);
+        anime.setContentHash("frieren");
+        anime.setUpdatedAt(LocalDateTime.of(2024, 4, 1, 0, 0));
+        return anime;
+    }
+
+    private static Anime unknownAnime() {
+        Anime anime = new Anime();
+        anime.setId(2L);
+        anime.setName("Unknown");
+        anime.setNameCn("");
+        anime.setType(2);
+        anime.setDate("");
+        anime.setContentHash("unknown");
+        anime.setUpdatedAt(LocalDateTime.of(2024, 4, 1, 0, 0));
+        return anime;
+    }
+}
@@ -0,0 +1,223 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import cn.luopan.animemasterbackend.BangumiStubServer;
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.mapper.AnimeMapper;
+import cn.luopan.animemasterbackend.service.AnimeFragmentCache;
+import cn.luopan.animemasterbackend.service.BangumiApiClient;
+import cn.luopan.animemasterbackend.service.BangumiDiskCache;
+import cn.luopan.animemasterbackend.service.BangumiResponseCache;
+import cn.luopan.animemasterbackend.service.DailyAnimeSampler;
+import cn.luopan.animemasterbackend.service.impl.AnimeServiceImpl;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * /api/anime/daily与/api/anime/ranking在引入同步管道前后的请求延迟
+ * 同步前：每个请求先向Bangumi拉取50个条目，解析、按bangumi_id查询本地行并写库，再读取本页；
+ * 同步后：BangumiSyncService在后台写库，请求只读取本地数据
+ * 服务层为真实的AnimeServiceImpl和BangumiApiClient，上游为延迟upstreamMillis的BangumiStubServer，
+ * 响应缓存的有效期设为0，保证同步前的路径每次都访问上游；mapper为内存桩，每次调用停留dbRttMicros模拟一次数据库往返
+ * 本地行没有保存内容哈希，同步前的路径每次都会执行一条多行upsert；被移除的旧代码对每行逐条saveBatch/updateBatchById，
+ * 因此这里的同步前耗时是旧路径的下限
+ * 运行方式：在IDE中直接运行main方法，SampleTime模式输出p50/p99等分位数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimeFeedLatencyBenchmark {
+
+    private static final int FEED_SIZE = 50;
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"0", "50"})
+    public long upstreamMillis;
+
+    @Param({"300"})
+    public long dbRttMicros;
+
+    private BangumiStubServer upstream;
+
+    private BangumiApiClient bangumiApiClient;
+
+    private AnimeServiceImpl animeService;
+
+    // 模拟的anime表，按排名顺序
+    private final List<Anime> table = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        byte[] feed = feed();
+        upstream = new BangumiStubServer();
+        upstream.setBody(feed);
+        upstream.setDelayMillis(upstreamMillis);
+
+        long id = 1;
+        for (Anime anime : BangumiSubjectParser.parseSubjects(feed)) {
+            anime.setId(id++);
+            table.add(anime);
+        }
+
+        AnimeMapper mapper = (AnimeMapper) Proxy.newProxyInstance(
+                AnimeMapper.class.getClassLoader(), new Class<?>[]{AnimeMapper.class},
+                (proxy, method, args) -> {
+                    if ("toString".equals(method.getName())) {
+                        return "AnimeMapper stub";
+                    }
+                    LockSupport.parkNanos(dbRttMicros * 1000);
+                    switch (method.getName()) {
+                        case "selectList" -> {
+                            // 按bangumi_id查询返回整页，排行榜查询返回前PAGE_SIZE行
+                            String where = ((QueryWrapper<?>) args[0]).getSqlSegment();
+                            return copies(where.contains("bangumi_id") ? table : table.subList(0, PAGE_SIZE));
+                        }
+                        case "selectBatchIds" -> {
+                            List<Anime> rows = new ArrayList<>();
+                            for (Object rowId : (Collection<?>) args[0]) {
+                                rows.add(table.get((int) ((Long) rowId - 1)));
+                            }
+                            return copies(rows);
+                        }
+                        case "upsertBatch" -> {
+                            return ((List<?>) args[0]).size();
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        AnimeFragmentCache fragmentCache = new AnimeFragmentCache();
+        ReflectionTestUtils.setField(fragmentCache, "objectMapper", objectMapper);
+        fragmentCache.init();
+
+        DailyAnimeSampler sampler = new DailyAnimeSampler();
+        ReflectionTestUtils.setField(sampler, "ids", table.stream().mapToLong(Anime::getId).toArray());
+
+        bangumiApiClient = newClient();
+        animeService = new AnimeServiceImpl();
+        ReflectionTestUtils.setField(animeService, "animeMapper", mapper);
+        ReflectionTestUtils.setField(animeService, "bangumiApiClient", bangumiApiClient);
+        ReflectionTestUtils.setField(animeService, "dailyAnimeSampler", sampler);
+        ReflectionTestUtils.setField(animeService, "animeFragmentCache", fragmentCache);
+        ReflectionTestUtils.setField(animeService, "objectMapper", objectMapper);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        upstream.close();
+    }
+
+    /**
+     * 同步前的/daily：请求内拉取、写库后再抽样读取
+     */
+    @Benchmark
+    public int dailyWithInlineIngest() throws IOException {
+        animeService.upsertSubjects(BangumiSubjectParser.parseSubjects(bangumiApiClient.getSubjects("date", FEED_SIZE)));
+        return animeService.getDailyAnimeFragments().size();
+    }
+
+    @Benchmark
+    public int dailyLocalRead() {
+        return animeService.getDailyAnimeFragments().size();
+    }
+
+    /**
+     * 同步前的/ranking：请求内拉取、写库后再读取第一页
+     */
+    @Benchmark
+    public int rankingWithInlineIngest() throws IOException {
+        animeService.upsertSubjects(BangumiSubjectParser.parseSubjects(bangumiApiClient.getSubjects("rank", FEED_SIZE)));
+        return animeService.getAnimeRankingFragments(1, PAGE_SIZE).items().size();
+    }
+
+    @Benchmark
+    public int rankingLocalRead() {
+        return animeService.getAnimeRankingFragments(1, PAGE_SIZE).items().size();
+    }
+
+    /**
+     * 与数据库读回的行相同的副本，不保存内容哈希，每次比对都需要写库
+     */
+    private static List<Anime> copies(List<Anime> rows) {
+        List<Anime> result = new ArrayList<>(rows.size());
+        for (Anime row : rows) {
+            Anime copy = new Anime();
+            BeanUtils.copyProperties(row, copy);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private BangumiApiClient newClient() {
+        BangumiResponseCache responseCache = new BangumiResponseCache();
+        ReflectionTestUtils.setField(responseCache, "maxEntries", 16);
+        ReflectionTestUtils.setField(responseCache, "dailyTtlSeconds", 0L);
+        ReflectionTestUtils.setField(responseCache, "rankingTtlSeconds", 0L);
+        ReflectionTestUtils.setField(responseCache, "staleSeconds", 0L);
+        responseCache.init();
+
+        BangumiApiClient client = new BangumiApiClient();
+        ReflectionTestUtils.setField(client, "bangumiWebClient", WebClient.builder().baseUrl(upstream.baseUrl()).build());
+        ReflectionTestUtils.setField(client, "responseCache", responseCache);
+        ReflectionTestUtils.setField(client, "diskCache", new BangumiDiskCache());
+        ReflectionTestUtils.setField(client, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(client, "subjectsTimeoutMs", 8000L);
+        ReflectionTestUtils.setField(client, "searchTimeoutMs", 3000L);
+        ReflectionTestUtils.setField(client, "calendarTimeoutMs", 8000L);
+        ReflectionTestUtils.setField(client, "maxConcurrent", 8);
+        ReflectionTestUtils.setField(client, "maxBodyBytes", 16 * 1024 * 1024);
+        ReflectionTestUtils.setField(client, "failureThreshold", 5);
+        ReflectionTestUtils.setField(client, "openMs", 30000L);
+        client.init();
+        return client;
+    }
+
+    /**
+     * 50个TV动画条目，按排名排列
+     */
+    private static byte[] feed() {
+        StringBuilder json = new StringBuilder("{\"total\":" + FEED_SIZE + ",\"limit\":" + FEED_SIZE + ",\"offset\":0,\"data\":[");
+        for (int i = 1; i <= FEED_SIZE; i++) {
+            json.append(i == 1 ? "" : ",")
+                    .append("{\"id\":").append(1000 + i).append(",\"type\":2,\"name\":\"アニメ").append(i)
+                    .append("\",\"name_cn\":\"动画").append(i).append("\",\"date\":\"2024-04-0").append(i % 9 + 1)
+                    .append("\",\"eps\":12,\"summary\":\"").append("简介".repeat(100))
+                    .append("\",\"images\":{\"large\":\"https://lain.bgm.tv/pic/cover/l/00/00/").append(i)
+                    .append(".jpg\",\"small\":\"https://lain.bgm.tv/pic/cover/s/00/00/").append(i)
+                    .append(".jpg\"},\"rating\":{\"rank\":").append(i).append(",\"total\":").append(10000 - i)
+                    .append(",\"score\":8.").append(i % 10)
+                    .append("},\"tags\":[{\"name\":\"TV\",\"count\":500},{\"name\":\"原创\",\"count\":").append(i)
+                    .append("}]}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AnimeFeedLatencyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,142 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.service.AnimeFragmentCache;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比生成20条动漫列表响应的两种方式：
+ * 原有的逐条readTree构建Map再整体序列化，以及拼接AnimeFragmentCache中预先编码的片段
+ * 运行方式：在IDE中直接运行main方法，GC profiler会输出gc.alloc.rate.norm（每次调用分配的字节数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimeListResponseBenchmark {
+
+    private static final int ITEMS = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AnimeFragmentCache fragmentCache = new AnimeFragmentCache();
+
+    private List<Anime> animes;
+
+    // 模拟响应输出流，每次调用前清空以复用缓冲区
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() {
+        animes = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Anime anime = new Anime();
+            anime.setId(1000L + i);
+            anime.setBangumiId(400000 + i);
+            anime.setName("テストアニメ" + i);
+            anime.setNameCn("测试动画" + i);
+            anime.setImages("{\"large\":\"https://lain.bgm.tv/pic/cover/l/00/00/" + i + ".jpg\","
+                    + "\"common\":\"https://lain.bgm.tv/pic/cover/c/00/00/" + i + ".jpg\","
+                    + "\"medium\":\"https://lain.bgm.tv/pic/cover/m/00/00/" + i + ".jpg\","
+                    + "\"small\":\"https://lain.bgm.tv/pic/cover/s/00/00/" + i + ".jpg\","
+                    + "\"grid\":\"https://lain.bgm.tv/pic/cover/g/00/00/" + i + ".jpg\"}");
+            anime.setRating("{\"rank\":" + (i + 1) + ",\"total\":1234,\"count\":{\"1\":1,\"2\":2,\"3\":3,\"4\":4,"
+                    + "\"5\":5,\"6\":60,\"7\":300,\"8\":500,\"9\":300,\"10\":59},\"score\":7.9}");
+            StringBuilder tags = new StringBuilder("[");
+            for (int t = 0; t < 30; t++) {
+                if (t > 0) {
+                    tags.append(',');
+                }
+                tags.append("{\"name\":\"标签").append(t).append("\",\"count\":").append(100 - t).append('}');
+            }
+            anime.setTags(tags.append(']').toString());
+            anime.setType(2);
+            anime.setDate("2024-04-0" + (i % 9 + 1));
+            anime.setEps(12);
+            anime.setContentHash("hash" + i);
+            anime.setUpdatedAt(LocalDateTime.of(2024, 4, 1, 0, 0));
+            animes.add(anime);
+        }
+        out = new ByteArrayOutputStream(64 * 1024);
+        ReflectionTestUtils.setField(fragmentCache, "objectMapper", new ObjectMapper().registerModule(new BlackbirdModule()));
+        fragmentCache.init();
+        // 预热片段缓存，对应稳定状态下的命中
+        animes.forEach(fragmentCache::get);
+    }
+
+    /**
+     * 原有方式：images、rating、tags逐条readTree，放入HashMap后由Jackson整体序列化
+     */
+    @Benchmark
+    public int mapResponse() throws Exception {
+        List<Map<String, Object>> data = new ArrayList<>(ITEMS);
+        for (Anime anime : animes) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", anime.getId());
+            map.put("name", anime.getName());
+            map.put("name_cn", anime.getNameCn());
+            map.put("images", objectMapper.readTree(anime.getImages()));
+            map.put("rating", objectMapper.readTree(anime.getRating()));
+            map.put("tags", objectMapper.readTree(anime.getTags()));
+            map.put("type", anime.getType());
+            map.put("date", anime.getDate());
+            map.put("eps", anime.getEps());
+            data.add(map);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "获取成功");
+        response.put("data", data);
+
+        out.reset();
+        objectMapper.writeValue(out, response);
+        return out.size();
+    }
+
+    /**
+     * 片段方式：从缓存取出预先编码的片段，直接拼接到输出流
+     */
+    @Benchmark
+    public int fragmentResponse() throws Exception {
+        out.reset();
+        out.write("{\"success\":true,\"message\":\"".getBytes(StandardCharsets.UTF_8));
+        out.write(JsonStringEncoder.getInstance().quoteAsUTF8("获取成功"));
+        out.write("\",\"data\":[".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < animes.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(fragmentCache.get(animes.get(i)));
+        }
+        out.write("]}".getBytes(StandardCharsets.UTF_8));
+        return out.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AnimeListResponseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
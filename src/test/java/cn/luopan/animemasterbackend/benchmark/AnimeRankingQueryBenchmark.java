@@ -0,0 +1,152 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在10万行的临时表上对比排行榜查询：
+ * 原有的按JSON列rating排序，与按索引idx_type_rank(type, rank_no, id)扫描的前N名和分页查询
+ * 运行方式：通过系统属性bench.jdbc.url/bench.jdbc.user/bench.jdbc.password指定一个可写的MySQL库，
+ * 在IDE中直接运行main方法；临时表anime_ranking_bench在结束时删除
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimeRankingQueryBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    private static final String TABLE = "anime_ranking_bench";
+
+    private Connection connection;
+
+    private PreparedStatement jsonOrderQuery;
+
+    private PreparedStatement topQuery;
+
+    private PreparedStatement pageQuery;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:mysql://127.0.0.1:3306/anime_master_bench?rewriteBatchedStatements=true"),
+                System.getProperty("bench.jdbc.user", "root"),
+                System.getProperty("bench.jdbc.password", ""));
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + "name VARCHAR(255) NOT NULL,"
+                    + "rating JSON,"
+                    + "score DECIMAL(4, 2) DEFAULT NULL,"
+                    + "rank_no INT DEFAULT 0,"
+                    + "votes INT DEFAULT 0,"
+                    + "type INT DEFAULT 0,"
+                    + "INDEX idx_type_rank (type, rank_no, id))");
+        }
+
+        // 约80%为TV动画，其中约70%有排名，排名为随机排列
+        Random random = new Random(42);
+        int[] ranks = new int[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            ranks[i] = i + 1;
+        }
+        for (int i = ROWS - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = tmp;
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE
+                + " (name, rating, score, rank_no, votes, type) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                int rank = random.nextInt(10) < 7 ? ranks[i] : 0;
+                double score = Math.round((3 + random.nextDouble() * 6) * 10) / 10.0;
+                int votes = random.nextInt(20000);
+                insert.setString(1, "bench-" + i);
+                insert.setString(2, "{\"rank\":" + rank + ",\"total\":" + votes + ",\"score\":" + score + "}");
+                insert.setDouble(3, score);
+                insert.setInt(4, rank);
+                insert.setInt(5, votes);
+                insert.setInt(6, random.nextInt(10) < 8 ? 2 : 1);
+                insert.addBatch();
+                if (i % 5000 == 4999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE " + TABLE);
+        }
+
+        jsonOrderQuery = connection.prepareStatement(
+                "SELECT * FROM " + TABLE + " WHERE type = 2 ORDER BY rating LIMIT 20");
+        topQuery = connection.prepareStatement(
+                "SELECT * FROM " + TABLE + " WHERE type = 2 AND rank_no > 0 ORDER BY rank_no, id LIMIT 20");
+        pageQuery = connection.prepareStatement(
+                "SELECT * FROM " + TABLE + " WHERE type = 2 AND rank_no > 0 ORDER BY rank_no, id LIMIT ?, 20");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int orderByJsonRating() throws SQLException {
+        return count(jsonOrderQuery);
+    }
+
+    @Benchmark
+    public int topByRankIndex() throws SQLException {
+        return count(topQuery);
+    }
+
+    @Benchmark
+    public int page50ByRankIndex() throws SQLException {
+        pageQuery.setInt(1, 49 * 20);
+        return count(pageQuery);
+    }
+
+    private static int count(PreparedStatement query) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = query.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AnimeRankingQueryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,205 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 对比一页50个Bangumi条目（一半新增、一半已存在且有变化）的两种写入方式：
+ * 逐行语句（MyBatis-Plus的saveBatch/updateBatchById在没有rewriteBatchedStatements时每行一次往返），
+ * 与AnimeMapper.upsertBatch的单条多行INSERT ... ON DUPLICATE KEY UPDATE
+ * 默认使用内存中的H2（MySQL兼容模式），没有网络开销，因此用rttMicros为每次往返加上模拟的网络延迟；
+ * roundTrips计数器给出每页的往返次数；H2的语句执行路径要运行十几秒才稳定，预热取10轮
+ * 也可以通过系统属性bench.jdbc.url/bench.jdbc.user/bench.jdbc.password指定一个可写的MySQL库（此时rttMicros取0），
+ * 在IDE中直接运行main方法；临时表anime_upsert_bench在结束时删除
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimeUpsertBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final String TABLE = "anime_upsert_bench";
+
+    private static final String COLUMNS = "bangumi_id, name, name_cn, images, rating, score, rank_no, votes, tags, type, "
+            + "collection, date, eps, description, content_hash";
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 与AnimeMapper.upsertBatch相同
+    private static final String ON_DUPLICATE = " ON DUPLICATE KEY UPDATE"
+            + " content_hash = VALUES(content_hash),"
+            + " name = VALUES(name), name_cn = VALUES(name_cn),"
+            + " images = COALESCE(VALUES(images), images), rating = COALESCE(VALUES(rating), rating),"
+            + " score = COALESCE(VALUES(score), score), rank_no = COALESCE(VALUES(rank_no), rank_no),"
+            + " votes = COALESCE(VALUES(votes), votes), tags = COALESCE(VALUES(tags), tags),"
+            + " type = COALESCE(VALUES(type), type), collection = COALESCE(VALUES(collection), collection),"
+            + " date = COALESCE(NULLIF(VALUES(date), ''), date), eps = COALESCE(VALUES(eps), eps),"
+            + " description = COALESCE(VALUES(description), description)";
+
+    // 每次往返附加的模拟网络延迟（微秒）
+    @Param({"0", "300"})
+    private int rttMicros;
+
+    private Connection connection;
+
+    private PreparedStatement singleRowUpsert;
+
+    private PreparedStatement multiRowUpsert;
+
+    // 下一页新增条目的起始bangumi_id，已存在的条目取它之前的一段
+    private int nextBangumiId;
+
+    private int version;
+
+    /**
+     * 每页的数据库往返次数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+
+        public long roundTrips;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            roundTrips = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:h2:mem:anime_upsert_bench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        connection = DriverManager.getConnection(url,
+                System.getProperty("bench.jdbc.user", url.startsWith("jdbc:h2:") ? "sa" : "root"),
+                System.getProperty("bench.jdbc.password", ""));
+        if (!url.startsWith("jdbc:h2:")) {
+            rttMicros = 0;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+            statement.execute("CREATE TABLE " + TABLE + " ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + "bangumi_id INT UNIQUE,"
+                    + "name VARCHAR(255) NOT NULL,"
+                    + "name_cn VARCHAR(255),"
+                    + "images VARCHAR(1000),"
+                    + "rating VARCHAR(1000),"
+                    + "score DECIMAL(4, 2),"
+                    + "rank_no INT DEFAULT 0,"
+                    + "votes INT DEFAULT 0,"
+                    + "tags VARCHAR(4000),"
+                    + "type INT DEFAULT 0,"
+                    + "collection VARCHAR(1000),"
+                    + "date VARCHAR(20),"
+                    + "eps INT DEFAULT 0,"
+                    + "description TEXT,"
+                    + "content_hash CHAR(32))");
+        }
+
+        singleRowUpsert = connection.prepareStatement("INSERT INTO " + TABLE + " (" + COLUMNS + ") VALUES "
+                + ROW_PLACEHOLDERS + ON_DUPLICATE);
+        StringBuilder sql = new StringBuilder("INSERT INTO " + TABLE + " (" + COLUMNS + ") VALUES ");
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            sql.append(i == 0 ? "" : ",").append(ROW_PLACEHOLDERS);
+        }
+        multiRowUpsert = connection.prepareStatement(sql.append(ON_DUPLICATE).toString());
+
+        // 先写入一页，保证第一次调用时就有已存在的条目
+        nextBangumiId = PAGE_SIZE / 2 + 1;
+        executeMultiRowUpsert();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + TABLE);
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int perRowStatements(RoundTrips counter) throws SQLException {
+        int firstId = nextPage();
+        int rows = 0;
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            bindRow(singleRowUpsert, 0, firstId + i);
+            rows += singleRowUpsert.executeUpdate();
+            roundTrip(counter);
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public int multiRowUpsert(RoundTrips counter) throws SQLException {
+        int rows = executeMultiRowUpsert();
+        roundTrip(counter);
+        return rows;
+    }
+
+    private int executeMultiRowUpsert() throws SQLException {
+        int firstId = nextPage();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            bindRow(multiRowUpsert, i * 15, firstId + i);
+        }
+        return multiRowUpsert.executeUpdate();
+    }
+
+    /**
+     * 前半页是上一页已写入的条目，后半页是新条目
+     */
+    private int nextPage() {
+        int firstId = nextBangumiId - PAGE_SIZE / 2;
+        nextBangumiId += PAGE_SIZE / 2;
+        version++;
+        return firstId;
+    }
+
+    private void bindRow(PreparedStatement statement, int offset, int bangumiId) throws SQLException {
+        statement.setInt(offset + 1, bangumiId);
+        statement.setString(offset + 2, "bench-" + bangumiId);
+        statement.setString(offset + 3, "测试-" + bangumiId);
+        statement.setString(offset + 4, "{\"large\":\"https://lain.bgm.tv/pic/cover/l/" + bangumiId + ".jpg\"}");
+        statement.setString(offset + 5, "{\"rank\":" + bangumiId + ",\"total\":" + version + ",\"score\":7.5}");
+        statement.setBigDecimal(offset + 6, new BigDecimal("7.5"));
+        statement.setInt(offset + 7, bangumiId);
+        statement.setInt(offset + 8, version);
+        statement.setString(offset + 9, "[{\"name\":\"原创\",\"count\":" + version + "}]");
+        statement.setInt(offset + 10, 2);
+        statement.setString(offset + 11, "{\"collect\":" + version + "}");
+        statement.setString(offset + 12, "2024-01-01");
+        statement.setInt(offset + 13, 12);
+        statement.setString(offset + 14, "summary-" + bangumiId);
+        statement.setString(offset + 15, String.format("%032x", (long) bangumiId * 31 + version));
+    }
+
+    private void roundTrip(RoundTrips counter) {
+        counter.roundTrips++;
+        if (rttMicros > 0) {
+            LockSupport.parkNanos(rttMicros * 1000L);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AnimeUpsertBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
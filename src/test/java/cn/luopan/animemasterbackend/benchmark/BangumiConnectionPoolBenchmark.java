@@ -0,0 +1,203 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import cn.luopan.animemasterbackend.config.WebClientConfig;
+import cn.luopan.animemasterbackend.utils.ConnectionPoolStats;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比访问本地Bangumi桩时的两种连接方式：
+ * 每个请求新建连接（调优前超出默认连接池或连接被服务端关闭后的情况）与调优后可复用的连接池
+ * 桩使用keytool生成的自签名证书（RSA 2048）提供HTTPS，每个新建连接都要完成一次TLS握手；handshakes和handshakesSaved计数器
+ * 给出握手次数和连接复用省下的握手次数；生成证书失败时退回明文HTTP，计数含义变为TCP连接数
+ * compress为true时桩对约300KB的条目列表做gzip压缩，客户端发送Accept-Encoding并解压
+ * 运行方式：在IDE中直接运行main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BangumiConnectionPoolBenchmark {
+
+    // 每次调用并发发出的请求数，对应一轮同步的分页请求
+    private static final int CONCURRENT_REQUESTS = 8;
+
+    @Param({"perRequest", "pooled"})
+    public String mode;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    private DisposableServer server;
+
+    private ConnectionProvider provider;
+
+    private ConnectionPoolStats stats;
+
+    private HttpClient client;
+
+    /**
+     * 每次调用的握手次数和复用省下的握手次数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Handshakes {
+
+        public long handshakes;
+
+        public long handshakesSaved;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            handshakes = 0;
+            handshakesSaved = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] body = subjectPage().getBytes(StandardCharsets.UTF_8);
+        Http11SslContextSpec serverSsl = selfSignedServerSsl();
+        HttpServer httpServer = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .compress(compress)
+                .route(routes -> routes.get("/v0/subjects", (request, response) -> response
+                        .header("Content-Type", "application/json")
+                        .sendByteArray(Mono.just(body))));
+        if (serverSsl != null) {
+            httpServer = httpServer.secure(spec -> spec.sslContext(serverSsl));
+        }
+        server = httpServer.bindNow();
+
+        stats = new ConnectionPoolStats();
+        provider = "pooled".equals(mode)
+                ? ConnectionProvider.builder("bangumi-bench")
+                        .maxConnections(CONCURRENT_REQUESTS)
+                        .maxIdleTime(Duration.ofSeconds(55))
+                        .evictInBackground(Duration.ofSeconds(30))
+                        .lifo()
+                        .metrics(true, () -> stats)
+                        .build()
+                : ConnectionProvider.newConnection();
+        HttpClient httpClient = WebClientConfig.createBangumiHttpClient(provider, stats, 3000, 10000, compress, false)
+                .baseUrl((serverSsl != null ? "https" : "http") + "://127.0.0.1:" + server.port());
+        if (serverSsl != null) {
+            httpClient = httpClient.secure(spec -> spec.sslContext(Http11SslContextSpec.forClient()
+                    .configure(builder -> builder.trustManager(InsecureTrustManagerFactory.INSTANCE))));
+        }
+        client = httpClient;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        provider.disposeLater().block();
+        server.disposeNow();
+    }
+
+    @Benchmark
+    public long concurrentPage(Handshakes counter) {
+        long openedBefore = stats.getConnectionsOpened();
+        long requestsBefore = stats.getRequests();
+        Long bytes = Flux.range(0, CONCURRENT_REQUESTS)
+                .flatMap(i -> client.get()
+                        .uri("/v0/subjects?type=2&sort=rank&limit=50&offset=" + i * 50)
+                        .responseContent()
+                        .aggregate()
+                        .asByteArray()
+                        .map(array -> (long) array.length), CONCURRENT_REQUESTS)
+                .reduce(0L, Long::sum)
+                .block();
+        long opened = stats.getConnectionsOpened() - openedBefore;
+        counter.handshakes += opened;
+        counter.handshakesSaved += (stats.getRequests() - requestsBefore) - opened;
+        return bytes == null ? 0 : bytes;
+    }
+
+    /**
+     * 用当前JDK的keytool生成自签名证书的服务端TLS配置，失败时返回null
+     * Netty的SelfSignedCertificate依赖BouncyCastle或JDK内部的sun.security.x509，JDK 21上两者都不可用
+     */
+    private static Http11SslContextSpec selfSignedServerSsl() {
+        try {
+            Path directory = Files.createTempDirectory("bangumi-bench");
+            Path keystore = directory.resolve("stub.p12");
+            char[] password = "changeit".toCharArray();
+            try {
+                Process keytool = new ProcessBuilder(
+                        Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                        "-genkeypair", "-alias", "stub", "-keyalg", "RSA", "-keysize", "2048",
+                        "-dname", "CN=127.0.0.1", "-ext", "SAN=ip:127.0.0.1", "-validity", "1",
+                        "-storetype", "PKCS12", "-keystore", keystore.toString(),
+                        "-storepass", new String(password), "-keypass", new String(password))
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (!keytool.waitFor(30, TimeUnit.SECONDS) || keytool.exitValue() != 0) {
+                    throw new IllegalStateException("keytool执行失败");
+                }
+                KeyStore store = KeyStore.getInstance("PKCS12");
+                try (InputStream in = Files.newInputStream(keystore)) {
+                    store.load(in, password);
+                }
+                return Http11SslContextSpec.forServer((PrivateKey) store.getKey("stub", password),
+                        (X509Certificate) store.getCertificate("stub"));
+            } finally {
+                Files.deleteIfExists(keystore);
+                Files.deleteIfExists(directory);
+            }
+        } catch (Exception e) {
+            System.err.println("无法生成自签名证书，使用明文HTTP: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 50个条目的列表页，字段与Bangumi /v0/subjects一致
+     */
+    private static String subjectPage() {
+        StringBuilder json = new StringBuilder("{\"total\":5000,\"limit\":50,\"offset\":0,\"data\":[");
+        for (int i = 0; i < 50; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"id\":").append(1000 + i)
+                    .append(",\"type\":2,\"name\":\"subject-").append(i)
+                    .append("\",\"name_cn\":\"条目").append(i)
+                    .append("\",\"date\":\"2024-01-01\",\"eps\":12,\"summary\":\"")
+                    .append("简介".repeat(1000))
+                    .append("\",\"images\":{\"large\":\"https://lain.bgm.tv/pic/cover/l/").append(i)
+                    .append(".jpg\"},\"rating\":{\"rank\":").append(i + 1)
+                    .append(",\"total\":1000,\"score\":8.0},\"tags\":[{\"name\":\"原创\",\"count\":100}]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BangumiConnectionPoolBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
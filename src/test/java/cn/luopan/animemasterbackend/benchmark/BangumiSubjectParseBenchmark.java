@@ -0,0 +1,109 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.utils.BangumiSubjectParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比解析50条Bangumi条目的两种方式：
+ * 原有的readTree + writeValueAsString方式，以及BangumiSubjectParser的流式解析
+ * 运行方式：在IDE中直接运行main方法，GC profiler会输出gc.alloc.rate.norm（每次调用分配的字节数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BangumiSubjectParseBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("{\"total\":50,\"limit\":50,\"offset\":0,\"data\":[");
+        for (int i = 0; i < 50; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(400000 + i)
+                    .append(",\"type\":2,\"name\":\"テストアニメ").append(i)
+                    .append("\",\"name_cn\":\"测试动画").append(i)
+                    .append("\",\"summary\":\"").append("这是一段用于基准测试的简介。".repeat(10))
+                    .append("\",\"date\":\"2024-04-0").append(i % 9 + 1)
+                    .append("\",\"eps\":12,\"total_episodes\":12,\"platform\":\"TV\"")
+                    .append(",\"images\":{\"large\":\"https://lain.bgm.tv/pic/cover/l/00/00/").append(i)
+                    .append(".jpg\",\"common\":\"https://lain.bgm.tv/pic/cover/c/00/00/").append(i)
+                    .append(".jpg\",\"medium\":\"https://lain.bgm.tv/pic/cover/m/00/00/").append(i)
+                    .append(".jpg\",\"small\":\"https://lain.bgm.tv/pic/cover/s/00/00/").append(i)
+                    .append(".jpg\",\"grid\":\"https://lain.bgm.tv/pic/cover/g/00/00/").append(i).append(".jpg\"}")
+                    .append(",\"rating\":{\"rank\":").append(i + 1)
+                    .append(",\"total\":1234,\"count\":{\"1\":1,\"2\":2,\"3\":3,\"4\":4,\"5\":5,\"6\":60,\"7\":300,\"8\":500,\"9\":300,\"10\":59},\"score\":7.9}")
+                    .append(",\"collection\":{\"on_hold\":10,\"dropped\":5,\"wish\":300,\"collect\":900,\"doing\":200}")
+                    .append(",\"tags\":[");
+            for (int t = 0; t < 30; t++) {
+                if (t > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"name\":\"标签").append(t).append("\",\"count\":").append(100 - t).append('}');
+            }
+            sb.append("],\"infobox\":[{\"key\":\"中文名\",\"value\":\"测试动画\"},{\"key\":\"话数\",\"value\":\"12\"}]}");
+        }
+        sb.append("]}");
+        payload = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 原有方式：构建完整JsonNode树，再把images、rating、tags子树重新序列化为字符串
+     */
+    @Benchmark
+    public List<Anime> treeParse() throws Exception {
+        JsonNode root = objectMapper.readTree(new String(payload, StandardCharsets.UTF_8));
+        List<Anime> result = new ArrayList<>();
+        for (JsonNode subject : root.path("data")) {
+            Anime anime = new Anime();
+            anime.setBangumiId(subject.path("id").asInt());
+            anime.setName(subject.path("name").asText());
+            anime.setNameCn(subject.path("name_cn").asText());
+            anime.setImages(objectMapper.writeValueAsString(subject.path("images")));
+            anime.setRating(objectMapper.writeValueAsString(subject.path("rating")));
+            anime.setTags(objectMapper.writeValueAsString(subject.path("tags")));
+            anime.setType(subject.path("type").asInt());
+            anime.setDate(subject.path("date").asText());
+            anime.setEps(subject.path("eps").asInt());
+            anime.setDescription(subject.path("summary").asText());
+            result.add(anime);
+        }
+        return result;
+    }
+
+    /**
+     * 流式解析：一次遍历token，直接截取原始JSON片段
+     */
+    @Benchmark
+    public List<Anime> streamingParse() throws Exception {
+        return BangumiSubjectParser.parseSubjects(payload);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BangumiSubjectParseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,211 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import cn.luopan.animemasterbackend.mapper.UserAnimeStatusMapper;
+import cn.luopan.animemasterbackend.service.CollectionCache;
+import cn.luopan.animemasterbackend.service.ProgressWriteBuffer;
+import cn.luopan.animemasterbackend.service.impl.UserAnimeStatusServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.apache.ibatis.cursor.Cursor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10万条收藏的导出与导入：
+ * 原有的selectList整体读入后序列化为一个JSON数组，对比从游标逐行写出NDJSON/CSV；
+ * 以及NDJSON/CSV流式解析后每500行一条多行upsert
+ * mapper为内存桩，游标逐行生成收藏，upsertBatch只计数，测量的是应用侧的编解码、分批和内存分配，不包含数据库耗时；
+ * 数据库侧多行语句与逐行语句的差异见AnimeUpsertBenchmark
+ * 运行方式：在IDE中直接运行main方法，GC profiler会输出gc.alloc.rate.norm（每次调用分配的字节数）
+ * 各方式的分配总量都随行数线性增长且数量级相近，gc.alloc.rate.norm体现不出流式的优势；
+ * 差别在于同时存活的数据：整体序列化方式需要同时持有全部行，流式方式只持有一行（导入时一批），需要看GC后的堆占用
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx512m"})
+public class CollectionTransferBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .modulesToInstall(new BlackbirdModule())
+            .build();
+
+    private UserAnimeStatusServiceImpl service;
+
+    // 导入用的文件内容，由导出得到
+    private byte[] ndjson;
+
+    private byte[] csv;
+
+    // 每次导入执行的upsert语句数
+    private long upserts;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        UserAnimeStatusMapper mapper = (UserAnimeStatusMapper) Proxy.newProxyInstance(
+                UserAnimeStatusMapper.class.getClassLoader(), new Class<?>[]{UserAnimeStatusMapper.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "selectCursorByUser" -> {
+                            return new GeneratingCursor();
+                        }
+                        case "selectExistingAnimeIds" -> {
+                            return new ArrayList<>((Collection<?>) args[0]);
+                        }
+                        case "upsertBatch" -> {
+                            upserts++;
+                            return ((List<?>) args[0]).size();
+                        }
+                        case "toString" -> {
+                            return "UserAnimeStatusMapper stub";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        ProgressWriteBuffer buffer = new ProgressWriteBuffer();
+        ReflectionTestUtils.setField(buffer, "userAnimeStatusMapper", mapper);
+        service = new UserAnimeStatusServiceImpl();
+        ReflectionTestUtils.setField(service, "userAnimeStatusMapper", mapper);
+        ReflectionTestUtils.setField(service, "collectionCache", new CollectionCache());
+        ReflectionTestUtils.setField(service, "progressWriteBuffer", buffer);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024 * 1024);
+        service.exportCollection(1L, "ndjson", out);
+        ndjson = out.toByteArray();
+        out.reset();
+        service.exportCollection(1L, "csv", out);
+        csv = out.toByteArray();
+    }
+
+    /**
+     * 原有方式：全部收藏读入List，再作为ApiResponse的data序列化为一个JSON数组
+     */
+    @Benchmark
+    public int jsonArrayExport() throws Exception {
+        List<UserAnimeStatus> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(row(i));
+        }
+        OutputStream out = OutputStream.nullOutputStream();
+        objectMapper.writeValue(out, ApiResponse.ok("获取成功", rows));
+        return rows.size();
+    }
+
+    @Benchmark
+    public long ndjsonExport() throws Exception {
+        return service.exportCollection(1L, "ndjson", OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long csvExport() throws Exception {
+        return service.exportCollection(1L, "csv", OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long ndjsonImport() throws Exception {
+        return service.importCollection(2L, "ndjson", new ByteArrayInputStream(ndjson)).imported();
+    }
+
+    @Benchmark
+    public long csvImport() throws Exception {
+        return service.importCollection(2L, "csv", new ByteArrayInputStream(csv)).imported();
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.println("upsert statements: " + upserts);
+    }
+
+    private static UserAnimeStatus row(int i) {
+        UserAnimeStatus row = new UserAnimeStatus();
+        row.setId((long) i + 1);
+        row.setUserId(1L);
+        row.setAnimeId(400000L + i);
+        row.setTitle("テストアニメ" + i);
+        row.setTitleCn("测试动画, 第" + i + "部");
+        row.setImage("https://lain.bgm.tv/pic/cover/l/00/00/" + i + ".jpg");
+        row.setEpisodes(12);
+        row.setStatus(i % 3 == 0 ? "watched" : "watching");
+        row.setProgress(i % 3 == 0 ? 12 : i % 12 + 1);
+        row.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i));
+        row.setUpdatedAt(LocalDateTime.of(2024, 6, 1, 0, 0).plusMinutes(i));
+        return row;
+    }
+
+    /**
+     * 逐行生成收藏的游标，对应MySQL驱动的流式结果集
+     */
+    private static final class GeneratingCursor implements Cursor<UserAnimeStatus> {
+
+        private int index;
+
+        @Override
+        public boolean isOpen() {
+            return index < ROWS;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return index >= ROWS;
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return index - 1;
+        }
+
+        @Override
+        public Iterator<UserAnimeStatus> iterator() {
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return index < ROWS;
+                }
+
+                @Override
+                public UserAnimeStatus next() {
+                    return row(index++);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CollectionTransferBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,221 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比OFFSET分页与keyset分页在不同页深度下的耗时：
+ * 排行榜（10万行，索引idx_type_rank(type, rank_no, id)）和单个用户的收藏（约8万行，索引idx_user_status_id(user_id, status, id)）
+ * keyset方式的耗时应与page无关，OFFSET方式随page线性增长
+ * 运行方式：通过系统属性bench.jdbc.url/bench.jdbc.user/bench.jdbc.password指定一个可写的MySQL库，
+ * 在IDE中直接运行main方法；临时表在结束时删除
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeysetPaginationBenchmark {
+
+    private static final int ANIME_ROWS = 100_000;
+
+    private static final int COLLECTION_ROWS = 100_000;
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final String ANIME_TABLE = "anime_keyset_bench";
+
+    private static final String STATUS_TABLE = "user_anime_status_keyset_bench";
+
+    private static final long USER_ID = 1;
+
+    @Param({"1", "50", "500", "1500"})
+    private int page;
+
+    private Connection connection;
+
+    private PreparedStatement rankingOffsetQuery;
+
+    private PreparedStatement rankingKeysetQuery;
+
+    private PreparedStatement collectionOffsetQuery;
+
+    private PreparedStatement collectionKeysetQuery;
+
+    // 目标页之前最后一条的位置，相当于客户端持有的游标
+    private int cursorRank;
+
+    private long cursorAnimeId;
+
+    private long cursorStatusId;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:mysql://127.0.0.1:3306/anime_master_bench?rewriteBatchedStatements=true"),
+                System.getProperty("bench.jdbc.user", "root"),
+                System.getProperty("bench.jdbc.password", ""));
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + ANIME_TABLE);
+            statement.execute("CREATE TABLE " + ANIME_TABLE + " ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + "name VARCHAR(255) NOT NULL,"
+                    + "images JSON,"
+                    + "rank_no INT DEFAULT 0,"
+                    + "type INT DEFAULT 0,"
+                    + "INDEX idx_type_rank (type, rank_no, id))");
+            statement.execute("DROP TABLE IF EXISTS " + STATUS_TABLE);
+            statement.execute("CREATE TABLE " + STATUS_TABLE + " ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + "user_id BIGINT NOT NULL,"
+                    + "anime_id BIGINT NOT NULL,"
+                    + "title VARCHAR(255),"
+                    + "status ENUM('wantToWatch', 'watching', 'watched', 'dropped') NOT NULL,"
+                    + "progress INT DEFAULT 0,"
+                    + "UNIQUE KEY uk_user_anime (user_id, anime_id),"
+                    + "INDEX idx_user_status_id (user_id, status, id))");
+        }
+
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + ANIME_TABLE
+                + " (name, images, rank_no, type) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < ANIME_ROWS; i++) {
+                insert.setString(1, "bench-" + i);
+                insert.setString(2, "{\"large\":\"https://lain.bgm.tv/pic/cover/l/" + i + ".jpg\"}");
+                insert.setInt(3, random.nextInt(10) < 7 ? random.nextInt(ANIME_ROWS) + 1 : 0);
+                insert.setInt(4, random.nextInt(10) < 8 ? 2 : 1);
+                insert.addBatch();
+                if (i % 5000 == 4999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        // 一个收藏很多的用户，其余为其他用户的少量收藏
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + STATUS_TABLE
+                + " (user_id, anime_id, title, status, progress) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < COLLECTION_ROWS; i++) {
+                insert.setLong(1, i % 5 == 0 ? USER_ID + 1 + random.nextInt(1000) : USER_ID);
+                insert.setLong(2, i);
+                insert.setString(3, "bench-" + i);
+                insert.setString(4, random.nextBoolean() ? "watched" : "wantToWatch");
+                insert.setInt(5, random.nextInt(100));
+                insert.addBatch();
+                if (i % 5000 == 4999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE " + ANIME_TABLE);
+            statement.execute("ANALYZE TABLE " + STATUS_TABLE);
+        }
+
+        rankingOffsetQuery = connection.prepareStatement("SELECT * FROM " + ANIME_TABLE
+                + " WHERE type = 2 AND rank_no > 0 ORDER BY rank_no, id LIMIT ?, " + PAGE_SIZE);
+        // keyset查询与AnimeMapper.selectRankingAfter、UserAnimeStatusMapper.selectByStatusAfter相同，带FORCE INDEX
+        rankingKeysetQuery = connection.prepareStatement("SELECT * FROM " + ANIME_TABLE + " FORCE INDEX (idx_type_rank)"
+                + " WHERE type = 2 AND rank_no > 0 AND (rank_no > ? OR (rank_no = ? AND id > ?))"
+                + " ORDER BY rank_no, id LIMIT " + PAGE_SIZE);
+        collectionOffsetQuery = connection.prepareStatement("SELECT * FROM " + STATUS_TABLE
+                + " WHERE user_id = ? AND status = 'watched' ORDER BY id DESC LIMIT ?, " + PAGE_SIZE);
+        collectionKeysetQuery = connection.prepareStatement("SELECT * FROM " + STATUS_TABLE + " FORCE INDEX (idx_user_status_id)"
+                + " WHERE user_id = ? AND status = 'watched' AND id < ? ORDER BY id DESC LIMIT " + PAGE_SIZE);
+
+        // 取目标页前一条作为游标（第1页没有游标，使用起始值）
+        cursorRank = 0;
+        cursorAnimeId = 0;
+        cursorStatusId = Long.MAX_VALUE;
+        if (page > 1) {
+            int offset = (page - 1) * PAGE_SIZE - 1;
+            try (PreparedStatement query = connection.prepareStatement("SELECT rank_no, id FROM " + ANIME_TABLE
+                    + " WHERE type = 2 AND rank_no > 0 ORDER BY rank_no, id LIMIT " + offset + ", 1");
+                 ResultSet resultSet = query.executeQuery()) {
+                if (resultSet.next()) {
+                    cursorRank = resultSet.getInt(1);
+                    cursorAnimeId = resultSet.getLong(2);
+                }
+            }
+            try (PreparedStatement query = connection.prepareStatement("SELECT id FROM " + STATUS_TABLE
+                    + " WHERE user_id = " + USER_ID + " AND status = 'watched' ORDER BY id DESC LIMIT " + offset + ", 1");
+                 ResultSet resultSet = query.executeQuery()) {
+                if (resultSet.next()) {
+                    cursorStatusId = resultSet.getLong(1);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + ANIME_TABLE);
+            statement.execute("DROP TABLE IF EXISTS " + STATUS_TABLE);
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public int rankingOffset() throws SQLException {
+        rankingOffsetQuery.setInt(1, (page - 1) * PAGE_SIZE);
+        return count(rankingOffsetQuery);
+    }
+
+    @Benchmark
+    public int rankingKeyset() throws SQLException {
+        rankingKeysetQuery.setInt(1, cursorRank);
+        rankingKeysetQuery.setInt(2, cursorRank);
+        rankingKeysetQuery.setLong(3, cursorAnimeId);
+        return count(rankingKeysetQuery);
+    }
+
+    @Benchmark
+    public int collectionOffset() throws SQLException {
+        collectionOffsetQuery.setLong(1, USER_ID);
+        collectionOffsetQuery.setInt(2, (page - 1) * PAGE_SIZE);
+        return count(collectionOffsetQuery);
+    }
+
+    @Benchmark
+    public int collectionKeyset() throws SQLException {
+        collectionKeysetQuery.setLong(1, USER_ID);
+        collectionKeysetQuery.setLong(2, cursorStatusId);
+        return count(collectionKeysetQuery);
+    }
+
+    private static int count(PreparedStatement query) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = query.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(KeysetPaginationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
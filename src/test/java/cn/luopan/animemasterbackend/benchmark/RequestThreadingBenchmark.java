@@ -0,0 +1,177 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import cn.luopan.animemasterbackend.BangumiStubServer;
+import cn.luopan.animemasterbackend.config.ThreadingConfig;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比Tomcat默认线程池（最大200线程）与ThreadingConfig的虚拟线程模式在1000个并发客户端下的表现
+ * 使用真实的组件：嵌入式Tomcat（虚拟线程模式下应用ThreadingConfig的协议处理器定制），
+ * 上游为延迟upstreamMillis的BangumiStubServer，数据库为Hikari连接池（10个连接）上的H2，
+ * 每次查询通过存储过程SLEEP_MS在驱动内停留dbMillis；虚拟线程模式下数据源经过ThreadingConfig的后处理器
+ * 包装为ConcurrencyLimitedDataSource
+ * H2执行语句时持有会话的监视器，SLEEP_MS期间虚拟线程固定在载体线程上，与synchronized实现的JDBC驱动相同；
+ * 因此按ThreadingConfig的说明将载体线程数设为与信号量一致，否则在少核机器上所有查询按核数串行
+ * 每个请求：阻塞调用一次上游，再取连接执行一次查询
+ * 运行方式：在IDE中直接运行main方法，结果为处理完1000个请求的总耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Djdk.virtualThreadScheduler.parallelism=10"})
+public class RequestThreadingBenchmark {
+
+    private static final int CLIENTS = 1000;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"50"})
+    public long upstreamMillis;
+
+    @Param({"2"})
+    public long dbMillis;
+
+    private BangumiStubServer upstream;
+
+    private HikariDataSource pool;
+
+    private WebServer webServer;
+
+    private HttpClient client;
+
+    private URI endpoint;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        upstream = new BangumiStubServer();
+        upstream.setDelayMillis(upstreamMillis);
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:threading_bench;DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(10);
+        config.setConnectionTimeout(30000);
+        pool = new HikariDataSource(config);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS IF NOT EXISTS SLEEP_MS FOR 'java.lang.Thread.sleep(long)'");
+        }
+
+        boolean virtual = "virtual".equals(mode);
+        DataSource dataSource = pool;
+        ThreadingConfig threadingConfig = new ThreadingConfig();
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        if (virtual) {
+            MockEnvironment environment = new MockEnvironment()
+                    .withProperty("app.virtual-threads.db-max-concurrency", "10");
+            dataSource = (DataSource) ThreadingConfig.concurrencyLimitedDataSourcePostProcessor(environment)
+                    .postProcessAfterInitialization(pool, "dataSource");
+            factory.addProtocolHandlerCustomizers(threadingConfig.virtualThreadProtocolHandlerCustomizer());
+        }
+
+        HttpServlet servlet = new RequestServlet(dataSource, upstream.baseUrl(), dbMillis);
+        webServer = factory.getWebServer(servletContext ->
+                servletContext.addServlet("threading", servlet).addMapping("/threading"));
+        webServer.start();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        endpoint = URI.create("http://127.0.0.1:" + webServer.getPort() + "/threading");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        webServer.stop();
+        pool.close();
+        upstream.close();
+    }
+
+    @Benchmark
+    public int concurrentClients() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(endpoint).timeout(Duration.ofSeconds(60)).build();
+        List<CompletableFuture<HttpResponse<Void>>> futures = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        int completed = 0;
+        for (CompletableFuture<HttpResponse<Void>> future : futures) {
+            if (future.get().statusCode() == 200) {
+                completed++;
+            }
+        }
+        if (completed != CLIENTS) {
+            throw new IllegalStateException("只有" + completed + "个请求成功");
+        }
+        return completed;
+    }
+
+    /**
+     * 模拟一个典型接口：阻塞调用Bangumi，再访问一次数据库
+     */
+    private static final class RequestServlet extends HttpServlet {
+
+        private final DataSource dataSource;
+
+        private final URI upstream;
+
+        private final long dbMillis;
+
+        private final HttpClient upstreamClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        RequestServlet(DataSource dataSource, String upstreamUrl, long dbMillis) {
+            this.dataSource = dataSource;
+            this.upstream = URI.create(upstreamUrl + "/v0/subjects");
+            this.dbMillis = dbMillis;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            try {
+                upstreamClient.send(HttpRequest.newBuilder(upstream).build(), HttpResponse.BodyHandlers.ofByteArray());
+                try (Connection connection = dataSource.getConnection();
+                     Statement statement = connection.createStatement()) {
+                    statement.execute("CALL SLEEP_MS(" + dbMillis + ")");
+                }
+            } catch (Exception e) {
+                response.sendError(500, e.getMessage());
+                return;
+            }
+            response.setContentType("text/plain");
+            response.getWriter().write("ok");
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RequestThreadingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
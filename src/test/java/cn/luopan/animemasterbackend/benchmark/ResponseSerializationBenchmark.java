@@ -0,0 +1,204 @@
+package cn.luopan.animemasterbackend.benchmark;
+
+import cn.luopan.animemasterbackend.dto.AnimeDto;
+import cn.luopan.animemasterbackend.dto.ApiResponse;
+import cn.luopan.animemasterbackend.dto.CollectionsDto;
+import cn.luopan.animemasterbackend.dto.LoginResult;
+import cn.luopan.animemasterbackend.dto.UserDto;
+import cn.luopan.animemasterbackend.entity.Anime;
+import cn.luopan.animemasterbackend.entity.User;
+import cn.luopan.animemasterbackend.entity.UserAnimeStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比原先的HashMap响应与ApiResponse记录类（配合Blackbird模块）的序列化吞吐量
+ * 覆盖动漫列表、收藏列表、登录三类响应；Map方式保持原实现，动漫列表包含逐条readTree
+ * 运行方式：在IDE中直接运行main方法，GC profiler会输出gc.alloc.rate.norm（每次调用分配的字节数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    private static final int ITEMS = 20;
+
+    // 原实现：未注册额外模块的ObjectMapper
+    private final ObjectMapper plainMapper = new ObjectMapper();
+
+    // 新实现：与JacksonConfig一致，注册Blackbird模块
+    private final ObjectMapper blackbirdMapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new BlackbirdModule())
+            .build();
+
+    private final ObjectMapper legacyCollectionMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private ObjectWriter animeListWriter;
+
+    private List<Anime> animes;
+
+    private Map<String, List<UserAnimeStatus>> collections;
+
+    private User user;
+
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() {
+        animes = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Anime anime = new Anime();
+            anime.setId(1000L + i);
+            anime.setName("テストアニメ" + i);
+            anime.setNameCn("测试动画" + i);
+            anime.setImages("{\"large\":\"https://lain.bgm.tv/pic/cover/l/00/00/" + i + ".jpg\","
+                    + "\"small\":\"https://lain.bgm.tv/pic/cover/s/00/00/" + i + ".jpg\"}");
+            anime.setRating("{\"rank\":" + (i + 1) + ",\"total\":1234,\"score\":7.9}");
+            anime.setTags("[{\"name\":\"奇幻\",\"count\":10},{\"name\":\"冒险\",\"count\":3}]");
+            anime.setType(2);
+            anime.setDate("2024-04-0" + (i % 9 + 1));
+            anime.setEps(12);
+            animes.add(anime);
+        }
+
+        collections = new HashMap<>();
+        String[] statuses = {"wantToWatch", "watching", "watched", "dropped"};
+        for (String status : statuses) {
+            List<UserAnimeStatus> list = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                UserAnimeStatus item = new UserAnimeStatus();
+                item.setId((long) i);
+                item.setUserId(42L);
+                item.setAnimeId(1000L + i);
+                item.setTitle("テストアニメ" + i);
+                item.setTitleCn("测试动画" + i);
+                item.setImage("https://lain.bgm.tv/pic/cover/l/00/00/" + i + ".jpg");
+                item.setEpisodes(12);
+                item.setStatus(status);
+                item.setProgress(50);
+                item.setCreatedAt(LocalDateTime.of(2024, 4, 1, 0, 0));
+                item.setUpdatedAt(LocalDateTime.of(2024, 4, 2, 0, 0));
+                list.add(item);
+            }
+            collections.put(status, list);
+        }
+
+        user = new User();
+        user.setId(42L);
+        user.setUsername("testuser");
+        user.setEmail("test@example.com");
+
+        animeListWriter = blackbirdMapper.writerFor(blackbirdMapper.getTypeFactory()
+                .constructParametricType(ApiResponse.class,
+                        blackbirdMapper.getTypeFactory().constructCollectionType(List.class, AnimeDto.class)));
+        out = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @Benchmark
+    public int animeListMap() throws Exception {
+        List<Map<String, Object>> data = new ArrayList<>(ITEMS);
+        for (Anime anime : animes) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", anime.getId());
+            map.put("name", anime.getName());
+            map.put("name_cn", anime.getNameCn());
+            map.put("images", plainMapper.readTree(anime.getImages()));
+            map.put("rating", plainMapper.readTree(anime.getRating()));
+            map.put("tags", plainMapper.readTree(anime.getTags()));
+            map.put("type", anime.getType());
+            map.put("date", anime.getDate());
+            map.put("eps", anime.getEps());
+            data.add(map);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "获取成功");
+        response.put("data", data);
+        out.reset();
+        plainMapper.writeValue(out, response);
+        return out.size();
+    }
+
+    @Benchmark
+    public int animeListRecord() throws Exception {
+        List<AnimeDto> data = new ArrayList<>(ITEMS);
+        for (Anime anime : animes) {
+            data.add(AnimeDto.from(anime));
+        }
+        out.reset();
+        animeListWriter.writeValue(out, ApiResponse.ok("获取成功", data));
+        return out.size();
+    }
+
+    @Benchmark
+    public int collectionsMap() throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "获取收藏列表成功");
+        response.put("data", collections);
+        out.reset();
+        legacyCollectionMapper.writeValue(out, response);
+        return out.size();
+    }
+
+    @Benchmark
+    public int collectionsRecord() throws Exception {
+        out.reset();
+        blackbirdMapper.writeValue(out, ApiResponse.ok("获取收藏列表成功", CollectionsDto.from(collections)));
+        return out.size();
+    }
+
+    @Benchmark
+    public int loginMap() throws Exception {
+        Map<String, Object> userInfo = new HashMap<>();
+        userInfo.put("userId", user.getId());
+        userInfo.put("username", user.getUsername());
+        userInfo.put("email", user.getEmail());
+        userInfo.put("token", "header.payload.signature");
+        Map<String, Object> data = new HashMap<>();
+        data.put("user", userInfo);
+        data.put("token", "header.payload.signature");
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "登录成功");
+        response.put("data", data);
+        out.reset();
+        plainMapper.writeValue(out, response);
+        return out.size();
+    }
+
+    @Benchmark
+    public int loginRecord() throws Exception {
+        String token = "header.payload.signature";
+        out.reset();
+        blackbirdMapper.writeValue(out, ApiResponse.ok("登录成功", new LoginResult(UserDto.from(user, token), token)));
+        return out.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ResponseSerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}